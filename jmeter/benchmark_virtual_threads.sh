@@ -0,0 +1,56 @@
+#!/bin/bash
+# 平台线程与虚拟线程两种运行方式的压测对比
+# 用法：./benchmark_virtual_threads.sh [压测计划] [结果目录]
+#   压测计划默认 博物馆购票2000不同用户.jmx，结果目录默认 ./benchmark-results
+# 前置条件：MySQL、Redis、RabbitMQ已启动，JDK 21为当前JDK，jmeter在PATH中
+# 每轮压测前需重置票券库存，保证两种运行方式的初始数据一致
+
+set -e
+
+SCRIPT_DIR="$(cd "$(dirname "$0")" && pwd)"
+PROJECT_DIR="$(dirname "$SCRIPT_DIR")"
+PLAN="${1:-$SCRIPT_DIR/博物馆购票2000不同用户.jmx}"
+RESULT_DIR="${2:-$SCRIPT_DIR/benchmark-results}"
+APP_URL="http://localhost:8081/api/redis/health"
+
+mkdir -p "$RESULT_DIR"
+
+wait_for_app() {
+    for i in $(seq 1 60); do
+        if curl -s "$APP_URL" > /dev/null; then
+            return 0
+        fi
+        sleep 2
+    done
+    echo "应用启动超时"
+    return 1
+}
+
+run_round() {
+    local name="$1"
+    shift
+    echo "==== 压测 ${name} ===="
+    (cd "$PROJECT_DIR" && mvn -q -B "$@" spring-boot:run -pl miaosha-web > "$RESULT_DIR/${name}-app.log" 2>&1) &
+    local app_pid=$!
+    wait_for_app
+
+    # 预热一轮，不计入结果
+    jmeter -n -t "$PLAN" -l "$RESULT_DIR/${name}-warmup.jtl" > /dev/null
+    read -p "请重置票券库存后按回车开始正式压测 ${name}" _
+    jmeter -n -t "$PLAN" -l "$RESULT_DIR/${name}.jtl" -e -o "$RESULT_DIR/${name}-report"
+
+    kill "$app_pid" || true
+    pkill -f "miaosha-web" || true
+    sleep 5
+}
+
+run_round platform-threads
+run_round virtual-threads -Pjdk21-virtual-threads
+
+echo "==== 结果汇总（吞吐量、平均/99分位响应时间、错误率）===="
+for name in platform-threads virtual-threads; do
+    echo "--- ${name} ---"
+    grep -A 12 '"Total"' "$RESULT_DIR/${name}-report/statistics.json" | \
+        grep -E '"(throughput|meanResTime|pct3ResTime|errorPct)"'
+done
+echo "钉住载体线程的记录：$(grep -c 'onPinned\|<== monitors' "$RESULT_DIR/virtual-threads-app.log" || true) 条，详见 virtual-threads-app.log"
@@ -0,0 +1,182 @@
+package cn.monitor4all.miaoshabenchmark;
+
+import cn.monitor4all.miaoshadao.dao.TicketOrder;
+import cn.monitor4all.miaoshadao.model.PurchaseRecord;
+import cn.monitor4all.miaoshadao.model.Ticket;
+import cn.monitor4all.miaoshaservice.utils.codec.CompactCodec;
+import com.alibaba.fastjson.JSON;
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存值和购票消息编解码基准测试
+ * 对比 TicketCacheManagerImpl 使用的fastjson、RedisConfig 使用的Jackson（默认类型信息）与紧凑二进制编码，
+ * 类型为 Ticket、PurchaseRecord、TicketOrder 和购票消息Map，运行前先打印各格式的字节数
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+    @Param({"ticket", "purchaseRecord", "ticketOrder", "purchaseMessage"})
+    private String type;
+
+    private Object value;
+
+    private Class<?> valueClass;
+
+    private ObjectMapper jackson;
+
+    private byte[] fastjsonBytes;
+
+    private byte[] jacksonBytes;
+
+    private byte[] compactBytes;
+
+    @Setup
+    public void setUp() throws Exception {
+        jackson = jackson();
+        value = sample(type);
+        valueClass = value instanceof Map ? Map.class : value.getClass();
+        fastjsonBytes = JSON.toJSONString(value).getBytes(StandardCharsets.UTF_8);
+        jacksonBytes = jackson.writeValueAsBytes(value);
+        compactBytes = CompactCodec.encode(value);
+    }
+
+    @Benchmark
+    public byte[] fastjsonEncode() {
+        return JSON.toJSONString(value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Object fastjsonDecode() {
+        return JSON.parseObject(new String(fastjsonBytes, StandardCharsets.UTF_8), valueClass);
+    }
+
+    @Benchmark
+    public byte[] jacksonEncode() throws Exception {
+        return jackson.writeValueAsBytes(value);
+    }
+
+    @Benchmark
+    public Object jacksonDecode() throws Exception {
+        return jackson.readValue(jacksonBytes, Object.class);
+    }
+
+    @Benchmark
+    public byte[] compactEncode() {
+        return CompactCodec.encode(value);
+    }
+
+    @Benchmark
+    public Object compactDecode() {
+        return CompactCodec.decode(compactBytes);
+    }
+
+    /**
+     * 与 RedisConfig 相同的配置；Ticket 的派生getter（formattedDate等）会被写出，需要忽略未知属性才能读回，
+     * PurchaseRecord 没有无参构造函数，通过mix-in指定构造函数
+     */
+    static ObjectMapper jackson() {
+        ObjectMapper om = new ObjectMapper();
+        om.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY);
+        om.activateDefaultTyping(LaissezFaireSubTypeValidator.instance, ObjectMapper.DefaultTyping.NON_FINAL);
+        om.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        om.registerModule(new JavaTimeModule());
+        om.addMixIn(PurchaseRecord.class, PurchaseRecordMixIn.class);
+        return om;
+    }
+
+    abstract static class PurchaseRecordMixIn {
+        @JsonCreator
+        PurchaseRecordMixIn(@JsonProperty("userId") Long userId, @JsonProperty("date") LocalDate date,
+                            @JsonProperty("ticketCode") String ticketCode) {
+        }
+    }
+
+    static Object sample(String type) {
+        switch (type) {
+            case "ticket":
+                Ticket ticket = new Ticket("2025-01-15", 1000);
+                ticket.setRemaining(637);
+                return ticket;
+            case "purchaseRecord":
+                return new PurchaseRecord(10086L, LocalDate.of(2025, 1, 15), "T20250115000123");
+            case "ticketOrder":
+                TicketOrder order = new TicketOrder("ORD20250115103000123456", 10086L, 7, "T20250115000123", "2025-01-15", 0L);
+                order.setId(123456);
+                order.setStatus(1);
+                order.setCreateTime(new Date(1736908200123L));
+                order.setUpdateTime(new Date(1736908200123L));
+                order.setRemark("抢购订单");
+                return order;
+            case "purchaseMessage":
+                Map<String, Object> message = new HashMap<>();
+                message.put("requestId", "9f0c3a6e-3b1d-4d36-a1f5-6f9d3c2b8e71");
+                message.put("userId", 10086L);
+                message.put("date", "2025-01-15");
+                message.put("verifyHash", "e10adc3949ba59abbe56e057f20f883e");
+                message.put("timestamp", 1736908200123L);
+                message.put("mode", "admission");
+                return message;
+            default:
+                throw new IllegalArgumentException("未知类型: " + type);
+        }
+    }
+
+    /**
+     * 打印各格式字节数（购票消息额外列出原来RabbitMQ使用的Java序列化），再运行全部基准
+     */
+    public static void main(String[] args) throws Exception {
+        ObjectMapper jackson = jackson();
+        System.out.printf("%-16s %10s %10s %10s %10s%n", "type", "fastjson", "jackson", "javaSer", "compact");
+        for (String type : new String[]{"ticket", "purchaseRecord", "ticketOrder", "purchaseMessage"}) {
+            Object value = sample(type);
+            String javaSerialized = "-";
+            if (value instanceof Map) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                try (ObjectOutputStream oos = new ObjectOutputStream(out)) {
+                    oos.writeObject(value);
+                }
+                javaSerialized = String.valueOf(out.size());
+            }
+            System.out.printf("%-16s %10d %10d %10s %10d%n", type,
+                    JSON.toJSONString(value).getBytes(StandardCharsets.UTF_8).length,
+                    jackson.writeValueAsBytes(value).length,
+                    javaSerialized,
+                    CompactCodec.encode(value).length);
+        }
+        new Runner(new OptionsBuilder().include(CodecBenchmark.class.getSimpleName()).build()).run();
+    }
+}
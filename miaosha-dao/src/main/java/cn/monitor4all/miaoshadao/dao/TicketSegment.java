@@ -0,0 +1,127 @@
+package cn.monitor4all.miaoshadao.dao;
+
+import java.util.Date;
+
+/**
+ * 票券库存分段实体类
+ */
+public class TicketSegment {
+    private Integer id;
+    private String date;
+    private Integer segmentNo;
+    private Integer totalCount;
+    private Integer remainingCount;
+    private Integer soldCount;
+    private Integer version;
+    private Integer status;
+    private Date createTime;
+    private Date updateTime;
+
+    // 构造函数
+    public TicketSegment() {}
+
+    public TicketSegment(String date, Integer segmentNo, Integer totalCount) {
+        this.date = date;
+        this.segmentNo = segmentNo;
+        this.totalCount = totalCount;
+        this.remainingCount = totalCount;
+        this.soldCount = 0;
+        this.version = 1;
+        this.status = 1;
+    }
+
+    // getter和setter方法
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public String getDate() {
+        return date;
+    }
+
+    public void setDate(String date) {
+        this.date = date;
+    }
+
+    public Integer getSegmentNo() {
+        return segmentNo;
+    }
+
+    public void setSegmentNo(Integer segmentNo) {
+        this.segmentNo = segmentNo;
+    }
+
+    public Integer getTotalCount() {
+        return totalCount;
+    }
+
+    public void setTotalCount(Integer totalCount) {
+        this.totalCount = totalCount;
+    }
+
+    public Integer getRemainingCount() {
+        return remainingCount;
+    }
+
+    public void setRemainingCount(Integer remainingCount) {
+        this.remainingCount = remainingCount;
+    }
+
+    public Integer getSoldCount() {
+        return soldCount;
+    }
+
+    public void setSoldCount(Integer soldCount) {
+        this.soldCount = soldCount;
+    }
+
+    public Integer getVersion() {
+        return version;
+    }
+
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
+
+    public Integer getStatus() {
+        return status;
+    }
+
+    public void setStatus(Integer status) {
+        this.status = status;
+    }
+
+    public Date getCreateTime() {
+        return createTime;
+    }
+
+    public void setCreateTime(Date createTime) {
+        this.createTime = createTime;
+    }
+
+    public Date getUpdateTime() {
+        return updateTime;
+    }
+
+    public void setUpdateTime(Date updateTime) {
+        this.updateTime = updateTime;
+    }
+
+    @Override
+    public String toString() {
+        return "TicketSegment{" +
+                "id=" + id +
+                ", date='" + date + '\'' +
+                ", segmentNo=" + segmentNo +
+                ", totalCount=" + totalCount +
+                ", remainingCount=" + remainingCount +
+                ", soldCount=" + soldCount +
+                ", version=" + version +
+                ", status=" + status +
+                '}';
+    }
+}
@@ -47,6 +47,26 @@ public interface TicketEntityMapper {
      */
     List<TicketEntity> selectAllActiveTickets();
     
+    /**
+     * 根据日期查询票券，剩余/已售数量汇总分段库存
+     * @param date 日期
+     * @return 票券信息
+     */
+    TicketEntity selectByDateAggregated(String date);
+
+    /**
+     * 查询所有有效的票券，剩余/已售数量汇总分段库存
+     * @return 票券列表
+     */
+    List<TicketEntity> selectAllActiveTicketsAggregated();
+
+    /**
+     * 批量查询多个日期的有效票券，剩余/已售数量汇总分段库存
+     * @param dates 日期列表
+     * @return 票券列表（不存在的日期不返回）
+     */
+    List<TicketEntity> selectByDatesAggregated(@Param("dates") List<String> dates);
+    
     /**
      * 插入票券
      * @param record 票券信息
@@ -81,6 +101,23 @@ public interface TicketEntityMapper {
      * @return 影响行数
      */
     int updateStockByOptimistic(TicketEntity record);
+
+    /**
+     * 条件扣减票券库存，剩余库存不足时不更新
+     * 无需先查询，同时递增version使并发的乐观锁更新失效
+     * @param date 日期
+     * @param quantity 扣减数量
+     * @return 影响行数，0表示库存不足
+     */
+    int decrementIfAvailable(@Param("date") String date, @Param("quantity") int quantity);
+
+    /**
+     * 归还票券库存
+     * @param date 日期
+     * @param quantity 归还数量
+     * @return 影响行数
+     */
+    int incrementStock(@Param("date") String date, @Param("quantity") int quantity);
     
     /**
      * 根据主键删除票券
@@ -19,6 +19,14 @@ public interface TicketOrderMapper {
      * @return 影响行数
      */
     int insert(TicketOrder ticketOrder);
+
+    /**
+     * 批量插入票券订单，一条多值INSERT
+     *
+     * @param ticketOrders 票券订单列表
+     * @return 影响行数
+     */
+    int insertBatch(List<TicketOrder> ticketOrders);
     
     /**
      * 根据主键更新票券订单
@@ -96,6 +104,35 @@ public interface TicketOrderMapper {
      */
     TicketOrder selectByUserIdAndDate(@Param("userId") Long userId, @Param("date") String ticketDate);
     
+    /**
+     * 根据用户ID和多个票券日期批量查询有效票券订单（待支付、已支付）
+     *
+     * @param userId 用户ID
+     * @param ticketDates 票券日期列表
+     * @return 票券订单列表
+     */
+    List<TicketOrder> selectByUserIdAndDates(@Param("userId") Long userId, @Param("dates") List<String> ticketDates);
+    
+    /**
+     * 统计指定日期、订单编号前缀的订单数量（含已取消订单）
+     *
+     * @param ticketDate 票券日期
+     * @param orderNoPrefix 订单编号前缀
+     * @return 订单数量
+     */
+    int countByDateAndOrderNoPrefix(@Param("date") String ticketDate, @Param("orderNoPrefix") String orderNoPrefix);
+    
+    /**
+     * 按主键分页查询指定日期的有效订单（待支付、已支付），只返回id和user_id
+     *
+     * @param ticketDate 票券日期
+     * @param afterId 上一页最后一条订单的id，首页传0
+     * @param limit 每页数量
+     * @return 票券订单列表（按id升序）
+     */
+    List<TicketOrder> selectUserIdsByDateAfterId(@Param("date") String ticketDate, @Param("afterId") Integer afterId,
+                                                 @Param("limit") int limit);
+    
     /**
      * 根据主键删除票券订单
      *
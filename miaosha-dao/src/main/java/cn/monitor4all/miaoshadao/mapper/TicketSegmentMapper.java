@@ -0,0 +1,92 @@
+package cn.monitor4all.miaoshadao.mapper;
+
+import cn.monitor4all.miaoshadao.dao.TicketSegment;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+/**
+ * 票券库存分段数据库操作Mapper接口
+ */
+@Mapper
+public interface TicketSegmentMapper {
+
+    /**
+     * 查询指定日期的全部有效分段
+     * @param date 日期
+     * @return 分段列表，按分段序号升序
+     */
+    List<TicketSegment> selectByDate(String date);
+
+    /**
+     * 查询指定日期有剩余库存的分段
+     * @param date 日期
+     * @return 分段列表，按分段序号升序
+     */
+    List<TicketSegment> selectAvailableByDate(String date);
+
+    /**
+     * 根据日期和分段序号查询分段
+     * @param date 日期
+     * @param segmentNo 分段序号
+     * @return 分段信息
+     */
+    TicketSegment selectByDateAndSegmentNo(@Param("date") String date, @Param("segmentNo") int segmentNo);
+
+    /**
+     * 根据日期和分段序号查询分段（悲观锁）
+     * @param date 日期
+     * @param segmentNo 分段序号
+     * @return 分段信息
+     */
+    TicketSegment selectByDateAndSegmentNoForUpdate(@Param("date") String date, @Param("segmentNo") int segmentNo);
+
+    /**
+     * 统计指定日期的有效分段数
+     * @param date 日期
+     * @return 分段数
+     */
+    int countByDate(String date);
+
+    /**
+     * 插入分段
+     * @param record 分段信息
+     * @return 影响行数
+     */
+    int insert(TicketSegment record);
+
+    /**
+     * 乐观锁更新分段库存
+     * @param record 分段信息
+     * @return 影响行数
+     */
+    int updateStockByOptimistic(TicketSegment record);
+
+    /**
+     * 条件扣减分段库存，剩余库存不足时不更新
+     * @param date 日期
+     * @param segmentNo 分段序号
+     * @param quantity 扣减数量
+     * @return 影响行数，0表示分段库存不足
+     */
+    int decrementIfAvailable(@Param("date") String date, @Param("segmentNo") int segmentNo,
+                             @Param("quantity") int quantity);
+
+    /**
+     * 归还分段库存
+     * @param date 日期
+     * @param segmentNo 分段序号
+     * @param quantity 归还数量
+     * @return 影响行数
+     */
+    int incrementStock(@Param("date") String date, @Param("segmentNo") int segmentNo,
+                       @Param("quantity") int quantity);
+
+    /**
+     * 根据日期删除分段
+     * @param date 日期
+     * @return 影响行数
+     */
+    int deleteByDate(String date);
+}
@@ -1,6 +1,9 @@
 package cn.monitor4all.miaoshadao.mapper;
 
 import cn.monitor4all.miaoshadao.dao.User;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
 
 public interface UserMapper {
     int deleteByPrimaryKey(Long id);
@@ -11,6 +14,14 @@ public interface UserMapper {
 
     User selectByPrimaryKey(Long id);
 
+    /**
+     * 按主键顺序分页查询用户（键集分页）
+     * @param afterId 上一页最后一个用户ID，第一页传0
+     * @param limit 每页条数
+     * @return 用户列表
+     */
+    List<User> selectAfterId(@Param("afterId") Long afterId, @Param("limit") int limit);
+
     int updateByPrimaryKeySelective(User record);
 
     int updateByPrimaryKey(User record);
@@ -14,7 +14,57 @@ public enum CacheKey {
      *         // 用户离开，则删除缓存
      *         // 定时任务删除
      */
-    USER_HAS_ORDER("miaosha_v1_user_has_order");
+    USER_HAS_ORDER("miaosha_v1_user_has_order"),
+
+    /**
+     * Lua准入购票：按日期的库存计数
+     */
+    ADMISSION_STOCK("miaosha_v1_admission_stock"),
+    /**
+     * Lua准入购票：按日期的已准入用户集合（一人一天限购）
+     */
+    ADMISSION_USER("miaosha_v1_admission_user"),
+    /**
+     * Lua准入购票：按日期的下单意向，等待订单消费者落库
+     */
+    ADMISSION_INTENT("miaosha_v1_admission_intent"),
+
+    /**
+     * 库存租约：按日期的各节点净租约数量（hash，field为节点ID）
+     */
+    STOCK_LEASE("miaosha_v1_stock_lease"),
+    /**
+     * 库存租约：节点心跳，过期即视为节点失效
+     */
+    STOCK_LEASE_NODE("miaosha_v1_stock_lease_node"),
+    /**
+     * 库存租约：存在租约的日期集合
+     */
+    STOCK_LEASE_DATES("miaosha_v1_stock_lease_dates"),
+
+    /**
+     * 分布式锁释放通知频道（pub/sub，消息内容为锁键）
+     */
+    LOCK_RELEASE_CHANNEL("miaosha_v1_lock_release"),
+
+    /**
+     * 票券本地缓存失效通知频道（pub/sub，消息内容为 节点ID|日期|发布时间戳）
+     */
+    TICKET_NEAR_CACHE_CHANNEL("miaosha_v1_ticket_near_cache_invalidate"),
+
+    /**
+     * 热键本地副本失效通知频道（pub/sub，消息内容为 节点ID|键1,键2,...）
+     */
+    HOT_KEY_INVALIDATE_CHANNEL("miaosha_v1_hot_key_invalidate"),
+
+    /**
+     * 购买位图：按日期的已购用户位图，偏移量为用户ID
+     */
+    PURCHASE_BITMAP("miaosha_v1_purchase_bitmap"),
+    /**
+     * 购买位图：按日期的重建完成标记，存在时位图可作为权威结果
+     */
+    PURCHASE_BITMAP_READY("miaosha_v1_purchase_bitmap_ready");
 
     private String key;
     private CacheKey(String key) {
@@ -0,0 +1,13 @@
+package cn.monitor4all.miaoshajob;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+
+@SpringBootApplication
+public class MiaoshaJobApplication {
+
+    public static void main(String[] args) {
+        SpringApplication.run(MiaoshaJobApplication.class, args);
+    }
+
+}
@@ -0,0 +1,36 @@
+package cn.monitor4all.miaoshajob.binlog;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 一次拉取的binlog批次，处理完成后按批次ID确认或回滚
+ */
+public class BinlogBatch {
+
+    // 没有新数据时的批次ID，与canal一致
+    public static final long EMPTY_BATCH_ID = -1;
+
+    private final long id;
+    private final List<RowChangeEvent> events;
+
+    public BinlogBatch(long id, List<RowChangeEvent> events) {
+        this.id = id;
+        this.events = events == null ? Collections.emptyList() : events;
+    }
+
+    public static BinlogBatch empty() {
+        return new BinlogBatch(EMPTY_BATCH_ID, Collections.emptyList());
+    }
+
+    /**
+     * 没有新数据，无需确认
+     */
+    public boolean isEmpty() {
+        return id == EMPTY_BATCH_ID;
+    }
+
+    public long getId() { return id; }
+
+    public List<RowChangeEvent> getEvents() { return events; }
+}
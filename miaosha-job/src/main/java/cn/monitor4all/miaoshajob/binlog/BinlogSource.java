@@ -0,0 +1,38 @@
+package cn.monitor4all.miaoshajob.binlog;
+
+/**
+ * binlog来源
+ * 语义与canal的 getWithoutAck / ack / rollback 一致：拉取后不自动确认，
+ * 回滚后所有未确认的批次会被重新投递
+ */
+public interface BinlogSource {
+
+    /**
+     * 建立连接并订阅
+     */
+    void connect();
+
+    /**
+     * 拉取一批变更，不确认
+     * @param batchSize 最多拉取的条目数
+     * @return 批次，没有新数据时返回 {@link BinlogBatch#empty()}
+     */
+    BinlogBatch fetch(int batchSize);
+
+    /**
+     * 确认批次已处理完成
+     * @param batchId 批次ID
+     */
+    void ack(long batchId);
+
+    /**
+     * 回滚批次，之后重新投递
+     * @param batchId 批次ID
+     */
+    void rollback(long batchId);
+
+    /**
+     * 断开连接
+     */
+    void disconnect();
+}
@@ -0,0 +1,145 @@
+package cn.monitor4all.miaoshajob.binlog;
+
+import com.alibaba.otter.canal.client.CanalConnector;
+import com.alibaba.otter.canal.client.CanalConnectors;
+import com.alibaba.otter.canal.protocol.CanalEntry.Column;
+import com.alibaba.otter.canal.protocol.CanalEntry.Entry;
+import com.alibaba.otter.canal.protocol.CanalEntry.EntryType;
+import com.alibaba.otter.canal.protocol.CanalEntry.EventType;
+import com.alibaba.otter.canal.protocol.CanalEntry.Header;
+import com.alibaba.otter.canal.protocol.CanalEntry.RowChange;
+import com.alibaba.otter.canal.protocol.CanalEntry.RowData;
+import com.alibaba.otter.canal.protocol.Message;
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * canal binlog来源
+ * 只转换行数据的插入、更新、删除，查询语句和DDL忽略
+ */
+public class CanalBinlogSource implements BinlogSource {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CanalBinlogSource.class);
+
+    private final CanalConnector connector;
+
+    // 订阅过滤规则，如 m4a_miaosha\\..*
+    private final String subscribeFilter;
+
+    public CanalBinlogSource(String host, int port, String destination, String username, String password, String subscribeFilter) {
+        this.connector = CanalConnectors.newSingleConnector(new InetSocketAddress(host, port), destination, username, password);
+        this.subscribeFilter = subscribeFilter;
+    }
+
+    @Override
+    public void connect() {
+        connector.connect();
+        if (subscribeFilter == null || subscribeFilter.isEmpty()) {
+            connector.subscribe();
+        } else {
+            connector.subscribe(subscribeFilter);
+        }
+        // 上次未确认的批次重新投递
+        connector.rollback();
+        LOGGER.info("canal连接成功，订阅: {}", subscribeFilter);
+    }
+
+    @Override
+    public BinlogBatch fetch(int batchSize) {
+        Message message = connector.getWithoutAck(batchSize);
+        long batchId = message.getId();
+        if (batchId == BinlogBatch.EMPTY_BATCH_ID) {
+            return BinlogBatch.empty();
+        }
+        return new BinlogBatch(batchId, toEvents(message.getEntries()));
+    }
+
+    @Override
+    public void ack(long batchId) {
+        connector.ack(batchId);
+    }
+
+    @Override
+    public void rollback(long batchId) {
+        connector.rollback(batchId);
+    }
+
+    @Override
+    public void disconnect() {
+        connector.disconnect();
+    }
+
+    private List<RowChangeEvent> toEvents(List<Entry> entries) {
+        List<RowChangeEvent> events = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (entry.getEntryType() != EntryType.ROWDATA) {
+                continue;
+            }
+            Header header = entry.getHeader();
+            RowChange rowChange;
+            try {
+                rowChange = RowChange.parseFrom(entry.getStoreValue());
+            } catch (InvalidProtocolBufferException e) {
+                // 解析失败时整批回滚，不能跳过变更
+                throw new IllegalStateException("解析binlog行数据失败: " + header.getSchemaName() + "." + header.getTableName(), e);
+            }
+
+            EventType eventType = rowChange.getEventType();
+            if (eventType == EventType.QUERY || rowChange.getIsDdl()) {
+                LOGGER.debug("忽略查询语句或DDL: [{}]", rowChange.getSql());
+                continue;
+            }
+            RowChangeEvent.Type type = toType(eventType);
+            if (type == null) {
+                continue;
+            }
+
+            for (RowData rowData : rowChange.getRowDatasList()) {
+                Map<String, String> before = toMap(rowData.getBeforeColumnsList());
+                Map<String, String> after = toMap(rowData.getAfterColumnsList());
+                String primaryKey = primaryKey(type == RowChangeEvent.Type.DELETE
+                        ? rowData.getBeforeColumnsList() : rowData.getAfterColumnsList());
+                events.add(new RowChangeEvent(header.getSchemaName(), header.getTableName(), type,
+                        primaryKey, before, after, header.getExecuteTime()));
+            }
+        }
+        return events;
+    }
+
+    private static RowChangeEvent.Type toType(EventType eventType) {
+        switch (eventType) {
+            case INSERT:
+                return RowChangeEvent.Type.INSERT;
+            case UPDATE:
+                return RowChangeEvent.Type.UPDATE;
+            case DELETE:
+                return RowChangeEvent.Type.DELETE;
+            default:
+                return null;
+        }
+    }
+
+    private static Map<String, String> toMap(List<Column> columns) {
+        Map<String, String> values = new LinkedHashMap<>();
+        for (Column column : columns) {
+            values.put(column.getName(), column.getIsNull() ? null : column.getValue());
+        }
+        return values;
+    }
+
+    private static String primaryKey(List<Column> columns) {
+        for (Column column : columns) {
+            if (column.getIsKey()) {
+                return column.getValue();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,99 @@
+package cn.monitor4all.miaoshajob.binlog;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 进程内的本地binlog来源，用于本地调试和测试
+ * 通过 publish 写入变更，确认和回滚语义与canal一致：回滚后所有未确认批次的变更按原顺序重新投递
+ */
+public class LocalBinlogSource implements BinlogSource {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LocalBinlogSource.class);
+
+    // 尚未投递的变更
+    private final Deque<RowChangeEvent> pendingEvents = new LinkedList<>();
+
+    // 已投递未确认的批次，按投递顺序
+    private final Map<Long, BinlogBatch> unackedBatches = new LinkedHashMap<>();
+
+    private final List<Long> ackedBatchIds = new ArrayList<>();
+
+    private final List<Long> rolledBackBatchIds = new ArrayList<>();
+
+    private long nextBatchId = 1;
+
+    @Override
+    public void connect() {
+        LOGGER.info("使用本地binlog来源");
+    }
+
+    /**
+     * 写入变更
+     * @param events 行变更
+     */
+    public synchronized void publish(RowChangeEvent... events) {
+        pendingEvents.addAll(Arrays.asList(events));
+    }
+
+    @Override
+    public synchronized BinlogBatch fetch(int batchSize) {
+        if (pendingEvents.isEmpty()) {
+            return BinlogBatch.empty();
+        }
+        List<RowChangeEvent> events = new ArrayList<>();
+        while (!pendingEvents.isEmpty() && events.size() < batchSize) {
+            events.add(pendingEvents.pollFirst());
+        }
+        BinlogBatch batch = new BinlogBatch(nextBatchId++, events);
+        unackedBatches.put(batch.getId(), batch);
+        return batch;
+    }
+
+    @Override
+    public synchronized void ack(long batchId) {
+        if (unackedBatches.remove(batchId) != null) {
+            ackedBatchIds.add(batchId);
+        }
+    }
+
+    @Override
+    public synchronized void rollback(long batchId) {
+        rolledBackBatchIds.add(batchId);
+        List<BinlogBatch> batches = new ArrayList<>(unackedBatches.values());
+        Collections.reverse(batches);
+        for (BinlogBatch batch : batches) {
+            List<RowChangeEvent> events = new ArrayList<>(batch.getEvents());
+            Collections.reverse(events);
+            for (RowChangeEvent event : events) {
+                pendingEvents.addFirst(event);
+            }
+        }
+        unackedBatches.clear();
+    }
+
+    @Override
+    public void disconnect() {
+    }
+
+    public synchronized int getPendingCount() {
+        return pendingEvents.size();
+    }
+
+    public synchronized List<Long> getAckedBatchIds() {
+        return new ArrayList<>(ackedBatchIds);
+    }
+
+    public synchronized List<Long> getRolledBackBatchIds() {
+        return new ArrayList<>(rolledBackBatchIds);
+    }
+}
@@ -0,0 +1,74 @@
+package cn.monitor4all.miaoshajob.binlog;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 一行数据变更，与binlog来源无关
+ * 删除操作只有变更前的列，插入操作只有变更后的列，更新操作两者都有
+ */
+public class RowChangeEvent {
+
+    public enum Type {
+        INSERT, UPDATE, DELETE
+    }
+
+    private final String schema;
+    private final String table;
+    private final Type type;
+    private final String primaryKey;
+    private final Map<String, String> before;
+    private final Map<String, String> after;
+    // binlog中的执行时间（毫秒）
+    private final long executeTime;
+
+    public RowChangeEvent(String schema, String table, Type type, String primaryKey,
+                          Map<String, String> before, Map<String, String> after, long executeTime) {
+        this.schema = schema;
+        this.table = table;
+        this.type = type;
+        this.primaryKey = primaryKey;
+        this.before = before == null ? Collections.emptyMap() : before;
+        this.after = after == null ? Collections.emptyMap() : after;
+        this.executeTime = executeTime;
+    }
+
+    /**
+     * 某一列在变更前后出现过的值（去重，忽略null），更新操作修改了该列时两个值都需要处理
+     * @param column 列名
+     * @return 列值
+     */
+    public Set<String> values(String column) {
+        Set<String> values = new LinkedHashSet<>();
+        String beforeValue = before.get(column);
+        if (beforeValue != null) {
+            values.add(beforeValue);
+        }
+        String afterValue = after.get(column);
+        if (afterValue != null) {
+            values.add(afterValue);
+        }
+        return values;
+    }
+
+    public String getSchema() { return schema; }
+
+    public String getTable() { return table; }
+
+    public Type getType() { return type; }
+
+    public String getPrimaryKey() { return primaryKey; }
+
+    public Map<String, String> getBefore() { return before; }
+
+    public Map<String, String> getAfter() { return after; }
+
+    public long getExecuteTime() { return executeTime; }
+
+    @Override
+    public String toString() {
+        return schema + "." + table + " " + type + " pk=" + primaryKey;
+    }
+}
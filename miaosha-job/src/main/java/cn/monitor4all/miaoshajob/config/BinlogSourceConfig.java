@@ -0,0 +1,34 @@
+package cn.monitor4all.miaoshajob.config;
+
+import cn.monitor4all.miaoshajob.binlog.BinlogSource;
+import cn.monitor4all.miaoshajob.binlog.CanalBinlogSource;
+import cn.monitor4all.miaoshajob.binlog.LocalBinlogSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * binlog来源配置
+ * miaosha.job.binlog.source=canal（默认）连接canal server，=local 使用进程内的本地来源
+ */
+@Configuration
+public class BinlogSourceConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "miaosha.job.binlog.source", havingValue = "canal", matchIfMissing = true)
+    public BinlogSource canalBinlogSource(@Value("${miaosha.job.canal.host:127.0.0.1}") String host,
+                                         @Value("${miaosha.job.canal.port:11111}") int port,
+                                         @Value("${miaosha.job.canal.destination:example}") String destination,
+                                         @Value("${miaosha.job.canal.username:}") String username,
+                                         @Value("${miaosha.job.canal.password:}") String password,
+                                         @Value("${miaosha.job.canal.subscribe-filter:m4a_miaosha\\..*}") String subscribeFilter) {
+        return new CanalBinlogSource(host, port, destination, username, password, subscribeFilter);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "miaosha.job.binlog.source", havingValue = "local")
+    public BinlogSource localBinlogSource() {
+        return new LocalBinlogSource();
+    }
+}
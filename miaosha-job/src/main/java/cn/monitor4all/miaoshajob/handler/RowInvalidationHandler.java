@@ -0,0 +1,23 @@
+package cn.monitor4all.miaoshajob.handler;
+
+import cn.monitor4all.miaoshajob.binlog.RowChangeEvent;
+
+import java.util.Collection;
+
+/**
+ * 单张表的缓存失效处理器，把一行变更映射为需要删除的缓存键
+ */
+public interface RowInvalidationHandler {
+
+    /**
+     * 处理的表名
+     */
+    String table();
+
+    /**
+     * 一行变更需要删除的缓存键
+     * @param event 行变更
+     * @return 缓存键
+     */
+    Collection<String> keysFor(RowChangeEvent event);
+}
@@ -0,0 +1,30 @@
+package cn.monitor4all.miaoshajob.handler;
+
+import cn.monitor4all.miaoshadao.utils.CacheKey;
+import cn.monitor4all.miaoshajob.binlog.RowChangeEvent;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * stock表：删除商品库存缓存
+ */
+@Component
+public class StockRowHandler implements RowInvalidationHandler {
+
+    @Override
+    public String table() {
+        return "stock";
+    }
+
+    @Override
+    public Collection<String> keysFor(RowChangeEvent event) {
+        List<String> keys = new ArrayList<>(1);
+        for (String id : event.values("id")) {
+            keys.add(CacheKey.STOCK_COUNT.getKey() + "_" + id);
+        }
+        return keys;
+    }
+}
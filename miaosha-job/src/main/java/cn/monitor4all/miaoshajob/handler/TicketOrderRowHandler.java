@@ -0,0 +1,43 @@
+package cn.monitor4all.miaoshajob.handler;
+
+import cn.monitor4all.miaoshadao.utils.CacheKey;
+import cn.monitor4all.miaoshajob.binlog.RowChangeEvent;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ticket_order表：删除用户在购票日期的购买状态缓存
+ * 更新操作修改了用户或日期时，变更前后的组合都需要删除
+ */
+@Component
+public class TicketOrderRowHandler implements RowInvalidationHandler {
+
+    @Override
+    public String table() {
+        return "ticket_order";
+    }
+
+    @Override
+    public Collection<String> keysFor(RowChangeEvent event) {
+        List<String> keys = new ArrayList<>(2);
+        addKey(keys, event.getBefore());
+        addKey(keys, event.getAfter());
+        return keys;
+    }
+
+    private static void addKey(List<String> keys, Map<String, String> row) {
+        String userId = row.get("user_id");
+        String ticketDate = row.get("ticket_date");
+        if (userId == null || ticketDate == null) {
+            return;
+        }
+        String key = CacheKey.USER_HAS_ORDER.getKey() + "_" + ticketDate + "_" + userId;
+        if (!keys.contains(key)) {
+            keys.add(key);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package cn.monitor4all.miaoshajob.handler;
+
+import cn.monitor4all.miaoshajob.binlog.RowChangeEvent;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * ticket表：删除对应日期的票券库存缓存和票券列表缓存
+ * 缓存键与 TicketStockCacheServiceImpl、TicketCacheManagerImpl 保持一致
+ * 只修改库存列的更新（购票、取消、租约）已由业务路径写穿增减票券缓存，不删除
+ * 只删除不递增版本号 ticket:stock:ver:<日期>：版本号由业务路径的 TicketCacheManager.deleteTicket 递增，
+ * binlog延迟期间进行中的回源不会写回旧数据
+ */
+@Component
+public class TicketRowHandler implements RowInvalidationHandler {
+
+    private static final String TICKET_STOCK_PREFIX = "ticket:stock:";
+
+    private static final String TICKET_LIST_CACHE_KEY = "ticket:list";
+
+    // 由业务路径写穿的库存列
+    private static final Set<String> STOCK_COLUMNS = new HashSet<>(Arrays.asList(
+            "remaining_count", "sold_count", "version", "update_time"));
+
+    @Override
+    public String table() {
+        return "ticket";
+    }
+
+    @Override
+    public Collection<String> keysFor(RowChangeEvent event) {
+        if (isStockOnlyUpdate(event)) {
+            return Collections.emptyList();
+        }
+        List<String> keys = new ArrayList<>();
+        for (String date : event.values("date")) {
+            keys.add(TICKET_STOCK_PREFIX + date);
+        }
+        keys.add(TICKET_LIST_CACHE_KEY);
+        return keys;
+    }
+
+    /**
+     * 是否为只修改库存列的更新
+     */
+    private boolean isStockOnlyUpdate(RowChangeEvent event) {
+        Map<String, String> before = event.getBefore();
+        Map<String, String> after = event.getAfter();
+        if (event.getType() != RowChangeEvent.Type.UPDATE || before == null || after == null) {
+            return false;
+        }
+        Set<String> columns = new HashSet<>(before.keySet());
+        columns.addAll(after.keySet());
+        boolean changed = false;
+        for (String column : columns) {
+            if (!Objects.equals(before.get(column), after.get(column))) {
+                if (!STOCK_COLUMNS.contains(column)) {
+                    return false;
+                }
+                changed = true;
+            }
+        }
+        return changed;
+    }
+}
@@ -0,0 +1,286 @@
+package cn.monitor4all.miaoshajob.pipeline;
+
+import cn.monitor4all.miaoshajob.binlog.BinlogBatch;
+import cn.monitor4all.miaoshajob.binlog.BinlogSource;
+import cn.monitor4all.miaoshajob.binlog.RowChangeEvent;
+import cn.monitor4all.miaoshajob.handler.RowInvalidationHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * binlog缓存删除流水线
+ * 1. 拉取线程用 getWithoutAck 批量拉取变更，一批处理完成后才拉取下一批
+ * 2. 批内的变更按 表名+主键 哈希到固定的工作线程，同一行的变更在同一线程内按顺序处理，不同行并行
+ * 3. 每个工作线程把分到的变更交给对应表的处理器映射为缓存键，合并为一条UNLINK删除
+ * 4. 所有工作线程删除成功后才确认批次；任一失败或超时则回滚，由binlog来源重新投递，保证缓存至少删除一次
+ */
+@Component
+public class BinlogInvalidationPipeline {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BinlogInvalidationPipeline.class);
+
+    @Resource
+    private BinlogSource binlogSource;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private List<RowInvalidationHandler> handlers;
+
+    // 是否启动拉取线程
+    @Value("${miaosha.job.binlog.enabled:true}")
+    private boolean enabled = true;
+
+    // 只处理该库的变更，为空时不过滤
+    @Value("${miaosha.job.binlog.schema:m4a_miaosha}")
+    private String schema = "m4a_miaosha";
+
+    // 每次拉取的最大条目数
+    @Value("${miaosha.job.binlog.batch-size:1000}")
+    private int batchSize = 1000;
+
+    // 工作线程数（分区数）
+    @Value("${miaosha.job.binlog.workers:4}")
+    private int workers = 4;
+
+    // 没有新数据时的休眠时间（毫秒）
+    @Value("${miaosha.job.binlog.idle-sleep-ms:200}")
+    private long idleSleepMs = 200;
+
+    // 一批变更删除缓存的最长时间（毫秒），超时回滚
+    @Value("${miaosha.job.binlog.batch-timeout-ms:5000}")
+    private long batchTimeoutMs = 5000;
+
+    // 回滚或出错后重试前的等待时间（毫秒）
+    @Value("${miaosha.job.binlog.retry-backoff-ms:1000}")
+    private long retryBackoffMs = 1000;
+
+    private final Map<String, RowInvalidationHandler> handlersByTable = new HashMap<>();
+
+    private ThreadPoolExecutor[] partitionExecutors;
+
+    private Thread pollerThread;
+
+    private volatile boolean running;
+
+    // 统计信息
+    private final AtomicLong batchCount = new AtomicLong(0);
+    private final AtomicLong emptyPollCount = new AtomicLong(0);
+    private final AtomicLong eventCount = new AtomicLong(0);
+    private final AtomicLong skippedEventCount = new AtomicLong(0);
+    private final AtomicLong deletedKeyCount = new AtomicLong(0);
+    private final AtomicLong ackCount = new AtomicLong(0);
+    private final AtomicLong rollbackCount = new AtomicLong(0);
+    private final AtomicLong maxBatchMillis = new AtomicLong(0);
+    private volatile long lastLagMillis;
+
+    @PostConstruct
+    public void init() {
+        for (RowInvalidationHandler handler : handlers) {
+            handlersByTable.put(handler.table(), handler);
+        }
+        partitionExecutors = new ThreadPoolExecutor[workers];
+        for (int i = 0; i < workers; i++) {
+            String threadName = "binlog-invalidation-" + i;
+            partitionExecutors[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(16), r -> {
+                        Thread thread = new Thread(r, threadName);
+                        thread.setDaemon(true);
+                        return thread;
+                    }, new ThreadPoolExecutor.AbortPolicy());
+        }
+        LOGGER.info("binlog缓存删除流水线初始化完成，处理表: {}, 工作线程: {}, 批大小: {}", handlersByTable.keySet(), workers, batchSize);
+
+        if (enabled) {
+            running = true;
+            pollerThread = new Thread(this::pollLoop, "binlog-invalidation-poller");
+            pollerThread.setDaemon(true);
+            pollerThread.start();
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        running = false;
+        if (pollerThread != null) {
+            pollerThread.interrupt();
+            try {
+                pollerThread.join(batchTimeoutMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (partitionExecutors != null) {
+            for (ThreadPoolExecutor executor : partitionExecutors) {
+                executor.shutdown();
+            }
+        }
+        if (enabled) {
+            try {
+                binlogSource.disconnect();
+            } catch (Exception e) {
+                LOGGER.warn("断开binlog连接失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void pollLoop() {
+        while (running) {
+            try {
+                binlogSource.connect();
+                break;
+            } catch (Exception e) {
+                LOGGER.error("连接binlog来源失败，{}ms后重试", retryBackoffMs, e);
+                if (!sleep(retryBackoffMs)) {
+                    return;
+                }
+            }
+        }
+        while (running) {
+            try {
+                if (!pollOnce()) {
+                    sleep(idleSleepMs);
+                }
+            } catch (Exception e) {
+                LOGGER.error("处理binlog批次异常，{}ms后重试", retryBackoffMs, e);
+                sleep(retryBackoffMs);
+            }
+        }
+    }
+
+    /**
+     * 拉取并处理一批变更
+     * @return 是否拉取到数据（包括处理失败回滚的批次）
+     */
+    public boolean pollOnce() {
+        BinlogBatch batch = binlogSource.fetch(batchSize);
+        if (batch.isEmpty()) {
+            emptyPollCount.incrementAndGet();
+            return false;
+        }
+        if (processBatch(batch)) {
+            binlogSource.ack(batch.getId());
+            ackCount.incrementAndGet();
+        } else {
+            binlogSource.rollback(batch.getId());
+            rollbackCount.incrementAndGet();
+            sleep(retryBackoffMs);
+        }
+        return true;
+    }
+
+    /**
+     * 按分区并行删除缓存，全部成功才返回true
+     */
+    private boolean processBatch(BinlogBatch batch) {
+        long start = System.currentTimeMillis();
+        batchCount.incrementAndGet();
+
+        Map<Integer, List<RowChangeEvent>> partitions = new HashMap<>();
+        long latestExecuteTime = 0;
+        for (RowChangeEvent event : batch.getEvents()) {
+            eventCount.incrementAndGet();
+            if (!isHandled(event)) {
+                skippedEventCount.incrementAndGet();
+                continue;
+            }
+            int partition = Math.floorMod((event.getTable() + ":" + event.getPrimaryKey()).hashCode(), workers);
+            partitions.computeIfAbsent(partition, p -> new ArrayList<>()).add(event);
+            latestExecuteTime = Math.max(latestExecuteTime, event.getExecuteTime());
+        }
+
+        try {
+            List<CompletableFuture<Void>> futures = new ArrayList<>(partitions.size());
+            for (Map.Entry<Integer, List<RowChangeEvent>> entry : partitions.entrySet()) {
+                List<RowChangeEvent> events = entry.getValue();
+                futures.add(CompletableFuture.runAsync(() -> invalidate(events), partitionExecutors[entry.getKey()]));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(batchTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.warn("binlog批次处理被中断，批次: {}", batch.getId());
+            return false;
+        } catch (Exception e) {
+            LOGGER.error("binlog批次删除缓存失败，回滚重新投递，批次: {}, 变更数: {}", batch.getId(), batch.getEvents().size(), e);
+            return false;
+        }
+
+        long cost = System.currentTimeMillis() - start;
+        maxBatchMillis.accumulateAndGet(cost, Math::max);
+        if (latestExecuteTime > 0) {
+            lastLagMillis = System.currentTimeMillis() - latestExecuteTime;
+        }
+        LOGGER.debug("binlog批次处理完成，批次: {}, 变更数: {}, 耗时: {}ms", batch.getId(), batch.getEvents().size(), cost);
+        return true;
+    }
+
+    private boolean isHandled(RowChangeEvent event) {
+        if (schema != null && !schema.isEmpty() && !schema.equals(event.getSchema())) {
+            return false;
+        }
+        return handlersByTable.containsKey(event.getTable());
+    }
+
+    /**
+     * 一个分区的变更映射为缓存键，一条UNLINK删除
+     */
+    private void invalidate(List<RowChangeEvent> events) {
+        Set<String> keys = new LinkedHashSet<>();
+        for (RowChangeEvent event : events) {
+            keys.addAll(handlersByTable.get(event.getTable()).keysFor(event));
+        }
+        if (keys.isEmpty()) {
+            return;
+        }
+        stringRedisTemplate.unlink(keys);
+        deletedKeyCount.addAndGet(keys.size());
+        LOGGER.debug("binlog删除缓存，键数: {}", keys.size());
+    }
+
+    private boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * 获取流水线统计信息
+     * @return 统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("batchCount", batchCount.get());
+        stats.put("emptyPollCount", emptyPollCount.get());
+        stats.put("eventCount", eventCount.get());
+        stats.put("skippedEventCount", skippedEventCount.get());
+        stats.put("deletedKeyCount", deletedKeyCount.get());
+        stats.put("ackCount", ackCount.get());
+        stats.put("rollbackCount", rollbackCount.get());
+        stats.put("maxBatchMillis", maxBatchMillis.get());
+        stats.put("lastLagMillis", lastLagMillis);
+        return stats;
+    }
+}
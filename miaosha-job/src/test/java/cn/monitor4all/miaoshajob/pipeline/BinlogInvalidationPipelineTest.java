@@ -0,0 +1,193 @@
+package cn.monitor4all.miaoshajob.pipeline;
+
+import cn.monitor4all.miaoshadao.utils.CacheKey;
+import cn.monitor4all.miaoshajob.binlog.LocalBinlogSource;
+import cn.monitor4all.miaoshajob.binlog.RowChangeEvent;
+import cn.monitor4all.miaoshajob.handler.StockRowHandler;
+import cn.monitor4all.miaoshajob.handler.TicketOrderRowHandler;
+import cn.monitor4all.miaoshajob.handler.TicketRowHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * binlog缓存删除流水线测试类，使用本地binlog来源代替canal
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class BinlogInvalidationPipelineTest {
+
+    private static final String SCHEMA = "m4a_miaosha";
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    private LocalBinlogSource binlogSource;
+
+    private BinlogInvalidationPipeline pipeline;
+
+    private final Set<String> deletedKeys = Collections.synchronizedSet(new HashSet<>());
+
+    @BeforeEach
+    void setUp() {
+        binlogSource = new LocalBinlogSource();
+        pipeline = new BinlogInvalidationPipeline();
+        ReflectionTestUtils.setField(pipeline, "binlogSource", binlogSource);
+        ReflectionTestUtils.setField(pipeline, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(pipeline, "handlers", Arrays.asList(new TicketRowHandler(), new TicketOrderRowHandler(), new StockRowHandler()));
+        ReflectionTestUtils.setField(pipeline, "enabled", false);
+        ReflectionTestUtils.setField(pipeline, "workers", 4);
+        ReflectionTestUtils.setField(pipeline, "batchSize", 100);
+        ReflectionTestUtils.setField(pipeline, "retryBackoffMs", 0L);
+        when(stringRedisTemplate.unlink(anyCollection())).thenAnswer(invocation -> {
+            Collection<String> keys = invocation.getArgument(0);
+            deletedKeys.addAll(keys);
+            return (long) keys.size();
+        });
+        pipeline.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        pipeline.destroy();
+    }
+
+    private static RowChangeEvent update(String table, String pk, Map<String, String> before, Map<String, String> after) {
+        return new RowChangeEvent(SCHEMA, table, RowChangeEvent.Type.UPDATE, pk, before, after, System.currentTimeMillis());
+    }
+
+    private static Map<String, String> row(String... columnsAndValues) {
+        Map<String, String> row = new HashMap<>();
+        for (int i = 0; i < columnsAndValues.length; i += 2) {
+            row.put(columnsAndValues[i], columnsAndValues[i + 1]);
+        }
+        return row;
+    }
+
+    @Test
+    void testRowsMappedToCacheKeysAndBatchAcked() {
+        binlogSource.publish(
+                update("ticket", "1", row("id", "1", "date", "2025-01-15"), row("id", "1", "date", "2025-01-15")),
+                new RowChangeEvent(SCHEMA, "ticket_order", RowChangeEvent.Type.INSERT, "10", null,
+                        row("id", "10", "user_id", "1001", "ticket_date", "2025-01-15"), System.currentTimeMillis()),
+                update("stock", "2", row("id", "2"), row("id", "2")));
+
+        assertTrue(pipeline.pollOnce());
+
+        assertEquals(new HashSet<>(Arrays.asList(
+                "ticket:stock:2025-01-15",
+                "ticket:list",
+                CacheKey.USER_HAS_ORDER.getKey() + "_2025-01-15_1001",
+                CacheKey.STOCK_COUNT.getKey() + "_2")), deletedKeys);
+        assertEquals(Collections.singletonList(1L), binlogSource.getAckedBatchIds());
+        assertEquals(0, binlogSource.getPendingCount());
+    }
+
+    @Test
+    void testUpdateChangingDateDeletesBothDates() {
+        binlogSource.publish(update("ticket_order", "10",
+                row("user_id", "1001", "ticket_date", "2025-01-15"),
+                row("user_id", "1001", "ticket_date", "2025-01-16")));
+
+        pipeline.pollOnce();
+
+        assertTrue(deletedKeys.contains(CacheKey.USER_HAS_ORDER.getKey() + "_2025-01-15_1001"));
+        assertTrue(deletedKeys.contains(CacheKey.USER_HAS_ORDER.getKey() + "_2025-01-16_1001"));
+    }
+
+    @Test
+    void testStockOnlyTicketUpdateSkipped() {
+        // 购票只修改库存列，票券缓存已由业务路径写穿增减
+        binlogSource.publish(update("ticket", "1",
+                row("date", "2025-01-15", "total_count", "100", "remaining_count", "10", "sold_count", "90"),
+                row("date", "2025-01-15", "total_count", "100", "remaining_count", "9", "sold_count", "91")));
+
+        assertTrue(pipeline.pollOnce());
+
+        verify(stringRedisTemplate, never()).unlink(anyCollection());
+        assertEquals(1, binlogSource.getAckedBatchIds().size());
+
+        // 修改总票数时删除
+        binlogSource.publish(update("ticket", "1",
+                row("date", "2025-01-15", "total_count", "100", "remaining_count", "9"),
+                row("date", "2025-01-15", "total_count", "200", "remaining_count", "109")));
+
+        assertTrue(pipeline.pollOnce());
+
+        assertEquals(new HashSet<>(Arrays.asList("ticket:stock:2025-01-15", "ticket:list")), deletedKeys);
+    }
+
+    @Test
+    void testSamePrimaryKeyGoesToSamePartition() {
+        List<RowChangeEvent> events = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            events.add(update("stock", String.valueOf(i), row("id", String.valueOf(i)), row("id", String.valueOf(i))));
+        }
+        binlogSource.publish(events.toArray(new RowChangeEvent[0]));
+
+        pipeline.pollOnce();
+
+        // 每个分区一条UNLINK，最多 workers 条
+        verify(stringRedisTemplate, atMost(4)).unlink(anyCollection());
+        assertEquals(20, deletedKeys.size());
+    }
+
+    @Test
+    void testDeleteFailureRollsBackAndRedelivers() {
+        reset(stringRedisTemplate);
+        when(stringRedisTemplate.unlink(anyCollection()))
+                .thenThrow(new RuntimeException("Redis不可用"))
+                .thenReturn(2L);
+        binlogSource.publish(update("ticket", "1", row("date", "2025-01-15"), row("date", "2025-01-15")));
+
+        assertTrue(pipeline.pollOnce());
+        assertTrue(binlogSource.getAckedBatchIds().isEmpty());
+        assertEquals(1, binlogSource.getRolledBackBatchIds().size());
+        assertEquals(1, binlogSource.getPendingCount());
+
+        assertTrue(pipeline.pollOnce());
+        assertEquals(1, binlogSource.getAckedBatchIds().size());
+        assertEquals(0, binlogSource.getPendingCount());
+        assertEquals(1L, pipeline.getStatistics().get("rollbackCount"));
+    }
+
+    @Test
+    void testUnhandledTablesAndOtherSchemasSkipped() {
+        binlogSource.publish(
+                update("user", "1", row("id", "1"), row("id", "1")),
+                new RowChangeEvent("other_db", "ticket", RowChangeEvent.Type.DELETE, "1", row("date", "2025-01-15"), null, 0));
+
+        assertTrue(pipeline.pollOnce());
+
+        verify(stringRedisTemplate, never()).unlink(anyCollection());
+        assertEquals(1, binlogSource.getAckedBatchIds().size());
+        assertEquals(2L, pipeline.getStatistics().get("skippedEventCount"));
+    }
+
+    @Test
+    void testEmptyPoll() {
+        assertFalse(pipeline.pollOnce());
+        assertTrue(binlogSource.getAckedBatchIds().isEmpty());
+    }
+}
@@ -0,0 +1,43 @@
+package cn.monitor4all.miaoshaservice.aspect;
+
+import cn.monitor4all.miaoshaservice.annotation.DistributedTokenBucketLimit;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.autoproxy.AbstractBeanFactoryAwareAdvisingPostProcessor;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.annotation.AnnotationMatchingPointcut;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * 为标注了 @DistributedTokenBucketLimit 的方法织入 DistributedTokenBucketLimitAspect
+ * 项目未引入AspectJ，使用spring-aop自带的代理机制：控制器没有接口，按类代理；已有代理（如事务）时加在最前面，
+ * 被限流的请求不会开启事务
+ * 切面在第一次调用时才从容器获取，后处理器不会提前初始化限流服务及其依赖
+ */
+@Component
+public class DistributedTokenBucketLimitAdvisingPostProcessor extends AbstractBeanFactoryAwareAdvisingPostProcessor {
+
+    private volatile DistributedTokenBucketLimitAspect aspect;
+
+    public DistributedTokenBucketLimitAdvisingPostProcessor() {
+        setProxyTargetClass(true);
+        setBeforeExistingAdvisors(true);
+    }
+
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) {
+        super.setBeanFactory(beanFactory);
+        MethodInterceptor interceptor = invocation -> aspectOf(beanFactory).invoke(invocation);
+        this.advisor = new DefaultPointcutAdvisor(
+                new AnnotationMatchingPointcut(null, DistributedTokenBucketLimit.class, true), interceptor);
+    }
+
+    private DistributedTokenBucketLimitAspect aspectOf(BeanFactory beanFactory) {
+        DistributedTokenBucketLimitAspect current = aspect;
+        if (current == null) {
+            current = beanFactory.getBean(DistributedTokenBucketLimitAspect.class);
+            aspect = current;
+        }
+        return current;
+    }
+}
@@ -1,172 +1,286 @@
-//package cn.monitor4all.miaoshaservice.aspect;
-//
-//import cn.monitor4all.miaoshaservice.annotation.DistributedTokenBucketLimit;
-//import cn.monitor4all.miaoshaservice.config.DistributedTokenBucketConfig;
-//import cn.monitor4all.miaoshaservice.service.DistributedTokenBucketService;
-//import org.slf4j.Logger;
-//import org.slf4j.LoggerFactory;
-//import org.springframework.core.DefaultParameterNameDiscoverer;
-//import org.springframework.expression.EvaluationContext;
-//import org.springframework.expression.Expression;
-//import org.springframework.expression.ExpressionParser;
-//import org.springframework.expression.spel.standard.SpelExpressionParser;
-//import org.springframework.expression.spel.support.StandardEvaluationContext;
-//import org.springframework.stereotype.Component;
-//import org.springframework.util.StringUtils;
-//
-//import javax.annotation.Resource;
-//import java.lang.reflect.Method;
-//
-///**
-// * 分布式令牌桶限流切面
-// * 实现注解驱动的限流功能
-// */
-//@Aspect
-//@Component
-//public class DistributedTokenBucketLimitAspect {
-//
-//    private static final Logger LOGGER = LoggerFactory.getLogger(DistributedTokenBucketLimitAspect.class);
-//
-//    @Resource
-//    private DistributedTokenBucketService distributedTokenBucketService;
-//
-//    @Resource
-//    private DistributedTokenBucketConfig config;
-//
-//    // SpEL表达式解析器
-//    private final ExpressionParser expressionParser = new SpelExpressionParser();
-//    private final DefaultParameterNameDiscoverer parameterNameDiscoverer = new DefaultParameterNameDiscoverer();
-//
-//    @Around("@annotation(distributedTokenBucketLimit)")
-//    public Object around(ProceedingJoinPoint joinPoint, DistributedTokenBucketLimit distributedTokenBucketLimit) throws Throwable {
-//        try {
-//            // 解析限流键
-//            String limitKey = resolveLimitKey(joinPoint, distributedTokenBucketLimit);
-//
-//            // 获取限流配置
-//            int capacity = distributedTokenBucketLimit.capacity() > 0 ?
-//                distributedTokenBucketLimit.capacity() : config.getDefaultCapacity();
-//            double rate = distributedTokenBucketLimit.rate() > 0 ?
-//                distributedTokenBucketLimit.rate() : config.getDefaultRate();
-//            int tokens = distributedTokenBucketLimit.tokens();
-//
-//            // 执行限流检查
-//            boolean allowed = executeRateLimit(limitKey, capacity, rate, tokens, distributedTokenBucketLimit);
-//
-//            if (allowed) {
-//                // 限流通过，执行原方法
-//                LOGGER.debug("令牌桶限流通过，键: {}, 容量: {}, 速率: {}, 令牌: {}",
-//                    limitKey, capacity, rate, tokens);
-//                return joinPoint.proceed();
-//            } else {
-//                // 限流拒绝，抛出异常或返回错误响应
-//                LOGGER.warn("令牌桶限流拒绝，键: {}, 容量: {}, 速率: {}, 令牌: {}",
-//                    limitKey, capacity, rate, tokens);
-//                throw new RuntimeException(distributedTokenBucketLimit.message());
-//            }
-//
-//        } catch (Exception e) {
-//            if (distributedTokenBucketLimit.logLimit()) {
-//                LOGGER.error("令牌桶限流执行异常，方法: {}, 错误: {}",
-//                    joinPoint.getSignature().toShortString(), e.getMessage(), e);
-//            }
-//            throw e;
-//        }
-//    }
-//
-//    /**
-//     * 解析限流键
-//     */
-//    private String resolveLimitKey(ProceedingJoinPoint joinPoint, DistributedTokenBucketLimit annotation) {
-//        String key = annotation.key();
-//
-//        if (StringUtils.hasText(key)) {
-//            // 使用自定义key，支持SpEL表达式
-//            return evaluateSpEL(key, joinPoint);
-//        }
-//
-//        // 根据策略生成默认key
-//        switch (annotation.strategy()) {
-//            case USER:
-//                return resolveUserKey(joinPoint);
-//            case GLOBAL:
-//                return "global:" + joinPoint.getSignature().toShortString();
-//            case CUSTOM:
-//                return resolveCustomKey(joinPoint);
-//            case INTERFACE:
-//            default:
-//                return joinPoint.getSignature().toShortString();
-//        }
-//    }
-//
-//    /**
-//     * 解析用户级别的限流键
-//     */
-//    private String resolveUserKey(ProceedingJoinPoint joinPoint) {
-//        Object[] args = joinPoint.getArgs();
-//        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
-//        Method method = signature.getMethod();
-//        String[] parameterNames = parameterNameDiscoverer.getParameterNames(method);
-//
-//        if (parameterNames != null) {
-//            for (int i = 0; i < parameterNames.length; i++) {
-//                if ("userId".equals(parameterNames[i]) && args[i] != null) {
-//                    return "user:" + args[i];
-//                }
-//            }
-//        }
-//
-//        // 如果没有找到userId参数，使用默认用户key
-//        return "user:anonymous";
-//    }
-//
-//    /**
-//     * 解析自定义限流键
-//     */
-//    private String resolveCustomKey(ProceedingJoinPoint joinPoint) {
-//        // 这里可以实现自定义的key生成逻辑
-//        return "custom:" + joinPoint.getSignature().toShortString();
-//    }
-//
-//    /**
-//     * 执行限流检查
-//     */
-//    private boolean executeRateLimit(String limitKey, int capacity, double rate, int tokens,
-//                                   DistributedTokenBucketLimit annotation) {
-//        if (annotation.blocking()) {
-//            // 阻塞等待模式
-//            return distributedTokenBucketService.tryAcquireWithTimeout(
-//                limitKey, capacity, rate, annotation.timeout());
-//        } else {
-//            // 非阻塞模式
-//            return distributedTokenBucketService.tryAcquire(limitKey, capacity, rate, tokens);
-//        }
-//    }
-//
-//    /**
-//     * 评估SpEL表达式
-//     */
-//    private String evaluateSpEL(String expression, ProceedingJoinPoint joinPoint) {
-//        try {
-//            MethodSignature signature = (MethodSignature) joinPoint.getSignature();
-//            Method method = signature.getMethod();
-//            String[] parameterNames = parameterNameDiscoverer.getParameterNames(method);
-//            Object[] args = joinPoint.getArgs();
-//
-//            EvaluationContext context = new StandardEvaluationContext();
-//            if (parameterNames != null) {
-//                for (int i = 0; i < parameterNames.length; i++) {
-//                    context.setVariable(parameterNames[i], args[i]);
-//                }
-//            }
-//
-//            Expression exp = expressionParser.parseExpression(expression);
-//            Object result = exp.getValue(context);
-//            return result != null ? result.toString() : expression;
-//
-//        } catch (Exception e) {
-//            LOGGER.warn("SpEL表达式解析失败: {}, 使用原始表达式", expression, e);
-//            return expression;
-//        }
-//    }
-//}
+package cn.monitor4all.miaoshaservice.aspect;
+
+import cn.monitor4all.miaoshadao.model.BusinessException;
+import cn.monitor4all.miaoshadao.model.ErrorCode;
+import cn.monitor4all.miaoshaservice.annotation.DistributedTokenBucketLimit;
+import cn.monitor4all.miaoshaservice.config.DistributedTokenBucketConfig;
+import cn.monitor4all.miaoshaservice.service.DistributedTokenBucketService;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.context.expression.MethodBasedEvaluationContext;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.expression.EvaluationException;
+import org.springframework.expression.Expression;
+import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.PropertyAccessor;
+import org.springframework.expression.TypeConverter;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.ReflectivePropertyAccessor;
+import org.springframework.expression.spel.support.StandardTypeConverter;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.Resource;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 分布式令牌桶限流切面
+ * 实现注解驱动的限流功能，由 DistributedTokenBucketLimitAdvisingPostProcessor 织入标注了 @DistributedTokenBucketLimit 的方法
+ * 1. 每个方法第一次调用时生成限流计划并缓存：限流策略对应的键前缀、容量和速率、预先解析的SpEL表达式和参数名，
+ *    之后每次调用不再解析表达式、不再通过反射读取注解和参数名
+ * 2. 各策略的键前缀在计划中拼好：INTERFACE/GLOBAL/CUSTOM 未指定key时限流键就是前缀本身，USER 只拼接 userId 参数，
+ *    指定key时拼接表达式的值（CUSTOM 策略的限流键完全由表达式决定）
+ * 3. blocking=true 时按令牌桶脚本返回的等待时间休眠后重试，超时前令牌不可能足够时立即拒绝
+ * 4. 限流拒绝时抛出 BusinessException，错误码取注解的 errorCode
+ */
+@Component
+public class DistributedTokenBucketLimitAspect implements MethodInterceptor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DistributedTokenBucketLimitAspect.class);
+
+    // 所有求值上下文共用的只读属性访问器，getter的查找结果缓存在其中，每次求值不再反射查找
+    private static final List<PropertyAccessor> PROPERTY_ACCESSORS =
+            Collections.singletonList(new ReflectivePropertyAccessor(false));
+
+    private static final TypeConverter TYPE_CONVERTER = new StandardTypeConverter();
+
+    @Resource
+    private DistributedTokenBucketService distributedTokenBucketService;
+
+    @Resource
+    private DistributedTokenBucketConfig config;
+
+    // SpEL表达式解析器，表达式多次求值后编译为字节码，无法编译时回退到解释执行
+    private final ExpressionParser expressionParser = new SpelExpressionParser(
+            new SpelParserConfiguration(SpelCompilerMode.MIXED, DistributedTokenBucketLimitAspect.class.getClassLoader()));
+
+    private final ParameterNameDiscoverer parameterNameDiscoverer = new DefaultParameterNameDiscoverer();
+
+    // 方法 -> 限流计划
+    private final Map<Method, LimitPlan> plans = new ConcurrentHashMap<>();
+
+    // 统计信息
+    private final AtomicLong allowedCount = new AtomicLong(0);
+    private final AtomicLong rejectedCount = new AtomicLong(0);
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        LimitPlan plan = planOf(invocation);
+        String limitKey = plan.resolveKey(invocation.getArguments());
+
+        boolean allowed = plan.blocking
+                ? distributedTokenBucketService.tryAcquireWithTimeout(limitKey, plan.capacity, plan.rate, plan.tokens, plan.timeout)
+                : distributedTokenBucketService.tryAcquire(limitKey, plan.capacity, plan.rate, plan.tokens);
+
+        if (!allowed) {
+            rejectedCount.incrementAndGet();
+            if (plan.logLimit) {
+                LOGGER.warn("令牌桶限流拒绝，键: {}, 容量: {}, 速率: {}, 令牌: {}", limitKey, plan.capacity, plan.rate, plan.tokens);
+            }
+            throw new BusinessException(plan.errorCode, plan.message);
+        }
+        allowedCount.incrementAndGet();
+        return invocation.proceed();
+    }
+
+    private LimitPlan planOf(MethodInvocation invocation) {
+        Method method = invocation.getMethod();
+        LimitPlan plan = plans.get(method);
+        if (plan == null) {
+            Class<?> targetClass = invocation.getThis() != null ? AopUtils.getTargetClass(invocation.getThis()) : method.getDeclaringClass();
+            plan = plans.computeIfAbsent(method, m -> buildPlan(AopUtils.getMostSpecificMethod(m, targetClass)));
+        }
+        return plan;
+    }
+
+    /**
+     * 生成限流计划，每个方法只执行一次
+     */
+    LimitPlan buildPlan(Method method) {
+        DistributedTokenBucketLimit annotation = AnnotatedElementUtils.findMergedAnnotation(method, DistributedTokenBucketLimit.class);
+        if (annotation == null) {
+            throw new IllegalStateException("方法未标注@DistributedTokenBucketLimit: " + method);
+        }
+        String methodId = method.getDeclaringClass().getSimpleName() + "." + method.getName();
+        String[] parameterNames = parameterNameDiscoverer.getParameterNames(method);
+
+        DistributedTokenBucketConfig.TokenBucketRule rule;
+        String prefix;
+        switch (annotation.strategy()) {
+            case USER:
+                rule = config.getUserTokenBucketRule();
+                prefix = "user:";
+                break;
+            case GLOBAL:
+                rule = config.getGlobalTokenBucketRule();
+                prefix = "global:";
+                break;
+            case CUSTOM:
+                rule = config.getRule(methodId);
+                // 自定义策略的限流键完全由key表达式决定
+                prefix = StringUtils.hasText(annotation.key()) ? "" : "custom:";
+                break;
+            case INTERFACE:
+            default:
+                rule = config.getRule(methodId);
+                prefix = "interface:";
+                break;
+        }
+
+        LimitPlan plan = new LimitPlan();
+        plan.method = method;
+        plan.capacity = annotation.capacity() > 0 ? annotation.capacity() : rule.getCapacity();
+        plan.rate = annotation.rate() > 0 ? annotation.rate() : rule.getRate();
+        plan.tokens = annotation.tokens();
+        plan.blocking = annotation.blocking();
+        plan.timeout = annotation.timeout();
+        plan.message = annotation.message();
+        plan.errorCode = resolveErrorCode(annotation.errorCode());
+        plan.logLimit = annotation.logLimit();
+        plan.parameterNames = new CachedParameterNames(parameterNames);
+        plan.userIdIndex = -1;
+
+        if (StringUtils.hasText(annotation.key())) {
+            plan.prefix = prefix;
+            try {
+                plan.keyExpression = expressionParser.parseExpression(annotation.key());
+            } catch (Exception e) {
+                // 不是合法的SpEL表达式时按字面值使用
+                LOGGER.warn("限流键SpEL表达式解析失败，按字面值使用，方法: {}, 表达式: {}", methodId, annotation.key());
+                plan.prefix = prefix + annotation.key();
+            }
+        } else if (annotation.strategy() == DistributedTokenBucketLimit.Strategy.USER) {
+            if (parameterNames != null) {
+                for (int i = 0; i < parameterNames.length; i++) {
+                    if ("userId".equals(parameterNames[i])) {
+                        plan.userIdIndex = i;
+                        break;
+                    }
+                }
+            }
+            // 没有userId参数时所有调用共用一个匿名用户键
+            plan.prefix = plan.userIdIndex >= 0 ? prefix : prefix + "anonymous";
+        } else {
+            plan.prefix = prefix + methodId;
+        }
+        LOGGER.info("令牌桶限流计划生成，方法: {}, 策略: {}, 键前缀: {}, 容量: {}, 速率: {}, 阻塞: {}",
+                methodId, annotation.strategy(), plan.prefix, plan.capacity, plan.rate, plan.blocking);
+        return plan;
+    }
+
+    private static ErrorCode resolveErrorCode(String name) {
+        try {
+            return ErrorCode.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            return ErrorCode.RATE_LIMIT_EXCEEDED;
+        }
+    }
+
+    /**
+     * 获取统计信息
+     * @return 统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("methodCount", plans.size());
+        stats.put("allowedCount", allowedCount.get());
+        stats.put("rejectedCount", rejectedCount.get());
+        return stats;
+    }
+
+    /**
+     * 限流计划
+     */
+    static class LimitPlan {
+
+        private Method method;
+
+        private String prefix;
+
+        // 未指定key时为null
+        private Expression keyExpression;
+
+        private ParameterNameDiscoverer parameterNames;
+
+        // USER策略未指定key时 userId 参数的位置，没有时为-1
+        private int userIdIndex;
+
+        private int capacity;
+
+        private double rate;
+
+        private int tokens;
+
+        private boolean blocking;
+
+        private long timeout;
+
+        private String message;
+
+        private ErrorCode errorCode;
+
+        private boolean logLimit;
+
+        /**
+         * 生成本次调用的限流键
+         */
+        String resolveKey(Object[] args) {
+            if (keyExpression != null) {
+                // 参数名来自计划缓存，按需绑定到上下文；属性访问器和类型转换器共用，不再反射读取
+                MethodBasedEvaluationContext context = new MethodBasedEvaluationContext(null, method, args, parameterNames);
+                context.setPropertyAccessors(PROPERTY_ACCESSORS);
+                context.setTypeConverter(TYPE_CONVERTER);
+                Object value;
+                try {
+                    value = keyExpression.getValue(context);
+                } catch (EvaluationException e) {
+                    // 表达式求值失败（如参数为null时访问属性）不影响请求，使用原始表达式作为限流键
+                    LOGGER.warn("SpEL表达式求值失败: {}, 使用原始表达式", keyExpression.getExpressionString(), e);
+                    value = null;
+                }
+                return prefix + (value != null ? value.toString() : keyExpression.getExpressionString());
+            }
+            if (userIdIndex >= 0) {
+                Object userId = args[userIdIndex];
+                return userId != null ? prefix + userId : prefix + "anonymous";
+            }
+            return prefix;
+        }
+    }
+
+    /**
+     * 已缓存的参数名
+     */
+    private static class CachedParameterNames implements ParameterNameDiscoverer {
+
+        private final String[] names;
+
+        private CachedParameterNames(String[] names) {
+            this.names = names;
+        }
+
+        @Override
+        public String[] getParameterNames(Method method) {
+            return names;
+        }
+
+        @Override
+        public String[] getParameterNames(Constructor<?> ctor) {
+            return null;
+        }
+    }
+}
@@ -1,10 +1,13 @@
 package cn.monitor4all.miaoshaservice.config;
 
+import cn.monitor4all.miaoshaservice.utils.VirtualThreads;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.support.TaskExecutorAdapter;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
+import java.util.concurrent.Executor;
 import java.util.concurrent.ThreadPoolExecutor;
 
 /**
@@ -28,13 +31,20 @@ public class CacheDeleteThreadPoolConfig {
     
     @Value("${cache.delete.thread-pool.thread-name-prefix:cache-delete-}")
     private String threadNamePrefix;
+
+    // 是否使用虚拟线程（需JDK 21及以上，低版本JDK上忽略）
+    @Value("${miaosha.virtual-threads.enabled:false}")
+    private boolean virtualThreadsEnabled;
     
     /**
      * 缓存删除专用线程池
-     * 用于异步删除缓存操作
+     * 用于异步删除缓存操作；开启虚拟线程时每个删除任务一个虚拟线程，延迟删除的休眠不占用平台线程
      */
     @Bean(name = "cacheDeleteExecutor")
-    public ThreadPoolTaskExecutor cacheDeleteExecutor() {
+    public Executor cacheDeleteExecutor() {
+        if (virtualThreadsEnabled && VirtualThreads.isAvailable()) {
+            return new TaskExecutorAdapter(VirtualThreads.newThreadPerTaskExecutor(threadNamePrefix + "vt-"));
+        }
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         
         // 核心线程数
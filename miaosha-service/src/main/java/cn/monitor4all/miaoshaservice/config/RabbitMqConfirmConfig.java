@@ -1,9 +1,13 @@
 package cn.monitor4all.miaoshaservice.config;
 
+import cn.monitor4all.miaoshaservice.utils.codec.CompactMessageConverter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.amqp.support.converter.SimpleMessageConverter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -15,9 +19,19 @@ public class RabbitMqConfirmConfig {
     
     private static final Logger LOGGER = LoggerFactory.getLogger(RabbitMqConfirmConfig.class);
     
+    /**
+     * 消息转换器：购票消息使用紧凑编码，其他消息和旧格式消息交给默认的SimpleMessageConverter；
+     * 唯一的MessageConverter会被Spring Boot用于@RabbitListener的监听容器
+     */
     @Bean
-    public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory) {
+    public MessageConverter messageConverter(@Value("${miaosha.codec.format:legacy}") String codecFormat) {
+        return new CompactMessageConverter(new SimpleMessageConverter(), "compact".equalsIgnoreCase(codecFormat));
+    }
+    
+    @Bean
+    public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory, MessageConverter messageConverter) {
         RabbitTemplate rabbitTemplate = new RabbitTemplate(connectionFactory);
+        rabbitTemplate.setMessageConverter(messageConverter);
         
         // 设置发布确认回调
         rabbitTemplate.setConfirmCallback((correlationData, ack, cause) -> {
@@ -1,13 +1,19 @@
 package cn.monitor4all.miaoshaservice.config;
 
+import cn.monitor4all.miaoshaservice.utils.codec.CompactRedisSerializer;
+import cn.monitor4all.miaoshaservice.utils.hotkey.HotKeyDetector;
+import cn.monitor4all.miaoshaservice.utils.hotkey.HotKeyTrackingConnectionFactory;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
@@ -17,10 +23,35 @@ import org.springframework.data.redis.serializer.StringRedisSerializer;
 @Configuration
 public class RedisConfig {
     
+    /**
+     * 热键探测器：两个RedisTemplate的连接都经过它按采样率计数，由 HotKeyService 按窗口读取
+     */
     @Bean
-    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory connectionFactory) {
+    public HotKeyDetector hotKeyDetector(@Value("${miaosha.hot-key.sample-rate:16}") int sampleRate,
+                                         @Value("${miaosha.hot-key.sketch-depth:4}") int depth,
+                                         @Value("${miaosha.hot-key.sketch-width:4096}") int width,
+                                         @Value("${miaosha.hot-key.candidate-samples:32}") long candidateSamples,
+                                         @Value("${miaosha.hot-key.max-candidates:1024}") int maxCandidates) {
+        return new HotKeyDetector(sampleRate, depth, width, candidateSamples, maxCandidates);
+    }
+
+    @Bean
+    public StringRedisTemplate stringRedisTemplate(RedisConnectionFactory connectionFactory, HotKeyDetector hotKeyDetector) {
+        StringRedisTemplate template = new StringRedisTemplate();
+        template.setConnectionFactory(new HotKeyTrackingConnectionFactory(connectionFactory, hotKeyDetector));
+        template.afterPropertiesSet();
+        return template;
+    }
+
+    /**
+     * value使用紧凑编码序列化器：Ticket、PurchaseRecord、TicketOrder 等已注册类型写入紧凑二进制，
+     * 其他对象及已有的Jackson数据仍由Jackson处理，miaosha.codec.format=legacy 时只写Jackson
+     */
+    @Bean
+    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory connectionFactory, HotKeyDetector hotKeyDetector,
+                                                       @Value("${miaosha.codec.format:legacy}") String codecFormat) {
         RedisTemplate<String, Object> template = new RedisTemplate<>();
-        template.setConnectionFactory(connectionFactory);
+        template.setConnectionFactory(new HotKeyTrackingConnectionFactory(connectionFactory, hotKeyDetector));
         
         // 使用Jackson2JsonRedisSerializer来序列化和反序列化redis的value值
         Jackson2JsonRedisSerializer<Object> jackson2JsonRedisSerializer = new Jackson2JsonRedisSerializer<>(Object.class);
@@ -28,6 +59,7 @@ public class RedisConfig {
         om.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY);
         om.activateDefaultTyping(LaissezFaireSubTypeValidator.instance, ObjectMapper.DefaultTyping.NON_FINAL);
         jackson2JsonRedisSerializer.setObjectMapper(om);
+        CompactRedisSerializer valueSerializer = new CompactRedisSerializer(jackson2JsonRedisSerializer, "compact".equalsIgnoreCase(codecFormat));
         
         // 使用StringRedisSerializer来序列化和反序列化redis的key值
         StringRedisSerializer stringRedisSerializer = new StringRedisSerializer();
@@ -36,12 +68,22 @@ public class RedisConfig {
         template.setKeySerializer(stringRedisSerializer);
         // hash的key也采用String的序列化方式
         template.setHashKeySerializer(stringRedisSerializer);
-        // value序列化方式采用jackson
-        template.setValueSerializer(jackson2JsonRedisSerializer);
-        // hash的value序列化方式采用jackson
-        template.setHashValueSerializer(jackson2JsonRedisSerializer);
+        // value序列化方式采用紧凑编码，未注册类型回退到jackson
+        template.setValueSerializer(valueSerializer);
+        // hash的value序列化方式同上
+        template.setHashValueSerializer(valueSerializer);
         
         template.afterPropertiesSet();
         return template;
     }
+
+    /**
+     * Redis发布订阅监听容器，各组件在初始化时注册自己的频道监听
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        return container;
+    }
 }
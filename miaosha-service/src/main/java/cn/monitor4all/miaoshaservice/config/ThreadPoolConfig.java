@@ -1,8 +1,11 @@
 package cn.monitor4all.miaoshaservice.config;
 
+import cn.monitor4all.miaoshaservice.utils.VirtualThreads;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.core.task.support.TaskExecutorAdapter;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
@@ -16,6 +19,10 @@ import java.util.concurrent.ThreadPoolExecutor;
 @EnableAsync
 public class ThreadPoolConfig {
 
+    // 是否使用虚拟线程（需JDK 21及以上，低版本JDK上忽略）
+    @Value("${miaosha.virtual-threads.enabled:false}")
+    private boolean virtualThreadsEnabled = false;
+
     /**
      * 缓存操作线程池
      * 专门用于执行缓存相关的异步任务，如延迟删除缓存
@@ -60,6 +67,10 @@ public class ThreadPoolConfig {
      */
     @Bean("mqTaskExecutor")
     public Executor mqTaskExecutor() {
+        if (virtualThreadsEnabled && VirtualThreads.isAvailable()) {
+            // 每个任务一个虚拟线程，阻塞在消息发送上不占用平台线程
+            return new TaskExecutorAdapter(VirtualThreads.newThreadPerTaskExecutor("mq-task-vt-"));
+        }
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         
         // 核心线程数：3个线程
@@ -91,4 +102,36 @@ public class ThreadPoolConfig {
         
         return executor;
     }
+
+    /**
+     * 库存租约线程池
+     * 用于本地租约低水位时异步向数据库续租
+     */
+    @Bean("stockLeaseExecutor")
+    public Executor stockLeaseExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        
+        // 核心线程数：1个线程
+        executor.setCorePoolSize(1);
+        
+        // 最大线程数：2个线程
+        executor.setMaxPoolSize(2);
+        
+        // 队列容量：50个任务
+        executor.setQueueCapacity(50);
+        
+        // 线程名前缀
+        executor.setThreadNamePrefix("stock-lease-");
+        
+        // 线程空闲时间：60秒
+        executor.setKeepAliveSeconds(60);
+        
+        // 拒绝策略：丢弃，续租失败时由购票线程同步续租
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.DiscardPolicy());
+        
+        // 初始化
+        executor.initialize();
+        
+        return executor;
+    }
 }
@@ -0,0 +1,46 @@
+package cn.monitor4all.miaoshaservice.config;
+
+import cn.monitor4all.miaoshaservice.utils.VirtualThreads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+/**
+ * 虚拟线程配置类
+ * 开启 miaosha.virtual-threads.enabled 且运行在JDK 21及以上时，@RabbitListener消费者运行在虚拟线程上，
+ * 阻塞在Redis锁、JDBC、消息发送上的消费者不再占用平台线程；低版本JDK上保持原有平台线程
+ */
+@Configuration
+@ConditionalOnProperty(name = "miaosha.virtual-threads.enabled", havingValue = "true")
+public class VirtualThreadConfig {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(VirtualThreadConfig.class);
+
+    /**
+     * 监听容器工厂使用虚拟线程执行消费者
+     */
+    @Bean
+    public static BeanPostProcessor rabbitListenerVirtualThreadPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof SimpleRabbitListenerContainerFactory) {
+                    if (VirtualThreads.isAvailable()) {
+                        ((SimpleRabbitListenerContainerFactory) bean).setTaskExecutor(
+                                new TaskExecutorAdapter(VirtualThreads.newThreadPerTaskExecutor("rabbit-vt-")));
+                        LOGGER.info("RabbitMQ监听容器使用虚拟线程，容器工厂: {}", beanName);
+                    } else {
+                        LOGGER.warn("当前JDK不支持虚拟线程，RabbitMQ监听容器使用平台线程，JDK版本: {}",
+                                System.getProperty("java.version"));
+                    }
+                }
+                return bean;
+            }
+        };
+    }
+}
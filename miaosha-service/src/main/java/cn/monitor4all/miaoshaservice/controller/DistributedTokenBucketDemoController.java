@@ -3,6 +3,7 @@ package cn.monitor4all.miaoshaservice.controller;
 import cn.monitor4all.miaoshaservice.annotation.DistributedTokenBucketLimit;
 import cn.monitor4all.miaoshaservice.config.DistributedTokenBucketConfig;
 import cn.monitor4all.miaoshaservice.service.DistributedTokenBucketService;
+import cn.monitor4all.miaoshaservice.service.LeasedTokenBucketService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.web.bind.annotation.*;
@@ -24,6 +25,9 @@ public class DistributedTokenBucketDemoController {
     @Resource
     private DistributedTokenBucketService distributedTokenBucketService;
     
+    @Resource
+    private LeasedTokenBucketService leasedTokenBucketService;
+    
     @Resource
     private DistributedTokenBucketConfig config;
     
@@ -176,6 +180,45 @@ public class DistributedTokenBucketDemoController {
         return result;
     }
     
+    /**
+     * 两级令牌桶限流：从本地租约取令牌，本地令牌不足时批量向Redis续租
+     */
+    @GetMapping("/leased-limit/{key}")
+    public Map<String, Object> testLeasedLimit(@PathVariable String key) {
+        Map<String, Object> result = new HashMap<>();
+        
+        try {
+            DistributedTokenBucketConfig.TokenBucketRule rule = config.getRule(key);
+            boolean allowed = leasedTokenBucketService.tryAcquire(key, rule.getCapacity(), rule.getRate());
+            
+            result.put("success", allowed);
+            result.put("message", allowed ? "两级令牌桶限流：通过" : "两级令牌桶限流：拒绝");
+            result.put("key", key);
+            result.put("capacity", rule.getCapacity());
+            result.put("rate", rule.getRate());
+            
+        } catch (Exception e) {
+            result.put("success", false);
+            result.put("message", "限流检查异常: " + e.getMessage());
+            result.put("key", key);
+            
+            LOGGER.error("两级令牌桶限流异常，键: {}", key, e);
+        }
+        
+        return result;
+    }
+    
+    /**
+     * 获取两级令牌桶统计信息
+     */
+    @GetMapping("/lease-stats")
+    public Map<String, Object> getLeaseStatistics() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", true);
+        result.put("statistics", leasedTokenBucketService.getStatistics());
+        return result;
+    }
+    
     /**
      * 获取令牌桶信息
      */
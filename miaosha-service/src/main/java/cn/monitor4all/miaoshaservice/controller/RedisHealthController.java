@@ -1,11 +1,21 @@
 package cn.monitor4all.miaoshaservice.controller;
 
 import cn.monitor4all.miaoshaservice.service.TicketCacheManager;
+import cn.monitor4all.miaoshaservice.service.TicketNearCacheService;
+import cn.monitor4all.miaoshaservice.service.CacheLoadingService;
+import cn.monitor4all.miaoshaservice.service.PurchaseBitmapService;
+import cn.monitor4all.miaoshaservice.service.KeyMaintenanceService;
+import cn.monitor4all.miaoshaservice.service.CacheInvalidationService;
+import cn.monitor4all.miaoshaservice.service.TicketStockCacheService;
+import cn.monitor4all.miaoshaservice.service.EntityCodecService;
+import cn.monitor4all.miaoshaservice.service.HotKeyService;
+import cn.monitor4all.miaoshaservice.utils.redis.RedisLockCoordinator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import javax.annotation.Resource;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.HashMap;
@@ -22,6 +32,33 @@ public class RedisHealthController {
     
     @Resource
     private TicketCacheManager ticketCacheManager;
+
+    @Resource
+    private RedisLockCoordinator redisLockCoordinator;
+
+    @Resource
+    private TicketNearCacheService ticketNearCacheService;
+
+    @Resource
+    private CacheLoadingService cacheLoadingService;
+
+    @Resource
+    private PurchaseBitmapService purchaseBitmapService;
+
+    @Resource
+    private KeyMaintenanceService keyMaintenanceService;
+
+    @Resource
+    private CacheInvalidationService cacheInvalidationService;
+
+    @Resource
+    private TicketStockCacheService ticketStockCacheService;
+
+    @Resource
+    private EntityCodecService entityCodecService;
+
+    @Resource
+    private HotKeyService hotKeyService;
     
     /**
      * 检查Redis连接状态
@@ -110,6 +147,20 @@ public class RedisHealthController {
                 result.put("message", "Redis连接异常，无法获取缓存统计信息");
             }
             
+            // 本地缓存统计（命中率、数据陈旧程度、失效通知延迟）
+            result.put("nearCache", ticketNearCacheService.getStatistics());
+            // 缓存加载统计（回源次数、合并等待、租约竞争、提前刷新）
+            result.put("loader", cacheLoadingService.getStatistics());
+            // 购买位图统计（位图直接回答的已购/未购次数、未就绪回退次数、重建次数）
+            result.put("purchaseBitmap", purchaseBitmapService.getStatistics());
+            // 缓存失效分发统计（积压、合并、拒绝、批量删除）
+            result.put("invalidation", cacheInvalidationService.getStatistics());
+            // 票券库存写穿缓存统计（命中率、回源写入被拒绝次数、增减次数、对账修正次数）
+            result.put("ticketStock", ticketStockCacheService.getStatistics());
+            // 缓存值编解码统计（各格式编解码次数、平均字节数）
+            result.put("codec", entityCodecService.getStatistics());
+            // 热键探测统计（采样次数、晋升/降级次数、本地副本命中率）
+            result.put("hotKey", hotKeyService.getStatistics());
             result.put("timestamp", System.currentTimeMillis());
             
         } catch (Exception e) {
@@ -121,4 +172,40 @@ public class RedisHealthController {
         
         return result;
     }
+
+    /**
+     * 获取分布式锁统计信息
+     * @return 分布式锁统计信息
+     */
+    @GetMapping("/lock/stats")
+    public Map<String, Object> getLockStats() {
+        Map<String, Object> result = new HashMap<>(redisLockCoordinator.getStatistics());
+        result.put("timestamp", System.currentTimeMillis());
+        return result;
+    }
+
+    /**
+     * 获取键维护统计信息（进行中任务的进度、累计扫描和删除数量）
+     * @return 键维护统计信息
+     */
+    @GetMapping("/keys/maintenance/stats")
+    public Map<String, Object> getKeyMaintenanceStats() {
+        Map<String, Object> result = new HashMap<>(keyMaintenanceService.getStatistics());
+        result.put("timestamp", System.currentTimeMillis());
+        return result;
+    }
+
+    /**
+     * 获取最近一个统计窗口访问最多的键（运维排查热点分片）
+     * @param limit 返回数量
+     * @return 热键列表及热键统计信息
+     */
+    @GetMapping("/hot-keys")
+    public Map<String, Object> getHotKeys(@RequestParam(value = "limit", defaultValue = "20") int limit) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("topKeys", hotKeyService.getTopKeys(limit));
+        result.put("statistics", hotKeyService.getStatistics());
+        result.put("timestamp", System.currentTimeMillis());
+        return result;
+    }
 }
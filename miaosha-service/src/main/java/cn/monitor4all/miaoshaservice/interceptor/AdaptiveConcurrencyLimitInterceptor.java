@@ -0,0 +1,108 @@
+package cn.monitor4all.miaoshaservice.interceptor;
+
+import cn.monitor4all.miaoshadao.model.ApiResponse;
+import cn.monitor4all.miaoshaservice.service.AdaptiveConcurrencyLimitService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.annotation.Resource;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.PrintWriter;
+
+/**
+ * 自适应并发限制拦截器
+ * 拦截购票接口，每个接口（购票方式）一个并发限制器：在途请求数达到限制时直接返回429，不进入控制器；
+ * 放行的请求在完成后记录响应时间，用于调整限制
+ * 购票接口失败时仍以HTTP 200返回 ApiResponse.error，由 AdaptiveConcurrencyLimitResponseAdvice 根据返回码标记下游过载，
+ * 过载的请求按超时/下游异常计入限制器的收缩，业务拒绝不计入
+ */
+@Component
+public class AdaptiveConcurrencyLimitInterceptor implements HandlerInterceptor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AdaptiveConcurrencyLimitInterceptor.class);
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    // 拦截的购票接口：/api/tickets/{版本}/purchase 及其子路径，不包括 /v2/purchaseResult 等查询接口
+    public static final String[] PATH_PATTERNS = {"/api/tickets/*/purchase", "/api/tickets/*/purchase/**"};
+
+    private static final String START_NANOS_ATTRIBUTE = AdaptiveConcurrencyLimitInterceptor.class.getName() + ".startNanos";
+
+    private static final String MODE_ATTRIBUTE = AdaptiveConcurrencyLimitInterceptor.class.getName() + ".mode";
+
+    private static final String FAILED_ATTRIBUTE = AdaptiveConcurrencyLimitInterceptor.class.getName() + ".failed";
+
+    @Resource
+    private AdaptiveConcurrencyLimitService adaptiveConcurrencyLimitService;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        if (!(handler instanceof HandlerMethod)) {
+            return true;
+        }
+        // 购票方式取控制器方法名，同一接口的请求共用一个限制器
+        String mode = ((HandlerMethod) handler).getMethod().getName();
+        long startNanos = System.nanoTime();
+        if (!adaptiveConcurrencyLimitService.tryAcquire(mode)) {
+            LOGGER.warn("购票并发超过自适应限制，直接拒绝，购票方式: {}", mode);
+            handleTooManyRequests(response);
+            return false;
+        }
+        request.setAttribute(MODE_ATTRIBUTE, mode);
+        request.setAttribute(START_NANOS_ATTRIBUTE, startNanos);
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Object mode = request.getAttribute(MODE_ATTRIBUTE);
+        Object startNanos = request.getAttribute(START_NANOS_ATTRIBUTE);
+        if (mode == null || startNanos == null) {
+            return;
+        }
+        boolean dropped = ex != null || response.getStatus() >= HttpStatus.INTERNAL_SERVER_ERROR.value()
+                || request.getAttribute(FAILED_ATTRIBUTE) != null;
+        adaptiveConcurrencyLimitService.onComplete((String) mode, (Long) startNanos, dropped);
+    }
+
+    /**
+     * 是否是被并发限制器放行的请求
+     */
+    static boolean isLimited(HttpServletRequest request) {
+        return request.getAttribute(MODE_ATTRIBUTE) != null;
+    }
+
+    /**
+     * 标记请求失败，afterCompletion 时按失败样本记录
+     */
+    static void markFailed(HttpServletRequest request) {
+        request.setAttribute(FAILED_ATTRIBUTE, Boolean.TRUE);
+    }
+
+    /**
+     * 返回429和JSON错误响应
+     */
+    private void handleTooManyRequests(HttpServletResponse response) throws Exception {
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setContentType("application/json;charset=UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+
+        PrintWriter out = null;
+        try {
+            out = response.getWriter();
+            ApiResponse<Void> apiResponse = ApiResponse.error("抢购人数过多，请稍后重试");
+            out.write(objectMapper.writeValueAsString(apiResponse));
+            out.flush();
+        } finally {
+            if (out != null) {
+                out.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package cn.monitor4all.miaoshaservice.interceptor;
+
+import cn.monitor4all.miaoshadao.model.ApiResponse;
+import cn.monitor4all.miaoshaservice.utils.ratelimit.OverloadSignals;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * 自适应并发限制失败标记
+ * 购票服务捕获所有异常后返回 ApiResponse.error，控制器仍以HTTP 200返回，在写出响应体前检查返回码：
+ * 只有下游过载（返回码 SYSTEM_BUSY，见 OverloadSignals）标记为失败样本；
+ * 售罄、已购买、用户限流等业务拒绝按成功样本记录，否则抢购中大量的业务拒绝会让限制收缩到最小值
+ */
+@RestControllerAdvice
+public class AdaptiveConcurrencyLimitResponseAdvice implements ResponseBodyAdvice<Object> {
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return ApiResponse.class.isAssignableFrom(returnType.getParameterType());
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        if (body instanceof ApiResponse && OverloadSignals.isOverload((ApiResponse<?>) body)
+                && request instanceof ServletServerHttpRequest) {
+            ServletServerHttpRequest servletRequest = (ServletServerHttpRequest) request;
+            if (AdaptiveConcurrencyLimitInterceptor.isLimited(servletRequest.getServletRequest())) {
+                AdaptiveConcurrencyLimitInterceptor.markFailed(servletRequest.getServletRequest());
+            }
+        }
+        return body;
+    }
+}
@@ -7,8 +7,10 @@ import cn.monitor4all.miaoshadao.mapper.TicketOrderMapper;
 import cn.monitor4all.miaoshadao.model.PurchaseRecord;
 import java.io.IOException;
 import cn.monitor4all.miaoshaservice.config.RabbitMqPurchaseConfig;
+import cn.monitor4all.miaoshaservice.service.TicketAdmissionService;
 import cn.monitor4all.miaoshaservice.service.TicketCacheManager;
 import cn.monitor4all.miaoshaservice.service.TicketCodeGeneratorService;
+import cn.monitor4all.miaoshaservice.utils.OrderNoGenerator;
 import com.rabbitmq.client.Channel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -47,19 +49,29 @@ public class OrderCreationConsumer {
 
     @Resource
     private TicketEntityMapper ticketEntityMapper;
+
+    @Resource
+    private TicketAdmissionService ticketAdmissionService;
     
     /**
      * 消费订单创建消息
      * @param message 消息内容
      * @param deliveryTag 消息标签，用于手动确认
      */
-    @RabbitListener(queues = RabbitMqPurchaseConfig.MIAOSHA_ORDER_CREATION_QUEUE, concurrency = "5")
+    @RabbitListener(queues = RabbitMqPurchaseConfig.MIAOSHA_ORDER_CREATION_QUEUE, concurrency = "${miaosha.mq.order-creation.concurrency:5}")
     public void handleOrderCreationMessage(Map<String, Object> message,
                                            @Header(AmqpHeaders.DELIVERY_TAG) long deliveryTag,
                                            Channel channel) {
 
         try {
             LOGGER.info("收到订单创建消息: {}", message);
+
+            // Lua准入购票：库存尚未扣减数据库，交由准入服务落库
+            if ("admission".equals(message.get("mode"))) {
+                ticketAdmissionService.createOrderFromAdmission(message);
+                channel.basicAck(deliveryTag, false);
+                return;
+            }
             
             // 解析消息内容
             String requestId = (String) message.get("requestId");
@@ -74,7 +86,7 @@ public class OrderCreationConsumer {
             String ticketCode = ticketCodeGeneratorService.generateUniqueTicketCode(userId, purchaseDate);
 
             // 8. 生成订单编号
-            String orderNo = generateOrderNo(userId, purchaseDate);
+            String orderNo = OrderNoGenerator.generate(userId);
 
             TicketEntity ticketEntity = ticketEntityMapper.selectByDate(purchaseDate);
 
@@ -119,19 +131,4 @@ public class OrderCreationConsumer {
         }
     }
     
-    /**
-     * 生成订单编号
-     * 格式：TB + 时间戳 + 用户ID后4位 + 随机数
-     *
-     * @param userId 用户ID
-     * @param date   购票日期
-     * @return 订单编号
-     */
-    private String generateOrderNo(Long userId, String date) {
-        long timestamp = System.currentTimeMillis();
-        String userIdSuffix = String.valueOf(userId).substring(Math.max(0, String.valueOf(userId).length() - 4));
-        int random = (int) (Math.random() * 1000);
-        
-        return String.format("TB%d%s%03d", timestamp, userIdSuffix, random);
-    }
 }
\ No newline at end of file
@@ -40,7 +40,7 @@ public class PurchaseMessageConsumer {
      *
      * @param message 消息内容
      */
-    @RabbitListener(queues = RabbitMqPurchaseConfig.MIAOSHA_PURCHASE_QUEUE, concurrency = "10")
+    @RabbitListener(queues = RabbitMqPurchaseConfig.MIAOSHA_PURCHASE_QUEUE, concurrency = "${miaosha.mq.purchase.concurrency:10}")
     public void handlePurchaseMessage(Map<String, Object> message,
                                     @Header(AmqpHeaders.DELIVERY_TAG) long deliveryTag,
                                     Channel channel) {
@@ -0,0 +1,32 @@
+package cn.monitor4all.miaoshaservice.service;
+
+import java.util.Map;
+
+/**
+ * 自适应并发限制服务
+ * 每种购票方式一个并发限制器，按在途请求数和响应时间持续调整并发限制：响应时间没有变长时逐步放大，
+ * 开始排队时按比例收缩，超出限制的请求立即拒绝，使吞吐量停留在数据库/Redis延迟曲线的拐点附近
+ */
+public interface AdaptiveConcurrencyLimitService {
+
+    /**
+     * 尝试占用一个并发名额，成功后必须调用 onComplete 释放
+     * @param mode 购票方式
+     * @return 是否放行，未启用时总是放行
+     */
+    boolean tryAcquire(String mode);
+
+    /**
+     * 请求完成，释放并发名额并记录响应时间
+     * @param mode 购票方式
+     * @param startNanos tryAcquire 前取得的 System.nanoTime
+     * @param dropped 请求是否因超时、下游异常失败
+     */
+    void onComplete(String mode, long startNanos, boolean dropped);
+
+    /**
+     * 获取统计信息：各购票方式当前的并发限制、在途请求数、无负载/短期响应时间、放行和拒绝次数
+     * @return 统计信息
+     */
+    Map<String, Object> getStatistics();
+}
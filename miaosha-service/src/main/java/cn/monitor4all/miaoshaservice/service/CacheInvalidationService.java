@@ -0,0 +1,43 @@
+package cn.monitor4all.miaoshaservice.service;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 缓存失效分发服务
+ * 1. 短时间窗口内对同一个键的多次删除请求合并为一次
+ * 2. 延迟删除（延迟双删的第二次删除）放入时间轮，不占用线程睡眠等待
+ * 3. 到期的键按批次用一条多键UNLINK删除
+ * 4. 待删除键数量达到上限时拒绝提交，调用方自行走兜底路径，不在请求线程上执行删除
+ */
+public interface CacheInvalidationService {
+
+    /**
+     * 提交立即删除
+     * @param key 缓存键
+     * @return 是否已接收，false表示积压已达上限
+     */
+    boolean invalidate(String key);
+
+    /**
+     * 提交延迟删除
+     * @param key 缓存键
+     * @param delayMillis 延迟时间（毫秒）
+     * @return 是否已接收，false表示积压已达上限
+     */
+    boolean invalidate(String key, long delayMillis);
+
+    /**
+     * 批量提交立即删除，下一次刷新时合并为一条UNLINK
+     * @param keys 缓存键
+     * @return 未被接收的键，积压已达上限时非空
+     */
+    List<String> invalidateAll(Collection<String> keys);
+
+    /**
+     * 获取失效分发统计信息：积压数量、合并次数、拒绝次数、批次数和刷新耗时
+     * @return 统计信息
+     */
+    Map<String, Object> getStatistics();
+}
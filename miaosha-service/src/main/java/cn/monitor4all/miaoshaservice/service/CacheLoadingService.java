@@ -0,0 +1,45 @@
+package cn.monitor4all.miaoshaservice.service;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 缓存加载服务
+ * 防止缓存过期瞬间大量请求同时回源数据库：
+ * 1. 同一个键在本JVM内只有一个线程回源，其余线程等待同一个加载结果
+ * 2. 可选的Redis加载租约，多个节点之间同一个键只有一个节点回源
+ * 3. 写入时随机延长有效期，避免同时写入的键同时过期
+ * 4. 临近过期时后台提前刷新，刷新期间继续返回当前值
+ */
+public interface CacheLoadingService {
+
+    /**
+     * 读取缓存，未命中时回源加载并写入缓存
+     * @param key 缓存键
+     * @param ttlSeconds 基础有效期（秒），实际有效期在此基础上随机延长
+     * @param loader 回源加载器，返回null表示数据不存在，不写入缓存
+     * @return 缓存值，数据不存在时为null
+     */
+    String getOrLoad(String key, long ttlSeconds, Supplier<String> loader);
+
+    /**
+     * 写入缓存，有效期随机延长
+     * @param key 缓存键
+     * @param value 缓存值
+     * @param ttlSeconds 基础有效期（秒）
+     */
+    void set(String key, String value, long ttlSeconds);
+
+    /**
+     * 管道批量写入缓存，一次往返，每个键的有效期分别随机延长
+     * @param values 缓存键到缓存值的映射
+     * @param ttlSeconds 基础有效期（秒）
+     */
+    void setAll(Map<String, String> values, long ttlSeconds);
+
+    /**
+     * 获取缓存加载统计信息：回源次数、合并等待次数、租约竞争次数、提前刷新次数
+     * @return 统计信息
+     */
+    Map<String, Object> getStatistics();
+}
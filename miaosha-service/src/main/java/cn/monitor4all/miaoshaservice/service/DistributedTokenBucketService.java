@@ -2,7 +2,7 @@ package cn.monitor4all.miaoshaservice.service;
 
 /**
  * 分布式令牌桶限流服务接口
- * 基于Redis+Lua脚本实现分布式环境下的令牌桶限流
+ * 基于Redis+Lua脚本实现分布式环境下的令牌桶限流，支持三种算法（见 Algorithm），默认算法由配置决定
  */
 public interface DistributedTokenBucketService {
     
@@ -25,6 +25,33 @@ public interface DistributedTokenBucketService {
      */
     boolean tryAcquire(String key, int capacity, double rate, int tokens);
     
+    /**
+     * 使用指定算法尝试获取指定数量的令牌（非阻塞）
+     * @param key 限流键
+     * @param capacity 桶容量
+     * @param rate 令牌填充速率（每秒）
+     * @param tokens 请求令牌数
+     * @param algorithm 限流算法
+     * @return 是否获取成功
+     */
+    boolean tryAcquire(String key, int capacity, double rate, int tokens, Algorithm algorithm);
+    
+    /**
+     * 获取配置的默认限流算法
+     * @return 限流算法
+     */
+    Algorithm getAlgorithm();
+    
+    /**
+     * 从令牌桶批量租约令牌（非阻塞），令牌不足时取走全部剩余令牌
+     * @param key 限流键
+     * @param capacity 桶容量
+     * @param rate 令牌填充速率（每秒）
+     * @param tokens 申请租约的令牌数
+     * @return 租到的令牌数，限流或执行失败时为0
+     */
+    int lease(String key, int capacity, double rate, int tokens);
+    
     /**
      * 尝试获取令牌（阻塞等待）
      * @param key 限流键
@@ -35,6 +62,18 @@ public interface DistributedTokenBucketService {
      */
     boolean tryAcquireWithTimeout(String key, int capacity, double rate, long timeout);
     
+    /**
+     * 尝试获取指定数量的令牌（阻塞等待）
+     * 令牌不足时按脚本返回的等待时间休眠后重试，超时前令牌不可能足够时立即返回
+     * @param key 限流键
+     * @param capacity 桶容量
+     * @param rate 令牌填充速率（每秒）
+     * @param tokens 请求令牌数
+     * @param timeout 等待超时时间（毫秒）
+     * @return 是否获取成功
+     */
+    boolean tryAcquireWithTimeout(String key, int capacity, double rate, int tokens, long timeout);
+    
     /**
      * 获取当前令牌数量
      * @param key 限流键
@@ -75,6 +114,26 @@ public interface DistributedTokenBucketService {
      */
     boolean warmupTokenBucket(String key, int capacity, double rate, int warmupTokens);
     
+    /**
+     * 限流算法，不同算法的Redis状态互不共用
+     */
+    enum Algorithm {
+        /**
+         * 经典令牌桶（token_bucket.lua）：客户端秒级时间戳，按整秒填充整数个令牌
+         */
+        CLASSIC,
+        
+        /**
+         * 微秒精度令牌桶（token_bucket_precise.lua）：Redis TIME微秒时间戳，小数令牌连续填充
+         */
+        PRECISE,
+        
+        /**
+         * GCRA（gcra.lua）：与微秒精度令牌桶等价，每个键只保存理论到达时间一个值
+         */
+        GCRA
+    }
+    
     /**
      * 令牌桶信息类
      */
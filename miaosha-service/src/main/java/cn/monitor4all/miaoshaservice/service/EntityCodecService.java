@@ -0,0 +1,38 @@
+package cn.monitor4all.miaoshaservice.service;
+
+import java.util.Map;
+
+/**
+ * 缓存值编解码服务
+ * 1. 写入：miaosha.codec.format=compact 时对已注册类型使用紧凑二进制编码，否则（默认legacy）写入fastjson字符串
+ * 2. 读取：按数据头的魔数自动识别，紧凑编码和旧的fastjson字符串都可以读取，切换格式和滚动发布期间不需要清理缓存
+ */
+public interface EntityCodecService {
+
+    /**
+     * 编码缓存值
+     * @param value 缓存对象
+     * @return 编码后的字节
+     */
+    byte[] encode(Object value);
+
+    /**
+     * 解码缓存值
+     * @param bytes 缓存中的字节，可以是紧凑编码或fastjson字符串
+     * @param type 目标类型
+     * @return 解码结果，bytes为null时为null
+     */
+    <T> T decode(byte[] bytes, Class<T> type);
+
+    /**
+     * 是否写入紧凑编码
+     * @return true 紧凑编码，false 旧格式
+     */
+    boolean isCompactEnabled();
+
+    /**
+     * 获取编解码统计信息：各格式的编解码次数、平均字节数和解码失败次数
+     * @return 统计信息
+     */
+    Map<String, Object> getStatistics();
+}
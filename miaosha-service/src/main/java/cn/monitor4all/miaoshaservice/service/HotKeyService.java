@@ -0,0 +1,54 @@
+package cn.monitor4all.miaoshaservice.service;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 热键探测与本地副本服务
+ * 1. 所有经过RedisTemplate/StringRedisTemplate的带键命令按采样率计入count-min sketch，每个窗口统计一次每秒访问次数
+ * 2. 访问次数达到阈值、且键前缀允许复制的键自动晋升：读取结果在本地保存短TTL副本，连续若干窗口不再热时降级
+ * 3. 本节点写入热键后替换本地副本，并合并通知其他节点失效各自的副本（Redis发布订阅）
+ * 锁、限流等只有写命令的键只统计和展示，不复制
+ */
+public interface HotKeyService {
+
+    /**
+     * 获取本地副本
+     * @param key Redis键
+     * @return 副本，键未晋升或副本已过期、已失效时为null
+     */
+    Object getReplica(String key);
+
+    /**
+     * 保存从Redis读取的值作为本地副本，键未晋升时忽略
+     * @param key Redis键
+     * @param value 读取结果（调用方不能再修改）
+     */
+    void putReplica(String key, Object value);
+
+    /**
+     * 本节点写入键之后调用：本地副本替换为新值（value为null时删除），并通知其他节点失效
+     * @param key Redis键
+     * @param value 写入后的值，未知时为null
+     */
+    void update(String key, Object value);
+
+    /**
+     * 删除本地副本并通知其他节点失效
+     * @param key Redis键
+     */
+    void invalidate(String key);
+
+    /**
+     * 获取最近一个窗口访问最多的键
+     * @param limit 返回数量
+     * @return 键、每秒访问次数估计、是否已晋升为本地副本
+     */
+    List<Map<String, Object>> getTopKeys(int limit);
+
+    /**
+     * 获取统计信息：采样次数、晋升/降级次数、副本命中率、失效通知数
+     * @return 统计信息
+     */
+    Map<String, Object> getStatistics();
+}
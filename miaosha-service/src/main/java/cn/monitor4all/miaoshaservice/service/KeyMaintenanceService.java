@@ -0,0 +1,34 @@
+package cn.monitor4all.miaoshaservice.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Redis键维护服务
+ * 使用游标SCAN（带COUNT提示）代替KEYS遍历键空间，按批次处理，整体按每秒操作数限速，
+ * 避免一次遍历整个键空间阻塞单线程的Redis
+ */
+public interface KeyMaintenanceService {
+
+    /**
+     * 按模式遍历键，每攒满一批回调一次
+     * @param pattern 键匹配模式
+     * @param batchConsumer 批次回调
+     * @return 遍历到的键总数
+     */
+    long scan(String pattern, Consumer<List<String>> batchConsumer);
+
+    /**
+     * 按模式批量删除键，每批管道UNLINK（后台释放内存）
+     * @param pattern 键匹配模式
+     * @return 删除的键数量
+     */
+    long unlinkByPattern(String pattern);
+
+    /**
+     * 获取键维护统计信息：进行中任务的进度、累计扫描和删除数量
+     * @return 统计信息
+     */
+    Map<String, Object> getStatistics();
+}
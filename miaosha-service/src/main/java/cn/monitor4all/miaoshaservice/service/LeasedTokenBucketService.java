@@ -0,0 +1,28 @@
+package cn.monitor4all.miaoshaservice.service;
+
+import java.util.Map;
+
+/**
+ * 两级令牌桶限流服务
+ * 每个节点按自身请求速率从Redis令牌桶批量租约令牌，在本地无锁消耗，剩余令牌低于水位时异步续租，
+ * 全局限流由每个请求一次Redis调用变为每批一次；本地令牌用完时由一个线程同步续租，其他线程走Redis单次获取
+ * 超发上界：任意长度为T的时间段内合计放行数 ≤ capacity + rate × (T + lease-ttl-ms)，
+ * 即相对直接使用Redis令牌桶最多多放行 rate × lease-ttl-ms 个，且不超过 节点数 × max-batch
+ */
+public interface LeasedTokenBucketService {
+
+    /**
+     * 尝试获取令牌（非阻塞）
+     * @param key 限流键
+     * @param capacity 桶容量
+     * @param rate 令牌填充速率（每秒）
+     * @return 是否获取成功
+     */
+    boolean tryAcquire(String key, int capacity, double rate);
+
+    /**
+     * 获取统计信息：本地命中、同步/异步租约次数、租到的令牌数、过期作废的令牌数、每次放行的平均Redis调用次数
+     * @return 统计信息
+     */
+    Map<String, Object> getStatistics();
+}
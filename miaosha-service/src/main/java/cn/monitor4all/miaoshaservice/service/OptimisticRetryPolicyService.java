@@ -0,0 +1,81 @@
+package cn.monitor4all.miaoshaservice.service;
+
+import java.util.Map;
+
+/**
+ * 乐观锁重试策略服务
+ * 按日期统计滑动窗口内的版本冲突率：冲突率越高，单次请求允许的重试次数越少；
+ * 冲突率超过阈值时建议调用方切换为悲观模式，不再读改写重试。
+ * 重试间隔采用去相关抖动指数退避，单次请求的重试总耗时受时间预算限制
+ */
+public interface OptimisticRetryPolicyService {
+
+    /**
+     * 开始一次乐观锁更新的重试会话
+     * @param date 日期
+     * @return 重试会话
+     */
+    Session newSession(String date);
+
+    /**
+     * 开始一次乐观锁更新的重试会话，重试次数不超过调用方指定的上限
+     * @param date 日期
+     * @param maxRetries 调用方指定的最大重试次数
+     * @return 重试会话
+     */
+    Session newSession(String date, int maxRetries);
+
+    /**
+     * 判断日期当前冲突率是否超过阈值，超过时应直接使用悲观模式
+     * @param date 日期
+     * @return true表示应使用悲观模式
+     */
+    boolean isPessimisticPreferred(String date);
+
+    /**
+     * 记录一次悲观模式更新
+     * @param date 日期
+     */
+    void recordPessimisticUpdate(String date);
+
+    /**
+     * 获取重试策略统计信息
+     * @return 统计信息
+     */
+    Map<String, Object> getStatistics();
+
+    /**
+     * 重置统计信息
+     */
+    void resetStatistics();
+
+    /**
+     * 单次乐观锁更新的重试会话，非线程安全，仅在一个请求内使用
+     */
+    interface Session {
+
+        /**
+         * 记录一次更新成功
+         */
+        void recordSuccess();
+
+        /**
+         * 记录一次版本冲突，允许重试时按退避间隔休眠后返回true
+         * @return true表示可以重试，false表示应放弃或切换悲观模式
+         * @throws InterruptedException 退避休眠被中断
+         */
+        boolean backoffAndRetry() throws InterruptedException;
+
+        /**
+         * 放弃重试后是否建议切换为悲观模式
+         * @return true表示建议切换
+         */
+        boolean isSwitchRecommended();
+
+        /**
+         * 当前已重试次数
+         * @return 重试次数
+         */
+        int getRetryCount();
+    }
+}
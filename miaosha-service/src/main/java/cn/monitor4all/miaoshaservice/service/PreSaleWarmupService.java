@@ -0,0 +1,34 @@
+package cn.monitor4all.miaoshaservice.service;
+
+import java.util.Map;
+
+/**
+ * 开售前预热服务
+ * 每天开售时间前 lead-seconds 秒执行一次预热，开售后的第一批请求不再承担冷启动开销：
+ * 1. 加载所有Lua脚本（SCRIPT LOAD），EVALSHA不再因NOSCRIPT回退到EVAL
+ * 2. 数据库和Redis连接池建满到目标连接数
+ * 3. 预加载可售日期的票券快照、准入库存计数和购买位图
+ * 4. 预加载用户到本地用户缓存
+ * 5. 空跑购票代码（不准入、不发消息），直到JIT编译趋于稳定
+ * 预热完成后输出就绪报告，报告中记录是否在开售前就绪
+ */
+public interface PreSaleWarmupService {
+
+    /**
+     * 立即执行一次预热（同步执行，同一时刻只有一次预热在执行）
+     * @return 就绪报告
+     */
+    Map<String, Object> runWarmup();
+
+    /**
+     * 是否已就绪：最近一次预热的所有阶段都成功
+     * @return 是否就绪
+     */
+    boolean isReady();
+
+    /**
+     * 获取就绪报告：状态、开售时间、下次预热时间、各阶段结果和耗时
+     * @return 就绪报告
+     */
+    Map<String, Object> getReadinessReport();
+}
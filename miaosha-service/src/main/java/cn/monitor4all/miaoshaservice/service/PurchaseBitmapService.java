@@ -0,0 +1,55 @@
+package cn.monitor4all.miaoshaservice.service;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 购买位图服务
+ * 每个日期一个Redis位图，偏移量为用户ID，代替按用户、按日期的购买状态字符串键；
+ * 购票和取消路径同步更新位图，启动时及首次查询时从ticket_order表重建，重建完成后未购买的查询不再访问数据库
+ */
+public interface PurchaseBitmapService {
+
+    /**
+     * 查询用户是否已购买
+     * @param userId 用户ID
+     * @param date 日期
+     * @return true 已购买，false 未购买，null 位图未就绪或用户ID超出位图范围（调用方需回退到数据库查询）
+     */
+    Boolean hasPurchased(Long userId, String date);
+
+    /**
+     * 批量查询用户多个日期的购买状态，一次Redis往返
+     * @param userId 用户ID
+     * @param dates 日期列表
+     * @return 日期到购买状态的映射，位图未就绪的日期值为null
+     */
+    Map<String, Boolean> hasPurchased(Long userId, List<String> dates);
+
+    /**
+     * 标记用户已购买
+     * @param userId 用户ID
+     * @param date 日期
+     */
+    void markPurchased(Long userId, String date);
+
+    /**
+     * 清除用户购买标记（取消购票）
+     * @param userId 用户ID
+     * @param date 日期
+     */
+    void clearPurchased(Long userId, String date);
+
+    /**
+     * 从ticket_order表重建指定日期的位图，多个节点同时重建时只有一个节点执行
+     * @param date 日期
+     * @return 是否由本节点完成重建
+     */
+    boolean rebuild(String date);
+
+    /**
+     * 获取购买位图统计信息
+     * @return 统计信息
+     */
+    Map<String, Object> getStatistics();
+}
@@ -0,0 +1,41 @@
+package cn.monitor4all.miaoshaservice.service;
+
+import cn.monitor4all.miaoshadao.model.PurchaseRecord;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 购票流水线服务
+ * 每个日期一个预分配的环形队列和一个消费线程，消费线程按批次依次执行校验、库存扣减、票券编码生成、订单落库，
+ * 同一日期在本节点只有一个写入者，库存扣减和订单插入按批次合并
+ */
+public interface PurchasePipelineService {
+
+    /**
+     * 发布购票请求到该日期的流水线
+     * @param userId 用户ID
+     * @param date 日期
+     * @return 购票结果，售罄时为null
+     */
+    CompletableFuture<PurchaseRecord> submit(Long userId, String date);
+
+    /**
+     * 发布购票请求并等待结果
+     * @param userId 用户ID
+     * @param date 日期
+     * @return 购买记录，售罄时为null
+     */
+    PurchaseRecord purchase(Long userId, String date);
+
+    /**
+     * 获取流水线统计信息
+     * @return 统计信息
+     */
+    Map<String, Object> getStatistics();
+
+    /**
+     * 重置流水线统计信息
+     */
+    void resetStatistics();
+}
@@ -0,0 +1,66 @@
+package cn.monitor4all.miaoshaservice.service;
+
+import java.util.Map;
+
+/**
+ * 库存扣减引擎统计服务
+ * 按引擎统计请求数、成功/售罄/失败数、库存UPDATE语句数、版本冲突数和扣减耗时，用于对比不同扣减引擎
+ */
+public interface StockDeductStatisticsService {
+
+    /**
+     * 乐观锁引擎：先查询再按版本号更新，版本冲突时休眠重试
+     */
+    String ENGINE_OPTIMISTIC = "optimistic";
+
+    /**
+     * 条件扣减引擎：一条 remaining_count >= 1 的条件UPDATE，无需先查询、无重试
+     */
+    String ENGINE_CONDITIONAL = "conditional";
+
+    /**
+     * 请求结果：成功
+     */
+    String OUTCOME_SUCCESS = "success";
+
+    /**
+     * 请求结果：售罄
+     */
+    String OUTCOME_SOLD_OUT = "soldOut";
+
+    /**
+     * 请求结果：失败（重试耗尽、系统异常等）
+     */
+    String OUTCOME_FAILED = "failed";
+
+    /**
+     * 记录一次库存UPDATE语句
+     * @param engine 引擎
+     */
+    void recordStatement(String engine);
+
+    /**
+     * 记录一次版本冲突
+     * @param engine 引擎
+     */
+    void recordConflict(String engine);
+
+    /**
+     * 记录一次购票请求的结果和耗时
+     * @param engine 引擎
+     * @param outcome 结果
+     * @param elapsedNanos 耗时（纳秒）
+     */
+    void recordResult(String engine, String outcome, long elapsedNanos);
+
+    /**
+     * 获取各引擎统计信息
+     * @return 统计信息
+     */
+    Map<String, Object> getStatistics();
+
+    /**
+     * 重置统计信息
+     */
+    void resetStatistics();
+}
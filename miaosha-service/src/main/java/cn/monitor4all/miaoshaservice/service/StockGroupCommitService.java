@@ -0,0 +1,43 @@
+package cn.monitor4all.miaoshaservice.service;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 库存组提交服务
+ * 按日期收集数毫秒内的并发扣减请求，合并为一条条件UPDATE执行，再把成功或失败分发给每个调用方，
+ * 热点日期的行锁排队由每次购票一次写变为每批一次写
+ */
+public interface StockGroupCommitService {
+
+    /**
+     * 提交一张票的扣减请求
+     * @param date 日期
+     * @return 扣减结果，true表示扣减成功，false表示库存不足
+     */
+    CompletableFuture<Boolean> submit(String date);
+
+    /**
+     * 提交扣减请求并等待结果，等待超时后扣减成功的库存会自动归还
+     * @param date 日期
+     * @return true表示扣减成功，false表示库存不足
+     */
+    boolean deduct(String date);
+
+    /**
+     * 归还一张票的库存（扣减成功但后续下单失败时调用）
+     * @param date 日期
+     */
+    void restore(String date);
+
+    /**
+     * 获取组提交统计信息：批次数、批大小、等待时间等
+     * @return 统计信息
+     */
+    Map<String, Object> getStatistics();
+
+    /**
+     * 重置统计信息
+     */
+    void resetStatistics();
+}
@@ -0,0 +1,66 @@
+package cn.monitor4all.miaoshaservice.service;
+
+import java.util.Map;
+
+/**
+ * 节点本地库存租约服务
+ * 每个应用节点按日期从数据库租出一批库存，在进程内原子计数售卖，低水位时续租，
+ * 活动结束或节点下线时归还剩余库存；节点失效后由其他节点回收其未售出的租约
+ */
+public interface StockLeaseService {
+
+    /**
+     * 库存不足
+     */
+    int NO_LEASE = 0;
+
+    /**
+     * 从本地租约扣减一张票，本地租约耗尽或已被其他节点回收时同步续租一次
+     * @param date 日期
+     * @return 扣减成功返回所属的租约纪元（大于0），库存不足返回 NO_LEASE
+     */
+    int tryAcquire(String date);
+
+    /**
+     * 归还一张票到本地租约（扣减成功但后续下单失败时调用），租约已被回收时不归还
+     * @param date 日期
+     * @param epoch tryAcquire 返回的租约纪元
+     */
+    void release(String date, int epoch);
+
+    /**
+     * 生成本节点租约订单的订单编号，回收失效节点租约时按订单编号前缀统计已售数量
+     * @param userId 用户ID
+     * @return 订单编号
+     */
+    String generateLeaseOrderNo(Long userId);
+
+    /**
+     * 归还本节点全部日期的剩余租约
+     * @return 归还的票数
+     */
+    int returnAllLeases();
+
+    /**
+     * 刷新本节点心跳，并校验本节点租约是否已被其他节点回收
+     */
+    void heartbeat();
+
+    /**
+     * 回收心跳已过期节点的未售出租约
+     * @return 回收的票数
+     */
+    int reclaimDeadNodeLeases();
+
+    /**
+     * 获取各日期、各节点的租约概览
+     * @return 租约概览
+     */
+    Map<String, Object> getLeaseOverview();
+
+    /**
+     * 获取本节点ID
+     * @return 节点ID
+     */
+    String getNodeId();
+}
@@ -0,0 +1,80 @@
+package cn.monitor4all.miaoshaservice.service;
+
+import java.util.Map;
+
+/**
+ * 购票准入服务
+ * 基于Redis Lua脚本在一次往返内完成限购校验、库存扣减和下单意向记录，
+ * 数据库只由下游订单创建消费者访问
+ */
+public interface TicketAdmissionService {
+
+    /** 准入成功 */
+    int ADMITTED = 1;
+
+    /** 库存不足 */
+    int SOLD_OUT = 0;
+
+    /** 库存计数未初始化 */
+    int STOCK_NOT_READY = -1;
+
+    /** 用户当天已购买 */
+    int ALREADY_PURCHASED = -2;
+
+    /**
+     * 尝试准入购票，库存计数未初始化时会从数据库同步一次后重试
+     * @param userId 用户ID
+     * @param date 购票日期
+     * @param requestId 请求ID
+     * @return 准入结果，见本接口常量
+     */
+    int tryAdmit(Long userId, String date, String requestId);
+
+    /**
+     * 空跑准入：对按日期的临时键执行同一个准入脚本，不影响真实库存计数、用户集合和下单意向
+     * 临时库存计数未初始化时写入一个足够大的值，每次空跑使用不同的临时用户，保证都走到扣减分支，临时键短时间后过期
+     * @param userId 用户ID
+     * @param date 购票日期
+     * @param requestId 请求ID
+     * @return 准入结果，见本接口常量
+     */
+    int dryRunAdmit(Long userId, String date, String requestId);
+
+    /**
+     * 回滚准入（下单意向无法落库时调用）
+     * @param userId 用户ID
+     * @param date 购票日期
+     * @param releaseUser 是否移除用户限购标记
+     * @param restoreStock 是否归还库存计数
+     * @return 意向存在并已回滚返回true
+     */
+    boolean rollbackAdmission(Long userId, String date, boolean releaseUser, boolean restoreStock);
+
+    /**
+     * 订单取消后归还库存计数并移除用户限购标记
+     * 只有经过准入的用户才归还库存计数，其他购票方式的订单取消时不改变库存计数
+     * @param userId 用户ID
+     * @param date 购票日期
+     */
+    void releaseAfterCancel(Long userId, String date);
+
+    /**
+     * 使用数据库剩余库存初始化库存计数（已存在则不覆盖）
+     * @param date 购票日期
+     * @return 是否完成初始化
+     */
+    boolean syncStockFromDb(String date);
+
+    /**
+     * 获取库存计数
+     * @param date 购票日期
+     * @return 库存计数，未初始化返回null
+     */
+    Long getAdmissionStock(String date);
+
+    /**
+     * 根据准入消息落库：扣减数据库库存并创建订单
+     * @param message 订单创建消息
+     */
+    void createOrderFromAdmission(Map<String, Object> message);
+}
@@ -4,6 +4,7 @@ import cn.monitor4all.miaoshadao.model.PurchaseRecord;
 import cn.monitor4all.miaoshadao.model.Ticket;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * 票券缓存管理器接口
@@ -18,6 +19,23 @@ public interface TicketCacheManager {
      */
     Ticket getTicketWithFallback(String date);
     
+    /**
+     * 批量获取多个日期的票券信息
+     * 本地缓存未命中的日期一次管道HGETALL读取Redis，Redis也未命中的日期一次批量查询数据库并写回缓存
+     * @param dates 票券日期列表
+     * @return 日期到票券的映射（按传入顺序），不存在的日期不包含在内
+     */
+    Map<String, Ticket> getTicketsWithFallback(List<String> dates);
+    
+    /**
+     * 批量获取用户在多个日期的购买状态
+     * 依次使用购买位图、购买状态缓存（一次MGET）、数据库（一次批量查询），每一步只处理上一步未确定的日期
+     * @param userId 用户ID
+     * @param dates 票券日期列表
+     * @return 日期到是否已购买的映射（按传入顺序）
+     */
+    Map<String, Boolean> getUserPurchaseStatus(Long userId, List<String> dates);
+    
     /**
      * 保存票券信息到缓存
      * @param date 票券日期
@@ -26,11 +44,19 @@ public interface TicketCacheManager {
     void saveTicket(String date, Ticket ticket);
     
     /**
-     * 删除指定日期的票券缓存
+     * 删除指定日期的票券缓存（管理端修改票数、删除票券后调用）
      * @param date 票券日期
      */
     void deleteTicket(String date);
     
+    /**
+     * 购票或取消后原子增减票券缓存中的剩余票数，不删除缓存
+     * 在事务中调用时推迟到事务提交后执行，事务回滚时不修改缓存
+     * @param date 票券日期
+     * @param remainingDelta 剩余票数变化量，购票为负、取消为正
+     */
+    void applyStockDelta(String date, int remainingDelta);
+    
     /**
      * 获取票券列表
      * @return 票券列表
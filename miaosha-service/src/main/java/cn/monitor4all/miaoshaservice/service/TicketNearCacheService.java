@@ -0,0 +1,59 @@
+package cn.monitor4all.miaoshaservice.service;
+
+import cn.monitor4all.miaoshadao.model.Ticket;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 票券本地缓存服务（一级缓存）
+ * 在Redis之前缓存票券快照和最近票券列表，容量有限、按大小淘汰、短TTL；
+ * 票券缓存更新或删除时通过Redis发布订阅通知所有节点失效本地副本
+ */
+public interface TicketNearCacheService {
+
+    /**
+     * 获取本地缓存的票券快照
+     * @param date 日期
+     * @return 票券副本，未命中时为null
+     */
+    Ticket getTicket(String date);
+
+    /**
+     * 写入本地缓存，不通知其他节点
+     * @param date 日期
+     * @param ticket 票券
+     */
+    void putTicket(String date, Ticket ticket);
+
+    /**
+     * 获取本地缓存的最近票券列表
+     * @return 票券列表副本，未命中时为null
+     */
+    List<Ticket> getTicketList();
+
+    /**
+     * 写入本地缓存的最近票券列表
+     * @param tickets 票券列表
+     */
+    void putTicketList(List<Ticket> tickets);
+
+    /**
+     * 失效本节点的票券快照和票券列表，并通知其他节点失效
+     * @param date 日期
+     */
+    void invalidate(String date);
+
+    /**
+     * 只失效本节点的票券快照和票券列表，不通知其他节点，其他节点的副本在TTL后过期
+     * 用于购票、取消等高频的库存增减，避免每次增减都广播失效通知
+     * @param date 日期
+     */
+    void invalidateLocal(String date);
+
+    /**
+     * 获取本地缓存统计信息：命中率、淘汰数、失效通知数、返回数据的陈旧程度
+     * @return 统计信息
+     */
+    Map<String, Object> getStatistics();
+}
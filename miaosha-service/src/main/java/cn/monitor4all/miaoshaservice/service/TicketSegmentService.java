@@ -0,0 +1,89 @@
+package cn.monitor4all.miaoshaservice.service;
+
+import cn.monitor4all.miaoshadao.dao.TicketSegment;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 票券库存分段服务
+ * 热点日期的剩余库存拆分到N个分段行，购票按用户ID哈希选择分段、自身分段售罄时扫描其他分段，
+ * 悲观锁/乐观锁竞争由单行分散到N行，不依赖Redis
+ */
+public interface TicketSegmentService {
+
+    /**
+     * 启用分段：将ticket行的剩余库存拆分到N个分段，ticket行剩余库存置0
+     * @param date 日期
+     * @param segmentCount 分段数
+     * @return 拆分到分段的票数
+     */
+    int enableSegments(String date, int segmentCount);
+
+    /**
+     * 合并分段：将各分段的剩余/已售数量转回ticket行并删除分段
+     * @param date 日期
+     * @return 转回ticket行的剩余票数
+     */
+    int mergeSegments(String date);
+
+    /**
+     * 判断日期是否已启用分段
+     * @param date 日期
+     * @return true表示已启用
+     */
+    boolean isSegmented(String date);
+
+    /**
+     * 悲观锁扣减分段库存：锁定用户所属分段，售罄时依次锁定其他有库存的分段
+     * @param date 日期
+     * @param userId 用户ID
+     * @return 扣减成功的分段序号，-1表示全部分段售罄
+     */
+    int deductWithPessimisticLock(String date, Long userId);
+
+    /**
+     * 乐观锁扣减分段库存：版本冲突时不休眠重试，直接换下一个分段
+     * @param date 日期
+     * @param userId 用户ID
+     * @return 扣减成功的分段序号，-1表示全部分段售罄
+     */
+    int deductWithOptimisticLock(String date, Long userId);
+
+    /**
+     * 归还一张票到指定分段
+     * @param date 日期
+     * @param segmentNo 分段序号
+     */
+    void restore(String date, int segmentNo);
+
+    /**
+     * 取消订单时归还分段库存，优先归还到订单备注记录的分段
+     * @param date 日期
+     * @param userId 用户ID
+     * @param remark 订单备注
+     * @return true表示已归还到分段，false表示日期未启用分段
+     */
+    boolean restoreForCancel(String date, Long userId, String remark);
+
+    /**
+     * 生成分段购票订单备注，备注中记录分段序号
+     * @param segmentNo 分段序号
+     * @return 订单备注
+     */
+    String buildOrderRemark(int segmentNo);
+
+    /**
+     * 查询日期的全部分段
+     * @param date 日期
+     * @return 分段列表
+     */
+    List<TicketSegment> getSegments(String date);
+
+    /**
+     * 获取日期的分段概览
+     * @param date 日期
+     * @return 分段概览
+     */
+    Map<String, Object> getSegmentOverview(String date);
+}
@@ -37,6 +37,14 @@ public interface TicketService {
 
     ApiResponse<PurchaseRecord> purchaseTicketV1WithOptimisticLock(PurchaseRequest request) throws Exception;
 
+    /**
+     * 按指定库存扣减引擎购票，用于对比不同引擎
+     * @param request 购票请求
+     * @param engine 扣减引擎：optimistic-乐观锁读改写重试，conditional-条件扣减
+     * @return 购买记录
+     */
+    ApiResponse<PurchaseRecord> purchaseTicketV1WithEngine(PurchaseRequest request, String engine) throws Exception;
+
     void asyncPurchaseTicketWithOptimisticLock(PurchaseRequest request) throws Exception;
 
 
@@ -45,6 +53,50 @@ public interface TicketService {
 
     ApiResponse<Map<String, Object>> purchaseTicketV3(PurchaseRequest request) throws Exception;
 
+    /**
+     * Lua准入购票：一次Redis往返完成限购校验、库存扣减和下单意向记录，订单由消息队列异步落库
+     * @param request 购票请求
+     * @return 准入结果，包含请求ID
+     */
+    ApiResponse<Map<String, Object>> purchaseTicketV4WithRedisAdmission(PurchaseRequest request) throws Exception;
+
+    /**
+     * Lua准入购票空跑（开售前JIT预热）：执行参数校验、用户和票数校验、请求ID生成、准入脚本和消息编码，
+     * 不检查抢购时间窗口、不限流；准入脚本在临时键上执行，消息只序列化不发送
+     * @param request 购票请求
+     * @return 空跑结果，包含请求ID和消息字节数
+     */
+    ApiResponse<Map<String, Object>> dryRunPurchaseV4(PurchaseRequest request) throws Exception;
+
+    /**
+     * 组提交购票：同一日期的并发扣减合并为一条条件UPDATE，成功后同步创建订单
+     * @param request 购票请求
+     * @return 购买记录
+     */
+    ApiResponse<PurchaseRecord> purchaseTicketV5WithGroupCommit(PurchaseRequest request) throws Exception;
+
+    /**
+     * 本地库存租约购票：从本节点租到的库存中原子扣减，库存扣减不访问Redis和数据库，成功后同步创建订单
+     * @param request 购票请求
+     * @return 购买记录
+     */
+    ApiResponse<PurchaseRecord> purchaseTicketV6WithLocalLease(PurchaseRequest request) throws Exception;
+
+    /**
+     * 分段库存购票：按用户ID哈希选择库存分段扣减，自身分段售罄时扫描其他分段，成功后同步创建订单
+     * @param request 购票请求
+     * @param lockMode 分段锁模式：pessimistic-悲观锁，optimistic-乐观锁
+     * @return 购买记录
+     */
+    ApiResponse<PurchaseRecord> purchaseTicketV7WithSegments(PurchaseRequest request, String lockMode) throws Exception;
+
+    /**
+     * 流水线购票：请求发布到该日期的环形队列，由单个消费线程按批次扣减库存并落库订单
+     * @param request 购票请求
+     * @return 购买记录
+     */
+    ApiResponse<PurchaseRecord> purchaseTicketV8WithPipeline(PurchaseRequest request) throws Exception;
+
     /**
      * 检查用户是否已购买指定日期的票券
      * @param userId 用户ID
@@ -0,0 +1,63 @@
+package cn.monitor4all.miaoshaservice.service;
+
+import cn.monitor4all.miaoshadao.model.Ticket;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 票券库存写穿缓存服务
+ * 1. 票券以hash保存（total、remaining、sold、ver），购票和取消用HINCRBY原子增减，不再删除缓存
+ * 2. 每个日期有独立的版本号键，每次增减和失效都递增版本号（即使hash不存在）；
+ *    回源写入只在回源期间版本号没有变化时生效，回源期间发生的增减不会被旧数据覆盖
+ * 3. 定时对账：与数据库汇总库存比对，不一致时在同样的版本号保护下覆盖
+ */
+public interface TicketStockCacheService {
+
+    /**
+     * 获取票券，缓存未命中时回源数据库（同一日期同一时刻只有一个线程回源）
+     * @param date 票券日期
+     * @return 票券信息，数据库中不存在时为null
+     */
+    Ticket getOrLoad(String date);
+
+    /**
+     * 批量获取票券，一次管道HGETALL，未命中的日期一次批量查询数据库并写回
+     * @param dates 票券日期列表
+     * @return 日期到票券的映射（按传入顺序），不存在的日期不包含在内
+     */
+    Map<String, Ticket> getOrLoadAll(List<String> dates);
+
+    /**
+     * 原子增减剩余票数，已售票数反向增减
+     * @param date 票券日期
+     * @param remainingDelta 剩余票数变化量，购票为负、取消为正
+     * @return 变更后的剩余票数，缓存不存在时为null（下次读取时回源）
+     */
+    Long applyDelta(String date, int remainingDelta);
+
+    /**
+     * 覆盖写入票券（管理端修改票数后调用），递增版本号使进行中的回源写入失效
+     * @param ticket 票券信息
+     */
+    void put(Ticket ticket);
+
+    /**
+     * 删除票券缓存并递增版本号
+     * @param date 票券日期
+     */
+    void invalidate(String date);
+
+    /**
+     * 与数据库对账，只检查缓存中存在的日期
+     * @param dates 票券日期列表
+     * @return 修正的日期数
+     */
+    int reconcile(List<String> dates);
+
+    /**
+     * 获取统计信息：命中率、回源次数、回源写入被拒绝次数、增减次数、对账修正次数和最大偏差
+     * @return 统计信息
+     */
+    Map<String, Object> getStatistics();
+}
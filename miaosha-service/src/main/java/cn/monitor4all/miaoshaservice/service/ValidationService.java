@@ -33,6 +33,13 @@ public interface ValidationService {
      * @param userId 用户ID
      */
     void validateUserWithException(Long userId);
+
+    /**
+     * 按主键顺序预加载用户到本地用户缓存（开售前预热）
+     * @param limit 最多加载的用户数
+     * @return 实际加载的用户数
+     */
+    int preloadUsers(int limit);
     
     /**
      * 验证抢购时间是否有效
@@ -0,0 +1,116 @@
+package cn.monitor4all.miaoshaservice.service.impl;
+
+import cn.monitor4all.miaoshaservice.service.AdaptiveConcurrencyLimitService;
+import cn.monitor4all.miaoshaservice.utils.ratelimit.AdaptiveConcurrencyLimiter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 自适应并发限制服务实现类
+ * 购票方式数量固定（每个购票接口一个），限制器按需创建后常驻，算法见 AdaptiveConcurrencyLimiter
+ */
+@Service
+public class AdaptiveConcurrencyLimitServiceImpl implements AdaptiveConcurrencyLimitService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AdaptiveConcurrencyLimitServiceImpl.class);
+
+    // 是否启用自适应并发限制
+    @Value("${miaosha.concurrency-limit.enabled:true}")
+    private boolean enabled = true;
+
+    // 初始并发限制
+    @Value("${miaosha.concurrency-limit.initial-limit:20}")
+    private int initialLimit = 20;
+
+    // 最小并发限制
+    @Value("${miaosha.concurrency-limit.min-limit:4}")
+    private int minLimit = 4;
+
+    // 最大并发限制，不超过数据库/Redis连接池和Web线程池能同时处理的请求数
+    @Value("${miaosha.concurrency-limit.max-limit:500}")
+    private int maxLimit = 500;
+
+    // 可容忍的响应时间增长倍数
+    @Value("${miaosha.concurrency-limit.tolerance:1.5}")
+    private double tolerance = 1.5;
+
+    // 新限制的平滑系数
+    @Value("${miaosha.concurrency-limit.smoothing:0.2}")
+    private double smoothing = 0.2;
+
+    // 窗口内有请求失败时的收缩比例
+    @Value("${miaosha.concurrency-limit.backoff-ratio:0.9}")
+    private double backoffRatio = 0.9;
+
+    // 采样窗口长度（毫秒）
+    @Value("${miaosha.concurrency-limit.window-ms:100}")
+    private long windowMs = 100;
+
+    // 采样窗口最少样本数
+    @Value("${miaosha.concurrency-limit.min-window-samples:10}")
+    private int minWindowSamples = 10;
+
+    // 探测间隔（窗口数）：限制减半，重新测量无负载响应时间
+    @Value("${miaosha.concurrency-limit.probe-interval:300}")
+    private int probeInterval = 300;
+
+    // 购票方式 -> 并发限制器
+    private final Map<String, AdaptiveConcurrencyLimiter> limiters = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean tryAcquire(String mode) {
+        if (!enabled) {
+            return true;
+        }
+        return limiterOf(mode).tryAcquire();
+    }
+
+    @Override
+    public void onComplete(String mode, long startNanos, boolean dropped) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.nanoTime();
+        limiterOf(mode).onComplete(now - startNanos, dropped, now);
+    }
+
+    private AdaptiveConcurrencyLimiter limiterOf(String mode) {
+        AdaptiveConcurrencyLimiter limiter = limiters.get(mode);
+        if (limiter == null) {
+            limiter = limiters.computeIfAbsent(mode, m -> {
+                LOGGER.info("创建自适应并发限制器，购票方式: {}, 初始限制: {}, 范围: {}-{}", m, initialLimit, minLimit, maxLimit);
+                return new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit, tolerance, smoothing,
+                        backoffRatio, windowMs, minWindowSamples, probeInterval);
+            });
+        }
+        return limiter;
+    }
+
+    @Override
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        Map<String, Object> modes = new TreeMap<>();
+        for (Map.Entry<String, AdaptiveConcurrencyLimiter> entry : limiters.entrySet()) {
+            AdaptiveConcurrencyLimiter limiter = entry.getValue();
+            Map<String, Object> mode = new HashMap<>();
+            mode.put("limit", limiter.getLimit());
+            mode.put("inflight", limiter.getInflight());
+            mode.put("noLoadRttMs", String.format("%.2f", limiter.getNoLoadRttMs()));
+            mode.put("shortRttMs", String.format("%.2f", limiter.getShortRttMs()));
+            mode.put("completedCount", limiter.getCompletedCount());
+            mode.put("droppedCount", limiter.getDroppedCount());
+            mode.put("rejectedCount", limiter.getRejectedCount());
+            modes.put(entry.getKey(), mode);
+        }
+        stats.put("modes", modes);
+        return stats;
+    }
+}
@@ -1,38 +1,34 @@
 package cn.monitor4all.miaoshaservice.service.impl;
 
 import cn.monitor4all.miaoshaservice.service.AsyncCacheDeleteService;
+import cn.monitor4all.miaoshaservice.service.CacheInvalidationService;
 import com.alibaba.fastjson.JSON;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.amqp.core.AmqpTemplate;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.Resource;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Executor;
 import java.io.Serializable;
 
 /**
  * 异步缓存删除服务实现类
  * 支持线程池异步删除和队列异步删除两种方式
+ * 线程池方式交给缓存失效分发服务：合并重复的键，延迟删除由时间轮调度，到期后批量UNLINK；
+ * 分发服务积压已满时改走队列，删除不会在请求线程上执行
  */
 @Service
 public class AsyncCacheDeleteServiceImpl implements AsyncCacheDeleteService {
     
     private static final Logger LOGGER = LoggerFactory.getLogger(AsyncCacheDeleteServiceImpl.class);
     
-    @Resource
-    private StringRedisTemplate stringRedisTemplate;
-    
     @Resource
     private AmqpTemplate amqpTemplate;
     
-    @Resource(name = "cacheDeleteExecutor")
-    private Executor cacheDeleteExecutor;
+    @Resource
+    private CacheInvalidationService cacheInvalidationService;
     
     @Value("${spring.application.name:miaosha-service}")
     private String applicationName;
@@ -52,32 +48,28 @@ public class AsyncCacheDeleteServiceImpl implements AsyncCacheDeleteService {
     
     @Override
     public void deleteCacheAsync(String cacheKey, long delayMillis) {
+        if (submitToDispatcher(cacheKey, delayMillis)) {
+            return;
+        }
+        // 积压已满或提交异常时使用队列删除作为兜底
+        deleteCacheByQueue(cacheKey, delayMillis);
+    }
+
+    /**
+     * 提交到失效分发服务
+     * @return 是否已接收，积压已满或提交异常时返回false
+     */
+    private boolean submitToDispatcher(String cacheKey, long delayMillis) {
         try {
-            if (delayMillis > 0) {
-                // 延迟删除
-                CompletableFuture.runAsync(() -> {
-                    try {
-                        Thread.sleep(delayMillis);
-                        performCacheDelete(cacheKey, "线程池延迟删除");
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        LOGGER.warn("线程池延迟删除被中断，缓存键: {}", cacheKey);
-                    }
-                }, cacheDeleteExecutor);
-            } else {
-                // 立即删除
-                CompletableFuture.runAsync(() -> {
-                    performCacheDelete(cacheKey, "线程池立即删除");
-                }, cacheDeleteExecutor);
+            if (cacheInvalidationService.invalidate(cacheKey, delayMillis)) {
+                LOGGER.debug("异步删除缓存已提交到失效分发服务，缓存键: {}, 延迟: {}ms", cacheKey, delayMillis);
+                return true;
             }
-            
-            LOGGER.debug("线程池异步删除缓存任务已提交，缓存键: {}, 延迟: {}ms", cacheKey, delayMillis);
-            
+            LOGGER.warn("失效分发服务积压已满，改用队列删除，缓存键: {}, 延迟: {}ms", cacheKey, delayMillis);
         } catch (Exception e) {
-            LOGGER.error("提交线程池异步删除任务失败，缓存键: {}, 延迟: {}ms", cacheKey, delayMillis, e);
-            // 异常时使用队列删除作为兜底
-            deleteCacheByQueue(cacheKey, delayMillis);
+            LOGGER.error("提交异步删除任务失败，缓存键: {}, 延迟: {}ms", cacheKey, delayMillis, e);
         }
+        return false;
     }
     
     @Override
@@ -115,8 +107,10 @@ public class AsyncCacheDeleteServiceImpl implements AsyncCacheDeleteService {
             
         } catch (Exception e) {
             LOGGER.error("发送队列删除消息失败，缓存键: {}, 延迟: {}ms", cacheKey, delayMillis, e);
-            // 队列失败时，使用线程池作为兜底
-            deleteCacheAsync(cacheKey, delayMillis);
+            // 队列失败时，使用失效分发服务作为兜底（不再回到队列，避免两边都不可用时互相调用）
+            if (!cacheInvalidationService.invalidate(cacheKey, delayMillis)) {
+                LOGGER.error("失效分发服务积压已满，缓存删除被丢弃，缓存键: {}", cacheKey);
+            }
         }
     }
     
@@ -127,26 +121,15 @@ public class AsyncCacheDeleteServiceImpl implements AsyncCacheDeleteService {
     
     @Override
     public void deleteCacheDualAsync(String cacheKey, long delayMillis) {
-        try {
-            LOGGER.info("开始双重异步删除缓存，缓存键: {}, 延迟: {}ms", cacheKey, delayMillis);
-            
-            // 第一步：使用线程池异步删除
-            deleteCacheAsync(cacheKey, delayMillis);
-            
-            // 第二步：使用队列异步删除（作为双重保障）
-            deleteCacheByQueue(cacheKey, delayMillis);
-            
-            LOGGER.info("双重异步删除缓存任务已提交，缓存键: {}, 延迟: {}ms", cacheKey, delayMillis);
-            
-        } catch (Exception e) {
-            LOGGER.error("双重异步删除缓存失败，缓存键: {}, 延迟: {}ms", cacheKey, delayMillis, e);
-            // 异常时，尝试使用队列删除作为最后的兜底
-            try {
-                deleteCacheByQueue(cacheKey, delayMillis);
-            } catch (Exception ex) {
-                LOGGER.error("队列删除兜底也失败，缓存键: {}", cacheKey, ex);
-            }
-        }
+        LOGGER.info("开始双重异步删除缓存，缓存键: {}, 延迟: {}ms", cacheKey, delayMillis);
+
+        // 第一步：提交到失效分发服务，被拒绝时不单独走队列兜底，由第二步的队列消息覆盖
+        submitToDispatcher(cacheKey, delayMillis);
+
+        // 第二步：使用队列异步删除（作为双重保障），每次调用只发送一条队列消息
+        deleteCacheByQueue(cacheKey, delayMillis);
+
+        LOGGER.info("双重异步删除缓存任务已提交，缓存键: {}, 延迟: {}ms", cacheKey, delayMillis);
     }
     
     @Override
@@ -157,11 +140,13 @@ public class AsyncCacheDeleteServiceImpl implements AsyncCacheDeleteService {
         }
         
         try {
-            LOGGER.info("开始批量异步删除缓存，数量: {}", cacheKeys.size());
-            
-            for (String cacheKey : cacheKeys) {
-                // 对每个缓存键使用双重异步删除
-                deleteCacheDualAsync(cacheKey);
+            // 下一次刷新时合并为一条UNLINK，被拒绝的键走队列删除
+            List<String> rejected = cacheInvalidationService.invalidateAll(cacheKeys);
+            if (!rejected.isEmpty()) {
+                LOGGER.warn("失效分发服务积压已满，{}个缓存键改用队列删除", rejected.size());
+                for (String cacheKey : rejected) {
+                    deleteCacheByQueue(cacheKey);
+                }
             }
             
             LOGGER.info("批量异步删除缓存任务已提交，数量: {}", cacheKeys.size());
@@ -179,36 +164,6 @@ public class AsyncCacheDeleteServiceImpl implements AsyncCacheDeleteService {
         }
     }
     
-    /**
-     * 执行实际的缓存删除操作
-     * @param cacheKey 缓存键
-     * @param deleteMethod 删除方式描述
-     */
-    private void performCacheDelete(String cacheKey, String deleteMethod) {
-        try {
-            long startTime = System.currentTimeMillis();
-            
-            Boolean deleted = stringRedisTemplate.delete(cacheKey);
-            
-            long costTime = System.currentTimeMillis() - startTime;
-            
-            if (Boolean.TRUE.equals(deleted)) {
-                LOGGER.info("{}成功，缓存键: {}, 耗时: {}ms", deleteMethod, cacheKey, costTime);
-            } else {
-                LOGGER.debug("{}完成，缓存键: {} (可能不存在)，耗时: {}ms", deleteMethod, cacheKey, costTime);
-            }
-            
-        } catch (Exception e) {
-            LOGGER.error("{}失败，缓存键: {}", deleteMethod, cacheKey, e);
-            // 删除失败时，尝试使用队列删除作为兜底
-            try {
-                deleteCacheByQueue(cacheKey);
-            } catch (Exception ex) {
-                LOGGER.error("队列删除兜底也失败，缓存键: {}", cacheKey, ex);
-            }
-        }
-    }
-    
     /**
      * 缓存删除消息
      */
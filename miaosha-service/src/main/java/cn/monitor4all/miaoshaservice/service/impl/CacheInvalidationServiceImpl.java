@@ -0,0 +1,358 @@
+package cn.monitor4all.miaoshaservice.service.impl;
+
+import cn.monitor4all.miaoshaservice.service.CacheInvalidationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 缓存失效分发服务实现类
+ * 1. 立即删除的键放入待删除集合，集合本身去重，刷新前重复提交的键只删除一次
+ * 2. 延迟删除的到期时间向上取整到合并窗口，同一窗口内同一个键只调度一次；
+ *    调度请求先进入无锁队列，由唯一的时间轮线程放入槽位（槽位 = 到期tick % 槽位数），
+ *    每个tick只检查当前槽位，到期的键转入待删除集合，超过一圈的键留在槽位等待下一圈
+ * 3. 时间轮线程每隔 flush-interval-ms 取出待删除集合，每 batch-size 个键一条UNLINK；删除失败的键放回集合下次重试
+ * 4. 积压（待删除 + 时间轮中）达到 max-outstanding 时拒绝提交，由调用方走消息队列兜底
+ */
+@Service
+public class CacheInvalidationServiceImpl implements CacheInvalidationService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CacheInvalidationServiceImpl.class);
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    // 时间轮tick间隔（毫秒）
+    @Value("${miaosha.cache-invalidation.tick-ms:10}")
+    private long tickMs = 10;
+
+    // 时间轮槽位数，一圈覆盖 tick-ms * wheel-size 毫秒
+    @Value("${miaosha.cache-invalidation.wheel-size:512}")
+    private int wheelSize = 512;
+
+    // 待删除集合的刷新间隔（毫秒），也是立即删除的去重窗口
+    @Value("${miaosha.cache-invalidation.flush-interval-ms:20}")
+    private long flushIntervalMs = 20;
+
+    // 延迟删除的合并窗口（毫秒），到期时间向上取整到该窗口
+    @Value("${miaosha.cache-invalidation.coalesce-window-ms:50}")
+    private long coalesceWindowMs = 50;
+
+    // 每条UNLINK最多删除的键数
+    @Value("${miaosha.cache-invalidation.batch-size:200}")
+    private int batchSize = 200;
+
+    // 最大积压键数，超过后拒绝提交
+    @Value("${miaosha.cache-invalidation.max-outstanding:100000}")
+    private int maxOutstanding = 100000;
+
+    private ScheduledThreadPoolExecutor wheelExecutor;
+
+    // 待删除集合
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    // 新提交的延迟删除，由时间轮线程放入槽位
+    private final ConcurrentLinkedQueue<TimerEntry> incoming = new ConcurrentLinkedQueue<>();
+
+    // 键 -> 已调度的最晚到期时间，用于延迟删除去重
+    private final Map<String, Long> scheduledDeadlines = new ConcurrentHashMap<>();
+
+    // 时间轮槽位，只由时间轮线程访问
+    private ArrayDeque<TimerEntry>[] wheel;
+
+    private long lastTick;
+
+    private long lastFlushAt;
+
+    // 积压键数（待删除 + 时间轮中）
+    private final AtomicInteger outstanding = new AtomicInteger(0);
+
+    // 统计信息
+    private final AtomicLong submittedCount = new AtomicLong(0);
+    private final AtomicLong coalescedCount = new AtomicLong(0);
+    private final AtomicLong rejectedCount = new AtomicLong(0);
+    private final AtomicLong scheduledCount = new AtomicLong(0);
+    private final AtomicLong firedCount = new AtomicLong(0);
+    private final AtomicLong batchCount = new AtomicLong(0);
+    private final AtomicLong flushedKeyCount = new AtomicLong(0);
+    private final AtomicLong unlinkedKeyCount = new AtomicLong(0);
+    private final AtomicLong flushFailureCount = new AtomicLong(0);
+    private final AtomicLong maxOutstandingSeen = new AtomicLong(0);
+    private final AtomicLong maxFlushMicros = new AtomicLong(0);
+    private final AtomicLong maxTickLagMs = new AtomicLong(0);
+    private volatile int wheelEntryCount;
+
+    @PostConstruct
+    @SuppressWarnings("unchecked")
+    public void init() {
+        wheel = new ArrayDeque[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            wheel[i] = new ArrayDeque<>();
+        }
+        long now = System.currentTimeMillis();
+        lastTick = now / tickMs;
+        lastFlushAt = now;
+
+        wheelExecutor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "cache-invalidation-wheel");
+            thread.setDaemon(true);
+            return thread;
+        });
+        wheelExecutor.scheduleWithFixedDelay(this::tickSafely, tickMs, tickMs, TimeUnit.MILLISECONDS);
+        LOGGER.info("缓存失效分发服务初始化完成，tick: {}ms, 槽位数: {}, 刷新间隔: {}ms, 批大小: {}, 最大积压: {}",
+                tickMs, wheelSize, flushIntervalMs, batchSize, maxOutstanding);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (wheelExecutor != null) {
+            wheelExecutor.shutdown();
+            try {
+                wheelExecutor.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // 停止前尽量删除已到期的键，时间轮中未到期的键由消息队列的延迟删除保障
+        try {
+            flush();
+        } catch (Exception e) {
+            LOGGER.warn("停止时刷新待删除缓存失败，数量: {}, 错误: {}", pending.size(), e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean invalidate(String key) {
+        if (key == null) {
+            return false;
+        }
+        submittedCount.incrementAndGet();
+        if (pending.contains(key)) {
+            coalescedCount.incrementAndGet();
+            return true;
+        }
+        if (!reserve()) {
+            return false;
+        }
+        if (!pending.add(key)) {
+            outstanding.decrementAndGet();
+            coalescedCount.incrementAndGet();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean invalidate(String key, long delayMillis) {
+        if (delayMillis <= 0) {
+            return invalidate(key);
+        }
+        if (key == null) {
+            return false;
+        }
+        submittedCount.incrementAndGet();
+        long requested = System.currentTimeMillis() + delayMillis;
+        long deadline = (requested + coalesceWindowMs - 1) / coalesceWindowMs * coalesceWindowMs;
+        // 已调度的删除不早于本次要求的时间，本次无需重复调度
+        Long existing = scheduledDeadlines.get(key);
+        if (existing != null && existing >= deadline) {
+            coalescedCount.incrementAndGet();
+            return true;
+        }
+        if (!reserve()) {
+            return false;
+        }
+        scheduledDeadlines.merge(key, deadline, Math::max);
+        incoming.add(new TimerEntry(key, deadline));
+        scheduledCount.incrementAndGet();
+        return true;
+    }
+
+    @Override
+    public List<String> invalidateAll(Collection<String> keys) {
+        List<String> rejected = new ArrayList<>();
+        for (String key : keys) {
+            if (!invalidate(key)) {
+                rejected.add(key);
+            }
+        }
+        return rejected;
+    }
+
+    /**
+     * 占用一个积压名额
+     */
+    private boolean reserve() {
+        int current = outstanding.incrementAndGet();
+        if (current > maxOutstanding) {
+            outstanding.decrementAndGet();
+            rejectedCount.incrementAndGet();
+            LOGGER.warn("缓存失效积压已达上限: {}，拒绝提交", maxOutstanding);
+            return false;
+        }
+        maxOutstandingSeen.accumulateAndGet(current, Math::max);
+        return true;
+    }
+
+    private void tickSafely() {
+        try {
+            tick();
+        } catch (Exception e) {
+            LOGGER.error("缓存失效时间轮处理异常", e);
+        }
+    }
+
+    private void tick() {
+        long now = System.currentTimeMillis();
+        long currentTick = now / tickMs;
+        maxTickLagMs.accumulateAndGet((currentTick - lastTick - 1) * tickMs, Math::max);
+
+        // 新提交的延迟删除放入槽位，已到期的直接转入待删除集合
+        TimerEntry entry;
+        int entries = wheelEntryCount;
+        while ((entry = incoming.poll()) != null) {
+            if (entry.deadline <= now) {
+                fire(entry);
+            } else {
+                wheel[(int) ((entry.deadline / tickMs) % wheelSize)].add(entry);
+                entries++;
+            }
+        }
+
+        // 依次处理经过的槽位，落后超过一圈时每个槽位只处理一次
+        long ticks = Math.min(currentTick - lastTick, wheelSize);
+        for (long t = currentTick - ticks + 1; t <= currentTick; t++) {
+            Iterator<TimerEntry> iterator = wheel[(int) (t % wheelSize)].iterator();
+            while (iterator.hasNext()) {
+                TimerEntry slotEntry = iterator.next();
+                if (slotEntry.deadline <= now) {
+                    iterator.remove();
+                    entries--;
+                    fire(slotEntry);
+                }
+            }
+        }
+        lastTick = currentTick;
+        wheelEntryCount = entries;
+
+        if (now - lastFlushAt >= flushIntervalMs) {
+            lastFlushAt = now;
+            flush();
+        }
+    }
+
+    /**
+     * 到期的延迟删除转入待删除集合，积压名额沿用调度时占用的名额
+     */
+    private void fire(TimerEntry entry) {
+        firedCount.incrementAndGet();
+        scheduledDeadlines.remove(entry.key, entry.deadline);
+        if (!pending.add(entry.key)) {
+            outstanding.decrementAndGet();
+            coalescedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * 取出待删除集合，按批次UNLINK
+     */
+    private void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<String> batch = new ArrayList<>(batchSize);
+        Iterator<String> iterator = pending.iterator();
+        while (iterator.hasNext()) {
+            batch.add(iterator.next());
+            iterator.remove();
+            if (batch.size() >= batchSize) {
+                unlinkBatch(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            unlinkBatch(batch);
+        }
+    }
+
+    private void unlinkBatch(List<String> keys) {
+        long start = System.nanoTime();
+        try {
+            Long unlinked = stringRedisTemplate.unlink(keys);
+            outstanding.addAndGet(-keys.size());
+            batchCount.incrementAndGet();
+            flushedKeyCount.addAndGet(keys.size());
+            unlinkedKeyCount.addAndGet(unlinked == null ? 0 : unlinked);
+            LOGGER.debug("批量删除缓存完成，键数: {}, 实际删除: {}", keys.size(), unlinked);
+        } catch (Exception e) {
+            flushFailureCount.incrementAndGet();
+            // 放回待删除集合，下次刷新重试；已被重新提交的键不重复占用名额
+            int requeued = 0;
+            for (String key : keys) {
+                if (pending.add(key)) {
+                    requeued++;
+                }
+            }
+            outstanding.addAndGet(requeued - keys.size());
+            LOGGER.warn("批量删除缓存失败，键数: {}, 下次刷新重试, 错误: {}", keys.size(), e.getMessage());
+        } finally {
+            maxFlushMicros.accumulateAndGet((System.nanoTime() - start) / 1000, Math::max);
+        }
+    }
+
+    @Override
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("outstanding", outstanding.get());
+        stats.put("pendingKeys", pending.size());
+        stats.put("wheelEntries", wheelEntryCount + incoming.size());
+        stats.put("maxOutstanding", maxOutstanding);
+        stats.put("maxOutstandingSeen", maxOutstandingSeen.get());
+        stats.put("submittedCount", submittedCount.get());
+        stats.put("coalescedCount", coalescedCount.get());
+        stats.put("rejectedCount", rejectedCount.get());
+        stats.put("scheduledCount", scheduledCount.get());
+        stats.put("firedCount", firedCount.get());
+        stats.put("batchCount", batchCount.get());
+        stats.put("flushedKeyCount", flushedKeyCount.get());
+        stats.put("unlinkedKeyCount", unlinkedKeyCount.get());
+        stats.put("flushFailureCount", flushFailureCount.get());
+        long batches = batchCount.get();
+        stats.put("avgBatchSize", batches == 0 ? 0.0 : (double) flushedKeyCount.get() / batches);
+        stats.put("maxFlushMicros", maxFlushMicros.get());
+        stats.put("maxTickLagMs", maxTickLagMs.get());
+        return stats;
+    }
+
+    /**
+     * 时间轮中的延迟删除
+     */
+    private static class TimerEntry {
+        private final String key;
+        private final long deadline;
+
+        private TimerEntry(String key, long deadline) {
+            this.key = key;
+            this.deadline = deadline;
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package cn.monitor4all.miaoshaservice.service.impl;
+
+import cn.monitor4all.miaoshaservice.service.CacheLoadingService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 缓存加载服务实现类
+ * 1. 读取时通过Lua脚本一次返回值和剩余有效期，剩余有效期低于 refresh-ahead-ratio 时提交后台刷新，本次直接返回当前值
+ * 2. 未命中时同一个键只有一个加载线程（inFlight），其余线程等待同一个Future
+ * 3. 加载线程先抢占Redis租约（键:loading），抢不到说明其他节点正在加载，轮询等待其写入缓存；
+ *    等待超时后本节点自行加载，避免持有租约的节点宕机导致请求一直失败
+ * 4. Redis读取或租约操作失败时直接回源，缓存不可用不影响查询
+ */
+@Service
+public class CacheLoadingServiceImpl implements CacheLoadingService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CacheLoadingServiceImpl.class);
+
+    private static final String LEASE_SUFFIX = ":loading";
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    // 有效期随机延长比例，实际有效期在 [ttl, ttl * (1 + ratio)] 之间
+    @Value("${miaosha.cache-loader.ttl-jitter-ratio:0.1}")
+    private double ttlJitterRatio = 0.1;
+
+    // 剩余有效期低于基础有效期的该比例时后台提前刷新，0表示不提前刷新
+    @Value("${miaosha.cache-loader.refresh-ahead-ratio:0.1}")
+    private double refreshAheadRatio = 0.1;
+
+    // 是否启用跨节点加载租约
+    @Value("${miaosha.cache-loader.lease-enabled:true}")
+    private boolean leaseEnabled = true;
+
+    // 加载租约有效期（毫秒），应大于一次回源耗时
+    @Value("${miaosha.cache-loader.lease-ms:3000}")
+    private long leaseMs = 3000;
+
+    // 未抢到租约时等待其他节点写入缓存的最长时间（毫秒）
+    @Value("${miaosha.cache-loader.lease-wait-ms:500}")
+    private long leaseWaitMs = 500;
+
+    // 等待其他节点写入缓存的轮询间隔（毫秒）
+    @Value("${miaosha.cache-loader.lease-poll-ms:20}")
+    private long leasePollMs = 20;
+
+    // 后台刷新线程数
+    @Value("${miaosha.cache-loader.refresh-threads:2}")
+    private int refreshThreads = 2;
+
+    private final String nodeId = UUID.randomUUID().toString().replace("-", "").substring(0, 8);
+
+    private final AtomicLong leaseSequence = new AtomicLong(0);
+
+    // 正在加载的键，同一个键只有一个加载Future
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    // 已提交后台刷新的键，避免重复提交
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    private DefaultRedisScript<List> getWithTtlScript;
+
+    private DefaultRedisScript<Long> leaseReleaseScript;
+
+    private ThreadPoolExecutor refreshExecutor;
+
+    // 统计信息
+    private final AtomicLong hitCount = new AtomicLong(0);
+    private final AtomicLong missCount = new AtomicLong(0);
+    private final AtomicLong loadCount = new AtomicLong(0);
+    private final AtomicLong coalescedCount = new AtomicLong(0);
+    private final AtomicLong leaseContendedCount = new AtomicLong(0);
+    private final AtomicLong leaseWaitHitCount = new AtomicLong(0);
+    private final AtomicLong leaseWaitTimeoutCount = new AtomicLong(0);
+    private final AtomicLong refreshCount = new AtomicLong(0);
+    private final AtomicLong refreshRejectedCount = new AtomicLong(0);
+    private final AtomicLong redisErrorCount = new AtomicLong(0);
+
+    @PostConstruct
+    public void init() {
+        getWithTtlScript = new DefaultRedisScript<>();
+        getWithTtlScript.setScriptSource(new ResourceScriptSource(new ClassPathResource("scripts/cache_get_with_ttl.lua")));
+        getWithTtlScript.setResultType(List.class);
+
+        leaseReleaseScript = new DefaultRedisScript<>();
+        leaseReleaseScript.setScriptSource(new ResourceScriptSource(new ClassPathResource("scripts/cache_lease_release.lua")));
+        leaseReleaseScript.setResultType(Long.class);
+
+        refreshExecutor = new ThreadPoolExecutor(refreshThreads, refreshThreads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(256), r -> {
+                    Thread thread = new Thread(r, "cache-refresh");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        LOGGER.info("缓存加载服务初始化完成，有效期随机比例: {}, 提前刷新比例: {}, 加载租约: {}", ttlJitterRatio, refreshAheadRatio, leaseEnabled);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdownNow();
+        }
+    }
+
+    @Override
+    public String getOrLoad(String key, long ttlSeconds, Supplier<String> loader) {
+        List<?> cached;
+        try {
+            cached = stringRedisTemplate.execute(getWithTtlScript, Collections.singletonList(key));
+        } catch (Exception e) {
+            redisErrorCount.incrementAndGet();
+            LOGGER.warn("读取缓存失败，直接回源，key: {}, 错误: {}", key, e.getMessage());
+            return loadSingleFlight(key, ttlSeconds, loader);
+        }
+
+        if (cached != null && !cached.isEmpty()) {
+            hitCount.incrementAndGet();
+            Long remainingMs = cached.size() > 1 ? (Long) cached.get(1) : null;
+            if (shouldRefresh(remainingMs, ttlSeconds)) {
+                scheduleRefresh(key, ttlSeconds, loader);
+            }
+            return (String) cached.get(0);
+        }
+
+        missCount.incrementAndGet();
+        return loadSingleFlight(key, ttlSeconds, loader);
+    }
+
+    @Override
+    public void set(String key, String value, long ttlSeconds) {
+        stringRedisTemplate.opsForValue().set(key, value, jitteredTtlSeconds(ttlSeconds), TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void setAll(Map<String, String> values, long ttlSeconds) {
+        if (values.isEmpty()) {
+            return;
+        }
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Map.Entry<String, String> entry : values.entrySet()) {
+                connection.setEx(entry.getKey().getBytes(StandardCharsets.UTF_8), jitteredTtlSeconds(ttlSeconds),
+                        entry.getValue().getBytes(StandardCharsets.UTF_8));
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 剩余有效期低于阈值时需要提前刷新；未设置有效期（-1）时不刷新
+     */
+    private boolean shouldRefresh(Long remainingMs, long ttlSeconds) {
+        if (refreshAheadRatio <= 0 || remainingMs == null || remainingMs < 0) {
+            return false;
+        }
+        return remainingMs < ttlSeconds * 1000L * refreshAheadRatio;
+    }
+
+    private void scheduleRefresh(String key, long ttlSeconds, Supplier<String> loader) {
+        if (inFlight.containsKey(key) || !refreshing.add(key)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    loadWithLease(key, ttlSeconds, loader, true);
+                    refreshCount.incrementAndGet();
+                } catch (Exception e) {
+                    LOGGER.warn("后台刷新缓存失败，key: {}, 错误: {}", key, e.getMessage());
+                } finally {
+                    refreshing.remove(key);
+                }
+            });
+        } catch (Exception e) {
+            // 刷新队列已满，当前值仍在有效期内，下次读取时再提交
+            refreshing.remove(key);
+            refreshRejectedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * 同一个键在本JVM内只有一个线程执行加载，其余线程等待同一个结果
+     */
+    private String loadSingleFlight(String key, long ttlSeconds, Supplier<String> loader) {
+        CompletableFuture<String> created = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            coalescedCount.incrementAndGet();
+            return awaitLoad(key, existing);
+        }
+
+        try {
+            String value = loadWithLease(key, ttlSeconds, loader, false);
+            created.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, created);
+        }
+    }
+
+    private String awaitLoad(String key, CompletableFuture<String> future) {
+        try {
+            return future.get(leaseMs + leaseWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待缓存加载被中断，key: " + key, e);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("等待缓存加载超时，key: " + key, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("缓存加载失败，key: " + key, cause);
+        }
+    }
+
+    /**
+     * 抢占加载租约后回源；后台刷新抢不到租约时直接放弃，其他节点正在刷新
+     */
+    private String loadWithLease(String key, long ttlSeconds, Supplier<String> loader, boolean background) {
+        if (!leaseEnabled) {
+            return loadAndStore(key, ttlSeconds, loader);
+        }
+
+        String leaseKey = key + LEASE_SUFFIX;
+        String token = nodeId + ":" + leaseSequence.incrementAndGet();
+        Boolean acquired;
+        try {
+            acquired = stringRedisTemplate.opsForValue().setIfAbsent(leaseKey, token, leaseMs, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            redisErrorCount.incrementAndGet();
+            return loadAndStore(key, ttlSeconds, loader);
+        }
+
+        if (Boolean.TRUE.equals(acquired)) {
+            try {
+                return loadAndStore(key, ttlSeconds, loader);
+            } finally {
+                releaseLease(leaseKey, token);
+            }
+        }
+
+        leaseContendedCount.incrementAndGet();
+        if (background) {
+            return null;
+        }
+        String value = awaitOtherNode(key);
+        if (value != null) {
+            leaseWaitHitCount.incrementAndGet();
+            return value;
+        }
+        leaseWaitTimeoutCount.incrementAndGet();
+        return loadAndStore(key, ttlSeconds, loader);
+    }
+
+    /**
+     * 轮询等待持有租约的节点写入缓存
+     */
+    private String awaitOtherNode(String key) {
+        long deadline = System.currentTimeMillis() + leaseWaitMs;
+        try {
+            while (System.currentTimeMillis() < deadline) {
+                Thread.sleep(leasePollMs);
+                String value = stringRedisTemplate.opsForValue().get(key);
+                if (value != null) {
+                    return value;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            redisErrorCount.incrementAndGet();
+        }
+        return null;
+    }
+
+    private String loadAndStore(String key, long ttlSeconds, Supplier<String> loader) {
+        loadCount.incrementAndGet();
+        String value = loader.get();
+        if (value != null) {
+            try {
+                set(key, value, ttlSeconds);
+            } catch (Exception e) {
+                redisErrorCount.incrementAndGet();
+                LOGGER.warn("回源结果写入缓存失败，key: {}, 错误: {}", key, e.getMessage());
+            }
+        }
+        return value;
+    }
+
+    private void releaseLease(String leaseKey, String token) {
+        try {
+            stringRedisTemplate.execute(leaseReleaseScript, Collections.singletonList(leaseKey), token);
+        } catch (Exception e) {
+            // 租约到期后自动释放
+            redisErrorCount.incrementAndGet();
+        }
+    }
+
+    private long jitteredTtlSeconds(long ttlSeconds) {
+        long maxJitter = (long) (ttlSeconds * ttlJitterRatio);
+        return maxJitter > 0 ? ttlSeconds + ThreadLocalRandom.current().nextLong(maxJitter + 1) : ttlSeconds;
+    }
+
+    @Override
+    public Map<String, Object> getStatistics() {
+        long hits = hitCount.get();
+        long requests = hits + missCount.get();
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("hitCount", hits);
+        stats.put("missCount", missCount.get());
+        stats.put("hitRatio", requests > 0 ? String.format("%.4f", (double) hits / requests) : "0.0000");
+        stats.put("loadCount", loadCount.get());
+        stats.put("coalescedCount", coalescedCount.get());
+        stats.put("leaseContendedCount", leaseContendedCount.get());
+        stats.put("leaseWaitHitCount", leaseWaitHitCount.get());
+        stats.put("leaseWaitTimeoutCount", leaseWaitTimeoutCount.get());
+        stats.put("refreshCount", refreshCount.get());
+        stats.put("refreshRejectedCount", refreshRejectedCount.get());
+        stats.put("redisErrorCount", redisErrorCount.get());
+        stats.put("inFlight", inFlight.size());
+        return stats;
+    }
+}
@@ -18,14 +18,15 @@ import java.util.concurrent.TimeUnit;
 /**
  * 分布式限流服务实现类
  * 基于Redis+Lua脚本实现分布式环境下的接口限流
+ * 滑动窗口使用两个固定窗口计数器按重叠比例加权（rate_limit.lua），每个限流键一个哈希，内存与放行速率无关
  */
 @Service
 public class DistributedRateLimitServiceImpl implements DistributedRateLimitService {
     
     private static final Logger LOGGER = LoggerFactory.getLogger(DistributedRateLimitServiceImpl.class);
     
-    // 限流键前缀
-    private static final String RATE_LIMIT_PREFIX = "rate_limit:";
+    // 限流键前缀（滑动窗口计数器哈希，与原ZSET请求日志的 rate_limit: 键区分，旧键在窗口过后自然过期）
+    private static final String RATE_LIMIT_PREFIX = "rate_limit:sw:";
     
     // 令牌桶键前缀
     private static final String TOKEN_BUCKET_PREFIX = "token_bucket:";
@@ -42,7 +43,7 @@ public class DistributedRateLimitServiceImpl implements DistributedRateLimitServ
     @PostConstruct
     public void init() {
         try {
-            // 加载滑动时间窗口限流脚本
+            // 加载滑动窗口计数器限流脚本
             ClassPathResource rateLimitResource = new ClassPathResource("scripts/rate_limit.lua");
             rateLimitScript = new DefaultRedisScript<>();
             ((DefaultRedisScript<List>) rateLimitScript).setLocation(rateLimitResource);
@@ -69,27 +70,25 @@ public class DistributedRateLimitServiceImpl implements DistributedRateLimitServ
     public boolean tryAcquire(String key, int limit, int window, long timeout) {
         try {
             String fullKey = RATE_LIMIT_PREFIX + key;
-            long now = System.currentTimeMillis() / 1000;
             
-            // 执行Lua脚本
+            // 执行Lua脚本，时间取自Redis TIME
             List<Object> result = stringRedisTemplate.execute(
                 rateLimitScript,
                 Arrays.asList(fullKey),
                 String.valueOf(limit),
-                String.valueOf(window),
-                String.valueOf(now)
+                String.valueOf(window)
             );
             
             if (result != null && result.size() >= 3) {
                 int success = ((Number) result.get(0)).intValue();
                 int currentCount = ((Number) result.get(1)).intValue();
-                long resetTime = ((Number) result.get(2)).longValue();
+                long retryAfterMs = ((Number) result.get(2)).longValue();
                 
                 if (success == 1) {
-                    LOGGER.debug("限流通过，键: {}, 当前计数: {}, 重置时间: {}", key, currentCount, resetTime);
+                    LOGGER.debug("限流通过，键: {}, 当前计数: {}", key, currentCount);
                     return true;
                 } else {
-                    LOGGER.debug("限流拒绝，键: {}, 当前计数: {}, 重置时间: {}", key, currentCount, resetTime);
+                    LOGGER.debug("限流拒绝，键: {}, 当前计数: {}, 需等待: {}ms", key, currentCount, retryAfterMs);
                     return false;
                 }
             }
@@ -107,9 +106,8 @@ public class DistributedRateLimitServiceImpl implements DistributedRateLimitServ
     @Override
     public int getCurrentTokens(String key) {
         try {
-            String fullKey = RATE_LIMIT_PREFIX + key;
-            Long count = stringRedisTemplate.opsForZSet().zCard(fullKey);
-            return count != null ? count.intValue() : 0;
+            WindowState state = readWindowState(key);
+            return state != null ? (int) Math.floor(state.estimate) : 0;
         } catch (Exception e) {
             LOGGER.error("获取当前令牌数失败，键: {}", key, e);
             return 0;
@@ -137,19 +135,15 @@ public class DistributedRateLimitServiceImpl implements DistributedRateLimitServ
     @Override
     public RateLimitInfo getRateLimitInfo(String key) {
         try {
-            String fullKey = RATE_LIMIT_PREFIX + key;
-            Long count = stringRedisTemplate.opsForZSet().zCard(fullKey);
-            Long ttl = stringRedisTemplate.getExpire(fullKey, TimeUnit.SECONDS);
-            
-            int currentCount = count != null ? count.intValue() : 0;
-            long resetTime = ttl != null ? System.currentTimeMillis() / 1000 + ttl : 0;
-            
-            // 这里需要根据实际业务逻辑确定limit和window
-            // 暂时使用默认值，实际使用时应该从配置或参数中获取
-            int defaultLimit = 10;
-            int defaultWindow = 60;
+            WindowState state = readWindowState(key);
+            if (state == null) {
+                return new RateLimitInfo(key, 0, 0, 0, 0);
+            }
             
-            return new RateLimitInfo(key, defaultLimit - currentCount, resetTime, defaultLimit, defaultWindow);
+            int remaining = Math.max(0, (int) Math.floor(state.limit - state.estimate));
+            // 当前固定窗口结束时间
+            long resetTime = (state.index + 1) * state.sizeMs / 1000;
+            return new RateLimitInfo(key, remaining, resetTime, state.limit, (int) (state.sizeMs / 1000));
             
         } catch (Exception e) {
             LOGGER.error("获取限流信息失败，键: {}", key, e);
@@ -157,6 +151,49 @@ public class DistributedRateLimitServiceImpl implements DistributedRateLimitServ
         }
     }
     
+    /**
+     * 读取滑动窗口计数器，按本机时间估算当前滑动窗口内的请求数
+     * @return 键不存在时返回null
+     */
+    private WindowState readWindowState(String key) {
+        List<Object> fields = stringRedisTemplate.opsForHash().multiGet(RATE_LIMIT_PREFIX + key,
+            Arrays.asList("w", "c", "p", "l", "s"));
+        if (fields == null || fields.size() < 5 || fields.get(0) == null || fields.get(4) == null) {
+            return null;
+        }
+        long stored = Long.parseLong(fields.get(0).toString());
+        long current = Long.parseLong(fields.get(1).toString());
+        long previous = Long.parseLong(fields.get(2).toString());
+        int limit = Integer.parseInt(fields.get(3).toString());
+        long sizeMs = Long.parseLong(fields.get(4).toString());
+        
+        long now = System.currentTimeMillis();
+        long index = now / sizeMs;
+        double elapsed = (double) (now - index * sizeMs) / sizeMs;
+        if (stored != index) {
+            previous = stored == index - 1 ? current : 0;
+            current = 0;
+        }
+        return new WindowState(index, sizeMs, limit, previous * (1 - elapsed) + current);
+    }
+    
+    /**
+     * 滑动窗口计数器状态
+     */
+    private static class WindowState {
+        private final long index;
+        private final long sizeMs;
+        private final int limit;
+        private final double estimate;
+        
+        private WindowState(long index, long sizeMs, int limit, double estimate) {
+            this.index = index;
+            this.sizeMs = sizeMs;
+            this.limit = limit;
+            this.estimate = estimate;
+        }
+    }
+    
     /**
      * 使用令牌桶算法进行限流
      * @param key 限流键
@@ -3,6 +3,7 @@ package cn.monitor4all.miaoshaservice.service.impl;
 import cn.monitor4all.miaoshaservice.service.DistributedTokenBucketService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
@@ -18,6 +19,8 @@ import java.util.concurrent.TimeUnit;
 /**
  * 分布式令牌桶限流服务实现类
  * 基于Redis+Lua脚本实现分布式环境下的令牌桶限流
+ * 默认算法由 miaosha.rate-limit.token-bucket.algorithm 配置（classic/precise/gcra），
+ * 三种算法使用不同的键前缀，切换算法相当于从满桶重新开始
  */
 @Service
 public class DistributedTokenBucketServiceImpl implements DistributedTokenBucketService {
@@ -27,17 +30,44 @@ public class DistributedTokenBucketServiceImpl implements DistributedTokenBucket
     // 令牌桶键前缀
     private static final String TOKEN_BUCKET_PREFIX = "token_bucket:";
     
+    // 微秒精度令牌桶键前缀
+    private static final String PRECISE_PREFIX = "token_bucket:precise:";
+    
+    // GCRA键前缀
+    private static final String GCRA_PREFIX = "token_bucket:gcra:";
+    
     // 默认令牌数
     private static final int DEFAULT_TOKENS = 1;
     
     @Resource
     private StringRedisTemplate stringRedisTemplate;
     
+    // 默认限流算法：classic-秒级令牌桶，precise-微秒精度令牌桶，gcra-GCRA
+    @Value("${miaosha.rate-limit.token-bucket.algorithm:classic}")
+    private String algorithmName = "classic";
+    
+    private Algorithm algorithm = Algorithm.CLASSIC;
+    
     // 令牌桶限流脚本
     private RedisScript<List> tokenBucketScript;
     
+    // 令牌桶批量租约脚本
+    private RedisScript<List> tokenBucketLeaseScript;
+    
+    // 微秒精度令牌桶脚本
+    private RedisScript<List> preciseScript;
+    
+    // GCRA脚本
+    private RedisScript<List> gcraScript;
+    
     @PostConstruct
     public void init() {
+        try {
+            algorithm = Algorithm.valueOf(algorithmName.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("未知的令牌桶限流算法: {}，使用classic", algorithmName);
+            algorithm = Algorithm.CLASSIC;
+        }
         try {
             // 加载令牌桶限流脚本
             ClassPathResource tokenBucketResource = new ClassPathResource("scripts/token_bucket.lua");
@@ -45,7 +75,16 @@ public class DistributedTokenBucketServiceImpl implements DistributedTokenBucket
             ((DefaultRedisScript<List>) tokenBucketScript).setLocation(tokenBucketResource);
             ((DefaultRedisScript<List>) tokenBucketScript).setResultType(List.class);
             
-            LOGGER.info("分布式令牌桶限流服务初始化成功");
+            // 加载令牌桶批量租约脚本
+            DefaultRedisScript<List> leaseScript = new DefaultRedisScript<>();
+            leaseScript.setLocation(new ClassPathResource("scripts/token_bucket_lease.lua"));
+            leaseScript.setResultType(List.class);
+            tokenBucketLeaseScript = leaseScript;
+            
+            preciseScript = loadScript("scripts/token_bucket_precise.lua");
+            gcraScript = loadScript("scripts/gcra.lua");
+            
+            LOGGER.info("分布式令牌桶限流服务初始化成功，默认算法: {}", algorithm);
         } catch (Exception e) {
             LOGGER.error("分布式令牌桶限流服务初始化失败", e);
         }
@@ -56,8 +95,80 @@ public class DistributedTokenBucketServiceImpl implements DistributedTokenBucket
         return tryAcquire(key, capacity, rate, DEFAULT_TOKENS);
     }
     
+    private DefaultRedisScript<List> loadScript(String path) {
+        DefaultRedisScript<List> script = new DefaultRedisScript<>();
+        script.setLocation(new ClassPathResource(path));
+        script.setResultType(List.class);
+        return script;
+    }
+    
+    @Override
+    public Algorithm getAlgorithm() {
+        return algorithm;
+    }
+    
     @Override
     public boolean tryAcquire(String key, int capacity, double rate, int tokens) {
+        return tryAcquire(key, capacity, rate, tokens, algorithm);
+    }
+    
+    @Override
+    public boolean tryAcquire(String key, int capacity, double rate, int tokens, Algorithm algorithm) {
+        return acquire(key, capacity, rate, tokens, algorithm) == 0;
+    }
+    
+    /**
+     * 获取令牌
+     * @return 0-获取成功；大于0-令牌足够还需等待的微秒数；-1-脚本执行失败
+     */
+    private long acquire(String key, int capacity, double rate, int tokens, Algorithm algorithm) {
+        if (algorithm == Algorithm.CLASSIC) {
+            return acquireClassic(key, capacity, rate, tokens);
+        }
+        try {
+            List<Object> result = executeTimed(key, capacity, rate, tokens, algorithm, false);
+            
+            if (result != null && result.size() >= 3) {
+                int granted = ((Number) result.get(0)).intValue();
+                long waitMicros = ((Number) result.get(2)).longValue();
+                
+                if (granted > 0) {
+                    LOGGER.debug("令牌桶限流通过，算法: {}, 键: {}, 剩余令牌: {}", algorithm, key, result.get(1));
+                    return 0;
+                }
+                LOGGER.debug("令牌桶限流拒绝，算法: {}, 键: {}, 剩余令牌: {}, 需等待: {}us", 
+                    algorithm, key, result.get(1), waitMicros);
+                return Math.max(1, waitMicros);
+            }
+            
+            LOGGER.warn("令牌桶限流脚本执行结果异常，算法: {}, 键: {}", algorithm, key);
+            return -1;
+            
+        } catch (Exception e) {
+            LOGGER.error("执行令牌桶限流脚本失败，算法: {}, 键: {}, 错误: {}", algorithm, key, e.getMessage(), e);
+            return -1;
+        }
+    }
+    
+    /**
+     * 执行微秒精度令牌桶或GCRA脚本，时间由脚本读取Redis TIME，不传客户端时间
+     */
+    private List<Object> executeTimed(String key, int capacity, double rate, int tokens, Algorithm algorithm, boolean partial) {
+        boolean gcra = algorithm == Algorithm.GCRA;
+        return stringRedisTemplate.execute(
+            gcra ? gcraScript : preciseScript,
+            Arrays.asList((gcra ? GCRA_PREFIX : PRECISE_PREFIX) + key),
+            String.valueOf(capacity),
+            String.valueOf(rate),
+            String.valueOf(tokens),
+            partial ? "1" : "0"
+        );
+    }
+    
+    /**
+     * 经典令牌桶按整秒填充，拒绝时按脚本返回的下次填充时间（秒）计算等待时间
+     */
+    private long acquireClassic(String key, int capacity, double rate, int tokens) {
         try {
             String fullKey = TOKEN_BUCKET_PREFIX + key;
             long now = System.currentTimeMillis() / 1000;
@@ -80,43 +191,98 @@ public class DistributedTokenBucketServiceImpl implements DistributedTokenBucket
                 if (success == 1) {
                     LOGGER.debug("令牌桶限流通过，键: {}, 剩余令牌: {}, 下次填充时间: {}", 
                         key, remainingTokens, nextRefillTime);
-                    return true;
+                    return 0;
                 } else {
                     LOGGER.debug("令牌桶限流拒绝，键: {}, 剩余令牌: {}, 下次填充时间: {}", 
                         key, remainingTokens, nextRefillTime);
-                    return false;
+                    return Math.max(1000, (nextRefillTime * 1000 - System.currentTimeMillis()) * 1000);
                 }
             }
             
             LOGGER.warn("令牌桶限流脚本执行结果异常，键: {}", key);
-            return false;
+            return -1;
             
         } catch (Exception e) {
             LOGGER.error("执行令牌桶限流脚本失败，键: {}, 错误: {}", key, e.getMessage(), e);
-            return false;
+            return -1;
+        }
+    }
+    
+    @Override
+    public int lease(String key, int capacity, double rate, int tokens) {
+        try {
+            if (algorithm != Algorithm.CLASSIC) {
+                List<Object> result = executeTimed(key, capacity, rate, tokens, algorithm, true);
+                if (result != null && result.size() >= 2) {
+                    int granted = ((Number) result.get(0)).intValue();
+                    LOGGER.debug("令牌桶租约完成，算法: {}, 键: {}, 申请: {}, 租到: {}, 剩余令牌: {}", 
+                        algorithm, key, tokens, granted, result.get(1));
+                    return granted;
+                }
+                LOGGER.warn("令牌桶租约脚本执行结果异常，算法: {}, 键: {}", algorithm, key);
+                return 0;
+            }
+            
+            String fullKey = TOKEN_BUCKET_PREFIX + key;
+            long now = System.currentTimeMillis() / 1000;
+            
+            List<Object> result = stringRedisTemplate.execute(
+                tokenBucketLeaseScript,
+                Arrays.asList(fullKey),
+                String.valueOf(capacity),
+                String.valueOf(rate),
+                String.valueOf(now),
+                String.valueOf(tokens)
+            );
+            
+            if (result != null && result.size() >= 2) {
+                int granted = ((Number) result.get(0)).intValue();
+                LOGGER.debug("令牌桶租约完成，键: {}, 申请: {}, 租到: {}, 剩余令牌: {}", 
+                    key, tokens, granted, result.get(1));
+                return granted;
+            }
+            
+            LOGGER.warn("令牌桶租约脚本执行结果异常，键: {}", key);
+            return 0;
+            
+        } catch (Exception e) {
+            LOGGER.error("执行令牌桶租约脚本失败，键: {}, 错误: {}", key, e.getMessage(), e);
+            return 0;
         }
     }
     
     @Override
     public boolean tryAcquireWithTimeout(String key, int capacity, double rate, long timeout) {
+        return tryAcquireWithTimeout(key, capacity, rate, DEFAULT_TOKENS, timeout);
+    }
+    
+    @Override
+    public boolean tryAcquireWithTimeout(String key, int capacity, double rate, int tokens, long timeout) {
         if (timeout <= 0) {
-            return tryAcquire(key, capacity, rate);
+            return tryAcquire(key, capacity, rate, tokens);
         }
         
         long startTime = System.currentTimeMillis();
         long endTime = startTime + timeout;
         
-        while (System.currentTimeMillis() < endTime) {
-            if (tryAcquire(key, capacity, rate)) {
+        while (true) {
+            long waitMicros = acquire(key, capacity, rate, tokens, algorithm);
+            if (waitMicros == 0) {
                 return true;
             }
+            if (waitMicros < 0) {
+                // 脚本执行失败时不再等待
+                return false;
+            }
             
+            // 按脚本返回的等待时间休眠一次后重试；超时前令牌不可能足够时直接返回，不占用线程
+            long retryAfter = (waitMicros + 999) / 1000;
+            long remaining = endTime - System.currentTimeMillis();
+            if (retryAfter > remaining) {
+                break;
+            }
             try {
-                // 计算等待时间，避免过度轮询
-                long waitTime = Math.min(100, endTime - System.currentTimeMillis());
-                if (waitTime > 0) {
-                    Thread.sleep(waitTime);
-                }
+                Thread.sleep(retryAfter);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 LOGGER.warn("令牌桶限流等待被中断，键: {}", key);
@@ -148,10 +314,11 @@ public class DistributedTokenBucketServiceImpl implements DistributedTokenBucket
     @Override
     public boolean resetTokenBucket(String key) {
         try {
-            String fullKey = TOKEN_BUCKET_PREFIX + key;
-            Boolean deleted = stringRedisTemplate.delete(fullKey);
+            // 删除三种算法的状态
+            Long deleted = stringRedisTemplate.delete(Arrays.asList(
+                TOKEN_BUCKET_PREFIX + key, PRECISE_PREFIX + key, GCRA_PREFIX + key));
             
-            if (Boolean.TRUE.equals(deleted)) {
+            if (deleted != null && deleted > 0) {
                 LOGGER.info("重置令牌桶成功，键: {}", key);
                 return true;
             } else {
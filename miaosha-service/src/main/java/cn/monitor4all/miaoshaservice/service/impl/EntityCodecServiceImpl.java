@@ -0,0 +1,95 @@
+package cn.monitor4all.miaoshaservice.service.impl;
+
+import cn.monitor4all.miaoshaservice.service.EntityCodecService;
+import cn.monitor4all.miaoshaservice.utils.codec.CompactCodec;
+import com.alibaba.fastjson.JSON;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 缓存值编解码服务实现类
+ */
+@Service
+public class EntityCodecServiceImpl implements EntityCodecService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EntityCodecServiceImpl.class);
+
+    private static final String FORMAT_COMPACT = "compact";
+
+    private static final String FORMAT_LEGACY = "legacy";
+
+    // 写入格式：compact 紧凑二进制，legacy fastjson字符串（默认legacy，全部节点能读取紧凑编码后再切换）
+    @Value("${miaosha.codec.format:legacy}")
+    private String format = FORMAT_LEGACY;
+
+    private final AtomicLong compactEncodeCount = new AtomicLong(0);
+    private final AtomicLong compactEncodeBytes = new AtomicLong(0);
+    private final AtomicLong legacyEncodeCount = new AtomicLong(0);
+    private final AtomicLong legacyEncodeBytes = new AtomicLong(0);
+    private final AtomicLong compactDecodeCount = new AtomicLong(0);
+    private final AtomicLong legacyDecodeCount = new AtomicLong(0);
+    private final AtomicLong decodeErrorCount = new AtomicLong(0);
+
+    @Override
+    public byte[] encode(Object value) {
+        if (isCompactEnabled() && CompactCodec.supports(value)) {
+            byte[] bytes = CompactCodec.encode(value);
+            compactEncodeCount.incrementAndGet();
+            compactEncodeBytes.addAndGet(bytes.length);
+            return bytes;
+        }
+        byte[] bytes = JSON.toJSONString(value).getBytes(StandardCharsets.UTF_8);
+        legacyEncodeCount.incrementAndGet();
+        legacyEncodeBytes.addAndGet(bytes.length);
+        return bytes;
+    }
+
+    @Override
+    public <T> T decode(byte[] bytes, Class<T> type) {
+        if (bytes == null) {
+            return null;
+        }
+        try {
+            if (CompactCodec.isCompact(bytes)) {
+                T value = CompactCodec.decode(bytes, type);
+                compactDecodeCount.incrementAndGet();
+                return value;
+            }
+            T value = JSON.parseObject(new String(bytes, StandardCharsets.UTF_8), type);
+            legacyDecodeCount.incrementAndGet();
+            return value;
+        } catch (RuntimeException e) {
+            decodeErrorCount.incrementAndGet();
+            LOGGER.warn("缓存值解码失败，类型: {}, 长度: {}", type.getSimpleName(), bytes.length, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean isCompactEnabled() {
+        return FORMAT_COMPACT.equalsIgnoreCase(format);
+    }
+
+    @Override
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        long compactEncodes = compactEncodeCount.get();
+        long legacyEncodes = legacyEncodeCount.get();
+        stats.put("format", isCompactEnabled() ? FORMAT_COMPACT : FORMAT_LEGACY);
+        stats.put("compactEncodeCount", compactEncodes);
+        stats.put("compactAvgBytes", compactEncodes > 0 ? compactEncodeBytes.get() / compactEncodes : 0L);
+        stats.put("legacyEncodeCount", legacyEncodes);
+        stats.put("legacyAvgBytes", legacyEncodes > 0 ? legacyEncodeBytes.get() / legacyEncodes : 0L);
+        stats.put("compactDecodeCount", compactDecodeCount.get());
+        stats.put("legacyDecodeCount", legacyDecodeCount.get());
+        stats.put("decodeErrorCount", decodeErrorCount.get());
+        return stats;
+    }
+}
@@ -0,0 +1,325 @@
+package cn.monitor4all.miaoshaservice.service.impl;
+
+import cn.monitor4all.miaoshadao.utils.CacheKey;
+import cn.monitor4all.miaoshaservice.service.HotKeyService;
+import cn.monitor4all.miaoshaservice.utils.hotkey.HotKeyDetector;
+import cn.monitor4all.miaoshaservice.utils.hotkey.HotKeyDetector.HotKey;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 热键探测与本地副本服务实现类
+ * 1. 每个窗口（window-ms）结束时从探测器取出候选键，每秒访问次数达到 promote-qps 且前缀在 replicate-prefixes 中的键晋升
+ * 2. 晋升的键在连续 hold-windows 个窗口低于阈值后降级，本地副本一并删除；
+ *    命中本地副本的读取不经过Redis连接，由本服务计入探测器，否则晋升后访问量下降导致降级、再晋升反复抖动
+ * 3. 本地副本TTL为 replica-ttl-ms，写入后的失效通知每 invalidate-coalesce-ms 合并发布一次，
+ *    其他节点最多读到一个合并窗口加传播延迟之前的值，最坏情况（通知丢失）由TTL兜底
+ * 本地副本只用于展示和购票前的库存预检，库存扣减仍以Redis脚本和数据库为准
+ */
+@Service
+public class HotKeyServiceImpl implements HotKeyService, MessageListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HotKeyServiceImpl.class);
+
+    private static final String MESSAGE_SEPARATOR = "|";
+
+    private static final String KEY_SEPARATOR = ",";
+
+    @Resource
+    private HotKeyDetector hotKeyDetector;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    // 统计窗口（毫秒）
+    @Value("${miaosha.hot-key.window-ms:1000}")
+    private long windowMs = 1000;
+
+    // 每秒访问次数达到该值的键晋升为本地副本
+    @Value("${miaosha.hot-key.promote-qps:2000}")
+    private long promoteQps = 2000;
+
+    // 连续多少个窗口低于阈值后降级
+    @Value("${miaosha.hot-key.hold-windows:5}")
+    private int holdWindows = 5;
+
+    // 允许复制到本地的键前缀（逗号分隔），只包含读取结果可以短暂陈旧的键
+    @Value("${miaosha.hot-key.replicate-prefixes:ticket:stock:}")
+    private String replicatePrefixes = "ticket:stock:";
+
+    // 本地副本有效期（毫秒）
+    @Value("${miaosha.hot-key.replica-ttl-ms:500}")
+    private long replicaTtlMs = 500;
+
+    // 本地副本最大数量
+    @Value("${miaosha.hot-key.replica-max-size:1024}")
+    private long replicaMaxSize = 1024;
+
+    // 失效通知合并发布间隔（毫秒）
+    @Value("${miaosha.hot-key.invalidate-coalesce-ms:50}")
+    private long invalidateCoalesceMs = 50;
+
+    // 保留的最近窗口热键数量
+    @Value("${miaosha.hot-key.top-n:50}")
+    private int topN = 50;
+
+    private final String nodeId = UUID.randomUUID().toString().replace("-", "").substring(0, 8);
+
+    private String channel;
+
+    private List<String> prefixes = Collections.emptyList();
+
+    private ScheduledThreadPoolExecutor executor;
+
+    private Cache<String, Object> replicas;
+
+    // 已晋升的键 -> 最近一次达到阈值的窗口结束时间
+    private final Map<String, Long> promoted = new ConcurrentHashMap<>();
+
+    // 待发布的失效键
+    private final Set<String> pendingInvalidations = ConcurrentHashMap.newKeySet();
+
+    private volatile List<HotKey> lastTopKeys = Collections.emptyList();
+
+    // 统计信息
+    private final AtomicLong windowCount = new AtomicLong(0);
+    private final AtomicLong promoteCount = new AtomicLong(0);
+    private final AtomicLong demoteCount = new AtomicLong(0);
+    private final AtomicLong replicaHitCount = new AtomicLong(0);
+    private final AtomicLong replicaMissCount = new AtomicLong(0);
+    private final AtomicLong replicaPutCount = new AtomicLong(0);
+    private final AtomicLong publishedInvalidationCount = new AtomicLong(0);
+    private final AtomicLong publishedMessageCount = new AtomicLong(0);
+    private final AtomicLong receivedInvalidationCount = new AtomicLong(0);
+    private final AtomicLong publishFailureCount = new AtomicLong(0);
+
+    @PostConstruct
+    public void init() {
+        List<String> configured = new ArrayList<>();
+        for (String prefix : replicatePrefixes.split(KEY_SEPARATOR)) {
+            if (!prefix.trim().isEmpty()) {
+                configured.add(prefix.trim());
+            }
+        }
+        prefixes = configured;
+        replicas = CacheBuilder.newBuilder()
+                .maximumSize(replicaMaxSize)
+                .expireAfterWrite(replicaTtlMs, TimeUnit.MILLISECONDS)
+                .build();
+
+        channel = CacheKey.HOT_KEY_INVALIDATE_CHANNEL.getKey();
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(channel));
+
+        executor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "hot-key-detector");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(this::rotateWindow, windowMs, windowMs, TimeUnit.MILLISECONDS);
+        executor.scheduleWithFixedDelay(this::flushInvalidations, invalidateCoalesceMs, invalidateCoalesceMs, TimeUnit.MILLISECONDS);
+        LOGGER.info("热键探测初始化完成，采样率: 1/{}, 窗口: {}ms, 晋升阈值: {}/s, 复制前缀: {}, 副本TTL: {}ms, 节点ID: {}",
+                hotKeyDetector.getSampleRate(), windowMs, promoteQps, prefixes, replicaTtlMs, nodeId);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        flushInvalidations();
+    }
+
+    @Override
+    public Object getReplica(String key) {
+        if (!promoted.containsKey(key)) {
+            return null;
+        }
+        Object value = replicas.getIfPresent(key);
+        if (value != null) {
+            replicaHitCount.incrementAndGet();
+            // 未命中时调用方读取Redis，由连接工厂计入，这里只计入命中
+            hotKeyDetector.record(key);
+        } else {
+            replicaMissCount.incrementAndGet();
+        }
+        return value;
+    }
+
+    @Override
+    public void putReplica(String key, Object value) {
+        if (value != null && promoted.containsKey(key)) {
+            replicas.put(key, value);
+            replicaPutCount.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void update(String key, Object value) {
+        if (!isReplicable(key)) {
+            return;
+        }
+        if (value != null && promoted.containsKey(key)) {
+            replicas.put(key, value);
+        } else {
+            replicas.invalidate(key);
+        }
+        // 其他节点可能已晋升该键，无论本节点是否晋升都需要通知
+        pendingInvalidations.add(key);
+    }
+
+    @Override
+    public void invalidate(String key) {
+        update(key, null);
+    }
+
+    /**
+     * 结束一个统计窗口：晋升新的热键，降级持续不热的键
+     */
+    void rotateWindow() {
+        try {
+            List<HotKey> hotKeys = hotKeyDetector.rotate();
+            long now = System.currentTimeMillis();
+            windowCount.incrementAndGet();
+            lastTopKeys = hotKeys.size() > topN ? new ArrayList<>(hotKeys.subList(0, topN)) : hotKeys;
+
+            for (HotKey hotKey : hotKeys) {
+                if (hotKey.getQps() < promoteQps) {
+                    break;
+                }
+                if (isReplicable(hotKey.getKey()) && promoted.put(hotKey.getKey(), now) == null) {
+                    promoteCount.incrementAndGet();
+                    LOGGER.info("热键晋升为本地副本，键: {}, 估计访问: {}/s", hotKey.getKey(), hotKey.getQps());
+                }
+            }
+
+            long holdMs = holdWindows * windowMs;
+            Iterator<Map.Entry<String, Long>> iterator = promoted.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, Long> entry = iterator.next();
+                if (now - entry.getValue() > holdMs) {
+                    iterator.remove();
+                    replicas.invalidate(entry.getKey());
+                    demoteCount.incrementAndGet();
+                    LOGGER.info("热键降级，删除本地副本，键: {}", entry.getKey());
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.error("热键统计窗口切换失败", e);
+        }
+    }
+
+    /**
+     * 合并发布失效通知，一条消息包含本间隔内写入的所有键
+     */
+    void flushInvalidations() {
+        if (pendingInvalidations.isEmpty()) {
+            return;
+        }
+        List<String> keys = new ArrayList<>(pendingInvalidations);
+        pendingInvalidations.removeAll(keys);
+        try {
+            stringRedisTemplate.convertAndSend(channel, nodeId + MESSAGE_SEPARATOR + String.join(KEY_SEPARATOR, keys));
+            publishedMessageCount.incrementAndGet();
+            publishedInvalidationCount.addAndGet(keys.size());
+        } catch (Exception e) {
+            // 发布失败时其他节点的副本在TTL后过期
+            publishFailureCount.incrementAndGet();
+            LOGGER.warn("发布热键副本失效通知失败，键数量: {}, 错误: {}", keys.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * 收到其他节点的失效通知
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.indexOf(MESSAGE_SEPARATOR);
+        if (separator <= 0 || nodeId.equals(body.substring(0, separator))) {
+            return;
+        }
+        for (String key : body.substring(separator + 1).split(KEY_SEPARATOR)) {
+            if (!key.isEmpty()) {
+                replicas.invalidate(key);
+                receivedInvalidationCount.incrementAndGet();
+            }
+        }
+    }
+
+    @Override
+    public List<Map<String, Object>> getTopKeys(int limit) {
+        List<HotKey> hotKeys = lastTopKeys;
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (HotKey hotKey : hotKeys.subList(0, Math.min(limit, hotKeys.size()))) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("key", hotKey.getKey());
+            item.put("qps", hotKey.getQps());
+            item.put("replicated", promoted.containsKey(hotKey.getKey()));
+            result.add(item);
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        long hits = replicaHitCount.get();
+        long total = hits + replicaMissCount.get();
+        stats.put("sampleRate", hotKeyDetector.getSampleRate());
+        stats.put("sampledCount", hotKeyDetector.getSampledCount());
+        stats.put("droppedCandidateCount", hotKeyDetector.getDroppedCandidateCount());
+        stats.put("windowCount", windowCount.get());
+        stats.put("promotedKeys", new ArrayList<>(promoted.keySet()));
+        stats.put("promoteCount", promoteCount.get());
+        stats.put("demoteCount", demoteCount.get());
+        stats.put("replicaSize", replicas.size());
+        stats.put("replicaHitCount", hits);
+        stats.put("replicaMissCount", replicaMissCount.get());
+        stats.put("replicaHitRate", total == 0 ? 0.0 : (double) hits / total);
+        stats.put("replicaPutCount", replicaPutCount.get());
+        stats.put("publishedInvalidationCount", publishedInvalidationCount.get());
+        stats.put("publishedMessageCount", publishedMessageCount.get());
+        stats.put("receivedInvalidationCount", receivedInvalidationCount.get());
+        stats.put("publishFailureCount", publishFailureCount.get());
+        return stats;
+    }
+
+    private boolean isReplicable(String key) {
+        for (String prefix : prefixes) {
+            if (key.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
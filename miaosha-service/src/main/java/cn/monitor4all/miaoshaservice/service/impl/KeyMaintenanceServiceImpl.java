@@ -0,0 +1,238 @@
+package cn.monitor4all.miaoshaservice.service.impl;
+
+import cn.monitor4all.miaoshaservice.service.KeyMaintenanceService;
+import com.google.common.util.concurrent.RateLimiter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Redis键维护服务实现类
+ * 1. SCAN游标在一个连接上遍历，每个批次交给回调处理（删除等操作使用另一个连接，不影响游标）
+ * 2. 每次SCAN调用和每个被处理的键各计一次操作，通过令牌桶限制每秒操作数
+ * 3. 每个任务记录进度（已扫描、已处理、批次数、耗时），完成后保留最近一次结果
+ */
+@Service
+public class KeyMaintenanceServiceImpl implements KeyMaintenanceService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(KeyMaintenanceServiceImpl.class);
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    // SCAN的COUNT提示，每次调用大约检查的键数
+    @Value("${miaosha.key-maintenance.scan-count:500}")
+    private int scanCount = 500;
+
+    // 每批处理的键数
+    @Value("${miaosha.key-maintenance.batch-size:500}")
+    private int batchSize = 500;
+
+    // 每秒最多操作数（SCAN调用 + 处理的键）
+    @Value("${miaosha.key-maintenance.max-ops-per-second:5000}")
+    private double maxOpsPerSecond = 5000;
+
+    private RateLimiter rateLimiter;
+
+    private final AtomicLong taskSequence = new AtomicLong(0);
+
+    // 进行中的任务
+    private final Map<Long, TaskProgress> runningTasks = new ConcurrentHashMap<>();
+
+    private volatile TaskProgress lastCompleted;
+
+    // 统计信息
+    private final AtomicLong totalScanCalls = new AtomicLong(0);
+    private final AtomicLong totalScannedKeys = new AtomicLong(0);
+    private final AtomicLong totalUnlinkedKeys = new AtomicLong(0);
+    private final AtomicLong totalTasks = new AtomicLong(0);
+    private final AtomicLong failedTasks = new AtomicLong(0);
+
+    @PostConstruct
+    public void init() {
+        rateLimiter = RateLimiter.create(maxOpsPerSecond);
+        LOGGER.info("键维护服务初始化完成，SCAN COUNT: {}, 批大小: {}, 每秒最多操作数: {}", scanCount, batchSize, maxOpsPerSecond);
+    }
+
+    @Override
+    public long scan(String pattern, Consumer<List<String>> batchConsumer) {
+        TaskProgress progress = startTask("scan", pattern);
+        try {
+            long scanned = doScan(pattern, progress, batchConsumer);
+            finishTask(progress, null);
+            return scanned;
+        } catch (RuntimeException e) {
+            finishTask(progress, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public long unlinkByPattern(String pattern) {
+        TaskProgress progress = startTask("unlink", pattern);
+        try {
+            doScan(pattern, progress, batch -> {
+                rateLimiter.acquire(batch.size());
+                unlink(batch);
+                progress.processed.addAndGet(batch.size());
+                totalUnlinkedKeys.addAndGet(batch.size());
+            });
+            finishTask(progress, null);
+            LOGGER.info("按模式删除键完成，模式: {}, 扫描: {}, 删除: {}, 耗时: {}ms",
+                    pattern, progress.scanned.get(), progress.processed.get(), progress.elapsedMs());
+            return progress.processed.get();
+        } catch (RuntimeException e) {
+            finishTask(progress, e);
+            throw e;
+        }
+    }
+
+    private long doScan(String pattern, TaskProgress progress, Consumer<List<String>> batchConsumer) {
+        ScanOptions options = ScanOptions.scanOptions().match(pattern).count(scanCount).build();
+        Long scanned = stringRedisTemplate.execute((RedisCallback<Long>) connection -> {
+            long count = 0;
+            List<String> batch = new ArrayList<>(batchSize);
+            try (Cursor<byte[]> cursor = connection.scan(options)) {
+                long lastCursorId = -1;
+                while (true) {
+                    // 游标ID变化表示发起了一次新的SCAN调用
+                    if (cursor.getCursorId() != lastCursorId) {
+                        lastCursorId = cursor.getCursorId();
+                        rateLimiter.acquire();
+                        progress.scanCalls.incrementAndGet();
+                        totalScanCalls.incrementAndGet();
+                    }
+                    if (!cursor.hasNext()) {
+                        break;
+                    }
+                    batch.add(new String(cursor.next(), StandardCharsets.UTF_8));
+                    count++;
+                    progress.scanned.incrementAndGet();
+                    totalScannedKeys.incrementAndGet();
+                    if (batch.size() >= batchSize) {
+                        progress.batches.incrementAndGet();
+                        batchConsumer.accept(batch);
+                        batch = new ArrayList<>(batchSize);
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.warn("关闭SCAN游标失败，模式: {}, 错误: {}", pattern, e.getMessage());
+            }
+            if (!batch.isEmpty()) {
+                progress.batches.incrementAndGet();
+                batchConsumer.accept(batch);
+            }
+            return count;
+        });
+        return scanned == null ? 0 : scanned;
+    }
+
+    /**
+     * 管道批量UNLINK，一次往返
+     */
+    private void unlink(List<String> keys) {
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String key : keys) {
+                connection.unlink(key.getBytes(StandardCharsets.UTF_8));
+            }
+            return null;
+        });
+    }
+
+    private TaskProgress startTask(String type, String pattern) {
+        TaskProgress progress = new TaskProgress(taskSequence.incrementAndGet(), type, pattern);
+        runningTasks.put(progress.id, progress);
+        totalTasks.incrementAndGet();
+        return progress;
+    }
+
+    private void finishTask(TaskProgress progress, Exception error) {
+        progress.finishedAt = System.currentTimeMillis();
+        if (error != null) {
+            progress.error = error.getMessage();
+            failedTasks.incrementAndGet();
+            LOGGER.error("键维护任务失败，类型: {}, 模式: {}", progress.type, progress.pattern, error);
+        }
+        runningTasks.remove(progress.id);
+        lastCompleted = progress;
+    }
+
+    @Override
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("scanCount", scanCount);
+        stats.put("batchSize", batchSize);
+        stats.put("maxOpsPerSecond", maxOpsPerSecond);
+        stats.put("totalTasks", totalTasks.get());
+        stats.put("failedTasks", failedTasks.get());
+        stats.put("totalScanCalls", totalScanCalls.get());
+        stats.put("totalScannedKeys", totalScannedKeys.get());
+        stats.put("totalUnlinkedKeys", totalUnlinkedKeys.get());
+        List<Map<String, Object>> running = new ArrayList<>();
+        for (TaskProgress progress : runningTasks.values()) {
+            running.add(progress.toMap());
+        }
+        stats.put("runningTasks", running);
+        TaskProgress completed = lastCompleted;
+        stats.put("lastCompletedTask", completed == null ? null : completed.toMap());
+        return stats;
+    }
+
+    /**
+     * 单个键维护任务的进度
+     */
+    private static class TaskProgress {
+        private final long id;
+        private final String type;
+        private final String pattern;
+        private final long startedAt = System.currentTimeMillis();
+        private volatile long finishedAt;
+        private volatile String error;
+        private final AtomicLong scanCalls = new AtomicLong(0);
+        private final AtomicLong scanned = new AtomicLong(0);
+        private final AtomicLong processed = new AtomicLong(0);
+        private final AtomicLong batches = new AtomicLong(0);
+
+        private TaskProgress(long id, String type, String pattern) {
+            this.id = id;
+            this.type = type;
+            this.pattern = pattern;
+        }
+
+        private long elapsedMs() {
+            return (finishedAt > 0 ? finishedAt : System.currentTimeMillis()) - startedAt;
+        }
+
+        private Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("id", id);
+            map.put("type", type);
+            map.put("pattern", pattern);
+            map.put("startedAt", startedAt);
+            map.put("elapsedMs", elapsedMs());
+            map.put("scanCalls", scanCalls.get());
+            map.put("scannedKeys", scanned.get());
+            map.put("processedKeys", processed.get());
+            map.put("batches", batches.get());
+            map.put("error", error);
+            return map;
+        }
+    }
+}
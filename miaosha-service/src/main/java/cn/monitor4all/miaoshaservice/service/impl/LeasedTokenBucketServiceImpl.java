@@ -0,0 +1,208 @@
+package cn.monitor4all.miaoshaservice.service.impl;
+
+import cn.monitor4all.miaoshaservice.service.DistributedTokenBucketService;
+import cn.monitor4all.miaoshaservice.service.LeasedTokenBucketService;
+import cn.monitor4all.miaoshaservice.utils.ratelimit.LeasedTokenBucket;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 两级令牌桶限流服务实现类
+ * 1. 本地令牌充足时不访问Redis；取得令牌后剩余令牌低于上一批的 low-watermark-ratio 时在后台线程续租
+ * 2. 本地令牌用完时由一个线程同步续租，续租期间其他线程直接走Redis单次获取，结果与原有令牌桶一致
+ * 3. 续租租到0个令牌（Redis令牌桶已空）时，约一个令牌的填充时间内本地直接拒绝，不再逐个请求访问Redis
+ * 4. 租约在 lease-ttl-ms 后过期作废，超发上界见 LeasedTokenBucket
+ */
+@Service
+public class LeasedTokenBucketServiceImpl implements LeasedTokenBucketService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LeasedTokenBucketServiceImpl.class);
+
+    @Resource
+    private DistributedTokenBucketService distributedTokenBucketService;
+
+    // 是否启用本地租约，关闭时每个请求直接访问Redis令牌桶
+    @Value("${miaosha.rate-limit.lease.enabled:true}")
+    private boolean enabled = true;
+
+    // 租约有效期（毫秒），决定超发上界 rate × lease-ttl-ms
+    @Value("${miaosha.rate-limit.lease.ttl-ms:1000}")
+    private long leaseTtlMs = 1000;
+
+    // 一批租约按观测速率预计够用的时间（毫秒）
+    @Value("${miaosha.rate-limit.lease.interval-ms:200}")
+    private long leaseIntervalMs = 200;
+
+    // 每批租约最少令牌数
+    @Value("${miaosha.rate-limit.lease.min-batch:1}")
+    private int minBatch = 1;
+
+    // 每批租约最多令牌数
+    @Value("${miaosha.rate-limit.lease.max-batch:100}")
+    private int maxBatch = 100;
+
+    // 剩余令牌低于上一批的该比例时异步续租
+    @Value("${miaosha.rate-limit.lease.low-watermark-ratio:0.3}")
+    private double lowWatermarkRatio = 0.3;
+
+    // 本地令牌桶最大数量，长时间不访问的限流键被淘汰，未消耗的令牌作废
+    @Value("${miaosha.rate-limit.lease.max-keys:10000}")
+    private long maxKeys = 10000;
+
+    private Cache<String, LeasedTokenBucket> buckets;
+
+    private ScheduledThreadPoolExecutor executor;
+
+    // 统计信息
+    private final AtomicLong localHitCount = new AtomicLong(0);
+    private final AtomicLong leasedHitCount = new AtomicLong(0);
+    private final AtomicLong fallbackCount = new AtomicLong(0);
+    private final AtomicLong fallbackAllowedCount = new AtomicLong(0);
+    private final AtomicLong rejectCount = new AtomicLong(0);
+    private final AtomicLong syncLeaseCount = new AtomicLong(0);
+    private final AtomicLong asyncLeaseCount = new AtomicLong(0);
+    private final AtomicLong emptyLeaseCount = new AtomicLong(0);
+    private final AtomicLong leasedTokenCount = new AtomicLong(0);
+
+    @PostConstruct
+    public void init() {
+        buckets = CacheBuilder.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(10, TimeUnit.MINUTES)
+                .build();
+        executor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "token-bucket-lease");
+            thread.setDaemon(true);
+            return thread;
+        });
+        LOGGER.info("两级令牌桶限流初始化完成，启用: {}, 租约有效期: {}ms, 每批: {}-{}, 续租水位: {}",
+                enabled, leaseTtlMs, minBatch, maxBatch, lowWatermarkRatio);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Override
+    public boolean tryAcquire(String key, int capacity, double rate) {
+        if (!enabled) {
+            return distributedTokenBucketService.tryAcquire(key, capacity, rate);
+        }
+        LeasedTokenBucket bucket = bucketOf(key);
+        long now = System.currentTimeMillis();
+
+        if (bucket.tryAcquire(now)) {
+            localHitCount.incrementAndGet();
+            if (bucket.shouldPrefetch(now, lowWatermarkRatio) && bucket.startLeasing()) {
+                asyncLeaseCount.incrementAndGet();
+                try {
+                    executor.execute(() -> lease(key, bucket, capacity, rate));
+                } catch (Exception e) {
+                    bucket.finishLeasing();
+                    LOGGER.warn("提交异步续租失败，键: {}, 错误: {}", key, e.getMessage());
+                }
+            }
+            return true;
+        }
+
+        if (bucket.isEmptyAt(now)) {
+            rejectCount.incrementAndGet();
+            return false;
+        }
+
+        if (bucket.startLeasing()) {
+            syncLeaseCount.incrementAndGet();
+            lease(key, bucket, capacity, rate);
+            if (bucket.take(System.currentTimeMillis())) {
+                leasedHitCount.incrementAndGet();
+                return true;
+            }
+            rejectCount.incrementAndGet();
+            return false;
+        }
+
+        // 其他线程正在续租，本次直接走Redis单次获取
+        fallbackCount.incrementAndGet();
+        boolean allowed = distributedTokenBucketService.tryAcquire(key, capacity, rate);
+        if (allowed) {
+            fallbackAllowedCount.incrementAndGet();
+        } else {
+            rejectCount.incrementAndGet();
+        }
+        return allowed;
+    }
+
+    /**
+     * 向Redis申请一批租约，调用前需已通过 startLeasing 取得续租权
+     */
+    private void lease(String key, LeasedTokenBucket bucket, int capacity, double rate) {
+        try {
+            // 以发起请求的时间计算过期时间，租约有效期不会因Redis往返延迟而变长
+            long requestAt = System.currentTimeMillis();
+            int batch = bucket.nextBatchSize(requestAt, minBatch, Math.min(maxBatch, capacity), leaseIntervalMs);
+            int granted = distributedTokenBucketService.lease(key, capacity, rate, batch);
+            if (granted > 0) {
+                leasedTokenCount.addAndGet(granted);
+                bucket.addLease(granted, requestAt + leaseTtlMs);
+            } else {
+                emptyLeaseCount.incrementAndGet();
+                bucket.markEmptyUntil(requestAt + Math.min(leaseTtlMs, (long) Math.ceil(1000.0 / rate)));
+            }
+        } catch (Exception e) {
+            LOGGER.warn("令牌桶续租失败，键: {}, 错误: {}", key, e.getMessage());
+        } finally {
+            bucket.finishLeasing();
+        }
+    }
+
+    private LeasedTokenBucket bucketOf(String key) {
+        try {
+            return buckets.get(key, () -> new LeasedTokenBucket(System.currentTimeMillis()));
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public Map<String, Object> getStatistics() {
+        long admitted = localHitCount.get() + leasedHitCount.get() + fallbackAllowedCount.get();
+        long redisCalls = syncLeaseCount.get() + asyncLeaseCount.get() + fallbackCount.get();
+        long expiredTokens = 0;
+        for (LeasedTokenBucket bucket : buckets.asMap().values()) {
+            expiredTokens += bucket.getExpiredTokens();
+        }
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("leaseTtlMs", leaseTtlMs);
+        stats.put("keyCount", buckets.size());
+        stats.put("localHitCount", localHitCount.get());
+        stats.put("leasedHitCount", leasedHitCount.get());
+        stats.put("fallbackCount", fallbackCount.get());
+        stats.put("rejectCount", rejectCount.get());
+        stats.put("syncLeaseCount", syncLeaseCount.get());
+        stats.put("asyncLeaseCount", asyncLeaseCount.get());
+        stats.put("emptyLeaseCount", emptyLeaseCount.get());
+        stats.put("leasedTokenCount", leasedTokenCount.get());
+        stats.put("expiredTokenCount", expiredTokens);
+        stats.put("redisCallsPerAdmission", admitted == 0 ? 0.0 : (double) redisCalls / admitted);
+        return stats;
+    }
+}
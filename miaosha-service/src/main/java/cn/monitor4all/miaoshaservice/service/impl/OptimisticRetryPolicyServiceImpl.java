@@ -0,0 +1,288 @@
+package cn.monitor4all.miaoshaservice.service.impl;
+
+import cn.monitor4all.miaoshaservice.service.OptimisticRetryPolicyService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 乐观锁重试策略服务实现类
+ * 冲突率按日期用两个相邻时间窗口加权计算（滑动窗口计数），样本不足时不做调整；
+ * 退避间隔 sleep = min(最大间隔, random(基础间隔, 上次间隔 * 3))
+ */
+@Service
+public class OptimisticRetryPolicyServiceImpl implements OptimisticRetryPolicyService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OptimisticRetryPolicyServiceImpl.class);
+
+    // 基础退避间隔（毫秒）
+    @Value("${miaosha.optimistic-retry.base-backoff-ms:5}")
+    private long baseBackoffMs = 5;
+
+    // 最大退避间隔（毫秒）
+    @Value("${miaosha.optimistic-retry.max-backoff-ms:100}")
+    private long maxBackoffMs = 100;
+
+    // 单次请求的重试总耗时预算（毫秒）
+    @Value("${miaosha.optimistic-retry.time-budget-ms:300}")
+    private long timeBudgetMs = 300;
+
+    // 冲突率为0时允许的最大重试次数
+    @Value("${miaosha.optimistic-retry.max-retries:5}")
+    private int maxRetries = 5;
+
+    // 冲突率超过该阈值时切换悲观模式
+    @Value("${miaosha.optimistic-retry.switch-conflict-ratio:0.6}")
+    private double switchConflictRatio = 0.6;
+
+    // 计算冲突率的最少样本数
+    @Value("${miaosha.optimistic-retry.min-samples:20}")
+    private int minSamples = 20;
+
+    // 冲突率统计窗口（毫秒）
+    @Value("${miaosha.optimistic-retry.window-ms:1000}")
+    private long windowMs = 1000;
+
+    private final Map<String, DateContention> contentions = new ConcurrentHashMap<>();
+
+    // 统计信息
+    private final AtomicLong sessionCount = new AtomicLong(0);
+    private final AtomicLong successCount = new AtomicLong(0);
+    private final AtomicLong retryCount = new AtomicLong(0);
+    private final AtomicLong totalBackoffMs = new AtomicLong(0);
+    private final AtomicLong capReachedCount = new AtomicLong(0);
+    private final AtomicLong budgetExhaustedCount = new AtomicLong(0);
+    private final AtomicLong switchCount = new AtomicLong(0);
+    private final AtomicLong pessimisticUpdateCount = new AtomicLong(0);
+
+    @Override
+    public Session newSession(String date) {
+        return newSession(date, maxRetries);
+    }
+
+    @Override
+    public Session newSession(String date, int maxRetries) {
+        sessionCount.incrementAndGet();
+        return new RetrySession(contentionOf(date), Math.min(maxRetries, this.maxRetries));
+    }
+
+    @Override
+    public boolean isPessimisticPreferred(String date) {
+        DateContention contention = contentions.get(date);
+        return contention != null && overThreshold(contention.snapshot(System.currentTimeMillis(), windowMs));
+    }
+
+    @Override
+    public void recordPessimisticUpdate(String date) {
+        pessimisticUpdateCount.incrementAndGet();
+        contentionOf(date).pessimisticUpdates.incrementAndGet();
+    }
+
+    /**
+     * 按当前冲突率计算允许的重试次数：冲突率越高，重试次数越少，至少保留1次
+     */
+    private int adaptiveCap(double[] snapshot, int upperBound) {
+        if (snapshot[0] < minSamples) {
+            return upperBound;
+        }
+        double ratio = snapshot[1] / snapshot[0];
+        return Math.max(1, (int) Math.round(upperBound * (1 - ratio)));
+    }
+
+    private boolean overThreshold(double[] snapshot) {
+        return snapshot[0] >= minSamples && snapshot[1] / snapshot[0] >= switchConflictRatio;
+    }
+
+    private DateContention contentionOf(String date) {
+        return contentions.computeIfAbsent(date, d -> new DateContention(System.currentTimeMillis()));
+    }
+
+    @Override
+    public Map<String, Object> getStatistics() {
+        long now = System.currentTimeMillis();
+        Map<String, Object> dates = new HashMap<>();
+        for (Map.Entry<String, DateContention> entry : contentions.entrySet()) {
+            DateContention contention = entry.getValue();
+            double[] snapshot = contention.snapshot(now, windowMs);
+
+            Map<String, Object> date = new HashMap<>();
+            date.put("totalAttempts", contention.totalAttempts.get());
+            date.put("totalConflicts", contention.totalConflicts.get());
+            date.put("windowAttempts", Math.round(snapshot[0]));
+            date.put("windowConflictRatio", snapshot[0] > 0 ? String.format("%.2f", snapshot[1] / snapshot[0]) : "0.00");
+            date.put("currentRetryCap", adaptiveCap(snapshot, maxRetries));
+            date.put("mode", overThreshold(snapshot) ? "pessimistic" : "optimistic");
+            date.put("switchCount", contention.switchCount.get());
+            date.put("pessimisticUpdates", contention.pessimisticUpdates.get());
+            dates.put(entry.getKey(), date);
+        }
+
+        Map<String, Object> config = new HashMap<>();
+        config.put("baseBackoffMs", baseBackoffMs);
+        config.put("maxBackoffMs", maxBackoffMs);
+        config.put("timeBudgetMs", timeBudgetMs);
+        config.put("maxRetries", maxRetries);
+        config.put("switchConflictRatio", switchConflictRatio);
+        config.put("minSamples", minSamples);
+        config.put("windowMs", windowMs);
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("sessionCount", sessionCount.get());
+        stats.put("successCount", successCount.get());
+        stats.put("retryCount", retryCount.get());
+        stats.put("totalBackoffMs", totalBackoffMs.get());
+        stats.put("capReachedCount", capReachedCount.get());
+        stats.put("budgetExhaustedCount", budgetExhaustedCount.get());
+        stats.put("switchCount", switchCount.get());
+        stats.put("pessimisticUpdateCount", pessimisticUpdateCount.get());
+        stats.put("dates", dates);
+        stats.put("config", config);
+        return stats;
+    }
+
+    @Override
+    public void resetStatistics() {
+        contentions.clear();
+        sessionCount.set(0);
+        successCount.set(0);
+        retryCount.set(0);
+        totalBackoffMs.set(0);
+        capReachedCount.set(0);
+        budgetExhaustedCount.set(0);
+        switchCount.set(0);
+        pessimisticUpdateCount.set(0);
+        LOGGER.info("乐观锁重试策略统计信息已重置");
+    }
+
+    /**
+     * 单次请求的重试会话
+     */
+    private class RetrySession implements Session {
+        private final DateContention contention;
+        private final int upperBound;
+        private final long startMillis = System.currentTimeMillis();
+        private long lastBackoffMs = baseBackoffMs;
+        private int retries;
+        private boolean switchRecommended;
+
+        private RetrySession(DateContention contention, int upperBound) {
+            this.contention = contention;
+            this.upperBound = upperBound;
+        }
+
+        @Override
+        public void recordSuccess() {
+            successCount.incrementAndGet();
+            contention.record(false, System.currentTimeMillis(), windowMs);
+        }
+
+        @Override
+        public boolean backoffAndRetry() throws InterruptedException {
+            long now = System.currentTimeMillis();
+            contention.record(true, now, windowMs);
+            double[] snapshot = contention.snapshot(now, windowMs);
+
+            if (overThreshold(snapshot)) {
+                switchRecommended = true;
+                switchCount.incrementAndGet();
+                contention.switchCount.incrementAndGet();
+                return false;
+            }
+            if (retries >= adaptiveCap(snapshot, upperBound)) {
+                capReachedCount.incrementAndGet();
+                return false;
+            }
+
+            // 去相关抖动：在 [基础间隔, 上次间隔 * 3] 内随机，并限制最大间隔
+            long backoffMs = Math.min(maxBackoffMs,
+                    ThreadLocalRandom.current().nextLong(baseBackoffMs, Math.max(baseBackoffMs, lastBackoffMs * 3) + 1));
+            if (now - startMillis + backoffMs > timeBudgetMs) {
+                budgetExhaustedCount.incrementAndGet();
+                return false;
+            }
+            lastBackoffMs = backoffMs;
+
+            retries++;
+            retryCount.incrementAndGet();
+            totalBackoffMs.addAndGet(backoffMs);
+            Thread.sleep(backoffMs);
+            return true;
+        }
+
+        @Override
+        public boolean isSwitchRecommended() {
+            return switchRecommended;
+        }
+
+        @Override
+        public int getRetryCount() {
+            return retries;
+        }
+    }
+
+    /**
+     * 单个日期的冲突统计，当前窗口与上一窗口按时间加权
+     */
+    private static class DateContention {
+        private long windowStart;
+        private long currentAttempts;
+        private long currentConflicts;
+        private long previousAttempts;
+        private long previousConflicts;
+
+        private final AtomicLong totalAttempts = new AtomicLong(0);
+        private final AtomicLong totalConflicts = new AtomicLong(0);
+        private final AtomicLong switchCount = new AtomicLong(0);
+        private final AtomicLong pessimisticUpdates = new AtomicLong(0);
+
+        private DateContention(long now) {
+            this.windowStart = now;
+        }
+
+        private synchronized void record(boolean conflict, long now, long windowMs) {
+            roll(now, windowMs);
+            currentAttempts++;
+            totalAttempts.incrementAndGet();
+            if (conflict) {
+                currentConflicts++;
+                totalConflicts.incrementAndGet();
+            }
+        }
+
+        /**
+         * @return {加权尝试次数, 加权冲突次数}
+         */
+        private synchronized double[] snapshot(long now, long windowMs) {
+            roll(now, windowMs);
+            double previousWeight = 1 - (double) (now - windowStart) / windowMs;
+            return new double[]{
+                    currentAttempts + previousAttempts * previousWeight,
+                    currentConflicts + previousConflicts * previousWeight
+            };
+        }
+
+        private void roll(long now, long windowMs) {
+            long elapsed = now - windowStart;
+            if (elapsed >= 2 * windowMs) {
+                previousAttempts = 0;
+                previousConflicts = 0;
+                currentAttempts = 0;
+                currentConflicts = 0;
+                windowStart = now;
+            } else if (elapsed >= windowMs) {
+                previousAttempts = currentAttempts;
+                previousConflicts = currentConflicts;
+                currentAttempts = 0;
+                currentConflicts = 0;
+                windowStart += windowMs;
+            }
+        }
+    }
+}
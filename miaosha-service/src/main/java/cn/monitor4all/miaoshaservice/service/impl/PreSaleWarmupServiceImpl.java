@@ -0,0 +1,507 @@
+package cn.monitor4all.miaoshaservice.service.impl;
+
+import cn.monitor4all.miaoshadao.model.PurchaseRequest;
+import cn.monitor4all.miaoshadao.model.Ticket;
+import cn.monitor4all.miaoshaservice.service.PreSaleWarmupService;
+import cn.monitor4all.miaoshaservice.service.PurchaseBitmapService;
+import cn.monitor4all.miaoshaservice.service.TicketAdmissionService;
+import cn.monitor4all.miaoshaservice.service.TicketCacheManager;
+import cn.monitor4all.miaoshaservice.service.TicketService;
+import cn.monitor4all.miaoshaservice.service.ValidationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StreamUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.sql.DataSource;
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 开售前预热服务实现类
+ * 1. 应用启动完成后按 open-time 和 lead-seconds 安排预热，启动时已过预热时间但未开售则立即预热，已开售则安排到次日
+ * 2. 各阶段依次执行，单个阶段失败不影响后续阶段，报告状态为 DEGRADED
+ * 3. JIT阶段按轮空跑购票代码，达到最少次数且连续 jit-quiet-rounds 轮JIT累计编译耗时不再增长时结束，最长 jit-max-ms
+ * 4. 只空跑V4 Lua准入路径（校验、临时键上的准入脚本、消息编码），消息发送和订单落库不在预热范围内；
+ *    其他版本的购票接口只有共用的参数和用户校验代码得到预热
+ */
+@Service
+public class PreSaleWarmupServiceImpl implements PreSaleWarmupService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PreSaleWarmupServiceImpl.class);
+
+    private static final String STATE_IDLE = "IDLE";
+    private static final String STATE_SCHEDULED = "SCHEDULED";
+    private static final String STATE_RUNNING = "RUNNING";
+    private static final String STATE_READY = "READY";
+    private static final String STATE_DEGRADED = "DEGRADED";
+
+    private static final String SCRIPT_LOCATION = "classpath*:scripts/*.lua";
+
+    @Resource
+    private TicketService ticketService;
+
+    @Resource
+    private ValidationService validationService;
+
+    @Resource
+    private TicketCacheManager ticketCacheManager;
+
+    @Resource
+    private TicketAdmissionService ticketAdmissionService;
+
+    @Resource
+    private PurchaseBitmapService purchaseBitmapService;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisConnectionFactory redisConnectionFactory;
+
+    @Resource
+    private DataSource dataSource;
+
+    // 是否启用开售前预热
+    @Value("${miaosha.warmup.enabled:true}")
+    private boolean enabled = true;
+
+    // 每天开售时间，与购票接口的抢购时间窗口开始时间一致
+    @Value("${miaosha.warmup.open-time:08:00}")
+    private String openTime = "08:00";
+
+    // 开售前多少秒开始预热
+    @Value("${miaosha.warmup.lead-seconds:120}")
+    private long leadSeconds = 120;
+
+    // 预热的可售日期天数（从当天开始）
+    @Value("${miaosha.warmup.days:3}")
+    private int days = 3;
+
+    // 预加载到本地用户缓存的最大用户数
+    @Value("${miaosha.warmup.user-preload-limit:100000}")
+    private int userPreloadLimit = 100000;
+
+    // 数据库连接池预热目标连接数，0表示使用连接池最大连接数
+    @Value("${miaosha.warmup.db-pool-target:0}")
+    private int dbPoolTarget = 0;
+
+    @Value("${spring.datasource.hikari.maximum-pool-size:10}")
+    private int dbPoolMaxSize = 10;
+
+    // Redis连接池预热目标连接数，0表示使用连接池最大连接数
+    @Value("${miaosha.warmup.redis-pool-target:0}")
+    private int redisPoolTarget = 0;
+
+    @Value("${spring.redis.lettuce.pool.max-active:8}")
+    private int redisPoolMaxActive = 8;
+
+    // 空跑购票使用的用户ID，需为存在的用户，空跑才能走完整的校验路径
+    @Value("${miaosha.warmup.jit-user-id:1}")
+    private long jitUserId = 1;
+
+    // 空跑购票最少次数
+    @Value("${miaosha.warmup.jit-min-iterations:10000}")
+    private int jitMinIterations = 10000;
+
+    // 每轮空跑次数，每轮结束检查一次JIT编译耗时
+    @Value("${miaosha.warmup.jit-round-iterations:1000}")
+    private int jitRoundIterations = 1000;
+
+    // 连续多少轮JIT编译耗时不再增长视为编译稳定
+    @Value("${miaosha.warmup.jit-quiet-rounds:3}")
+    private int jitQuietRounds = 3;
+
+    // 空跑购票最长时间（毫秒）
+    @Value("${miaosha.warmup.jit-max-ms:30000}")
+    private long jitMaxMs = 30000;
+
+    private LocalTime openLocalTime;
+
+    private ScheduledThreadPoolExecutor executor;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    private volatile String state = STATE_IDLE;
+
+    private volatile LocalDateTime openAt;
+
+    private volatile LocalDateTime nextRunAt;
+
+    private volatile LocalDateTime startedAt;
+
+    private volatile LocalDateTime finishedAt;
+
+    private volatile Map<String, Object> lastStages = new LinkedHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        openLocalTime = LocalTime.parse(openTime);
+        executor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "presale-warmup");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 应用启动完成后安排预热
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void scheduleAfterStartup() {
+        if (!enabled) {
+            LOGGER.info("开售前预热未启用");
+            return;
+        }
+        scheduleNext(LocalDateTime.now());
+    }
+
+    /**
+     * 按当前时间安排下一次预热
+     */
+    void scheduleNext(LocalDateTime now) {
+        LocalDateTime open = nextOpenAt(now);
+        LocalDateTime runAt = open.minusSeconds(leadSeconds);
+        long delayMs = Math.max(0, Duration.between(now, runAt).toMillis());
+        openAt = open;
+        nextRunAt = runAt.isBefore(now) ? now : runAt;
+        // 已执行过的预热保留上次结果，直到下次预热开始
+        if (STATE_IDLE.equals(state)) {
+            state = STATE_SCHEDULED;
+        }
+        executor.schedule(this::runScheduled, delayMs, TimeUnit.MILLISECONDS);
+        LOGGER.info("开售前预热已安排，开售时间: {}，预热时间: {}", open, nextRunAt);
+    }
+
+    /**
+     * 下一次开售时间：当天开售时间未到则为当天，否则为次日
+     */
+    LocalDateTime nextOpenAt(LocalDateTime now) {
+        LocalDateTime todayOpen = now.toLocalDate().atTime(openLocalTime);
+        return now.isBefore(todayOpen) ? todayOpen : todayOpen.plusDays(1);
+    }
+
+    private void runScheduled() {
+        try {
+            runWarmup();
+        } catch (Exception e) {
+            LOGGER.error("开售前预热执行异常", e);
+        } finally {
+            // 本次开售之后再安排下一次，避免预热提前结束时重复安排同一天
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime open = openAt;
+            scheduleNext(open != null && now.isBefore(open) ? open : now);
+        }
+    }
+
+    @Override
+    public Map<String, Object> runWarmup() {
+        if (!running.compareAndSet(false, true)) {
+            LOGGER.warn("开售前预热正在执行，忽略本次请求");
+            return getReadinessReport();
+        }
+        try {
+            state = STATE_RUNNING;
+            startedAt = LocalDateTime.now();
+            if (openAt == null || !startedAt.isBefore(openAt)) {
+                openAt = nextOpenAt(startedAt);
+            }
+            LOGGER.info("开始开售前预热，开售时间: {}", openAt);
+
+            List<String> dates = saleDates(startedAt.toLocalDate());
+            Map<String, Object> stages = new LinkedHashMap<>();
+            runStage(stages, "scripts", this::loadScripts);
+            runStage(stages, "pools", this::fillPools);
+            List<String> ticketDates = new ArrayList<>();
+            runStage(stages, "tickets", detail -> preloadTickets(dates, ticketDates, detail));
+            runStage(stages, "bitmap", detail -> preloadBitmaps(ticketDates, detail));
+            runStage(stages, "users", this::preloadUsers);
+            runStage(stages, "jit", detail -> warmUpPurchasePath(ticketDates.isEmpty() ? dates : ticketDates, detail));
+            lastStages = stages;
+
+            finishedAt = LocalDateTime.now();
+            state = allStagesOk(stages) ? STATE_READY : STATE_DEGRADED;
+            LOGGER.info("开售前预热完成，状态: {}，耗时: {}ms，开售前就绪: {}",
+                    state, Duration.between(startedAt, finishedAt).toMillis(), isReadyBeforeOpen());
+            return getReadinessReport();
+        } finally {
+            running.set(false);
+        }
+    }
+
+    @Override
+    public boolean isReady() {
+        return STATE_READY.equals(state);
+    }
+
+    @Override
+    public Map<String, Object> getReadinessReport() {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("enabled", enabled);
+        report.put("state", state);
+        report.put("ready", isReady());
+        report.put("openAt", openAt == null ? null : openAt.toString());
+        report.put("nextRunAt", nextRunAt == null ? null : nextRunAt.toString());
+        report.put("startedAt", startedAt == null ? null : startedAt.toString());
+        report.put("finishedAt", finishedAt == null ? null : finishedAt.toString());
+        report.put("readyBeforeOpen", isReadyBeforeOpen());
+        report.put("stages", lastStages);
+        return report;
+    }
+
+    private boolean isReadyBeforeOpen() {
+        LocalDateTime finished = finishedAt;
+        LocalDateTime open = openAt;
+        return isReady() && finished != null && open != null && finished.isBefore(open);
+    }
+
+    private List<String> saleDates(LocalDate today) {
+        List<String> dates = new ArrayList<>();
+        for (int i = 0; i < days; i++) {
+            dates.add(today.plusDays(i).toString());
+        }
+        return dates;
+    }
+
+    /**
+     * 执行一个阶段，记录是否成功、耗时和阶段详情
+     */
+    private void runStage(Map<String, Object> stages, String name, Stage stage) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        long start = System.currentTimeMillis();
+        boolean ok;
+        try {
+            ok = stage.run(result);
+        } catch (Exception e) {
+            LOGGER.error("预热阶段{}失败: {}", name, e.getMessage(), e);
+            result.put("error", e.getMessage());
+            ok = false;
+        }
+        result.put("ok", ok);
+        result.put("durationMs", System.currentTimeMillis() - start);
+        stages.put(name, result);
+        LOGGER.info("预热阶段{}完成，成功: {}，详情: {}", name, ok, result);
+    }
+
+    private static boolean allStagesOk(Map<String, Object> stages) {
+        for (Object stage : stages.values()) {
+            if (!Boolean.TRUE.equals(((Map<?, ?>) stage).get("ok"))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 加载 resources/scripts 下的所有Lua脚本
+     */
+    private boolean loadScripts(Map<String, Object> detail) throws Exception {
+        org.springframework.core.io.Resource[] resources = new PathMatchingResourcePatternResolver().getResources(SCRIPT_LOCATION);
+        List<String> scripts = new ArrayList<>();
+        for (org.springframework.core.io.Resource resource : resources) {
+            scripts.add(StreamUtils.copyToString(resource.getInputStream(), StandardCharsets.UTF_8));
+        }
+        Integer loaded = stringRedisTemplate.execute((RedisCallback<Integer>) connection -> {
+            int count = 0;
+            for (String script : scripts) {
+                if (connection.scriptLoad(script.getBytes(StandardCharsets.UTF_8)) != null) {
+                    count++;
+                }
+            }
+            return count;
+        });
+        int loadedCount = loaded == null ? 0 : loaded;
+        detail.put("scripts", scripts.size());
+        detail.put("loaded", loadedCount);
+        return loadedCount == scripts.size();
+    }
+
+    /**
+     * 数据库和Redis连接池建满到目标连接数：同时借出目标数量的连接后再一起归还
+     */
+    private boolean fillPools(Map<String, Object> detail) throws Exception {
+        int dbTarget = dbPoolTarget > 0 ? dbPoolTarget : dbPoolMaxSize;
+        int redisTarget = redisPoolTarget > 0 ? redisPoolTarget : redisPoolMaxActive;
+
+        int dbValid = 0;
+        List<Connection> dbConnections = new ArrayList<>();
+        try {
+            for (int i = 0; i < dbTarget; i++) {
+                Connection connection = dataSource.getConnection();
+                dbConnections.add(connection);
+                if (connection.isValid(1)) {
+                    dbValid++;
+                }
+            }
+        } finally {
+            for (Connection connection : dbConnections) {
+                connection.close();
+            }
+        }
+
+        // Lettuce普通命令走共享的原生连接，连接池只在事务、阻塞命令时借出专用连接，
+        // 这里用 MULTI/DISCARD 借出专用连接
+        int redisValid = 0;
+        List<RedisConnection> redisConnections = new ArrayList<>();
+        try {
+            for (int i = 0; i < redisTarget; i++) {
+                RedisConnection connection = redisConnectionFactory.getConnection();
+                redisConnections.add(connection);
+                if ("PONG".equalsIgnoreCase(connection.ping())) {
+                    connection.multi();
+                    connection.discard();
+                    redisValid++;
+                }
+            }
+        } finally {
+            for (RedisConnection connection : redisConnections) {
+                connection.close();
+            }
+        }
+
+        detail.put("dbTarget", dbTarget);
+        detail.put("dbValid", dbValid);
+        detail.put("redisTarget", redisTarget);
+        detail.put("redisValid", redisValid);
+        return dbValid == dbTarget && redisValid == redisTarget;
+    }
+
+    /**
+     * 预加载票券快照并同步准入库存计数
+     */
+    private boolean preloadTickets(List<String> dates, List<String> ticketDates, Map<String, Object> detail) {
+        Map<String, Ticket> tickets = ticketCacheManager.getTicketsWithFallback(dates);
+        int synced = 0;
+        for (String date : dates) {
+            if (tickets.containsKey(date)) {
+                ticketDates.add(date);
+                if (ticketAdmissionService.syncStockFromDb(date)) {
+                    synced++;
+                }
+            }
+        }
+        detail.put("dates", dates);
+        detail.put("tickets", ticketDates.size());
+        detail.put("admissionSynced", synced);
+        return !ticketDates.isEmpty() && synced == ticketDates.size();
+    }
+
+    /**
+     * 重建未就绪的购买位图，其他节点正在重建的日期不重复重建
+     */
+    private boolean preloadBitmaps(List<String> dates, Map<String, Object> detail) {
+        if (dates.isEmpty()) {
+            detail.put("notReady", 0);
+            return true;
+        }
+        Map<String, Boolean> purchased = purchaseBitmapService.hasPurchased(jitUserId, dates);
+        int notReady = 0;
+        int rebuilt = 0;
+        for (String date : dates) {
+            if (purchased.get(date) == null) {
+                notReady++;
+                if (purchaseBitmapService.rebuild(date)) {
+                    rebuilt++;
+                }
+            }
+        }
+        detail.put("notReady", notReady);
+        detail.put("rebuilt", rebuilt);
+        return true;
+    }
+
+    private boolean preloadUsers(Map<String, Object> detail) {
+        detail.put("loaded", validationService.preloadUsers(userPreloadLimit));
+        return true;
+    }
+
+    /**
+     * 空跑购票代码直到JIT编译稳定
+     * 以JIT累计编译耗时不再增长近似判断购票路径的C2编译已经完成，JVM不支持编译耗时监控时只按最少次数执行
+     */
+    private boolean warmUpPurchasePath(List<String> dates, Map<String, Object> detail) {
+        CompilationMXBean compilation = ManagementFactory.getCompilationMXBean();
+        boolean monitored = compilation != null && compilation.isCompilationTimeMonitoringSupported();
+
+        long deadline = System.currentTimeMillis() + jitMaxMs;
+        long iterations = 0;
+        long failures = 0;
+        int quietRounds = 0;
+        boolean stable = false;
+        long lastCompilationMs = monitored ? compilation.getTotalCompilationTime() : 0;
+        long startCompilationMs = lastCompilationMs;
+        String lastError = null;
+
+        while (System.currentTimeMillis() < deadline) {
+            for (int i = 0; i < jitRoundIterations; i++) {
+                PurchaseRequest request = new PurchaseRequest();
+                request.setUserId(jitUserId);
+                request.setDate(dates.get((int) (iterations % dates.size())));
+                request.setVerifyHash("warmup");
+                try {
+                    ticketService.dryRunPurchaseV4(request);
+                } catch (Exception e) {
+                    failures++;
+                    lastError = e.getMessage();
+                }
+                iterations++;
+            }
+            long compilationMs = monitored ? compilation.getTotalCompilationTime() : 0;
+            quietRounds = compilationMs == lastCompilationMs ? quietRounds + 1 : 0;
+            lastCompilationMs = compilationMs;
+            if (iterations >= jitMinIterations && (!monitored || quietRounds >= jitQuietRounds)) {
+                stable = true;
+                break;
+            }
+        }
+
+        detail.put("iterations", iterations);
+        detail.put("failures", failures);
+        detail.put("compilationMonitored", monitored);
+        detail.put("compilationMs", lastCompilationMs - startCompilationMs);
+        detail.put("stable", stable);
+        if (lastError != null) {
+            detail.put("lastError", lastError);
+        }
+        return stable && failures == 0;
+    }
+
+    /**
+     * 预热阶段，返回阶段是否成功，阶段详情写入 detail
+     */
+    @FunctionalInterface
+    private interface Stage {
+        boolean run(Map<String, Object> detail) throws Exception;
+    }
+}
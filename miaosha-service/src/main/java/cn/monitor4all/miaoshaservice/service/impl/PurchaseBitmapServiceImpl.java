@@ -0,0 +1,398 @@
+package cn.monitor4all.miaoshaservice.service.impl;
+
+import cn.monitor4all.miaoshadao.dao.TicketOrder;
+import cn.monitor4all.miaoshadao.mapper.TicketOrderMapper;
+import cn.monitor4all.miaoshadao.utils.CacheKey;
+import cn.monitor4all.miaoshaservice.service.PurchaseBitmapService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 购买位图服务实现类
+ * 1. 查询：Lua脚本先检查重建完成标记，再GETBIT，一次往返；标记不存在时返回未就绪并提交后台重建
+ * 2. 更新：购票置1、取消置0，位图不存在时由更新操作创建并设置过期时间
+ * 3. 重建：抢占重建租约后按主键分页查询有效订单的用户ID，每页一次管道批量SETBIT，最后由Lua脚本原子地设置位图过期时间并写入重建完成标记；
+ *    重建期间的购票直接更新同一个位图，不会丢失；取消同时记入短期的最近取消集合，写入完成标记前重新置0，
+ *    避免重建查询到的旧订单把重建期间的取消覆盖回1
+ * 用户ID超出 max-user-id 时不写位图，查询返回null由调用方回退到数据库（位图大小 = max-user-id / 8 字节）
+ */
+@Service
+public class PurchaseBitmapServiceImpl implements PurchaseBitmapService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PurchaseBitmapServiceImpl.class);
+
+    private static final String REBUILD_LEASE_SUFFIX = "_rebuilding";
+
+    private static final String RECENTLY_CLEARED_SUFFIX = "_cleared";
+
+    // 启动时重建的日期数（今天起）
+    private static final int STARTUP_REBUILD_DAYS = 3;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private TicketOrderMapper ticketOrderMapper;
+
+    // 是否启用购买位图
+    @Value("${miaosha.purchase-bitmap.enabled:true}")
+    private boolean enabled = true;
+
+    // 位图支持的最大用户ID
+    @Value("${miaosha.purchase-bitmap.max-user-id:100000000}")
+    private long maxUserId = 100000000L;
+
+    // 位图有效期（小时），应覆盖可购票的日期范围
+    @Value("${miaosha.purchase-bitmap.ttl-hours:72}")
+    private long ttlHours = 72;
+
+    // 重建时每批管道写入的用户数
+    @Value("${miaosha.purchase-bitmap.rebuild-batch-size:1000}")
+    private int rebuildBatchSize = 1000;
+
+    // 重建租约有效期（秒）
+    @Value("${miaosha.purchase-bitmap.rebuild-lease-seconds:60}")
+    private long rebuildLeaseSeconds = 60;
+
+    private final String nodeId = UUID.randomUUID().toString().replace("-", "").substring(0, 8);
+
+    // 已提交后台重建的日期，避免重复提交
+    private final Set<String> pendingRebuilds = ConcurrentHashMap.newKeySet();
+
+    private DefaultRedisScript<Long> getScript;
+
+    private DefaultRedisScript<List> getBatchScript;
+
+    private DefaultRedisScript<Long> setScript;
+
+    private DefaultRedisScript<Long> readyScript;
+
+    private ThreadPoolExecutor rebuildExecutor;
+
+    // 统计信息
+    private final AtomicLong positiveCount = new AtomicLong(0);
+    private final AtomicLong negativeCount = new AtomicLong(0);
+    private final AtomicLong notReadyCount = new AtomicLong(0);
+    private final AtomicLong outOfRangeCount = new AtomicLong(0);
+    private final AtomicLong markCount = new AtomicLong(0);
+    private final AtomicLong clearCount = new AtomicLong(0);
+    private final AtomicLong rebuildCount = new AtomicLong(0);
+    private final AtomicLong rebuildUserCount = new AtomicLong(0);
+    private final AtomicLong redisErrorCount = new AtomicLong(0);
+
+    @PostConstruct
+    public void init() {
+        getScript = new DefaultRedisScript<>();
+        getScript.setScriptSource(new ResourceScriptSource(new ClassPathResource("scripts/purchase_bitmap_get.lua")));
+        getScript.setResultType(Long.class);
+
+        getBatchScript = new DefaultRedisScript<>();
+        getBatchScript.setScriptSource(new ResourceScriptSource(new ClassPathResource("scripts/purchase_bitmap_get_batch.lua")));
+        getBatchScript.setResultType(List.class);
+
+        setScript = new DefaultRedisScript<>();
+        setScript.setScriptSource(new ResourceScriptSource(new ClassPathResource("scripts/purchase_bitmap_set.lua")));
+        setScript.setResultType(Long.class);
+
+        readyScript = new DefaultRedisScript<>();
+        readyScript.setScriptSource(new ResourceScriptSource(new ClassPathResource("scripts/purchase_bitmap_ready.lua")));
+        readyScript.setResultType(Long.class);
+
+        rebuildExecutor = new ThreadPoolExecutor(1, 1, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(32), r -> {
+                    Thread thread = new Thread(r, "purchase-bitmap-rebuild");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        LOGGER.info("购买位图服务初始化完成，启用: {}, 最大用户ID: {}, 有效期: {}小时", enabled, maxUserId, ttlHours);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (rebuildExecutor != null) {
+            rebuildExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * 应用启动完成后重建最近几天的位图（已就绪的日期跳过）
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        if (!enabled) {
+            return;
+        }
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < STARTUP_REBUILD_DAYS; i++) {
+            scheduleRebuild(today.plusDays(i).toString());
+        }
+    }
+
+    @Override
+    public Boolean hasPurchased(Long userId, String date) {
+        if (!enabled) {
+            return null;
+        }
+        if (!inRange(userId)) {
+            outOfRangeCount.incrementAndGet();
+            return null;
+        }
+
+        Long result;
+        try {
+            result = stringRedisTemplate.execute(getScript, Arrays.asList(bitmapKey(date), readyKey(date)), String.valueOf(userId));
+        } catch (Exception e) {
+            redisErrorCount.incrementAndGet();
+            LOGGER.warn("查询购买位图失败，用户ID: {}, 日期: {}, 错误: {}", userId, date, e.getMessage());
+            return null;
+        }
+
+        return toPurchased(result, date);
+    }
+
+    @Override
+    public Map<String, Boolean> hasPurchased(Long userId, List<String> dates) {
+        Map<String, Boolean> statuses = new LinkedHashMap<>();
+        for (String date : dates) {
+            statuses.put(date, null);
+        }
+        if (!enabled || dates.isEmpty()) {
+            return statuses;
+        }
+        if (!inRange(userId)) {
+            outOfRangeCount.incrementAndGet();
+            return statuses;
+        }
+
+        List<String> keys = new ArrayList<>(dates.size() * 2);
+        for (String date : dates) {
+            keys.add(bitmapKey(date));
+            keys.add(readyKey(date));
+        }
+        List<?> results;
+        try {
+            results = stringRedisTemplate.execute(getBatchScript, keys, String.valueOf(userId));
+        } catch (Exception e) {
+            redisErrorCount.incrementAndGet();
+            LOGGER.warn("批量查询购买位图失败，用户ID: {}, 日期: {}, 错误: {}", userId, dates, e.getMessage());
+            return statuses;
+        }
+
+        for (int i = 0; i < dates.size(); i++) {
+            Long result = results != null && i < results.size() ? (Long) results.get(i) : null;
+            statuses.put(dates.get(i), toPurchased(result, dates.get(i)));
+        }
+        return statuses;
+    }
+
+    /**
+     * 脚本返回值转换为购买状态，位图未就绪时提交后台重建并返回null
+     */
+    private Boolean toPurchased(Long result, String date) {
+        if (result == null || result < 0) {
+            notReadyCount.incrementAndGet();
+            scheduleRebuild(date);
+            return null;
+        }
+        if (result == 1L) {
+            positiveCount.incrementAndGet();
+            return true;
+        }
+        negativeCount.incrementAndGet();
+        return false;
+    }
+
+    @Override
+    public void markPurchased(Long userId, String date) {
+        if (updateBit(userId, date, true)) {
+            markCount.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void clearPurchased(Long userId, String date) {
+        if (updateBit(userId, date, false)) {
+            clearCount.incrementAndGet();
+        }
+    }
+
+    private boolean updateBit(Long userId, String date, boolean purchased) {
+        if (!enabled || !inRange(userId)) {
+            return false;
+        }
+        try {
+            // 最近取消集合至少保留到可能进行中的重建结束
+            stringRedisTemplate.execute(setScript, Arrays.asList(bitmapKey(date), clearedKey(date)),
+                    String.valueOf(userId), purchased ? "1" : "0", String.valueOf(bitmapTtlSeconds()),
+                    String.valueOf(rebuildLeaseSeconds * 2));
+            return true;
+        } catch (Exception e) {
+            // 位图与订单不一致，删除重建标记，后续查询回退到数据库并触发重建
+            redisErrorCount.incrementAndGet();
+            LOGGER.error("更新购买位图失败，用户ID: {}, 日期: {}, 已购买: {}", userId, date, purchased, e);
+            invalidateReady(date);
+            return false;
+        }
+    }
+
+    @Override
+    public boolean rebuild(String date) {
+        if (!enabled) {
+            return false;
+        }
+        String leaseKey = leaseKey(date);
+        Boolean acquired = stringRedisTemplate.opsForValue().setIfAbsent(leaseKey, nodeId, rebuildLeaseSeconds, TimeUnit.SECONDS);
+        if (!Boolean.TRUE.equals(acquired)) {
+            LOGGER.debug("其他节点正在重建购买位图，日期: {}", date);
+            return false;
+        }
+
+        long start = System.currentTimeMillis();
+        try {
+            byte[] key = bitmapKey(date).getBytes(StandardCharsets.UTF_8);
+            int written = 0;
+            Integer afterId = 0;
+            while (true) {
+                List<TicketOrder> page = ticketOrderMapper.selectUserIdsByDateAfterId(date, afterId, rebuildBatchSize);
+                if (page.isEmpty()) {
+                    break;
+                }
+                stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    writeBits(connection, key, page);
+                    return null;
+                });
+                written += page.size();
+                if (page.size() < rebuildBatchSize) {
+                    break;
+                }
+                afterId = page.get(page.size() - 1).getId();
+            }
+
+            // 重新清除最近取消的用户，并原子地写入重建完成标记（标记比位图早过期）
+            Long recleared = stringRedisTemplate.execute(readyScript,
+                    Arrays.asList(bitmapKey(date), readyKey(date), clearedKey(date)),
+                    String.valueOf(bitmapTtlSeconds()), String.valueOf(TimeUnit.HOURS.toSeconds(ttlHours)),
+                    String.valueOf(System.currentTimeMillis()));
+
+            rebuildCount.incrementAndGet();
+            rebuildUserCount.addAndGet(written);
+            LOGGER.info("购买位图重建完成，日期: {}, 用户数: {}, 重建期间取消: {}, 耗时: {}ms",
+                    date, written, recleared, System.currentTimeMillis() - start);
+            return true;
+        } finally {
+            stringRedisTemplate.delete(leaseKey);
+        }
+    }
+
+    private void writeBits(RedisConnection connection, byte[] key, List<TicketOrder> orders) {
+        for (TicketOrder order : orders) {
+            Long userId = order.getUserId();
+            if (inRange(userId)) {
+                connection.setBit(key, userId, true);
+            } else {
+                outOfRangeCount.incrementAndGet();
+            }
+        }
+    }
+
+    private void scheduleRebuild(String date) {
+        if (!pendingRebuilds.add(date)) {
+            return;
+        }
+        try {
+            rebuildExecutor.execute(() -> {
+                try {
+                    if (!Boolean.TRUE.equals(stringRedisTemplate.hasKey(readyKey(date)))) {
+                        rebuild(date);
+                    }
+                } catch (Exception e) {
+                    LOGGER.error("重建购买位图失败，日期: {}", date, e);
+                } finally {
+                    pendingRebuilds.remove(date);
+                }
+            });
+        } catch (Exception e) {
+            pendingRebuilds.remove(date);
+            LOGGER.warn("提交购买位图重建任务失败，日期: {}, 错误: {}", date, e.getMessage());
+        }
+    }
+
+    private void invalidateReady(String date) {
+        try {
+            stringRedisTemplate.delete(readyKey(date));
+        } catch (Exception e) {
+            LOGGER.warn("删除购买位图重建标记失败，日期: {}, 错误: {}", date, e.getMessage());
+        }
+    }
+
+    private boolean inRange(Long userId) {
+        return userId != null && userId >= 0 && userId <= maxUserId;
+    }
+
+    private long bitmapTtlSeconds() {
+        return TimeUnit.HOURS.toSeconds(ttlHours + 1);
+    }
+
+    private String bitmapKey(String date) {
+        return CacheKey.PURCHASE_BITMAP.getKey() + "_" + date;
+    }
+
+    private String leaseKey(String date) {
+        return bitmapKey(date) + REBUILD_LEASE_SUFFIX;
+    }
+
+    private String clearedKey(String date) {
+        return bitmapKey(date) + RECENTLY_CLEARED_SUFFIX;
+    }
+
+    private String readyKey(String date) {
+        return CacheKey.PURCHASE_BITMAP_READY.getKey() + "_" + date;
+    }
+
+    @Override
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("maxUserId", maxUserId);
+        stats.put("positiveCount", positiveCount.get());
+        stats.put("negativeCount", negativeCount.get());
+        stats.put("notReadyCount", notReadyCount.get());
+        stats.put("outOfRangeCount", outOfRangeCount.get());
+        stats.put("markCount", markCount.get());
+        stats.put("clearCount", clearCount.get());
+        stats.put("rebuildCount", rebuildCount.get());
+        stats.put("rebuildUserCount", rebuildUserCount.get());
+        stats.put("redisErrorCount", redisErrorCount.get());
+        stats.put("pendingRebuilds", pendingRebuilds.size());
+        return stats;
+    }
+}
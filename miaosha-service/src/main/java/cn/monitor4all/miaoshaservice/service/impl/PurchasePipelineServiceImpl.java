@@ -0,0 +1,530 @@
+package cn.monitor4all.miaoshaservice.service.impl;
+
+import cn.monitor4all.miaoshadao.dao.TicketEntity;
+import cn.monitor4all.miaoshadao.dao.TicketOrder;
+import cn.monitor4all.miaoshadao.mapper.TicketEntityMapper;
+import cn.monitor4all.miaoshadao.mapper.TicketOrderMapper;
+import cn.monitor4all.miaoshadao.model.BusinessException;
+import cn.monitor4all.miaoshadao.model.PurchaseRecord;
+import cn.monitor4all.miaoshaservice.service.PurchasePipelineService;
+import cn.monitor4all.miaoshaservice.service.TicketCacheManager;
+import cn.monitor4all.miaoshaservice.service.TicketCodeGeneratorService;
+import cn.monitor4all.miaoshaservice.utils.OrderNoGenerator;
+import cn.monitor4all.miaoshaservice.utils.TicketOrderFactory;
+import cn.monitor4all.miaoshaservice.utils.RingBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 购票流水线服务实现类
+ * 每个日期一条流水线，消费线程每次取出一批事件，依次执行：
+ * 1. 校验：批内同一用户去重，售罄后在复查间隔内直接拒绝
+ * 2. 库存扣减：整批一条条件UPDATE，库存不足时按剩余数量部分成交
+ * 3. 编码生成：为成交的请求生成票券编码和订单编号
+ * 4. 订单落库：整批一条多值INSERT，失败时逐条重试，仍失败的请求归还库存
+ */
+@Service
+public class PurchasePipelineServiceImpl implements PurchasePipelineService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PurchasePipelineServiceImpl.class);
+
+    /**
+     * 部分成交时条件扣减的最大尝试次数（期间可能有其他购票模式并发扣减）
+     */
+    private static final int MAX_PARTIAL_ATTEMPTS = 3;
+
+    /**
+     * 消费线程无事件时的最长挂起时间
+     */
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    @Resource
+    private TicketEntityMapper ticketEntityMapper;
+
+    @Resource
+    private TicketOrderMapper ticketOrderMapper;
+
+    @Resource
+    private TicketCodeGeneratorService ticketCodeGeneratorService;
+
+    @Resource
+    private TicketCacheManager ticketCacheManager;
+
+    // 每个日期环形队列的容量，必须为2的幂
+    @Value("${miaosha.pipeline.ring-size:1024}")
+    private int ringSize = 1024;
+
+    // 单批最大事件数
+    @Value("${miaosha.pipeline.max-batch-size:128}")
+    private int maxBatchSize = 128;
+
+    // 调用方等待结果的超时时间（毫秒）
+    @Value("${miaosha.pipeline.timeout-ms:3000}")
+    private long timeoutMs = 3000;
+
+    // 最多同时存在的日期流水线数
+    @Value("${miaosha.pipeline.max-lanes:16}")
+    private int maxLanes = 16;
+
+    // 售罄后直接拒绝的时长，之后重新查询库存（毫秒）
+    @Value("${miaosha.pipeline.sold-out-recheck-ms:1000}")
+    private long soldOutRecheckMs = 1000;
+
+    private final Map<String, DateLane> lanes = new ConcurrentHashMap<>();
+
+    private volatile boolean running;
+
+    // 统计信息
+    private final AtomicLong totalRequests = new AtomicLong(0);
+    private final AtomicLong rejectedCount = new AtomicLong(0);
+    private final AtomicLong totalBatches = new AtomicLong(0);
+    private final AtomicLong stockStatements = new AtomicLong(0);
+    private final AtomicLong insertStatements = new AtomicLong(0);
+    private final AtomicLong successCount = new AtomicLong(0);
+    private final AtomicLong soldOutCount = new AtomicLong(0);
+    private final AtomicLong duplicateCount = new AtomicLong(0);
+    private final AtomicLong errorCount = new AtomicLong(0);
+    private final AtomicLong timeoutCount = new AtomicLong(0);
+    private final AtomicLong maxBatch = new AtomicLong(0);
+    private final AtomicLong totalWaitMicros = new AtomicLong(0);
+    private final AtomicLong maxWaitMicros = new AtomicLong(0);
+
+    @PostConstruct
+    public void init() {
+        running = true;
+        LOGGER.info("购票流水线服务初始化完成，队列容量: {}, 最大批次: {}, 最大日期数: {}", ringSize, maxBatchSize, maxLanes);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        running = false;
+        for (DateLane lane : lanes.values()) {
+            try {
+                lane.consumer.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+    }
+
+    @Override
+    public CompletableFuture<PurchaseRecord> submit(Long userId, String date) {
+        if (!running) {
+            throw new BusinessException("购票流水线已停止");
+        }
+        totalRequests.incrementAndGet();
+        DateLane lane = lanes.get(date);
+        if (lane == null) {
+            lane = createLane(date);
+        }
+
+        CompletableFuture<PurchaseRecord> future = new CompletableFuture<>();
+        long enqueueNanos = System.nanoTime();
+        boolean published = lane.ring.tryPublish(event -> event.reset(userId, future, enqueueNanos));
+        if (!published) {
+            rejectedCount.incrementAndGet();
+            throw new BusinessException("购票排队人数过多，请稍后重试");
+        }
+        return future;
+    }
+
+    @Override
+    public PurchaseRecord purchase(Long userId, String date) {
+        CompletableFuture<PurchaseRecord> future = submit(userId, date);
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // 请求仍在流水线中，成交后订单照常落库，用户可通过订单查询获取结果
+            timeoutCount.incrementAndGet();
+            throw new BusinessException("购票排队超时，请稍后查询订单");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("购票等待被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof BusinessException) {
+                throw (BusinessException) cause;
+            }
+            if (cause instanceof IllegalStateException) {
+                throw (IllegalStateException) cause;
+            }
+            throw new RuntimeException("购票失败: " + cause.getMessage(), cause);
+        }
+    }
+
+    private synchronized DateLane createLane(String date) {
+        DateLane lane = lanes.get(date);
+        if (lane != null) {
+            return lane;
+        }
+        if (lanes.size() >= maxLanes) {
+            throw new BusinessException("购票流水线日期数已达上限");
+        }
+        lane = new DateLane(date, new RingBuffer<>(ringSize, PurchaseEvent::new));
+        DateLane created = lane;
+        lane.consumer = new Thread(() -> consume(created), "purchase-pipeline-" + date);
+        lane.consumer.setDaemon(true);
+        lanes.put(date, lane);
+        lane.consumer.start();
+        LOGGER.info("购票流水线启动，日期: {}", date);
+        return lane;
+    }
+
+    /**
+     * 消费线程主循环，同一日期的库存和订单只由该线程写入
+     */
+    private void consume(DateLane lane) {
+        List<PurchaseEvent> batch = new ArrayList<>(maxBatchSize);
+        while (true) {
+            int count = lane.ring.poll(maxBatchSize, batch::add);
+            if (count == 0) {
+                if (!running) {
+                    break;
+                }
+                lane.ring.awaitPublish(IDLE_PARK_NANOS);
+                continue;
+            }
+            try {
+                processBatch(lane, batch);
+            } catch (Throwable t) {
+                LOGGER.error("购票流水线批次处理异常，日期: {}, 批大小: {}", lane.date, batch.size(), t);
+                settle(lane, batch, t);
+            } finally {
+                for (PurchaseEvent event : batch) {
+                    event.clear();
+                }
+                batch.clear();
+                lane.ring.commit(count);
+            }
+        }
+        LOGGER.info("购票流水线停止，日期: {}", lane.date);
+    }
+
+    /**
+     * 批次异常时收尾尚未完成的请求：订单已落库的按成交返回，其余请求失败
+     */
+    private void settle(DateLane lane, List<PurchaseEvent> batch, Throwable cause) {
+        for (PurchaseEvent event : batch) {
+            if (event.future.isDone()) {
+                continue;
+            }
+            if (event.persisted) {
+                successCount.incrementAndGet();
+                complete(event, new PurchaseRecord(event.userId, LocalDate.parse(lane.date), event.order.getTicketCode()));
+            } else {
+                fail(event, cause);
+            }
+        }
+    }
+
+    private void processBatch(DateLane lane, List<PurchaseEvent> batch) {
+        totalBatches.incrementAndGet();
+        maxBatch.accumulateAndGet(batch.size(), Math::max);
+
+        List<PurchaseEvent> valid = validate(lane, batch);
+        if (valid.isEmpty()) {
+            return;
+        }
+
+        int granted;
+        try {
+            granted = deduct(lane, valid.size());
+        } catch (Exception e) {
+            LOGGER.error("流水线库存扣减失败，日期: {}, 批大小: {}", lane.date, valid.size(), e);
+            fail(valid, e);
+            return;
+        }
+        for (int i = granted; i < valid.size(); i++) {
+            soldOutCount.incrementAndGet();
+            complete(valid.get(i), null);
+        }
+        if (granted == 0) {
+            return;
+        }
+
+        List<PurchaseEvent> prepared = generateCodes(lane, valid.subList(0, granted));
+        List<PurchaseEvent> persisted = persist(lane, prepared);
+        int restore = granted - persisted.size();
+        if (restore > 0) {
+            ticketEntityMapper.incrementStock(lane.date, restore);
+            LOGGER.warn("流水线订单创建失败，归还库存，日期: {}, 数量: {}", lane.date, restore);
+        }
+        if (persisted.isEmpty()) {
+            return;
+        }
+
+        ticketCacheManager.applyStockDelta(lane.date, -persisted.size());
+        for (PurchaseEvent event : persisted) {
+            PurchaseRecord purchaseRecord = new PurchaseRecord(event.userId, LocalDate.parse(lane.date), event.order.getTicketCode());
+            try {
+                ticketCacheManager.addPurchaseRecord(event.userId, lane.date, purchaseRecord);
+            } catch (Exception e) {
+                LOGGER.warn("流水线写入购买记录缓存失败，用户ID: {}, 日期: {}", event.userId, lane.date, e);
+            }
+            successCount.incrementAndGet();
+            complete(event, purchaseRecord);
+        }
+        LOGGER.debug("流水线批次完成，日期: {}, 批大小: {}, 成交: {}", lane.date, batch.size(), persisted.size());
+    }
+
+    /**
+     * 校验阶段：售罄快速拒绝、票券存在性、批内同一用户去重
+     */
+    private List<PurchaseEvent> validate(DateLane lane, List<PurchaseEvent> batch) {
+        if (System.nanoTime() < lane.soldOutUntilNanos) {
+            for (PurchaseEvent event : batch) {
+                soldOutCount.incrementAndGet();
+                complete(event, null);
+            }
+            return new ArrayList<>();
+        }
+        if (lane.ticketId == null) {
+            TicketEntity ticketEntity = ticketEntityMapper.selectByDate(lane.date);
+            if (ticketEntity == null) {
+                fail(batch, new BusinessException("票券不存在"));
+                return new ArrayList<>();
+            }
+            lane.ticketId = ticketEntity.getId();
+        }
+
+        List<PurchaseEvent> valid = new ArrayList<>(batch.size());
+        Set<Long> users = new HashSet<>();
+        for (PurchaseEvent event : batch) {
+            if (users.add(event.userId)) {
+                valid.add(event);
+            } else {
+                duplicateCount.incrementAndGet();
+                fail(event, new IllegalStateException("您已购买过当天的票券，每人每天限购一张"));
+            }
+        }
+        return valid;
+    }
+
+    /**
+     * 库存扣减阶段：本节点同一日期只有消费线程执行扣减
+     * @return 成交数量
+     */
+    private int deduct(DateLane lane, int size) {
+        stockStatements.incrementAndGet();
+        if (ticketEntityMapper.decrementIfAvailable(lane.date, size) > 0) {
+            return size;
+        }
+        int granted = 0;
+        for (int attempt = 0; attempt < MAX_PARTIAL_ATTEMPTS; attempt++) {
+            TicketEntity ticketEntity = ticketEntityMapper.selectByDate(lane.date);
+            int partial = ticketEntity == null ? 0 : Math.min(ticketEntity.getRemainingCount(), size);
+            if (partial <= 0) {
+                break;
+            }
+            stockStatements.incrementAndGet();
+            if (ticketEntityMapper.decrementIfAvailable(lane.date, partial) > 0) {
+                granted = partial;
+                break;
+            }
+        }
+        if (granted < size) {
+            lane.soldOutUntilNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(soldOutRecheckMs);
+        }
+        return granted;
+    }
+
+    /**
+     * 编码生成阶段：生成失败的请求直接失败，库存在落库阶段后统一归还
+     */
+    private List<PurchaseEvent> generateCodes(DateLane lane, List<PurchaseEvent> events) {
+        List<PurchaseEvent> prepared = new ArrayList<>(events.size());
+        for (PurchaseEvent event : events) {
+            try {
+                String ticketCode = ticketCodeGeneratorService.generateUniqueTicketCode(event.userId, lane.date);
+
+                TicketOrder ticketOrder = TicketOrderFactory.buildOrder(OrderNoGenerator.generate(event.userId), event.userId,
+                        lane.ticketId, lane.date, ticketCode, "流水线购票生成");
+                event.order = ticketOrder;
+                prepared.add(event);
+            } catch (Exception e) {
+                LOGGER.error("流水线生成票券编码失败，用户ID: {}, 日期: {}", event.userId, lane.date, e);
+                fail(event, e);
+            }
+        }
+        return prepared;
+    }
+
+    /**
+     * 订单落库阶段：整批一条INSERT，失败时逐条插入定位失败的订单
+     * @return 落库成功的请求
+     */
+    private List<PurchaseEvent> persist(DateLane lane, List<PurchaseEvent> events) {
+        if (events.isEmpty()) {
+            return events;
+        }
+        List<TicketOrder> orders = new ArrayList<>(events.size());
+        for (PurchaseEvent event : events) {
+            orders.add(event.order);
+        }
+        try {
+            insertStatements.incrementAndGet();
+            if (ticketOrderMapper.insertBatch(orders) == orders.size()) {
+                for (PurchaseEvent event : events) {
+                    event.persisted = true;
+                }
+                return events;
+            }
+        } catch (Exception e) {
+            LOGGER.warn("流水线批量插入订单失败，逐条重试，日期: {}, 批大小: {}, 错误: {}", lane.date, orders.size(), e.getMessage());
+        }
+
+        List<PurchaseEvent> persisted = new ArrayList<>(events.size());
+        for (PurchaseEvent event : events) {
+            try {
+                insertStatements.incrementAndGet();
+                if (ticketOrderMapper.insert(event.order) > 0) {
+                    event.persisted = true;
+                    persisted.add(event);
+                } else {
+                    fail(event, new RuntimeException("订单创建失败"));
+                }
+            } catch (Exception e) {
+                LOGGER.error("流水线插入订单失败，用户ID: {}, 日期: {}", event.userId, lane.date, e);
+                fail(event, e);
+            }
+        }
+        return persisted;
+    }
+
+    private void complete(PurchaseEvent event, PurchaseRecord purchaseRecord) {
+        recordWait(event);
+        event.future.complete(purchaseRecord);
+    }
+
+    private void fail(List<PurchaseEvent> events, Throwable cause) {
+        for (PurchaseEvent event : events) {
+            fail(event, cause);
+        }
+    }
+
+    private void fail(PurchaseEvent event, Throwable cause) {
+        if (!(cause instanceof BusinessException) && !(cause instanceof IllegalStateException)) {
+            errorCount.incrementAndGet();
+        }
+        recordWait(event);
+        event.future.completeExceptionally(cause);
+    }
+
+    private void recordWait(PurchaseEvent event) {
+        long waitMicros = (System.nanoTime() - event.enqueueNanos) / 1000;
+        totalWaitMicros.addAndGet(waitMicros);
+        maxWaitMicros.accumulateAndGet(waitMicros, Math::max);
+    }
+
+    @Override
+    public Map<String, Object> getStatistics() {
+        long batchCount = totalBatches.get();
+        long completed = successCount.get() + soldOutCount.get() + duplicateCount.get() + errorCount.get();
+
+        Map<String, Object> laneBacklog = new HashMap<>();
+        for (DateLane lane : lanes.values()) {
+            laneBacklog.put(lane.date, lane.ring.backlog());
+        }
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("ringSize", ringSize);
+        stats.put("maxBatchSize", maxBatchSize);
+        stats.put("totalRequests", totalRequests.get());
+        stats.put("rejectedCount", rejectedCount.get());
+        stats.put("totalBatches", batchCount);
+        stats.put("stockStatements", stockStatements.get());
+        stats.put("insertStatements", insertStatements.get());
+        stats.put("successCount", successCount.get());
+        stats.put("soldOutCount", soldOutCount.get());
+        stats.put("duplicateCount", duplicateCount.get());
+        stats.put("errorCount", errorCount.get());
+        stats.put("timeoutCount", timeoutCount.get());
+        stats.put("avgBatchSize", batchCount > 0 ? String.format("%.2f", (double) completed / batchCount) : "0.00");
+        stats.put("maxBatch", maxBatch.get());
+        stats.put("avgWaitMs", completed > 0 ? String.format("%.3f", totalWaitMicros.get() / 1000.0 / completed) : "0.000");
+        stats.put("maxWaitMs", String.format("%.3f", maxWaitMicros.get() / 1000.0));
+        stats.put("laneBacklog", laneBacklog);
+        return stats;
+    }
+
+    @Override
+    public void resetStatistics() {
+        totalRequests.set(0);
+        rejectedCount.set(0);
+        totalBatches.set(0);
+        stockStatements.set(0);
+        insertStatements.set(0);
+        successCount.set(0);
+        soldOutCount.set(0);
+        duplicateCount.set(0);
+        errorCount.set(0);
+        timeoutCount.set(0);
+        maxBatch.set(0);
+        totalWaitMicros.set(0);
+        maxWaitMicros.set(0);
+        LOGGER.info("购票流水线统计信息已重置");
+    }
+
+    /**
+     * 单个日期的流水线，除ring外的字段只由消费线程读写
+     */
+    private static class DateLane {
+        private final String date;
+        private final RingBuffer<PurchaseEvent> ring;
+        private Thread consumer;
+        private Integer ticketId;
+        private long soldOutUntilNanos;
+
+        private DateLane(String date, RingBuffer<PurchaseEvent> ring) {
+            this.date = date;
+            this.ring = ring;
+        }
+    }
+
+    /**
+     * 环形队列槽位，预分配后循环复用
+     */
+    private static class PurchaseEvent {
+        private Long userId;
+        private CompletableFuture<PurchaseRecord> future;
+        private long enqueueNanos;
+        private TicketOrder order;
+        // 订单已落库，批次后续阶段异常时仍按成交返回
+        private boolean persisted;
+
+        private void reset(Long userId, CompletableFuture<PurchaseRecord> future, long enqueueNanos) {
+            this.userId = userId;
+            this.future = future;
+            this.enqueueNanos = enqueueNanos;
+            this.order = null;
+            this.persisted = false;
+        }
+
+        private void clear() {
+            this.userId = null;
+            this.future = null;
+            this.order = null;
+            this.persisted = false;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package cn.monitor4all.miaoshaservice.service.impl;
+
+import cn.monitor4all.miaoshaservice.service.StockDeductStatisticsService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 库存扣减引擎统计服务实现类
+ */
+@Service
+public class StockDeductStatisticsServiceImpl implements StockDeductStatisticsService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StockDeductStatisticsServiceImpl.class);
+
+    private final Map<String, EngineStats> engineStats = new ConcurrentHashMap<>();
+
+    @Override
+    public void recordStatement(String engine) {
+        statsOf(engine).statements.incrementAndGet();
+    }
+
+    @Override
+    public void recordConflict(String engine) {
+        statsOf(engine).conflicts.incrementAndGet();
+    }
+
+    @Override
+    public void recordResult(String engine, String outcome, long elapsedNanos) {
+        EngineStats stats = statsOf(engine);
+        stats.requests.incrementAndGet();
+        if (OUTCOME_SUCCESS.equals(outcome)) {
+            stats.success.incrementAndGet();
+        } else if (OUTCOME_SOLD_OUT.equals(outcome)) {
+            stats.soldOut.incrementAndGet();
+        } else {
+            stats.failed.incrementAndGet();
+        }
+        long elapsedMicros = elapsedNanos / 1000;
+        stats.totalMicros.addAndGet(elapsedMicros);
+        stats.maxMicros.accumulateAndGet(elapsedMicros, Math::max);
+    }
+
+    @Override
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> result = new HashMap<>();
+        for (Map.Entry<String, EngineStats> entry : engineStats.entrySet()) {
+            EngineStats stats = entry.getValue();
+            long requests = stats.requests.get();
+            long success = stats.success.get();
+            long statements = stats.statements.get();
+
+            Map<String, Object> engine = new HashMap<>();
+            engine.put("requests", requests);
+            engine.put("successCount", success);
+            engine.put("soldOutCount", stats.soldOut.get());
+            engine.put("failedCount", stats.failed.get());
+            engine.put("updateStatements", statements);
+            engine.put("conflictCount", stats.conflicts.get());
+            engine.put("statementsPerSuccess", success > 0 ? String.format("%.2f", (double) statements / success) : "0.00");
+            engine.put("failureRate", requests > 0 ? String.format("%.2f%%", (double) stats.failed.get() / requests * 100) : "0.00%");
+            engine.put("avgElapsedMs", requests > 0 ? String.format("%.3f", stats.totalMicros.get() / 1000.0 / requests) : "0.000");
+            engine.put("maxElapsedMs", String.format("%.3f", stats.maxMicros.get() / 1000.0));
+            result.put(entry.getKey(), engine);
+        }
+        return result;
+    }
+
+    @Override
+    public void resetStatistics() {
+        engineStats.clear();
+        LOGGER.info("库存扣减引擎统计信息已重置");
+    }
+
+    private EngineStats statsOf(String engine) {
+        return engineStats.computeIfAbsent(engine, e -> new EngineStats());
+    }
+
+    /**
+     * 单个引擎的统计计数
+     */
+    private static class EngineStats {
+        private final AtomicLong requests = new AtomicLong(0);
+        private final AtomicLong success = new AtomicLong(0);
+        private final AtomicLong soldOut = new AtomicLong(0);
+        private final AtomicLong failed = new AtomicLong(0);
+        private final AtomicLong statements = new AtomicLong(0);
+        private final AtomicLong conflicts = new AtomicLong(0);
+        private final AtomicLong totalMicros = new AtomicLong(0);
+        private final AtomicLong maxMicros = new AtomicLong(0);
+    }
+}
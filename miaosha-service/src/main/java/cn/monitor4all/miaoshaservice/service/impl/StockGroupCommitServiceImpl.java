@@ -0,0 +1,284 @@
+package cn.monitor4all.miaoshaservice.service.impl;
+
+import cn.monitor4all.miaoshadao.dao.TicketEntity;
+import cn.monitor4all.miaoshadao.mapper.TicketEntityMapper;
+import cn.monitor4all.miaoshadao.model.BusinessException;
+import cn.monitor4all.miaoshaservice.service.StockGroupCommitService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 库存组提交服务实现类
+ * 每个日期一个批次：第一个请求到达时开启等待窗口，窗口结束或批次满时由刷新线程执行
+ * remaining_count = remaining_count - N WHERE remaining_count >= N，库存不足N时按剩余数量部分成交
+ */
+@Service
+public class StockGroupCommitServiceImpl implements StockGroupCommitService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StockGroupCommitServiceImpl.class);
+
+    /**
+     * 部分成交时条件扣减的最大尝试次数（期间可能有其他购票模式并发扣减）
+     */
+    private static final int MAX_PARTIAL_ATTEMPTS = 3;
+
+    @Resource
+    private TicketEntityMapper ticketEntityMapper;
+
+    // 等待窗口（毫秒）
+    @Value("${miaosha.stock.group-commit.window-ms:5}")
+    private long windowMs = 5;
+
+    // 单批最大请求数，达到后立即刷新
+    @Value("${miaosha.stock.group-commit.max-batch-size:200}")
+    private int maxBatchSize = 200;
+
+    // 调用方等待结果的超时时间（毫秒）
+    @Value("${miaosha.stock.group-commit.timeout-ms:3000}")
+    private long timeoutMs = 3000;
+
+    // 刷新线程数
+    @Value("${miaosha.stock.group-commit.flush-threads:2}")
+    private int flushThreads = 2;
+
+    private final Map<String, DateBatch> batches = new ConcurrentHashMap<>();
+
+    private ScheduledThreadPoolExecutor flushExecutor;
+
+    // 统计信息
+    private final AtomicLong totalRequests = new AtomicLong(0);
+    private final AtomicLong totalBatches = new AtomicLong(0);
+    private final AtomicLong totalStatements = new AtomicLong(0);
+    private final AtomicLong successCount = new AtomicLong(0);
+    private final AtomicLong soldOutCount = new AtomicLong(0);
+    private final AtomicLong errorCount = new AtomicLong(0);
+    private final AtomicLong timeoutCount = new AtomicLong(0);
+    private final AtomicLong maxBatch = new AtomicLong(0);
+    private final AtomicLong totalWaitMicros = new AtomicLong(0);
+    private final AtomicLong maxWaitMicros = new AtomicLong(0);
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger(0);
+        flushExecutor = new ScheduledThreadPoolExecutor(flushThreads, r -> {
+            Thread thread = new Thread(r, "stock-group-commit-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        flushExecutor.setRemoveOnCancelPolicy(true);
+        LOGGER.info("库存组提交服务初始化完成，等待窗口: {}ms, 最大批次: {}, 刷新线程: {}",
+                windowMs, maxBatchSize, flushThreads);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (flushExecutor != null) {
+            flushExecutor.shutdown();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Boolean> submit(String date) {
+        PendingDeduct pending = new PendingDeduct();
+        totalRequests.incrementAndGet();
+
+        DateBatch batch = batches.computeIfAbsent(date, d -> new DateBatch());
+        List<PendingDeduct> fullBatch = null;
+        synchronized (batch) {
+            batch.pending.add(pending);
+            if (batch.pending.size() >= maxBatchSize) {
+                fullBatch = batch.drain();
+            } else if (!batch.flushScheduled) {
+                batch.flushScheduled = true;
+                flushExecutor.schedule(() -> flush(date), windowMs, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (fullBatch != null) {
+            List<PendingDeduct> toApply = fullBatch;
+            flushExecutor.execute(() -> apply(date, toApply));
+        }
+        return pending.future;
+    }
+
+    @Override
+    public boolean deduct(String date) {
+        CompletableFuture<Boolean> future = submit(date);
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            timeoutCount.incrementAndGet();
+            // 调用方已放弃，批次稍后成交的库存需要归还
+            future.thenAccept(success -> {
+                if (Boolean.TRUE.equals(success)) {
+                    restore(date);
+                }
+            });
+            throw new BusinessException("库存扣减排队超时，请重试");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("库存扣减被中断", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("库存扣减失败: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    @Override
+    public void restore(String date) {
+        int result = ticketEntityMapper.incrementStock(date, 1);
+        LOGGER.info("组提交库存归还，日期: {}, 结果: {}", date, result);
+    }
+
+    /**
+     * 等待窗口结束，刷新该日期的批次
+     */
+    private void flush(String date) {
+        DateBatch batch = batches.get(date);
+        if (batch == null) {
+            return;
+        }
+        List<PendingDeduct> drained;
+        synchronized (batch) {
+            batch.flushScheduled = false;
+            drained = batch.drain();
+        }
+        if (!drained.isEmpty()) {
+            apply(date, drained);
+        }
+    }
+
+    /**
+     * 执行一个批次的库存扣减并分发结果
+     */
+    private void apply(String date, List<PendingDeduct> requests) {
+        int size = requests.size();
+        int granted = 0;
+        try {
+            totalStatements.incrementAndGet();
+            if (ticketEntityMapper.decrementIfAvailable(date, size) > 0) {
+                granted = size;
+            } else {
+                // 库存不足整批，按剩余数量部分成交
+                for (int attempt = 0; attempt < MAX_PARTIAL_ATTEMPTS; attempt++) {
+                    TicketEntity ticketEntity = ticketEntityMapper.selectByDate(date);
+                    int partial = ticketEntity == null ? 0 : Math.min(ticketEntity.getRemainingCount(), size);
+                    if (partial <= 0) {
+                        break;
+                    }
+                    totalStatements.incrementAndGet();
+                    if (ticketEntityMapper.decrementIfAvailable(date, partial) > 0) {
+                        granted = partial;
+                        break;
+                    }
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.error("组提交库存扣减失败，日期: {}, 批大小: {}", date, size, e);
+            errorCount.addAndGet(size);
+            recordBatch(requests);
+            for (PendingDeduct request : requests) {
+                request.future.completeExceptionally(e);
+            }
+            return;
+        }
+
+        // 先记录统计再唤醒调用方
+        successCount.addAndGet(granted);
+        soldOutCount.addAndGet(size - granted);
+        recordBatch(requests);
+        for (int i = 0; i < size; i++) {
+            requests.get(i).future.complete(i < granted);
+        }
+
+        LOGGER.debug("组提交库存扣减完成，日期: {}, 批大小: {}, 成交: {}", date, size, granted);
+    }
+
+    private void recordBatch(List<PendingDeduct> requests) {
+        totalBatches.incrementAndGet();
+        maxBatch.accumulateAndGet(requests.size(), Math::max);
+        long now = System.nanoTime();
+        for (PendingDeduct request : requests) {
+            long waitMicros = (now - request.enqueueNanos) / 1000;
+            totalWaitMicros.addAndGet(waitMicros);
+            maxWaitMicros.accumulateAndGet(waitMicros, Math::max);
+        }
+    }
+
+    @Override
+    public Map<String, Object> getStatistics() {
+        long requests = totalRequests.get();
+        long batchCount = totalBatches.get();
+        long completed = successCount.get() + soldOutCount.get() + errorCount.get();
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("windowMs", windowMs);
+        stats.put("maxBatchSize", maxBatchSize);
+        stats.put("totalRequests", requests);
+        stats.put("totalBatches", batchCount);
+        stats.put("totalStatements", totalStatements.get());
+        stats.put("successCount", successCount.get());
+        stats.put("soldOutCount", soldOutCount.get());
+        stats.put("errorCount", errorCount.get());
+        stats.put("timeoutCount", timeoutCount.get());
+        stats.put("avgBatchSize", batchCount > 0 ? String.format("%.2f", (double) completed / batchCount) : "0.00");
+        stats.put("maxBatch", maxBatch.get());
+        stats.put("avgWaitMs", completed > 0 ? String.format("%.3f", totalWaitMicros.get() / 1000.0 / completed) : "0.000");
+        stats.put("maxWaitMs", String.format("%.3f", maxWaitMicros.get() / 1000.0));
+        stats.put("pendingDates", batches.size());
+        return stats;
+    }
+
+    @Override
+    public void resetStatistics() {
+        totalRequests.set(0);
+        totalBatches.set(0);
+        totalStatements.set(0);
+        successCount.set(0);
+        soldOutCount.set(0);
+        errorCount.set(0);
+        timeoutCount.set(0);
+        maxBatch.set(0);
+        totalWaitMicros.set(0);
+        maxWaitMicros.set(0);
+        LOGGER.info("库存组提交统计信息已重置");
+    }
+
+    /**
+     * 单个日期的待提交批次
+     */
+    private static class DateBatch {
+        private List<PendingDeduct> pending = new ArrayList<>();
+        private boolean flushScheduled;
+
+        private List<PendingDeduct> drain() {
+            List<PendingDeduct> drained = pending;
+            pending = new ArrayList<>();
+            return drained;
+        }
+    }
+
+    /**
+     * 一次待提交的扣减请求
+     */
+    private static class PendingDeduct {
+        private final CompletableFuture<Boolean> future = new CompletableFuture<>();
+        private final long enqueueNanos = System.nanoTime();
+    }
+}
@@ -0,0 +1,537 @@
+package cn.monitor4all.miaoshaservice.service.impl;
+
+import cn.monitor4all.miaoshadao.dao.TicketEntity;
+import cn.monitor4all.miaoshadao.mapper.TicketEntityMapper;
+import cn.monitor4all.miaoshadao.mapper.TicketOrderMapper;
+import cn.monitor4all.miaoshadao.utils.CacheKey;
+import cn.monitor4all.miaoshaservice.service.StockLeaseService;
+import cn.monitor4all.miaoshaservice.service.TicketCacheManager;
+import cn.monitor4all.miaoshaservice.utils.OrderNoGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 节点本地库存租约服务实现类
+ *
+ * 租约记账：
+ * 1. 续租时先用条件UPDATE从ticket表扣出一批库存，再由Lua脚本记入 STOCK_LEASE_日期 哈希中本节点的净租约数量；
+ *    节点没有有效租约时同时分配一个单调递增的租约纪元
+ * 2. 售出时先CAS扣减本地计数，再由Lua脚本校验纪元并累加已售数量；下单失败退回时同样校验纪元
+ * 3. 归还时先校验纪元并扣减净租约数量，再incrementStock归还数据库
+ * 4. 回收失效节点时由Lua脚本原子删除其净租约、纪元和已售数量，未售出 = 净租约数量 - 已售数量
+ * 5. 数据库库存只在续租和归还时变化，票券缓存的剩余票数在这两处同步增减，售卖时不修改
+ *
+ * 不超卖：本地计数只在续租成功后增加；失效节点的租约只有一个节点能回收，回收同时删除纪元（隔离），
+ * 停顿或断连后恢复的节点用旧纪元售出、退回、归还都会被拒绝，本地剩余随即清空；
+ * 本地计数和纪元放在同一个原子变量中，每张售出的票都能确定所属纪元
+ */
+@Service
+public class StockLeaseServiceImpl implements StockLeaseService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StockLeaseServiceImpl.class);
+
+    private static final String LEASE_ORDER_PREFIX = "TL";
+
+    @Resource
+    private TicketEntityMapper ticketEntityMapper;
+
+    @Resource
+    private TicketOrderMapper ticketOrderMapper;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private TicketCacheManager ticketCacheManager;
+
+    @Resource(name = "stockLeaseExecutor")
+    private Executor stockLeaseExecutor;
+
+    // 每次续租的票数
+    @Value("${miaosha.stock.lease.block-size:50}")
+    private int blockSize = 50;
+
+    // 低水位比例，本地剩余低于 blockSize * 比例 时异步续租
+    @Value("${miaosha.stock.lease.low-watermark-ratio:0.2}")
+    private double lowWatermarkRatio = 0.2;
+
+    // 节点心跳过期时间（秒）
+    @Value("${miaosha.stock.lease.heartbeat-ttl-seconds:30}")
+    private long heartbeatTtlSeconds = 30;
+
+    private final String nodeId = UUID.randomUUID().toString().replace("-", "").substring(0, 8);
+
+    private final Map<String, LocalLease> leases = new ConcurrentHashMap<>();
+
+    private DefaultRedisScript<Long> grantScript;
+
+    private DefaultRedisScript<Long> consumeScript;
+
+    private DefaultRedisScript<Long> returnScript;
+
+    private DefaultRedisScript<List> reclaimScript;
+
+    private volatile boolean heartbeatRegistered = false;
+
+    @PostConstruct
+    public void init() {
+        grantScript = loadScript("scripts/stock_lease_grant.lua", Long.class);
+        consumeScript = loadScript("scripts/stock_lease_consume.lua", Long.class);
+        returnScript = loadScript("scripts/stock_lease_return.lua", Long.class);
+        reclaimScript = loadScript("scripts/stock_lease_reclaim.lua", List.class);
+        try {
+            heartbeat();
+        } catch (Exception e) {
+            LOGGER.warn("库存租约节点心跳注册失败，首次续租时重试，节点ID: {}", nodeId, e);
+        }
+        LOGGER.info("库存租约服务初始化完成，节点ID: {}, 续租批量: {}, 低水位比例: {}", nodeId, blockSize, lowWatermarkRatio);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        try {
+            int returned = returnAllLeases();
+            stringRedisTemplate.delete(nodeKey(nodeId));
+            LOGGER.info("节点下线归还库存租约，节点ID: {}, 归还: {}", nodeId, returned);
+        } catch (Exception e) {
+            LOGGER.warn("节点下线归还库存租约失败，节点ID: {}，等待其他节点回收", nodeId, e);
+        }
+    }
+
+    @Override
+    public int tryAcquire(String date) {
+        LocalLease lease = leases.computeIfAbsent(date, d -> new LocalLease());
+        int epoch = lease.tryTake();
+        if (epoch > 0 && confirmSale(date, lease, epoch)) {
+            refillAsyncIfLow(date, lease);
+            return epoch;
+        }
+        // 本地租约耗尽或已被回收，同步续租一次
+        lease.refillLock.lock();
+        try {
+            if (lease.remaining() <= 0) {
+                refill(date, lease);
+            }
+        } finally {
+            lease.refillLock.unlock();
+        }
+        epoch = lease.tryTake();
+        return epoch > 0 && confirmSale(date, lease, epoch) ? epoch : NO_LEASE;
+    }
+
+    @Override
+    public void release(String date, int epoch) {
+        LocalLease lease = leases.get(date);
+        if (lease == null || epoch <= 0) {
+            return;
+        }
+        try {
+            Long result = stringRedisTemplate.execute(consumeScript, Arrays.asList(epochKey(date), soldKey(date)),
+                    nodeId, String.valueOf(epoch), "-1");
+            if (result != null && result == 1L) {
+                lease.giveBack(epoch);
+            } else {
+                // 回收时这张票已按已售计算，不再退回
+                LOGGER.warn("本节点库存租约已被回收，不退回本地租约，节点ID: {}, 日期: {}, 纪元: {}", nodeId, date, epoch);
+            }
+        } catch (Exception e) {
+            // 已售数量多计一张，回收时少归还一张，不会超卖
+            LOGGER.error("库存租约退回失败，节点ID: {}, 日期: {}, 纪元: {}", nodeId, date, epoch, e);
+        }
+    }
+
+    @Override
+    public String generateLeaseOrderNo(Long userId) {
+        return OrderNoGenerator.generate(LEASE_ORDER_PREFIX + nodeId, userId);
+    }
+
+    @Override
+    public int returnAllLeases() {
+        int total = 0;
+        for (Map.Entry<String, LocalLease> entry : leases.entrySet()) {
+            String date = entry.getKey();
+            LocalLease lease = entry.getValue();
+            lease.refillLock.lock();
+            try {
+                // 纪元只在续租时变化，持有lease锁期间不变
+                int epoch = lease.epoch();
+                int unsold = lease.drain();
+                if (unsold <= 0) {
+                    continue;
+                }
+                // 先校验纪元并扣减净租约，再归还数据库：租约已被回收时剩余库存已由回收节点归还
+                Long result = stringRedisTemplate.execute(returnScript, Arrays.asList(leaseKey(date), epochKey(date)),
+                        nodeId, String.valueOf(epoch), String.valueOf(unsold));
+                if (result == null || result != 1L) {
+                    LOGGER.warn("本节点库存租约已被回收，跳过归还，节点ID: {}, 日期: {}, 数量: {}", nodeId, date, unsold);
+                    continue;
+                }
+                ticketEntityMapper.incrementStock(date, unsold);
+                ticketCacheManager.applyStockDelta(date, unsold);
+                total += unsold;
+                LOGGER.info("归还库存租约，节点ID: {}, 日期: {}, 数量: {}", nodeId, date, unsold);
+            } finally {
+                lease.refillLock.unlock();
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public void heartbeat() {
+        stringRedisTemplate.opsForValue().set(nodeKey(nodeId), String.valueOf(System.currentTimeMillis()),
+                heartbeatTtlSeconds, TimeUnit.SECONDS);
+        heartbeatRegistered = true;
+
+        // 自我隔离：租约已被其他节点回收（例如长时间停顿被判定失效），不再售卖本地剩余
+        for (Map.Entry<String, LocalLease> entry : leases.entrySet()) {
+            LocalLease lease = entry.getValue();
+            int epoch = lease.epoch();
+            if (lease.remaining() > 0
+                    && !String.valueOf(epoch).equals(stringRedisTemplate.opsForHash().get(epochKey(entry.getKey()), nodeId))) {
+                int dropped = lease.fence(epoch);
+                LOGGER.warn("本节点库存租约已被回收，清空本地剩余，节点ID: {}, 日期: {}, 纪元: {}, 数量: {}",
+                        nodeId, entry.getKey(), epoch, dropped);
+            }
+        }
+    }
+
+    @Override
+    public int reclaimDeadNodeLeases() {
+        Set<String> dates = stringRedisTemplate.opsForSet().members(CacheKey.STOCK_LEASE_DATES.getKey());
+        if (dates == null || dates.isEmpty()) {
+            return 0;
+        }
+        int total = 0;
+        for (String date : dates) {
+            Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(leaseKey(date));
+            if (entries.isEmpty()) {
+                stringRedisTemplate.opsForSet().remove(CacheKey.STOCK_LEASE_DATES.getKey(), date);
+                continue;
+            }
+            for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+                String leaseNodeId = String.valueOf(entry.getKey());
+                if (nodeId.equals(leaseNodeId) || Boolean.TRUE.equals(stringRedisTemplate.hasKey(nodeKey(leaseNodeId)))) {
+                    continue;
+                }
+                // 原子删除净租约、纪元和已售数量，只有取得租约数量的节点执行归还；纪元删除后失效节点恢复也无法再售出
+                List<?> reclaimed = stringRedisTemplate.execute(reclaimScript,
+                        Arrays.asList(leaseKey(date), epochKey(date), soldKey(date)), leaseNodeId);
+                if (reclaimed == null || reclaimed.size() < 2) {
+                    continue;
+                }
+                int leased = ((Number) reclaimed.get(0)).intValue();
+                int sold = ((Number) reclaimed.get(1)).intValue();
+                if (sold < 0) {
+                    // 没有已售数量记录（纪元引入前的租约），按订单编号前缀统计
+                    sold = ticketOrderMapper.countByDateAndOrderNoPrefix(date, LEASE_ORDER_PREFIX + leaseNodeId);
+                }
+                int unsold = leased - sold;
+                if (unsold > 0) {
+                    ticketEntityMapper.incrementStock(date, unsold);
+                    ticketCacheManager.applyStockDelta(date, unsold);
+                    total += unsold;
+                }
+                LOGGER.warn("回收失效节点库存租约，节点ID: {}, 日期: {}, 净租约: {}, 已售: {}, 归还: {}",
+                        leaseNodeId, date, leased, sold, Math.max(unsold, 0));
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public Map<String, Object> getLeaseOverview() {
+        Map<String, Object> overview = new HashMap<>();
+        overview.put("nodeId", nodeId);
+        overview.put("blockSize", blockSize);
+        overview.put("lowWatermarkRatio", lowWatermarkRatio);
+
+        Map<String, Object> local = new HashMap<>();
+        for (Map.Entry<String, LocalLease> entry : leases.entrySet()) {
+            Map<String, Object> item = new HashMap<>();
+            item.put("remaining", entry.getValue().remaining());
+            item.put("epoch", entry.getValue().epoch());
+            item.put("sold", entry.getValue().sold.sum());
+            item.put("refills", entry.getValue().refills.sum());
+            local.put(entry.getKey(), item);
+        }
+        overview.put("local", local);
+
+        Map<String, Object> cluster = new HashMap<>();
+        Set<String> dates = stringRedisTemplate.opsForSet().members(CacheKey.STOCK_LEASE_DATES.getKey());
+        if (dates != null) {
+            for (String date : dates) {
+                List<Map<String, Object>> nodes = new ArrayList<>();
+                for (Map.Entry<Object, Object> entry : stringRedisTemplate.opsForHash().entries(leaseKey(date)).entrySet()) {
+                    String leaseNodeId = String.valueOf(entry.getKey());
+                    Map<String, Object> node = new HashMap<>();
+                    node.put("nodeId", leaseNodeId);
+                    node.put("leased", entry.getValue());
+                    node.put("alive", Boolean.TRUE.equals(stringRedisTemplate.hasKey(nodeKey(leaseNodeId))));
+                    node.put("self", nodeId.equals(leaseNodeId));
+                    nodes.add(node);
+                }
+                cluster.put(date, nodes);
+            }
+        }
+        overview.put("cluster", cluster);
+        return overview;
+    }
+
+    @Override
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * 本地剩余低于水位时异步续租，同一日期同时只有一个续租任务
+     */
+    private void refillAsyncIfLow(String date, LocalLease lease) {
+        if (lease.remaining() > blockSize * lowWatermarkRatio || !lease.refilling.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            stockLeaseExecutor.execute(() -> {
+                try {
+                    lease.refillLock.lock();
+                    try {
+                        if (lease.remaining() <= blockSize * lowWatermarkRatio) {
+                            refill(date, lease);
+                        }
+                    } finally {
+                        lease.refillLock.unlock();
+                    }
+                } catch (Exception e) {
+                    LOGGER.warn("异步续租失败，日期: {}", date, e);
+                } finally {
+                    lease.refilling.set(false);
+                }
+            });
+        } catch (Exception e) {
+            lease.refilling.set(false);
+        }
+    }
+
+    /**
+     * 从数据库续租一批库存，调用方需持有lease锁
+     */
+    private void refill(String date, LocalLease lease) {
+        if (!heartbeatRegistered) {
+            heartbeat();
+        }
+        int granted = leaseFromDb(date);
+        if (granted <= 0) {
+            return;
+        }
+        Long epoch;
+        try {
+            epoch = stringRedisTemplate.execute(grantScript,
+                    Arrays.asList(leaseKey(date), epochKey(date), soldKey(date), epochSeqKey(date), CacheKey.STOCK_LEASE_DATES.getKey()),
+                    nodeId, String.valueOf(granted), date);
+            if (epoch == null) {
+                throw new IllegalStateException("租约纪元为空");
+            }
+        } catch (Exception e) {
+            // 租约未记账，节点失效时无法回收，立即归还数据库
+            ticketEntityMapper.incrementStock(date, granted);
+            LOGGER.error("库存租约记账失败，已归还数据库，日期: {}, 数量: {}", date, granted, e);
+            return;
+        }
+        ticketCacheManager.applyStockDelta(date, -granted);
+        lease.grant(epoch.intValue(), granted);
+        lease.refills.increment();
+        LOGGER.info("续租库存成功，节点ID: {}, 日期: {}, 纪元: {}, 数量: {}", nodeId, date, epoch, granted);
+    }
+
+    /**
+     * 条件扣减数据库库存，不足一个批量时租出剩余全部
+     */
+    private int leaseFromDb(String date) {
+        if (ticketEntityMapper.decrementIfAvailable(date, blockSize) > 0) {
+            return blockSize;
+        }
+        TicketEntity ticketEntity = ticketEntityMapper.selectByDate(date);
+        int partial = ticketEntity == null ? 0 : Math.min(ticketEntity.getRemainingCount(), blockSize);
+        if (partial > 0 && ticketEntityMapper.decrementIfAvailable(date, partial) > 0) {
+            return partial;
+        }
+        return 0;
+    }
+
+    /**
+     * 校验纪元并累加已售数量，租约已被回收时清空本地剩余
+     * @return 是否售出
+     */
+    private boolean confirmSale(String date, LocalLease lease, int epoch) {
+        Long result;
+        try {
+            result = stringRedisTemplate.execute(consumeScript, Arrays.asList(epochKey(date), soldKey(date)),
+                    nodeId, String.valueOf(epoch), "1");
+        } catch (RuntimeException e) {
+            lease.giveBack(epoch);
+            throw e;
+        }
+        if (result != null && result == 1L) {
+            return true;
+        }
+        int dropped = lease.fence(epoch);
+        LOGGER.warn("本节点库存租约已被回收，拒绝售出并清空本地剩余，节点ID: {}, 日期: {}, 纪元: {}, 数量: {}",
+                nodeId, date, epoch, dropped + 1);
+        return false;
+    }
+
+    private static <T> DefaultRedisScript<T> loadScript(String path, Class<T> resultType) {
+        DefaultRedisScript<T> script = new DefaultRedisScript<>();
+        script.setScriptSource(new ResourceScriptSource(new ClassPathResource(path)));
+        script.setResultType(resultType);
+        return script;
+    }
+
+    private String leaseKey(String date) {
+        return CacheKey.STOCK_LEASE.getKey() + "_" + date;
+    }
+
+    private String epochKey(String date) {
+        return leaseKey(date) + "_epoch";
+    }
+
+    private String epochSeqKey(String date) {
+        return leaseKey(date) + "_epoch_seq";
+    }
+
+    private String soldKey(String date) {
+        return leaseKey(date) + "_sold";
+    }
+
+    private String nodeKey(String leaseNodeId) {
+        return CacheKey.STOCK_LEASE_NODE.getKey() + "_" + leaseNodeId;
+    }
+
+    /**
+     * 单个日期的本地租约
+     */
+    private static class LocalLease {
+        // 高32位为租约纪元（0表示尚未续租），低32位为本地剩余
+        private final AtomicLong state = new AtomicLong(0);
+        private final LongAdder sold = new LongAdder();
+        private final LongAdder refills = new LongAdder();
+        private final AtomicBoolean refilling = new AtomicBoolean(false);
+        // 续租和归还互斥；持有期间访问数据库，使用ReentrantLock避免钉住虚拟线程的载体线程
+        private final ReentrantLock refillLock = new ReentrantLock();
+
+        private static long pack(int epoch, int remaining) {
+            return ((long) epoch << 32) | (remaining & 0xFFFFFFFFL);
+        }
+
+        private int remaining() {
+            return (int) state.get();
+        }
+
+        private int epoch() {
+            return (int) (state.get() >>> 32);
+        }
+
+        /**
+         * 扣减一张
+         * @return 所属纪元，本地剩余不足返回0
+         */
+        private int tryTake() {
+            while (true) {
+                long current = state.get();
+                if ((int) current <= 0) {
+                    return 0;
+                }
+                if (state.compareAndSet(current, current - 1)) {
+                    sold.increment();
+                    return (int) (current >>> 32);
+                }
+            }
+        }
+
+        /**
+         * 续租成功后增加本地剩余，纪元变化时旧纪元的剩余已被回收，直接替换
+         */
+        private void grant(int epoch, int count) {
+            while (true) {
+                long current = state.get();
+                long next = (int) (current >>> 32) == epoch ? current + count : pack(epoch, count);
+                if (state.compareAndSet(current, next)) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * 退回一张，纪元已变化时不退回
+         */
+        private boolean giveBack(int epoch) {
+            while (true) {
+                long current = state.get();
+                if ((int) (current >>> 32) != epoch) {
+                    return false;
+                }
+                if (state.compareAndSet(current, current + 1)) {
+                    sold.decrement();
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * 清空本地剩余（保留纪元）
+         * @return 清空的数量
+         */
+        private int drain() {
+            while (true) {
+                long current = state.get();
+                int remaining = (int) current;
+                if (remaining <= 0) {
+                    return 0;
+                }
+                if (state.compareAndSet(current, pack((int) (current >>> 32), 0))) {
+                    return remaining;
+                }
+            }
+        }
+
+        /**
+         * 租约已被回收，清空该纪元的本地剩余
+         * @return 清空的数量，纪元已变化时返回0
+         */
+        private int fence(int epoch) {
+            while (true) {
+                long current = state.get();
+                if ((int) (current >>> 32) != epoch) {
+                    return 0;
+                }
+                if (state.compareAndSet(current, pack(epoch, 0))) {
+                    return Math.max((int) current, 0);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package cn.monitor4all.miaoshaservice.service.impl;
+
+import cn.monitor4all.miaoshadao.dao.TicketEntity;
+import cn.monitor4all.miaoshadao.dao.TicketOrder;
+import cn.monitor4all.miaoshadao.mapper.TicketEntityMapper;
+import cn.monitor4all.miaoshadao.mapper.TicketOrderMapper;
+import cn.monitor4all.miaoshadao.model.BusinessException;
+import cn.monitor4all.miaoshadao.model.PurchaseRecord;
+import cn.monitor4all.miaoshadao.utils.CacheKey;
+import cn.monitor4all.miaoshaservice.service.TicketAdmissionService;
+import cn.monitor4all.miaoshaservice.service.TicketCacheManager;
+import cn.monitor4all.miaoshaservice.service.TicketCodeGeneratorService;
+import cn.monitor4all.miaoshaservice.utils.OrderNoGenerator;
+import cn.monitor4all.miaoshaservice.utils.TicketOrderFactory;
+import cn.monitor4all.miaoshaservice.utils.redis.CacheExpiredTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 购票准入服务实现类
+ * 库存计数、已准入用户集合、下单意向三个key均按日期划分，由Lua脚本原子维护
+ */
+@Service
+public class TicketAdmissionServiceImpl implements TicketAdmissionService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TicketAdmissionServiceImpl.class);
+
+    /**
+     * 准入生成订单的备注，用于消息重复投递时识别本模式创建的订单
+     */
+    public static final String ADMISSION_ORDER_REMARK = "Lua准入购票生成";
+
+    /**
+     * 库存计数过期时间：票券最多提前2天开售，保留3天
+     */
+    private static final long STOCK_EXPIRE_SECONDS = CacheExpiredTime.ONE_DAY * 3L;
+
+    /**
+     * 用户集合与下单意向过期时间
+     */
+    private static final long ADMISSION_EXPIRE_SECONDS = CacheExpiredTime.ONE_DAY * 3L;
+
+    /**
+     * 空跑准入临时键后缀与过期时间
+     */
+    private static final String DRY_RUN_SUFFIX = "_dryrun";
+
+    private static final long DRY_RUN_EXPIRE_SECONDS = 300L;
+
+    /**
+     * 空跑准入临时库存计数
+     */
+    private static final String DRY_RUN_STOCK = String.valueOf(Integer.MAX_VALUE);
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private TicketEntityMapper ticketEntityMapper;
+
+    @Resource
+    private TicketOrderMapper ticketOrderMapper;
+
+    @Resource
+    private TicketCodeGeneratorService ticketCodeGeneratorService;
+
+    @Resource
+    private TicketCacheManager ticketCacheManager;
+
+    private final AtomicLong dryRunSequence = new AtomicLong();
+
+    private DefaultRedisScript<Long> admissionScript;
+
+    private DefaultRedisScript<Long> rollbackScript;
+
+    private DefaultRedisScript<Long> releaseScript;
+
+    @PostConstruct
+    public void init() {
+        admissionScript = new DefaultRedisScript<>();
+        admissionScript.setLocation(new ClassPathResource("scripts/purchase_admission.lua"));
+        admissionScript.setResultType(Long.class);
+
+        rollbackScript = new DefaultRedisScript<>();
+        rollbackScript.setLocation(new ClassPathResource("scripts/purchase_admission_rollback.lua"));
+        rollbackScript.setResultType(Long.class);
+
+        releaseScript = new DefaultRedisScript<>();
+        releaseScript.setLocation(new ClassPathResource("scripts/purchase_admission_release.lua"));
+        releaseScript.setResultType(Long.class);
+
+        LOGGER.info("购票准入脚本加载完成");
+    }
+
+    @Override
+    public int tryAdmit(Long userId, String date, String requestId) {
+        int result = executeAdmission(userId, date, requestId);
+        if (result == STOCK_NOT_READY) {
+            // 库存计数未初始化，从数据库同步一次后重试
+            if (!syncStockFromDb(date)) {
+                throw new BusinessException("票券不存在");
+            }
+            result = executeAdmission(userId, date, requestId);
+        }
+        LOGGER.debug("购票准入结果，用户ID: {}, 日期: {}, 结果: {}", userId, date, result);
+        return result;
+    }
+
+    private int executeAdmission(Long userId, String date, String requestId) {
+        return executeAdmission(admissionKeys(date), String.valueOf(userId), requestId, ADMISSION_EXPIRE_SECONDS);
+    }
+
+    private int executeAdmission(List<String> keys, String member, String requestId, long expireSeconds) {
+        Long result = stringRedisTemplate.execute(admissionScript, keys,
+                member, requestId, String.valueOf(expireSeconds));
+        if (result == null) {
+            throw new RuntimeException("购票准入脚本执行结果为空");
+        }
+        return result.intValue();
+    }
+
+    @Override
+    public int dryRunAdmit(Long userId, String date, String requestId) {
+        List<String> keys = dryRunKeys(date);
+        String member = userId + "_" + dryRunSequence.incrementAndGet();
+        int result = executeAdmission(keys, member, requestId, DRY_RUN_EXPIRE_SECONDS);
+        if (result == STOCK_NOT_READY) {
+            stringRedisTemplate.opsForValue().setIfAbsent(keys.get(0), DRY_RUN_STOCK, DRY_RUN_EXPIRE_SECONDS, TimeUnit.SECONDS);
+            result = executeAdmission(keys, member, requestId, DRY_RUN_EXPIRE_SECONDS);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean rollbackAdmission(Long userId, String date, boolean releaseUser, boolean restoreStock) {
+        try {
+            Long result = stringRedisTemplate.execute(rollbackScript, admissionKeys(date),
+                    String.valueOf(userId), releaseUser ? "1" : "0", restoreStock ? "1" : "0");
+            boolean rolledBack = result != null && result == 1L;
+            LOGGER.info("购票准入回滚，用户ID: {}, 日期: {}, 移除限购标记: {}, 归还库存: {}, 结果: {}",
+                    userId, date, releaseUser, restoreStock, rolledBack);
+            return rolledBack;
+        } catch (Exception e) {
+            LOGGER.error("购票准入回滚失败，用户ID: {}, 日期: {}", userId, date, e);
+            return false;
+        }
+    }
+
+    @Override
+    public void releaseAfterCancel(Long userId, String date) {
+        try {
+            Long stock = stringRedisTemplate.execute(releaseScript,
+                    Arrays.asList(stockKey(date), userKey(date)), String.valueOf(userId));
+            if (stock != null && stock == -2L) {
+                LOGGER.debug("取消的订单未经过准入，不归还准入库存，用户ID: {}, 日期: {}", userId, date);
+                return;
+            }
+            LOGGER.info("取消订单归还准入库存，用户ID: {}, 日期: {}, 当前库存计数: {}", userId, date, stock);
+        } catch (Exception e) {
+            // 库存计数只会偏少不会偏多，失败不影响主流程
+            LOGGER.warn("取消订单归还准入库存失败，用户ID: {}, 日期: {}", userId, date, e);
+        }
+    }
+
+    @Override
+    public boolean syncStockFromDb(String date) {
+        TicketEntity ticketEntity = ticketEntityMapper.selectByDate(date);
+        if (ticketEntity == null) {
+            LOGGER.warn("同步准入库存失败，票券不存在，日期: {}", date);
+            return false;
+        }
+        Boolean set = stringRedisTemplate.opsForValue().setIfAbsent(stockKey(date),
+                String.valueOf(ticketEntity.getRemainingCount()), STOCK_EXPIRE_SECONDS, TimeUnit.SECONDS);
+        LOGGER.info("同步准入库存，日期: {}, 数据库剩余: {}, 是否写入: {}",
+                date, ticketEntity.getRemainingCount(), set);
+        return true;
+    }
+
+    @Override
+    public Long getAdmissionStock(String date) {
+        String value = stringRedisTemplate.opsForValue().get(stockKey(date));
+        return value == null ? null : Long.valueOf(value);
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRED)
+    public void createOrderFromAdmission(Map<String, Object> message) {
+        Long userId = Long.valueOf(message.get("userId").toString());
+        String purchaseDate = (String) message.get("date");
+
+        // 1. 幂等校验：消息重复投递或用户已通过其他模式购票
+        TicketOrder existingOrder = ticketOrderMapper.selectByUserIdAndDate(userId, purchaseDate);
+        if (existingOrder != null) {
+            boolean createdByAdmission = ADMISSION_ORDER_REMARK.equals(existingOrder.getRemark());
+            // 其他模式创建的订单未占用本次准入的库存计数，需要归还
+            rollbackAdmission(userId, purchaseDate, false, !createdByAdmission);
+            LOGGER.info("用户当天已有订单，跳过落库，用户ID: {}, 日期: {}, 订单号: {}",
+                    userId, purchaseDate, existingOrder.getOrderNo());
+            return;
+        }
+
+        // 2. 条件扣减数据库库存：并发落库不存在版本冲突，消息不会因冲突反复重新入队
+        TicketEntity ticketEntity = ticketEntityMapper.selectByDate(purchaseDate);
+        if (ticketEntity == null) {
+            rollbackAdmission(userId, purchaseDate, true, false);
+            LOGGER.warn("票券不存在，撤销准入，用户ID: {}, 日期: {}", userId, purchaseDate);
+            return;
+        }
+        if (ticketEntityMapper.decrementIfAvailable(purchaseDate, 1) <= 0) {
+            // 数据库已售罄说明库存计数偏多，不再归还计数
+            rollbackAdmission(userId, purchaseDate, true, false);
+            LOGGER.warn("数据库库存已售罄，撤销准入，用户ID: {}, 日期: {}", userId, purchaseDate);
+            return;
+        }
+
+        // 3. 创建订单
+        String ticketCode = ticketCodeGeneratorService.generateUniqueTicketCode(userId, purchaseDate);
+        String orderNo = OrderNoGenerator.generate(userId);
+
+        TicketOrder ticketOrder = TicketOrderFactory.buildOrder(orderNo, userId, ticketEntity.getId(), purchaseDate, ticketCode,
+                ADMISSION_ORDER_REMARK);
+
+        int insertResult = ticketOrderMapper.insert(ticketOrder);
+        if (insertResult <= 0) {
+            throw new RuntimeException("订单创建失败");
+        }
+
+        // 4. 下单意向已落库，移除意向并刷新缓存
+        stringRedisTemplate.opsForHash().delete(intentKey(purchaseDate), String.valueOf(userId));
+        ticketCacheManager.applyStockDelta(purchaseDate, -1);
+        PurchaseRecord purchaseRecord = new PurchaseRecord(userId, LocalDate.parse(purchaseDate), ticketCode);
+        ticketCacheManager.addPurchaseRecord(userId, purchaseDate, purchaseRecord);
+
+        LOGGER.info("准入订单落库成功，订单号: {}, 用户ID: {}, 票券编码: {}", orderNo, userId, ticketCode);
+    }
+
+    private List<String> admissionKeys(String date) {
+        return Arrays.asList(stockKey(date), userKey(date), intentKey(date));
+    }
+
+    private List<String> dryRunKeys(String date) {
+        return Arrays.asList(stockKey(date) + DRY_RUN_SUFFIX, userKey(date) + DRY_RUN_SUFFIX, intentKey(date) + DRY_RUN_SUFFIX);
+    }
+
+    private String stockKey(String date) {
+        return CacheKey.ADMISSION_STOCK.getKey() + "_" + date;
+    }
+
+    private String userKey(String date) {
+        return CacheKey.ADMISSION_USER.getKey() + "_" + date;
+    }
+
+    private String intentKey(String date) {
+        return CacheKey.ADMISSION_INTENT.getKey() + "_" + date;
+    }
+}
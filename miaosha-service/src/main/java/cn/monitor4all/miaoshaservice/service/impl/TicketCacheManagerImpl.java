@@ -1,24 +1,39 @@
 package cn.monitor4all.miaoshaservice.service.impl;
 
-import cn.monitor4all.miaoshadao.dao.TicketEntity;
 import cn.monitor4all.miaoshadao.dao.TicketPurchaseRecord;
-import cn.monitor4all.miaoshadao.mapper.TicketEntityMapper;
+import cn.monitor4all.miaoshadao.dao.TicketOrder;
+import cn.monitor4all.miaoshadao.mapper.TicketOrderMapper;
 import cn.monitor4all.miaoshadao.mapper.TicketPurchaseRecordMapper;
 import cn.monitor4all.miaoshadao.model.PurchaseRecord;
 import cn.monitor4all.miaoshadao.model.Ticket;
 import cn.monitor4all.miaoshaservice.service.TicketCacheManager;
 import cn.monitor4all.miaoshaservice.service.AsyncCacheDeleteService;
+import cn.monitor4all.miaoshaservice.service.TicketNearCacheService;
+import cn.monitor4all.miaoshaservice.service.CacheLoadingService;
+import cn.monitor4all.miaoshaservice.service.TicketStockCacheService;
+import cn.monitor4all.miaoshaservice.service.PurchaseBitmapService;
+import cn.monitor4all.miaoshaservice.service.EntityCodecService;
 import com.alibaba.fastjson.JSON;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import cn.monitor4all.miaoshadao.utils.CacheKey;
@@ -35,8 +50,11 @@ public class TicketCacheManagerImpl implements TicketCacheManager {
     // 缓存过期时间：1小时
     private static final long CACHE_EXPIRE_TIME = 3600L;
     
-    // 票券缓存key前缀
-    private static final String TICKET_CACHE_PREFIX = "ticket:";
+    // 票券库存hash键前缀，与 TicketStockCacheServiceImpl 保持一致
+    private static final String TICKET_STOCK_PREFIX = "ticket:stock:";
+    
+    // 用户购买状态缓存过期时间：12小时
+    private static final long USER_HAS_ORDER_EXPIRE_TIME = 12 * 3600L;
     
     // 票券列表缓存key
     private static final String TICKET_LIST_CACHE_KEY = "ticket:list";
@@ -44,6 +62,9 @@ public class TicketCacheManagerImpl implements TicketCacheManager {
     // 购买记录缓存key前缀
     private static final String PURCHASE_RECORD_CACHE_PREFIX = "purchase:";
     
+    // 用户购买记录索引key前缀（hash，field为日期，value为购买记录），按用户读取全部记录时不需要扫描键空间
+    private static final String PURCHASE_RECORD_INDEX_PREFIX = "purchase:index:";
+    
     @Resource
     private StringRedisTemplate stringRedisTemplate;
     
@@ -51,33 +72,38 @@ public class TicketCacheManagerImpl implements TicketCacheManager {
     private TicketPurchaseRecordMapper ticketPurchaseRecordMapper;
     
     @Resource
-    private TicketEntityMapper ticketEntityMapper;
+    private TicketOrderMapper ticketOrderMapper;
+    
+    @Resource
+    private TicketNearCacheService ticketNearCacheService;
+    
+    @Resource
+    private CacheLoadingService cacheLoadingService;
+    
+    @Resource
+    private TicketStockCacheService ticketStockCacheService;
+    
+    @Resource
+    private PurchaseBitmapService purchaseBitmapService;
+    
+    @Resource
+    private EntityCodecService entityCodecService;
     
     @Override
     public Ticket getTicketWithFallback(String date) {
         try {
-            // 1. 先从缓存获取
-            String key = TICKET_CACHE_PREFIX + date;
-            String ticketJson = stringRedisTemplate.opsForValue().get(key);
-            
-            if (ticketJson != null) {
-                Ticket ticket = JSON.parseObject(ticketJson, Ticket.class);
-                LOGGER.debug("从缓存获取票券成功，日期: {}, 票券: {}", date, ticket);
-                return ticket;
+            // 1. 先从本地缓存获取
+            Ticket nearTicket = ticketNearCacheService.getTicket(date);
+            if (nearTicket != null) {
+                return nearTicket;
             }
             
-            LOGGER.debug("缓存中未找到票券，尝试从数据库获取，日期: {}", date);
+            // 2. 再从Redis票券hash获取，未命中时单线程回源数据库（汇总分段库存）并按版本号写入缓存
+            Ticket ticket = ticketStockCacheService.getOrLoad(date);
             
-            // 2. 缓存中没有，从数据库获取
-            TicketEntity ticketEntity = ticketEntityMapper.selectByDate(date);
-            if (ticketEntity != null) {
-                // 3. 转换为Ticket对象
-                Ticket ticket = convertToTicket(ticketEntity);
-                
-                // 4. 更新到缓存
-                saveTicket(date, ticket);
-                
-                LOGGER.info("从数据库获取票券成功并更新缓存，日期: {}, 票券: {}", date, ticket);
+            if (ticket != null) {
+                ticketNearCacheService.putTicket(date, ticket);
+                LOGGER.debug("从缓存获取票券成功，日期: {}, 票券: {}", date, ticket);
                 return ticket;
             }
             
@@ -93,12 +119,13 @@ public class TicketCacheManagerImpl implements TicketCacheManager {
     @Override
     public void saveTicket(String date, Ticket ticket) {
         try {
-            String key = TICKET_CACHE_PREFIX + date;
-            String ticketJson = JSON.toJSONString(ticket);
+            ticketStockCacheService.put(ticket);
             
-            stringRedisTemplate.opsForValue().set(key, ticketJson, CACHE_EXPIRE_TIME, TimeUnit.SECONDS);
+            // 通知其他节点失效本地缓存，本节点缓存最新值
+            ticketNearCacheService.invalidate(date);
+            ticketNearCacheService.putTicket(date, ticket);
             
-            LOGGER.debug("票券保存到缓存成功，日期: {}, key: {}", date, key);
+            LOGGER.debug("票券保存到缓存成功，日期: {}", date);
         } catch (Exception e) {
             LOGGER.error("票券保存到缓存失败，日期: {}", date, e);
         }
@@ -107,36 +134,73 @@ public class TicketCacheManagerImpl implements TicketCacheManager {
     @Resource
     private AsyncCacheDeleteService asyncCacheDeleteService;
     
-    // 使用双重异步删除：先线程池，再队列
+    // 由miaosha-job根据binlog删除Redis缓存时，业务路径不再提交双重异步删除兜底
+    @Value("${miaosha.cache-invalidation.binlog-enabled:false}")
+    private boolean binlogInvalidationEnabled = false;
+    
+    // 递增版本号并删除票券hash，进行中的回源不会写回旧数据
+    // binlog模式下同样在这里递增版本号：binlog处理器只UNLINK票券hash、不递增版本号，且跳过只修改库存列的更新
     @Override
     public void deleteTicket(String date) {
+        // 本地缓存立即失效，并广播到其他节点
+        ticketNearCacheService.invalidate(date);
+        
         try {
-            String key = TICKET_CACHE_PREFIX + date;
-            
-            // 使用双重异步删除：先线程池，再队列
-            asyncCacheDeleteService.deleteCacheDualAsync(key);
-            
-            LOGGER.info("票券缓存删除任务已提交（双重异步），日期: {}, key: {}", date, key);
-            
+            ticketStockCacheService.invalidate(date);
+            LOGGER.info("票券缓存已删除，日期: {}", date);
         } catch (Exception e) {
-            LOGGER.error("提交票券缓存删除任务失败，日期: {}, key: {}", date, TICKET_CACHE_PREFIX + date, e);
-            
-            // 异常时使用队列删除作为兜底
+            if (binlogInvalidationEnabled) {
+                // 非库存列的变更由binlog删除；只修改库存列的变更由定时对账修正
+                LOGGER.error("删除票券缓存失败，等待binlog删除或定时对账修正，日期: {}", date, e);
+                return;
+            }
+            LOGGER.error("删除票券缓存失败，使用双重异步删除兜底，日期: {}", date, e);
             try {
-                String key = TICKET_CACHE_PREFIX + date;
-                asyncCacheDeleteService.deleteCacheByQueue(key);
-                LOGGER.info("使用队列删除作为兜底，日期: {}, key: {}", date, key);
+                asyncCacheDeleteService.deleteCacheDualAsync(TICKET_STOCK_PREFIX + date);
             } catch (Exception ex) {
-                LOGGER.error("队列删除兜底也失败，日期: {}, key: {}", date, TICKET_CACHE_PREFIX + date, ex);
+                LOGGER.error("双重异步删除兜底也失败，日期: {}", date, ex);
             }
         }
     }
     
+    @Override
+    public void applyStockDelta(String date, int remainingDelta) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    doApplyStockDelta(date, remainingDelta);
+                }
+            });
+            return;
+        }
+        doApplyStockDelta(date, remainingDelta);
+    }
+    
+    private void doApplyStockDelta(String date, int remainingDelta) {
+        try {
+            Long remaining = ticketStockCacheService.applyDelta(date, remainingDelta);
+            // 只失效本节点的本地缓存，不广播：其他节点的本地缓存只保留1秒，过期后从Redis读取最新值
+            ticketNearCacheService.invalidateLocal(date);
+            LOGGER.debug("票券库存缓存已更新，日期: {}, 变化量: {}, 剩余: {}", date, remainingDelta, remaining);
+        } catch (Exception e) {
+            // 增减失败时删除缓存，下次读取时回源
+            LOGGER.warn("票券库存缓存增减失败，删除缓存，日期: {}, 变化量: {}, 错误: {}", date, remainingDelta, e.getMessage());
+            deleteTicket(date);
+        }
+    }
+    
     @Override
     public List<Ticket> getTicketList() {
         try {
-            // 先尝试从缓存获取票券列表
+            // 先尝试从本地缓存获取票券列表
+            List<Ticket> nearTickets = ticketNearCacheService.getTicketList();
+            if (nearTickets != null) {
+                return nearTickets;
+            }
+            
             List<Ticket> tickets = getTicketsFromRecentDates();
+            ticketNearCacheService.putTicketList(tickets);
             
 //            if () {
 //                List<Ticket> tickets = JSON.parseArray(ticketListJson, Ticket.class);
@@ -162,40 +226,19 @@ public class TicketCacheManagerImpl implements TicketCacheManager {
     }
     
     /**
-     * 从最近3天日期分别获取票券信息
+     * 批量获取最近3天的票券信息
      * @return 票券列表
      */
     private List<Ticket> getTicketsFromRecentDates() {
         try {
             // 计算最近3天的日期
             LocalDate today = LocalDate.now();
-            String todayStr = today.format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
-            String tomorrowStr = today.plusDays(1).format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
-            String dayAfterTomorrowStr = today.plusDays(2).format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
-            
-            LOGGER.debug("开始获取最近3天票券信息，日期: {}, {}, {}", todayStr, tomorrowStr, dayAfterTomorrowStr);
-            
-            List<Ticket> tickets = new ArrayList<>();
-            
-            // 分别获取每个日期的票券信息
-            Ticket todayTicket = getTicketWithFallback(todayStr);
-            if (todayTicket != null) {
-                tickets.add(todayTicket);
-                LOGGER.debug("获取今日票券成功: {}", todayTicket.getDate());
-            }
-            
-            Ticket tomorrowTicket = getTicketWithFallback(tomorrowStr);
-            if (tomorrowTicket != null) {
-                tickets.add(tomorrowTicket);
-                LOGGER.debug("获取明日票券成功: {}", tomorrowTicket.getDate());
-            }
-            
-            Ticket dayAfterTomorrowTicket = getTicketWithFallback(dayAfterTomorrowStr);
-            if (dayAfterTomorrowTicket != null) {
-                tickets.add(dayAfterTomorrowTicket);
-                LOGGER.debug("获取后日票券成功: {}", dayAfterTomorrowTicket.getDate());
-            }
+            List<String> dates = Arrays.asList(
+                    today.format(DateTimeFormatter.ofPattern("yyyy-MM-dd")),
+                    today.plusDays(1).format(DateTimeFormatter.ofPattern("yyyy-MM-dd")),
+                    today.plusDays(2).format(DateTimeFormatter.ofPattern("yyyy-MM-dd")));
             
+            List<Ticket> tickets = new ArrayList<>(getTicketsWithFallback(dates).values());
             LOGGER.info("从最近3天日期获取票券信息完成，成功获取{}张票券", tickets.size());
             return tickets;
             
@@ -205,13 +248,121 @@ public class TicketCacheManagerImpl implements TicketCacheManager {
         }
     }
     
+    @Override
+    public Map<String, Ticket> getTicketsWithFallback(List<String> dates) {
+        Map<String, Ticket> found = new HashMap<>();
+        
+        // 1. 本地缓存
+        List<String> redisDates = new ArrayList<>();
+        for (String date : dates) {
+            Ticket nearTicket = ticketNearCacheService.getTicket(date);
+            if (nearTicket != null) {
+                found.put(date, nearTicket);
+            } else {
+                redisDates.add(date);
+            }
+        }
+        
+        // 2. Redis票券hash，一次管道HGETALL；未命中的日期一次批量查询数据库（汇总分段库存）并写回
+        if (!redisDates.isEmpty()) {
+            for (Map.Entry<String, Ticket> entry : ticketStockCacheService.getOrLoadAll(redisDates).entrySet()) {
+                ticketNearCacheService.putTicket(entry.getKey(), entry.getValue());
+                found.put(entry.getKey(), entry.getValue());
+            }
+        }
+        
+        // 按传入顺序返回
+        Map<String, Ticket> tickets = new LinkedHashMap<>();
+        for (String date : dates) {
+            Ticket ticket = found.get(date);
+            if (ticket != null) {
+                tickets.put(date, ticket);
+            }
+        }
+        return tickets;
+    }
+    
+    @Override
+    public Map<String, Boolean> getUserPurchaseStatus(Long userId, List<String> dates) {
+        Map<String, Boolean> statuses = new LinkedHashMap<>();
+        if (userId == null) {
+            for (String date : dates) {
+                statuses.put(date, false);
+            }
+            return statuses;
+        }
+        
+        // 1. 购买位图，一次Lua调用
+        statuses.putAll(purchaseBitmapService.hasPurchased(userId, dates));
+        List<String> cacheDates = unresolvedDates(statuses);
+        if (cacheDates.isEmpty()) {
+            return statuses;
+        }
+        
+        // 2. 购买状态缓存，一次MGET
+        List<String> keys = new ArrayList<>(cacheDates.size());
+        for (String date : cacheDates) {
+            keys.add(userHasOrderKey(userId, date));
+        }
+        try {
+            List<String> values = stringRedisTemplate.opsForValue().multiGet(keys);
+            for (int i = 0; values != null && i < cacheDates.size(); i++) {
+                if (values.get(i) != null) {
+                    statuses.put(cacheDates.get(i), "1".equals(values.get(i)));
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.warn("批量读取用户购买状态缓存失败，用户ID: {}, 错误: {}", userId, e.getMessage());
+        }
+        List<String> dbDates = unresolvedDates(statuses);
+        if (dbDates.isEmpty()) {
+            return statuses;
+        }
+        
+        // 3. 数据库，一次批量查询，管道写回购买状态缓存
+        Set<String> purchasedDates = new HashSet<>();
+        for (TicketOrder order : ticketOrderMapper.selectByUserIdAndDates(userId, dbDates)) {
+            purchasedDates.add(order.getTicketDate());
+        }
+        try {
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (String date : dbDates) {
+                    connection.setEx(userHasOrderKey(userId, date).getBytes(StandardCharsets.UTF_8), USER_HAS_ORDER_EXPIRE_TIME,
+                            (purchasedDates.contains(date) ? "1" : "0").getBytes(StandardCharsets.UTF_8));
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            LOGGER.warn("批量写入用户购买状态缓存失败，用户ID: {}, 错误: {}", userId, e.getMessage());
+        }
+        for (String date : dbDates) {
+            statuses.put(date, purchasedDates.contains(date));
+        }
+        LOGGER.debug("批量从数据库查询用户购买状态，用户ID: {}, 日期: {}, 已购买: {}", userId, dbDates, purchasedDates);
+        return statuses;
+    }
+    
+    private List<String> unresolvedDates(Map<String, Boolean> statuses) {
+        List<String> dates = new ArrayList<>();
+        for (Map.Entry<String, Boolean> entry : statuses.entrySet()) {
+            if (entry.getValue() == null) {
+                dates.add(entry.getKey());
+            }
+        }
+        return dates;
+    }
+    
+    private String userHasOrderKey(Long userId, String date) {
+        return CacheKey.USER_HAS_ORDER.getKey() + "_" + date + "_" + userId;
+    }
+    
     @Override
     public void saveTicketList(List<Ticket> tickets) {
         try {
             if (tickets != null && !tickets.isEmpty()) {
                 String ticketListJson = JSON.toJSONString(tickets);
                 
-                stringRedisTemplate.opsForValue().set(TICKET_LIST_CACHE_KEY, ticketListJson, CACHE_EXPIRE_TIME, TimeUnit.SECONDS);
+                cacheLoadingService.set(TICKET_LIST_CACHE_KEY, ticketListJson, CACHE_EXPIRE_TIME);
                 
                 LOGGER.debug("票券列表保存到缓存成功，数量: {}, key: {}", tickets.size(), TICKET_LIST_CACHE_KEY);
             }
@@ -222,12 +373,23 @@ public class TicketCacheManagerImpl implements TicketCacheManager {
     
     @Override
     public void addPurchaseRecord(Long userId, String date, PurchaseRecord record) {
+        // 先标记购买位图，不依赖下面的购买记录缓存写入：位图就绪后查询以位图为准，漏标会让用户被判为未购买而重复购票；
+        // 标记失败时位图服务删除重建标记，查询回退到数据库
+        purchaseBitmapService.markPurchased(userId, date);
+
         try {
             String key = PURCHASE_RECORD_CACHE_PREFIX + userId + ":" + date;
-            
-            // 保存到缓存
-            String recordJson = JSON.toJSONString(record);
-            stringRedisTemplate.opsForValue().set(key, recordJson, CACHE_EXPIRE_TIME, TimeUnit.SECONDS);
+            String indexKey = PURCHASE_RECORD_INDEX_PREFIX + userId;
+            
+            // 保存到缓存，同时写入用户购买记录索引，一次管道往返
+            byte[] recordJson = entityCodecService.encode(record);
+            byte[] indexKeyBytes = indexKey.getBytes(StandardCharsets.UTF_8);
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                connection.setEx(key.getBytes(StandardCharsets.UTF_8), CACHE_EXPIRE_TIME, recordJson);
+                connection.hSet(indexKeyBytes, date.getBytes(StandardCharsets.UTF_8), recordJson);
+                connection.expire(indexKeyBytes, CACHE_EXPIRE_TIME);
+                return null;
+            });
             
             LOGGER.debug("购买记录添加到缓存成功，用户ID: {}, 日期: {}, key: {}", userId, date, key);
         } catch (Exception e) {
@@ -239,10 +401,12 @@ public class TicketCacheManagerImpl implements TicketCacheManager {
     public PurchaseRecord getPurchaseRecord(Long userId, String date) {
         try {
             String key = PURCHASE_RECORD_CACHE_PREFIX + userId + ":" + date;
-            String recordJson = stringRedisTemplate.opsForValue().get(key);
+            // 按字节读取，紧凑编码和旧的JSON字符串都由编解码服务识别
+            byte[] recordJson = stringRedisTemplate.execute((RedisCallback<byte[]>) connection ->
+                    connection.get(key.getBytes(StandardCharsets.UTF_8)));
             
             if (recordJson != null) {
-                PurchaseRecord record = JSON.parseObject(recordJson, PurchaseRecord.class);
+                PurchaseRecord record = entityCodecService.decode(recordJson, PurchaseRecord.class);
                 LOGGER.debug("从缓存获取购买记录成功，用户ID: {}, 日期: {}, key: {}", userId, date, key);
                 return record;
             }
@@ -258,17 +422,16 @@ public class TicketCacheManagerImpl implements TicketCacheManager {
     @Override
     public List<PurchaseRecord> getPurchaseRecords(Long userId) {
         try {
-            // 由于现在缓存key包含了日期，需要获取用户的所有购买记录
-            // 这里可以通过pattern匹配来获取所有相关的key
-            String pattern = PURCHASE_RECORD_CACHE_PREFIX + userId + ":*";
-            Set<String> keys = stringRedisTemplate.keys(pattern);
+            // 从用户购买记录索引一次读取全部记录
+            String indexKey = PURCHASE_RECORD_INDEX_PREFIX + userId;
+            List<byte[]> recordJsons = stringRedisTemplate.execute((RedisCallback<List<byte[]>>) connection ->
+                    connection.hVals(indexKey.getBytes(StandardCharsets.UTF_8)));
             
-            if (keys != null && !keys.isEmpty()) {
+            if (recordJsons != null && !recordJsons.isEmpty()) {
                 List<PurchaseRecord> records = new ArrayList<>();
-                for (String key : keys) {
-                    String recordJson = stringRedisTemplate.opsForValue().get(key);
+                for (byte[] recordJson : recordJsons) {
                     if (recordJson != null) {
-                        PurchaseRecord record = JSON.parseObject(recordJson, PurchaseRecord.class);
+                        PurchaseRecord record = entityCodecService.decode(recordJson, PurchaseRecord.class);
                         records.add(record);
                     }
                 }
@@ -438,6 +601,7 @@ public class TicketCacheManagerImpl implements TicketCacheManager {
         try {
             String key = PURCHASE_RECORD_CACHE_PREFIX + userId + ":" + date;
             stringRedisTemplate.delete(key);
+            stringRedisTemplate.opsForHash().delete(PURCHASE_RECORD_INDEX_PREFIX + userId, date);
             LOGGER.debug("购买记录缓存删除成功，用户ID: {}, 日期: {}, key: {}", userId, date, key);
         } catch (Exception e) {
             LOGGER.error("购买记录缓存删除失败，用户ID: {}, 日期: {}", userId, date, e);
@@ -487,31 +651,17 @@ public class TicketCacheManagerImpl implements TicketCacheManager {
         }
     }
     
-    /**
-     * 将TicketEntity转换为Ticket对象
-     * @param ticketEntity 数据库实体
-     * @return Ticket对象
-     */
-    private Ticket convertToTicket(TicketEntity ticketEntity) {
-        if (ticketEntity == null) {
-            return null;
-        }
-        
-        // 使用Ticket的构造函数，它会自动计算remaining
-        Ticket ticket = new Ticket(ticketEntity.getDate(), ticketEntity.getTotalCount());
-        
-        // 手动设置remaining，因为构造函数会将其设置为total
-        ticket.setRemaining(ticketEntity.getRemainingCount());
-        
-        return ticket;
-    }
-
     @Override
     public void clearUserPurchaseStatus(Long userId, String date) {
         String key = CacheKey.USER_HAS_ORDER.getKey() + "_" + date + "_" + userId;
 
-        // 使用双重异步删除：先线程池，再队列
-        asyncCacheDeleteService.deleteCacheDualAsync(key);
+        // 使用双重异步删除：先线程池，再队列；由binlog删除时跳过
+        if (!binlogInvalidationEnabled) {
+            asyncCacheDeleteService.deleteCacheDualAsync(key);
+        }
+
+        // 同步清除购买位图标记
+        purchaseBitmapService.clearPurchased(userId, date);
 
         LOGGER.info("Cleared user purchase status cache for userId: {}, date: {}", userId, date);
     }
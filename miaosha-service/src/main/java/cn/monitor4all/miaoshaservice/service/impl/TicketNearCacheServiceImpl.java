@@ -0,0 +1,262 @@
+package cn.monitor4all.miaoshaservice.service.impl;
+
+import cn.monitor4all.miaoshadao.model.Ticket;
+import cn.monitor4all.miaoshadao.utils.CacheKey;
+import cn.monitor4all.miaoshaservice.service.TicketNearCacheService;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 票券本地缓存服务实现类
+ * 1. 票券快照按日期缓存，最近票券列表按当天日期缓存，均在TTL后过期、超过容量按LRU淘汰
+ * 2. 写入和读取都使用副本，调用方修改返回的票券（如设置用户购买状态）不影响缓存
+ * 3. 失效通知携带发布节点ID，发布节点自身已在本地失效，收到自己的通知时忽略
+ * 4. 库存增减只失效本节点，不广播：每次购票都发布通知会让发布订阅流量随购票量增长，其他节点的副本在TTL后过期
+ * 本地缓存只用于展示和购票前的库存预检，库存扣减仍以数据库为准，数据最多陈旧一个TTL
+ */
+@Service
+public class TicketNearCacheServiceImpl implements TicketNearCacheService, MessageListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TicketNearCacheServiceImpl.class);
+
+    private static final String MESSAGE_SEPARATOR = "|";
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    // 是否启用本地缓存
+    @Value("${miaosha.near-cache.enabled:true}")
+    private boolean enabled = true;
+
+    // 本地缓存最多保存的票券日期数
+    @Value("${miaosha.near-cache.maximum-size:256}")
+    private long maximumSize = 256;
+
+    // 本地缓存有效期（毫秒）
+    @Value("${miaosha.near-cache.ttl-ms:1000}")
+    private long ttlMs = 1000;
+
+    private final String nodeId = UUID.randomUUID().toString().replace("-", "").substring(0, 8);
+
+    private Cache<String, CachedValue<Ticket>> ticketCache;
+
+    private Cache<String, CachedValue<List<Ticket>>> listCache;
+
+    private String channel;
+
+    // 统计信息
+    private final AtomicLong listHits = new AtomicLong(0);
+    private final AtomicLong listMisses = new AtomicLong(0);
+    private final AtomicLong localInvalidations = new AtomicLong(0);
+    private final AtomicLong remoteInvalidations = new AtomicLong(0);
+    private final AtomicLong localOnlyInvalidations = new AtomicLong(0);
+    private final AtomicLong publishFailures = new AtomicLong(0);
+    private final AtomicLong totalServedAgeMs = new AtomicLong(0);
+    private final AtomicLong maxServedAgeMs = new AtomicLong(0);
+    private final AtomicLong totalPropagationMs = new AtomicLong(0);
+    private final AtomicLong maxPropagationMs = new AtomicLong(0);
+
+    @PostConstruct
+    public void init() {
+        ticketCache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+        listCache = CacheBuilder.newBuilder()
+                .maximumSize(4)
+                .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+                .build();
+
+        channel = CacheKey.TICKET_NEAR_CACHE_CHANNEL.getKey();
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(channel));
+        LOGGER.info("票券本地缓存初始化完成，启用: {}, 容量: {}, TTL: {}ms, 节点ID: {}", enabled, maximumSize, ttlMs, nodeId);
+    }
+
+    @Override
+    public Ticket getTicket(String date) {
+        if (!enabled) {
+            return null;
+        }
+        CachedValue<Ticket> cached = ticketCache.getIfPresent(date);
+        if (cached == null) {
+            return null;
+        }
+        recordServedAge(cached);
+        return copyOf(cached.value);
+    }
+
+    @Override
+    public void putTicket(String date, Ticket ticket) {
+        if (!enabled || ticket == null) {
+            return;
+        }
+        ticketCache.put(date, new CachedValue<>(copyOf(ticket)));
+    }
+
+    @Override
+    public List<Ticket> getTicketList() {
+        if (!enabled) {
+            return null;
+        }
+        CachedValue<List<Ticket>> cached = listCache.getIfPresent(listKey());
+        if (cached == null) {
+            listMisses.incrementAndGet();
+            return null;
+        }
+        listHits.incrementAndGet();
+        recordServedAge(cached);
+        return copyOf(cached.value);
+    }
+
+    @Override
+    public void putTicketList(List<Ticket> tickets) {
+        if (!enabled || tickets == null) {
+            return;
+        }
+        listCache.put(listKey(), new CachedValue<>(copyOf(tickets)));
+    }
+
+    @Override
+    public void invalidate(String date) {
+        evict(date);
+        localInvalidations.incrementAndGet();
+        try {
+            String message = nodeId + MESSAGE_SEPARATOR + date + MESSAGE_SEPARATOR + System.currentTimeMillis();
+            stringRedisTemplate.convertAndSend(channel, message);
+        } catch (Exception e) {
+            // 通知失败时其他节点的本地副本在TTL后过期
+            publishFailures.incrementAndGet();
+            LOGGER.warn("发布票券本地缓存失效通知失败，日期: {}, 错误: {}", date, e.getMessage());
+        }
+    }
+
+    /**
+     * 收到其他节点的失效通知
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        String[] parts = body.split("\\|");
+        if (parts.length < 3 || nodeId.equals(parts[0])) {
+            return;
+        }
+        evict(parts[1]);
+        remoteInvalidations.incrementAndGet();
+        try {
+            long propagationMs = Math.max(0, System.currentTimeMillis() - Long.parseLong(parts[2]));
+            totalPropagationMs.addAndGet(propagationMs);
+            maxPropagationMs.accumulateAndGet(propagationMs, Math::max);
+        } catch (NumberFormatException e) {
+            LOGGER.warn("票券本地缓存失效通知格式错误: {}", body);
+        }
+        LOGGER.debug("收到票券本地缓存失效通知，日期: {}, 来源节点: {}", parts[1], parts[0]);
+    }
+
+    @Override
+    public void invalidateLocal(String date) {
+        evict(date);
+        localOnlyInvalidations.incrementAndGet();
+    }
+
+    private void evict(String date) {
+        ticketCache.invalidate(date);
+        // 最近票券列表包含该日期，一并失效
+        listCache.invalidateAll();
+    }
+
+    private void recordServedAge(CachedValue<?> cached) {
+        long ageMs = System.currentTimeMillis() - cached.loadedAt;
+        totalServedAgeMs.addAndGet(ageMs);
+        maxServedAgeMs.accumulateAndGet(ageMs, Math::max);
+    }
+
+    private String listKey() {
+        return LocalDate.now().toString();
+    }
+
+    private static Ticket copyOf(Ticket ticket) {
+        Ticket copy = new Ticket();
+        copy.setDate(ticket.getDate());
+        copy.setWeekday(ticket.getWeekday());
+        copy.setTotal(ticket.getTotal());
+        copy.setRemaining(ticket.getRemaining());
+        copy.setUserPurchased(ticket.isUserPurchased());
+        return copy;
+    }
+
+    private static List<Ticket> copyOf(List<Ticket> tickets) {
+        List<Ticket> copies = new ArrayList<>(tickets.size());
+        for (Ticket ticket : tickets) {
+            copies.add(copyOf(ticket));
+        }
+        return copies;
+    }
+
+    @Override
+    public Map<String, Object> getStatistics() {
+        CacheStats ticketStats = ticketCache.stats();
+        long hits = ticketStats.hitCount() + listHits.get();
+        long requests = ticketStats.requestCount() + listHits.get() + listMisses.get();
+        long remote = remoteInvalidations.get();
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("nodeId", nodeId);
+        stats.put("maximumSize", maximumSize);
+        stats.put("ttlMs", ttlMs);
+        stats.put("size", ticketCache.size());
+        stats.put("ticketHitCount", ticketStats.hitCount());
+        stats.put("ticketMissCount", ticketStats.missCount());
+        stats.put("listHitCount", listHits.get());
+        stats.put("listMissCount", listMisses.get());
+        stats.put("hitRatio", requests > 0 ? String.format("%.4f", (double) hits / requests) : "0.0000");
+        stats.put("evictionCount", ticketStats.evictionCount());
+        stats.put("localInvalidations", localInvalidations.get());
+        stats.put("remoteInvalidations", remote);
+        stats.put("localOnlyInvalidations", localOnlyInvalidations.get());
+        stats.put("publishFailures", publishFailures.get());
+        stats.put("avgStalenessMs", hits > 0 ? String.format("%.2f", (double) totalServedAgeMs.get() / hits) : "0.00");
+        stats.put("maxStalenessMs", maxServedAgeMs.get());
+        stats.put("avgInvalidationPropagationMs", remote > 0 ? String.format("%.2f", (double) totalPropagationMs.get() / remote) : "0.00");
+        stats.put("maxInvalidationPropagationMs", maxPropagationMs.get());
+        return stats;
+    }
+
+    /**
+     * 缓存值及其写入时间，用于统计返回数据的陈旧程度
+     */
+    private static class CachedValue<T> {
+        private final T value;
+        private final long loadedAt = System.currentTimeMillis();
+
+        private CachedValue(T value) {
+            this.value = value;
+        }
+    }
+}
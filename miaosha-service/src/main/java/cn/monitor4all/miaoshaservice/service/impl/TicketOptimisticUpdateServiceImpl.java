@@ -3,6 +3,7 @@ package cn.monitor4all.miaoshaservice.service.impl;
 import cn.monitor4all.miaoshadao.dao.TicketEntity;
 import cn.monitor4all.miaoshadao.mapper.TicketEntityMapper;
 import cn.monitor4all.miaoshadao.model.UpdateTicketsRequest;
+import cn.monitor4all.miaoshaservice.service.OptimisticRetryPolicyService;
 import cn.monitor4all.miaoshaservice.service.TicketCacheManager;
 import cn.monitor4all.miaoshaservice.service.TicketOptimisticUpdateService;
 import org.slf4j.Logger;
@@ -27,6 +28,9 @@ public class TicketOptimisticUpdateServiceImpl implements TicketOptimisticUpdate
     @Resource
     private TicketCacheManager ticketCacheManager;
     
+    @Resource
+    private OptimisticRetryPolicyService optimisticRetryPolicyService;
+    
     // 重试统计信息
     private final Map<String, AtomicInteger> retryCountMap = new ConcurrentHashMap<>();
     private final AtomicInteger totalRetryCount = new AtomicInteger(0);
@@ -121,7 +125,13 @@ public class TicketOptimisticUpdateServiceImpl implements TicketOptimisticUpdate
         int retryCount = 0;
         
         try {
-            while (retryCount < maxRetries) {
+            // 冲突率过高时直接使用悲观锁修改
+            if (optimisticRetryPolicyService.isPessimisticPreferred(date)) {
+                return updateSingleTicketWithPessimistic(date, newTotalCount, newRemainingCount, retryCount);
+            }
+            
+            OptimisticRetryPolicyService.Session session = optimisticRetryPolicyService.newSession(date, maxRetries);
+            while (true) {
                 // 查询当前票券信息
                 TicketEntity ticketEntity = ticketEntityMapper.selectByDate(date);
                 
@@ -174,12 +184,12 @@ public class TicketOptimisticUpdateServiceImpl implements TicketOptimisticUpdate
                 ticketEntity.setTotalCount(newTotalCount);
                 ticketEntity.setRemainingCount(newRemainingCount);
                 ticketEntity.setSoldCount(newSoldCount);
-                ticketEntity.setVersion(currentVersion + 1);
                 
-                // 使用乐观锁更新
+                // 使用乐观锁更新（按读到的版本号匹配，version由SQL加1）
                 int updateResult = ticketEntityMapper.updateStockByOptimistic(ticketEntity);
                 
                 if (updateResult > 0) {
+                    session.recordSuccess();
                     result.put("status", "SUCCESS");
                     result.put("message", "票券更新成功");
                     result.put("retryCount", retryCount);
@@ -198,29 +208,35 @@ public class TicketOptimisticUpdateServiceImpl implements TicketOptimisticUpdate
                         date, oldTotalCount, newTotalCount, oldRemainingCount, newRemainingCount, retryCount);
                     return result;
                 } else {
-                    // 乐观锁更新失败，版本号不匹配
-                    retryCount++;
-                    LOGGER.warn("乐观锁更新失败，日期: {}, 当前版本: {}, 重试次数: {}/{}", 
-                        date, currentVersion, retryCount, maxRetries);
+                    // 乐观锁更新失败，版本号不匹配，按重试策略退避
+                    LOGGER.warn("乐观锁更新失败，日期: {}, 当前版本: {}, 已重试次数: {}/{}", 
+                        date, currentVersion, session.getRetryCount(), maxRetries);
                     
-                    // 短暂等待后重试
-                    if (retryCount < maxRetries) {
-                        try {
-                            Thread.sleep(10); // 等待10毫秒
-                        } catch (InterruptedException e) {
-                            Thread.currentThread().interrupt();
-                            break;
+                    boolean retry;
+                    try {
+                        retry = session.backoffAndRetry();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        retryCount = session.getRetryCount();
+                        break;
+                    }
+                    retryCount = session.getRetryCount();
+                    if (!retry) {
+                        if (session.isSwitchRecommended()) {
+                            LOGGER.warn("乐观锁冲突率超过阈值，切换悲观锁修改，日期: {}", date);
+                            return updateSingleTicketWithPessimistic(date, newTotalCount, newRemainingCount, retryCount);
                         }
+                        break;
                     }
                 }
             }
             
-            // 达到最大重试次数
+            // 达到重试次数上限或重试时间预算耗尽
             result.put("status", "FAILED");
-            result.put("message", String.format("达到最大重试次数: %d", maxRetries));
+            result.put("message", String.format("达到最大重试次数: %d", retryCount));
             result.put("retryCount", retryCount);
             
-            LOGGER.error("票券更新失败，日期: {}, 达到最大重试次数: {}", date, maxRetries);
+            LOGGER.error("票券更新失败，日期: {}, 重试次数: {}", date, retryCount);
             
         } catch (Exception e) {
             LOGGER.error("票券更新异常，日期: {}, 错误: {}", date, e.getMessage(), e);
@@ -232,6 +248,51 @@ public class TicketOptimisticUpdateServiceImpl implements TicketOptimisticUpdate
         return result;
     }
     
+    /**
+     * 悲观锁修改单个票券库存，在调用方事务内锁定票券行
+     */
+    private Map<String, Object> updateSingleTicketWithPessimistic(String date, int newTotalCount,
+                                                                int newRemainingCount, int retryCount) {
+        Map<String, Object> result = new HashMap<>();
+        TicketEntity ticketEntity = ticketEntityMapper.selectByDateForUpdate(date);
+        if (ticketEntity == null) {
+            result.put("status", "FAILED");
+            result.put("message", "票券不存在");
+            result.put("retryCount", retryCount);
+            return result;
+        }
+        
+        int oldTotalCount = ticketEntity.getTotalCount();
+        int oldRemainingCount = ticketEntity.getRemainingCount();
+        ticketEntity.setTotalCount(newTotalCount);
+        ticketEntity.setRemainingCount(newRemainingCount);
+        ticketEntity.setSoldCount(Math.max(0, newTotalCount - newRemainingCount));
+        ticketEntity.setVersion(ticketEntity.getVersion() + 1);
+        
+        if (ticketEntityMapper.updateByPrimaryKey(ticketEntity) <= 0) {
+            result.put("status", "FAILED");
+            result.put("message", "悲观锁更新失败");
+            result.put("retryCount", retryCount);
+            return result;
+        }
+        optimisticRetryPolicyService.recordPessimisticUpdate(date);
+        
+        result.put("status", "SUCCESS");
+        result.put("message", "票券更新成功（悲观锁）");
+        result.put("retryCount", retryCount);
+        result.put("oldTotalCount", oldTotalCount);
+        result.put("newTotalCount", newTotalCount);
+        result.put("oldRemainingCount", oldRemainingCount);
+        result.put("newRemainingCount", newRemainingCount);
+        
+        updateRetryStatistics(date, retryCount);
+        ticketCacheManager.deleteTicket(date);
+        
+        LOGGER.info("票券悲观锁更新成功，日期: {}, 总票数: {}->{}, 剩余票数: {}->{}", 
+            date, oldTotalCount, newTotalCount, oldRemainingCount, newRemainingCount);
+        return result;
+    }
+    
     @Override
     public Map<String, Object> getRetryStatistics() {
         Map<String, Object> statistics = new HashMap<>();
@@ -253,6 +314,8 @@ public class TicketOptimisticUpdateServiceImpl implements TicketOptimisticUpdate
         statistics.put("totalUpdateCount", totalUpdates);
         statistics.put("averageRetryCount", Math.round(avgRetries * 100.0) / 100.0);
         statistics.put("ticketRetryCounts", ticketRetryCounts);
+        // 重试策略统计：各日期滑动窗口冲突率、当前重试上限、是否已切换悲观模式
+        statistics.put("retryPolicy", optimisticRetryPolicyService.getStatistics());
         statistics.put("timestamp", System.currentTimeMillis());
         
         return statistics;
@@ -0,0 +1,331 @@
+package cn.monitor4all.miaoshaservice.service.impl;
+
+import cn.monitor4all.miaoshadao.dao.TicketEntity;
+import cn.monitor4all.miaoshadao.dao.TicketSegment;
+import cn.monitor4all.miaoshadao.mapper.TicketEntityMapper;
+import cn.monitor4all.miaoshadao.mapper.TicketSegmentMapper;
+import cn.monitor4all.miaoshadao.model.BusinessException;
+import cn.monitor4all.miaoshaservice.service.TicketSegmentService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 票券库存分段服务实现类
+ * 悲观锁模式下每次只在一个短事务内锁定一个分段，扫描其他分段前已提交释放自身分段的行锁，不会交叉持锁；
+ * 乐观锁模式下版本冲突直接换分段，不休眠重试
+ */
+@Service
+public class TicketSegmentServiceImpl implements TicketSegmentService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TicketSegmentServiceImpl.class);
+
+    /**
+     * 分段购票订单备注前缀，后接"#分段序号"
+     */
+    public static final String SEGMENT_ORDER_REMARK = "分段库存购票生成";
+
+    /**
+     * 最大分段数
+     */
+    private static final int MAX_SEGMENT_COUNT = 64;
+
+    /**
+     * 乐观锁模式下重新查询可用分段的最大轮数
+     */
+    private static final int MAX_OPTIMISTIC_ROUNDS = 3;
+
+    @Resource
+    private TicketEntityMapper ticketEntityMapper;
+
+    @Resource
+    private TicketSegmentMapper ticketSegmentMapper;
+
+    @Resource
+    private TransactionTemplate transactionTemplate;
+
+    // 统计信息
+    private final AtomicLong homeHitCount = new AtomicLong(0);
+    private final AtomicLong fallbackHitCount = new AtomicLong(0);
+    private final AtomicLong soldOutCount = new AtomicLong(0);
+    private final AtomicLong optimisticConflictCount = new AtomicLong(0);
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public int enableSegments(String date, int segmentCount) {
+        if (segmentCount < 2 || segmentCount > MAX_SEGMENT_COUNT) {
+            throw new IllegalArgumentException("分段数必须在2到" + MAX_SEGMENT_COUNT + "之间");
+        }
+
+        TicketEntity ticketEntity = ticketEntityMapper.selectByDateForUpdate(date);
+        if (ticketEntity == null) {
+            throw new BusinessException("票券不存在");
+        }
+        if (ticketSegmentMapper.countByDate(date) > 0) {
+            throw new BusinessException("该日期已启用库存分段");
+        }
+
+        // 剩余库存均分，余数分给前几个分段
+        int remaining = ticketEntity.getRemainingCount();
+        int base = remaining / segmentCount;
+        int extra = remaining % segmentCount;
+        for (int segmentNo = 0; segmentNo < segmentCount; segmentNo++) {
+            TicketSegment segment = new TicketSegment(date, segmentNo, base + (segmentNo < extra ? 1 : 0));
+            ticketSegmentMapper.insert(segment);
+        }
+
+        ticketEntity.setRemainingCount(0);
+        ticketEntity.setVersion(ticketEntity.getVersion() + 1);
+        ticketEntity.setUpdateTime(new Date());
+        if (ticketEntityMapper.updateByPrimaryKey(ticketEntity) <= 0) {
+            throw new RuntimeException("票券库存转移失败");
+        }
+
+        LOGGER.info("启用库存分段成功，日期: {}, 分段数: {}, 拆分票数: {}", date, segmentCount, remaining);
+        return remaining;
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public int mergeSegments(String date) {
+        TicketEntity ticketEntity = ticketEntityMapper.selectByDateForUpdate(date);
+        if (ticketEntity == null) {
+            throw new BusinessException("票券不存在");
+        }
+
+        List<TicketSegment> segments = ticketSegmentMapper.selectByDate(date);
+        if (segments.isEmpty()) {
+            return 0;
+        }
+
+        // 按分段序号升序加锁，与购票路径每次只锁一个分段不会形成环路
+        int remaining = 0;
+        int sold = 0;
+        for (TicketSegment segment : segments) {
+            TicketSegment locked = ticketSegmentMapper.selectByDateAndSegmentNoForUpdate(date, segment.getSegmentNo());
+            if (locked != null) {
+                remaining += locked.getRemainingCount();
+                sold += locked.getSoldCount();
+            }
+        }
+
+        ticketEntity.setRemainingCount(ticketEntity.getRemainingCount() + remaining);
+        ticketEntity.setSoldCount(ticketEntity.getSoldCount() + sold);
+        ticketEntity.setVersion(ticketEntity.getVersion() + 1);
+        ticketEntity.setUpdateTime(new Date());
+        if (ticketEntityMapper.updateByPrimaryKey(ticketEntity) <= 0) {
+            throw new RuntimeException("票券库存合并失败");
+        }
+        ticketSegmentMapper.deleteByDate(date);
+
+        LOGGER.info("合并库存分段成功，日期: {}, 分段数: {}, 转回剩余: {}, 转回已售: {}",
+                date, segments.size(), remaining, sold);
+        return remaining;
+    }
+
+    @Override
+    public boolean isSegmented(String date) {
+        return ticketSegmentMapper.countByDate(date) > 0;
+    }
+
+    @Override
+    public int deductWithPessimisticLock(String date, Long userId) {
+        int segmentCount = ticketSegmentMapper.countByDate(date);
+        if (segmentCount <= 0) {
+            throw new BusinessException("该日期未启用库存分段");
+        }
+
+        int home = segmentFor(userId, segmentCount);
+        if (lockAndDeduct(date, home)) {
+            homeHitCount.incrementAndGet();
+            return home;
+        }
+
+        // 自身分段售罄，依次锁定其他仍有库存的分段
+        for (int segmentNo : fallbackOrder(date, home, segmentCount)) {
+            if (lockAndDeduct(date, segmentNo)) {
+                fallbackHitCount.incrementAndGet();
+                return segmentNo;
+            }
+        }
+
+        soldOutCount.incrementAndGet();
+        return -1;
+    }
+
+    /**
+     * 在独立短事务内锁定单个分段并扣减一张票
+     */
+    private boolean lockAndDeduct(String date, int segmentNo) {
+        Boolean deducted = transactionTemplate.execute(status -> {
+            TicketSegment segment = ticketSegmentMapper.selectByDateAndSegmentNoForUpdate(date, segmentNo);
+            if (segment == null || segment.getRemainingCount() <= 0) {
+                return false;
+            }
+            segment.setRemainingCount(segment.getRemainingCount() - 1);
+            segment.setSoldCount(segment.getSoldCount() + 1);
+            if (ticketSegmentMapper.updateStockByOptimistic(segment) <= 0) {
+                throw new RuntimeException("分段库存扣减失败");
+            }
+            return true;
+        });
+        return Boolean.TRUE.equals(deducted);
+    }
+
+    @Override
+    public int deductWithOptimisticLock(String date, Long userId) {
+        int segmentCount = ticketSegmentMapper.countByDate(date);
+        if (segmentCount <= 0) {
+            throw new BusinessException("该日期未启用库存分段");
+        }
+
+        int home = segmentFor(userId, segmentCount);
+        TicketSegment homeSegment = ticketSegmentMapper.selectByDateAndSegmentNo(date, home);
+        if (tryOptimisticDeduct(homeSegment)) {
+            homeHitCount.incrementAndGet();
+            return home;
+        }
+
+        // 版本冲突或售罄时不休眠，直接换下一个有库存的分段
+        for (int round = 0; round < MAX_OPTIMISTIC_ROUNDS; round++) {
+            List<TicketSegment> available = ticketSegmentMapper.selectAvailableByDate(date);
+            if (available.isEmpty()) {
+                soldOutCount.incrementAndGet();
+                return -1;
+            }
+            for (TicketSegment segment : rotate(available, home, segmentCount)) {
+                if (tryOptimisticDeduct(segment)) {
+                    fallbackHitCount.incrementAndGet();
+                    return segment.getSegmentNo();
+                }
+            }
+        }
+
+        throw new BusinessException("系统繁忙，请重试");
+    }
+
+    /**
+     * 按读到的版本号扣减一张票，冲突时返回false
+     */
+    private boolean tryOptimisticDeduct(TicketSegment segment) {
+        if (segment == null || segment.getRemainingCount() <= 0) {
+            return false;
+        }
+        segment.setRemainingCount(segment.getRemainingCount() - 1);
+        segment.setSoldCount(segment.getSoldCount() + 1);
+        if (ticketSegmentMapper.updateStockByOptimistic(segment) > 0) {
+            return true;
+        }
+        optimisticConflictCount.incrementAndGet();
+        return false;
+    }
+
+    @Override
+    public void restore(String date, int segmentNo) {
+        int result = ticketSegmentMapper.incrementStock(date, segmentNo, 1);
+        if (result <= 0) {
+            throw new RuntimeException("分段库存恢复失败");
+        }
+        LOGGER.info("分段库存归还，日期: {}, 分段: {}", date, segmentNo);
+    }
+
+    @Override
+    public boolean restoreForCancel(String date, Long userId, String remark) {
+        int segmentCount = ticketSegmentMapper.countByDate(date);
+        if (segmentCount <= 0) {
+            return false;
+        }
+
+        // 订单备注中没有分段序号（启用分段前下单）时归还到用户所属分段
+        int segmentNo = parseSegmentNo(remark);
+        segmentNo = segmentNo < 0 ? segmentFor(userId, segmentCount) : segmentNo % segmentCount;
+        restore(date, segmentNo);
+        return true;
+    }
+
+    @Override
+    public String buildOrderRemark(int segmentNo) {
+        return SEGMENT_ORDER_REMARK + "#" + segmentNo;
+    }
+
+    @Override
+    public List<TicketSegment> getSegments(String date) {
+        return ticketSegmentMapper.selectByDate(date);
+    }
+
+    @Override
+    public Map<String, Object> getSegmentOverview(String date) {
+        List<TicketSegment> segments = ticketSegmentMapper.selectByDate(date);
+        int totalRemaining = 0;
+        int totalSold = 0;
+        for (TicketSegment segment : segments) {
+            totalRemaining += segment.getRemainingCount();
+            totalSold += segment.getSoldCount();
+        }
+
+        Map<String, Object> overview = new HashMap<>();
+        overview.put("date", date);
+        overview.put("segmented", !segments.isEmpty());
+        overview.put("segmentCount", segments.size());
+        overview.put("totalRemaining", totalRemaining);
+        overview.put("totalSold", totalSold);
+        overview.put("segments", segments);
+        overview.put("homeHitCount", homeHitCount.get());
+        overview.put("fallbackHitCount", fallbackHitCount.get());
+        overview.put("soldOutCount", soldOutCount.get());
+        overview.put("optimisticConflictCount", optimisticConflictCount.get());
+        return overview;
+    }
+
+    /**
+     * 用户所属分段
+     */
+    private int segmentFor(Long userId, int segmentCount) {
+        return Math.floorMod(userId.hashCode(), segmentCount);
+    }
+
+    /**
+     * 自身分段之外仍有库存的分段，使不同用户的回退分散到不同分段
+     */
+    private List<Integer> fallbackOrder(String date, int home, int segmentCount) {
+        List<Integer> order = new ArrayList<>();
+        for (TicketSegment segment : rotate(ticketSegmentMapper.selectAvailableByDate(date), home, segmentCount)) {
+            if (segment.getSegmentNo() != home) {
+                order.add(segment.getSegmentNo());
+            }
+        }
+        return order;
+    }
+
+    /**
+     * 从自身分段的下一个开始环形排列，自身分段排在最后
+     */
+    private List<TicketSegment> rotate(List<TicketSegment> segments, int home, int segmentCount) {
+        List<TicketSegment> rotated = new ArrayList<>(segments);
+        rotated.sort((a, b) -> Integer.compare(
+                Math.floorMod(a.getSegmentNo() - home - 1, segmentCount),
+                Math.floorMod(b.getSegmentNo() - home - 1, segmentCount)));
+        return rotated;
+    }
+
+    private int parseSegmentNo(String remark) {
+        if (remark == null || !remark.startsWith(SEGMENT_ORDER_REMARK + "#")) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(remark.substring(SEGMENT_ORDER_REMARK.length() + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -11,6 +11,9 @@ import cn.monitor4all.miaoshadao.model.*;
 import cn.monitor4all.miaoshadao.utils.CacheKey;
 import cn.monitor4all.miaoshaservice.config.RabbitMqPurchaseConfig;
 import cn.monitor4all.miaoshaservice.service.*;
+import cn.monitor4all.miaoshaservice.utils.OrderNoGenerator;
+import cn.monitor4all.miaoshaservice.utils.TicketOrderFactory;
+import cn.monitor4all.miaoshaservice.utils.ratelimit.OverloadSignals;
 import cn.monitor4all.miaoshaservice.utils.redis.CacheExpiredTime;
 import cn.monitor4all.miaoshaservice.utils.redis.RedisCache;
 import cn.monitor4all.miaoshaservice.utils.redis.RedisLock;
@@ -19,7 +22,10 @@ import com.alibaba.fastjson.JSONObject;
 import com.google.common.util.concurrent.RateLimiter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.MessageProperties;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
@@ -33,6 +39,7 @@ import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
@@ -77,6 +84,34 @@ public class TicketServiceImpl implements TicketService {
     @Resource
     private RabbitTemplate rabbitTemplate;
 
+    @Resource
+    private TicketAdmissionService ticketAdmissionService;
+
+    @Resource
+    private StockGroupCommitService stockGroupCommitService;
+
+    @Resource
+    private StockLeaseService stockLeaseService;
+
+    @Resource
+    private TicketSegmentService ticketSegmentService;
+
+    @Resource
+    private StockDeductStatisticsService stockDeductStatisticsService;
+
+    @Resource
+    private OptimisticRetryPolicyService optimisticRetryPolicyService;
+
+    @Resource
+    private PurchasePipelineService purchasePipelineService;
+
+    @Resource
+    private PurchaseBitmapService purchaseBitmapService;
+
+    // V1乐观锁接口使用的库存扣减引擎：optimistic-读改写重试，conditional-条件扣减
+    @Value("${miaosha.stock.deduct-engine:optimistic}")
+    private String deductEngine = "optimistic";
+
 
     // Guava令牌桶：每秒放行10个请求
     RateLimiter rateLimiter = RateLimiter.create(1000);
@@ -227,25 +262,12 @@ public class TicketServiceImpl implements TicketService {
      */
     public Ticket getTicketByDate(String date) {
         try {
-            // 先从Redis获取
+            // 缓存未命中时由缓存管理器单线程回源数据库并写入缓存，这里不再直接查询数据库
             Ticket ticket = ticketCacheManager.getTicketWithFallback(date);
             if (ticket != null) {
-                LOGGER.info("从Redis获取票券，日期: {}", date);
-                return ticket;
+                LOGGER.info("从缓存获取票券，日期: {}", date);
             }
-
-            // Redis中没有，从数据库查询
-            TicketEntity dbTicket = ticketEntityMapper.selectByDate(date);
-            if (dbTicket != null) {
-                Ticket ticketModel = new Ticket(dbTicket.getDate(), dbTicket.getTotalCount());
-                ticketModel.setRemaining(dbTicket.getRemainingCount());
-
-                // 保存到Redis
-                ticketCacheManager.saveTicket(date, ticketModel);
-                LOGGER.info("从数据库获取票券，日期: {}, 并保存到Redis", date);
-                return ticketModel;
-            }
-            return null;
+            return ticket;
         } catch (Exception e) {
             LOGGER.error("根据日期查询票券失败: {}", e.getMessage(), e);
             return null;
@@ -267,7 +289,7 @@ public class TicketServiceImpl implements TicketService {
             }
 
             // Redis中没有，从数据库查询
-            List<TicketEntity> dbTickets = ticketEntityMapper.selectAllActiveTickets();
+            List<TicketEntity> dbTickets = ticketEntityMapper.selectAllActiveTicketsAggregated();
             List<Ticket> result = new ArrayList<>();
             for (TicketEntity dbTicket : dbTickets) {
                 Ticket ticket = new Ticket(dbTicket.getDate(), dbTicket.getTotalCount());
@@ -430,7 +452,7 @@ public class TicketServiceImpl implements TicketService {
      */
     public Map<String, Object> getTicketStatistics() {
         try {
-            List<TicketEntity> allTickets = ticketEntityMapper.selectAllActiveTickets();
+            List<TicketEntity> allTickets = ticketEntityMapper.selectAllActiveTicketsAggregated();
             Map<String, Object> stats = new HashMap<>();
 
             int totalTickets = 0;
@@ -459,14 +481,14 @@ public class TicketServiceImpl implements TicketService {
     @Override
     public List<Ticket> getRecentTickets() {
         try {
-            // 从Redis获取最近3天的票券数据
+            // 从缓存获取最近3天的票券数据（缓存未命中的日期已批量回源数据库）
             List<Ticket> cachedTickets = ticketCacheManager.getTicketList();
-            if (cachedTickets != null && cachedTickets.size() != 3) {
+            if (cachedTickets != null && !cachedTickets.isEmpty()) {
                 LOGGER.info("从Redis获取最近3天的票券");
                 return cachedTickets;
             }
 
-            // 缓存数据不完整，从数据库获取
+            // 缓存和数据库中都没有，从数据库获取并初始化
             // 计算最近3天的日期范围
             LocalDate today = LocalDate.now();
             String todayStr = today.format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
@@ -547,11 +569,11 @@ public class TicketServiceImpl implements TicketService {
                 LOGGER.info("用户{}成功购买{}的票券，票券编号：{}", userId, purchaseDate, purchaseRecord.getTicketCode());
                 return ApiResponse.success(purchaseRecord);
             } else {
-                throw new BusinessException("获取订单创建锁超时");
+                throw new BusinessException(ErrorCode.SYSTEM_BUSY, "获取订单创建锁超时");
             }
         } catch (Exception e) {
             LOGGER.error("购买票券失败，日期: {}", purchaseDate, e);
-            return ApiResponse.error("购买失败");
+            return OverloadSignals.failure(e, "购买失败");
         } finally {
             if (null != redisLock) {
                 redisLock.unlock();
@@ -617,6 +639,11 @@ public class TicketServiceImpl implements TicketService {
     // 默认开启一个事务
     @Override
     public ApiResponse<PurchaseRecord> purchaseTicketV1WithOptimisticLock(PurchaseRequest request) throws Exception {
+        return purchaseTicketV1WithEngine(request, deductEngine);
+    }
+
+    @Override
+    public ApiResponse<PurchaseRecord> purchaseTicketV1WithEngine(PurchaseRequest request, String engine) throws Exception {
 
         multiValidParam(request);
 
@@ -629,16 +656,16 @@ public class TicketServiceImpl implements TicketService {
         RedisLock redisLock = RedisCache.createRedisLock(lockKey, CacheExpiredTime.ONE_MINUTE, 3000);
         try {
             if (null != redisLock && redisLock.lock()) {
-                PurchaseRecord purchaseRecord = doPurchaseTicketWithOptimisticLock(request);
+                PurchaseRecord purchaseRecord = doPurchaseTicketWithEngine(request, engine);
 
                 LOGGER.info("用户{}成功购买{}的票券，票券编号：{}", userId, purchaseDate, purchaseRecord.getTicketCode());
                 return ApiResponse.success(purchaseRecord);
             } else {
-                throw new BusinessException("获取订单创建锁超时");
+                throw new BusinessException(ErrorCode.SYSTEM_BUSY, "获取订单创建锁超时");
             }
         } catch (Exception e) {
             LOGGER.error("购买票券失败，日期: {}", purchaseDate, e);
-            return ApiResponse.error("购买失败");
+            return OverloadSignals.failure(e, "购买失败");
         } finally {
             if (null != redisLock) {
                 redisLock.unlock();
@@ -706,11 +733,11 @@ public class TicketServiceImpl implements TicketService {
                 result.put("message", "提交成功，正在排队");
                 return ApiResponse.success(result);
             } else {
-                throw new BusinessException("获取订单创建锁超时");
+                throw new BusinessException(ErrorCode.SYSTEM_BUSY, "获取订单创建锁超时");
             }
         } catch (Exception e) {
             LOGGER.error("购买票券失败，日期: {}", purchaseDate, e);
-            return ApiResponse.error("购买失败");
+            return OverloadSignals.failure(e, "购买失败");
         } finally {
             if (null != redisLock) {
                 redisLock.unlock();
@@ -718,6 +745,301 @@ public class TicketServiceImpl implements TicketService {
         }
     }
 
+    /**
+     * Lua准入购票
+     * 不加用户锁、不查库：限购校验、库存扣减、下单意向记录在一个Lua脚本内原子完成，
+     * 准入成功后发送订单创建消息，由订单消费者扣减数据库库存并创建订单
+     */
+    @Override
+    public ApiResponse<Map<String, Object>> purchaseTicketV4WithRedisAdmission(PurchaseRequest request) throws Exception {
+        return doPurchaseTicketV4(request, false);
+    }
+
+    @Override
+    public ApiResponse<Map<String, Object>> dryRunPurchaseV4(PurchaseRequest request) throws Exception {
+        return doPurchaseTicketV4(request, true);
+    }
+
+    /**
+     * Lua准入购票，空跑时与正式购票走同一段代码，只把有副作用的步骤换成等价的无副作用操作
+     * @param dryRun 是否空跑：不检查抢购时间窗口、不限流；准入脚本在临时键上执行，消息只序列化不发送
+     */
+    private ApiResponse<Map<String, Object>> doPurchaseTicketV4(PurchaseRequest request, boolean dryRun) throws Exception {
+
+        if (dryRun) {
+            validNullParam(request);
+            validLegalParam(request, false);
+        } else {
+            multiValidParam(request);
+        }
+
+        Long userId = request.getUserId();
+        String purchaseDate = request.getDate();
+        String requestId = generateRequestId(userId, purchaseDate);
+
+        int admission = dryRun ? ticketAdmissionService.dryRunAdmit(userId, purchaseDate, requestId)
+                : ticketAdmissionService.tryAdmit(userId, purchaseDate, requestId);
+        if (admission == TicketAdmissionService.ALREADY_PURCHASED) {
+            return ApiResponse.error("您已购买过当天的票券，每人每天限购一张");
+        }
+        if (admission != TicketAdmissionService.ADMITTED) {
+            return ApiResponse.error("票券已售罄");
+        }
+
+        Map<String, Object> message = buildAdmissionMessage(requestId, request);
+
+        if (dryRun) {
+            MessageConverter messageConverter = rabbitTemplate.getMessageConverter();
+            int messageBytes = messageConverter == null ? 0
+                    : messageConverter.toMessage(message, new MessageProperties()).getBody().length;
+            Map<String, Object> result = new HashMap<>();
+            result.put("requestId", requestId);
+            result.put("dryRun", true);
+            result.put("messageBytes", messageBytes);
+            return ApiResponse.success(result);
+        }
+
+        try {
+            rabbitTemplate.convertAndSend(RabbitMqPurchaseConfig.MIAOSHA_PURCHASE_EXCHANGE, RabbitMqPurchaseConfig.MIAOSHA_ORDER_CREATION_ROUTING_KEY, message);
+        } catch (Exception e) {
+            // 消息发送失败，撤销准入，归还库存计数
+            LOGGER.error("准入订单消息发送失败，撤销准入，用户ID: {}, 日期: {}", userId, purchaseDate, e);
+            ticketAdmissionService.rollbackAdmission(userId, purchaseDate, true, true);
+            return OverloadSignals.failure(e, "购买失败");
+        }
+
+        LOGGER.info("用户{}准入成功，日期: {}，请求ID: {}", userId, purchaseDate, requestId);
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("requestId", requestId);
+        result.put("message", "抢购成功，订单生成中");
+        return ApiResponse.success(result);
+    }
+
+    /**
+     * 构造准入订单创建消息
+     */
+    private Map<String, Object> buildAdmissionMessage(String requestId, PurchaseRequest request) {
+        Map<String, Object> message = new HashMap<>();
+        message.put("requestId", requestId);
+        message.put("userId", request.getUserId());
+        message.put("date", request.getDate());
+        message.put("verifyHash", request.getVerifyHash());
+        message.put("timestamp", System.currentTimeMillis());
+        message.put("mode", "admission");
+        return message;
+    }
+
+    @Override
+    public ApiResponse<PurchaseRecord> purchaseTicketV5WithGroupCommit(PurchaseRequest request) throws Exception {
+
+        multiValidParam(request);
+
+        return withUserDateLock(request, "组提交", () -> doPurchaseTicketWithGroupCommit(request));
+    }
+
+    /**
+     * 组提交扣减库存后创建订单
+     * 库存扣减由组提交服务在批次中完成，只在订单未创建时归还库存；
+     * 订单插入成功后的缓存写入失败不归还，否则已售出的票会被再次售出
+     */
+    public PurchaseRecord doPurchaseTicketWithGroupCommit(PurchaseRequest request) throws Exception {
+        Long userId = request.getUserId();
+        String purchaseDate = request.getDate();
+
+        if (hasPurchased(userId, purchaseDate)) {
+            throw new IllegalStateException("您已购买过当天的票券，每人每天限购一张");
+        }
+
+        // 加入当前日期的批次，等待批次提交结果
+        if (!stockGroupCommitService.deduct(purchaseDate)) {
+            throw new BusinessException("票券已售罄");
+        }
+
+        boolean orderCreated = false;
+        try {
+            TicketEntity ticketEntity = ticketEntityMapper.selectByDate(purchaseDate);
+            if (ticketEntity == null) {
+                throw new BusinessException("票券不存在");
+            }
+
+            String ticketCode = ticketCodeGeneratorService.generateUniqueTicketCode(userId, purchaseDate);
+            String orderNo = OrderNoGenerator.generate(userId);
+
+            TicketOrder ticketOrder = TicketOrderFactory.buildOrder(orderNo, userId, ticketEntity.getId(), purchaseDate, ticketCode, "组提交购票生成");
+
+            int insertResult = ticketOrderMapper.insert(ticketOrder);
+            if (insertResult <= 0) {
+                throw new RuntimeException("订单创建失败");
+            }
+            orderCreated = true;
+
+            ticketCacheManager.applyStockDelta(purchaseDate, -1);
+
+            PurchaseRecord purchaseRecord = new PurchaseRecord(userId, LocalDate.parse(purchaseDate), ticketCode);
+            ticketCacheManager.addPurchaseRecord(userId, purchaseDate, purchaseRecord);
+
+            LOGGER.info("组提交购票成功，用户ID: {}, 日期: {}, 票券编码: {}, 订单号: {}",
+                    userId, purchaseDate, ticketCode, orderNo);
+            return purchaseRecord;
+        } catch (Exception e) {
+            if (!orderCreated) {
+                // 库存已在批次中扣减，订单未创建则归还
+                stockGroupCommitService.restore(purchaseDate);
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public ApiResponse<PurchaseRecord> purchaseTicketV6WithLocalLease(PurchaseRequest request) throws Exception {
+
+        multiValidParam(request);
+
+        return withUserDateLock(request, "本地租约", () -> doPurchaseTicketWithLocalLease(request));
+    }
+
+    /**
+     * 从本地租约扣减库存后创建订单
+     * 订单编号使用租约前缀，失效节点回收租约时据此统计已售数量；订单创建失败时归还本地租约
+     */
+    public PurchaseRecord doPurchaseTicketWithLocalLease(PurchaseRequest request) throws Exception {
+        Long userId = request.getUserId();
+        String purchaseDate = request.getDate();
+
+        if (hasPurchased(userId, purchaseDate)) {
+            throw new IllegalStateException("您已购买过当天的票券，每人每天限购一张");
+        }
+
+        int leaseEpoch = stockLeaseService.tryAcquire(purchaseDate);
+        if (leaseEpoch == StockLeaseService.NO_LEASE) {
+            throw new BusinessException("票券已售罄");
+        }
+
+        boolean orderCreated = false;
+        try {
+            TicketEntity ticketEntity = ticketEntityMapper.selectByDate(purchaseDate);
+            if (ticketEntity == null) {
+                throw new BusinessException("票券不存在");
+            }
+
+            String ticketCode = ticketCodeGeneratorService.generateUniqueTicketCode(userId, purchaseDate);
+            String orderNo = stockLeaseService.generateLeaseOrderNo(userId);
+
+            TicketOrder ticketOrder = TicketOrderFactory.buildOrder(orderNo, userId, ticketEntity.getId(), purchaseDate, ticketCode, "本地租约购票生成");
+
+            int insertResult = ticketOrderMapper.insert(ticketOrder);
+            if (insertResult <= 0) {
+                throw new RuntimeException("订单创建失败");
+            }
+            orderCreated = true;
+
+            // 数据库库存在续租和归还时变化，票券缓存由租约服务同步增减
+
+            PurchaseRecord purchaseRecord = new PurchaseRecord(userId, LocalDate.parse(purchaseDate), ticketCode);
+            ticketCacheManager.addPurchaseRecord(userId, purchaseDate, purchaseRecord);
+
+            LOGGER.info("本地租约购票成功，用户ID: {}, 日期: {}, 票券编码: {}, 订单号: {}",
+                    userId, purchaseDate, ticketCode, orderNo);
+            return purchaseRecord;
+        } catch (Exception e) {
+            if (!orderCreated) {
+                stockLeaseService.release(purchaseDate, leaseEpoch);
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public ApiResponse<PurchaseRecord> purchaseTicketV7WithSegments(PurchaseRequest request, String lockMode) throws Exception {
+
+        multiValidParam(request);
+
+        return withUserDateLock(request, "分段库存", () -> doPurchaseTicketWithSegments(request, "optimistic".equals(lockMode)));
+    }
+
+    /**
+     * 从库存分段扣减后创建订单
+     * 订单备注记录分段序号，取消时归还到原分段；订单创建失败时归还分段库存
+     */
+    public PurchaseRecord doPurchaseTicketWithSegments(PurchaseRequest request, boolean optimistic) throws Exception {
+        Long userId = request.getUserId();
+        String purchaseDate = request.getDate();
+
+        if (hasPurchased(userId, purchaseDate)) {
+            throw new IllegalStateException("您已购买过当天的票券，每人每天限购一张");
+        }
+
+        int segmentNo = optimistic
+                ? ticketSegmentService.deductWithOptimisticLock(purchaseDate, userId)
+                : ticketSegmentService.deductWithPessimisticLock(purchaseDate, userId);
+        if (segmentNo < 0) {
+            throw new BusinessException("票券已售罄");
+        }
+
+        boolean orderCreated = false;
+        try {
+            TicketEntity ticketEntity = ticketEntityMapper.selectByDate(purchaseDate);
+            if (ticketEntity == null) {
+                throw new BusinessException("票券不存在");
+            }
+
+            String ticketCode = ticketCodeGeneratorService.generateUniqueTicketCode(userId, purchaseDate);
+            String orderNo = OrderNoGenerator.generate(userId);
+
+            TicketOrder ticketOrder = TicketOrderFactory.buildOrder(orderNo, userId, ticketEntity.getId(), purchaseDate, ticketCode, ticketSegmentService.buildOrderRemark(segmentNo));
+
+            int insertResult = ticketOrderMapper.insert(ticketOrder);
+            if (insertResult <= 0) {
+                throw new RuntimeException("订单创建失败");
+            }
+            orderCreated = true;
+
+            ticketCacheManager.applyStockDelta(purchaseDate, -1);
+
+            PurchaseRecord purchaseRecord = new PurchaseRecord(userId, LocalDate.parse(purchaseDate), ticketCode);
+            ticketCacheManager.addPurchaseRecord(userId, purchaseDate, purchaseRecord);
+
+            LOGGER.info("分段库存购票成功，用户ID: {}, 日期: {}, 分段: {}, 票券编码: {}, 订单号: {}",
+                    userId, purchaseDate, segmentNo, ticketCode, orderNo);
+            return purchaseRecord;
+        } catch (Exception e) {
+            if (!orderCreated) {
+                ticketSegmentService.restore(purchaseDate, segmentNo);
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public ApiResponse<PurchaseRecord> purchaseTicketV8WithPipeline(PurchaseRequest request) throws Exception {
+
+        multiValidParam(request);
+
+        return withUserDateLock(request, "流水线", () -> doPurchaseTicketWithPipeline(request));
+    }
+
+    /**
+     * 发布到购票流水线并等待结果
+     * 库存扣减、票券编码生成、订单落库和缓存更新均在流水线消费线程中完成
+     */
+    public PurchaseRecord doPurchaseTicketWithPipeline(PurchaseRequest request) throws Exception {
+        Long userId = request.getUserId();
+        String purchaseDate = request.getDate();
+
+        if (hasPurchased(userId, purchaseDate)) {
+            throw new IllegalStateException("您已购买过当天的票券，每人每天限购一张");
+        }
+
+        PurchaseRecord purchaseRecord = purchasePipelineService.purchase(userId, purchaseDate);
+        if (purchaseRecord == null) {
+            throw new BusinessException("票券已售罄");
+        }
+
+        LOGGER.info("流水线购票成功，用户ID: {}, 日期: {}, 票券编码: {}", userId, purchaseDate, purchaseRecord.getTicketCode());
+        return purchaseRecord;
+    }
+
     /**
      * 向消息队列orderQueue发送消息
      * @param message
@@ -823,12 +1145,19 @@ public class TicketServiceImpl implements TicketService {
 
     // 有效性校验
     private void validLegalParam(PurchaseRequest request) throws Exception {
+        validLegalParam(request, true);
+    }
+
+    // 有效性校验，开售前空跑预热时不检查抢购时间窗口
+    private void validLegalParam(PurchaseRequest request, boolean checkPurchaseWindow) throws Exception {
         if (Objects.isNull(request.getUserId()) || StringUtils.isEmpty(request.getDate()) || StringUtils.isEmpty(request.getVerifyHash())) {
             throw new IllegalArgumentException("参数不完整");
         }
 
         // 检查当前时间是否处于抢购时间内
-        validateCurrentTimeInPurchaseWindow();
+        if (checkPurchaseWindow) {
+            validateCurrentTimeInPurchaseWindow();
+        }
 
         // 验证码、哈希值 校验
         // 验证hash值合法性
@@ -897,6 +1226,12 @@ public class TicketServiceImpl implements TicketService {
     @Override
     public boolean hasPurchased(Long userId, String date) {
         try {
+            // 0. 购买位图就绪时直接返回，未购买的查询不再访问数据库
+            Boolean fromBitmap = purchaseBitmapService.hasPurchased(userId, date);
+            if (fromBitmap != null) {
+                return fromBitmap;
+            }
+
             // 1. 先从缓存获取是否有该日期的购买记录
             PurchaseRecord cachedRecord = ticketCacheManager.getPurchaseRecord(userId, date);
             if (cachedRecord != null) {
@@ -1590,7 +1925,7 @@ public class TicketServiceImpl implements TicketService {
             }
 
             // 更新缓存
-            ticketCacheManager.deleteTicket(request.getDate());
+            ticketCacheManager.applyStockDelta(request.getDate(), -1);
 
             // 构建返回结果
             PurchaseRecord result = new PurchaseRecord(request.getUserId(), LocalDate.parse(request.getDate()), ticketCode);
@@ -1672,20 +2007,10 @@ public class TicketServiceImpl implements TicketService {
             String ticketCode = ticketCodeGeneratorService.generateUniqueTicketCode(userId, purchaseDate);
 
             // 8. 生成订单编号
-            String orderNo = generateOrderNo(userId, purchaseDate);
+            String orderNo = OrderNoGenerator.generate(userId);
 
             // 9. 创建ticket_order订单
-            TicketOrder ticketOrder = new TicketOrder();
-            ticketOrder.setOrderNo(orderNo);
-            ticketOrder.setUserId(userId);
-            ticketOrder.setTicketId(ticketEntity.getId());
-            ticketOrder.setTicketCode(ticketCode);
-            ticketOrder.setTicketDate(purchaseDate);
-            ticketOrder.setStatus(1); // 待支付
-            ticketOrder.setAmount(0L); // 免费票券，金额为0
-            ticketOrder.setCreateTime(new Date());
-            ticketOrder.setUpdateTime(new Date());
-            ticketOrder.setRemark("悲观锁购票生成");
+            TicketOrder ticketOrder = TicketOrderFactory.buildOrder(orderNo, userId, ticketEntity.getId(), purchaseDate, ticketCode, "悲观锁购票生成");
 
             int insertResult = ticketOrderMapper.insert(ticketOrder);
             if (insertResult <= 0) {
@@ -1696,7 +2021,7 @@ public class TicketServiceImpl implements TicketService {
                     orderNo, userId, ticketCode);
 
             // 10. 更新缓存
-            ticketCacheManager.deleteTicket(purchaseDate);
+            ticketCacheManager.applyStockDelta(purchaseDate, -1);
 
             // 添加购买记录到缓存
             PurchaseRecord purchaseRecord = new PurchaseRecord(userId, LocalDate.parse(purchaseDate), ticketCode);
@@ -1764,8 +2089,8 @@ public class TicketServiceImpl implements TicketService {
                 throw new RuntimeException("库存扣减失败");
             }
 
-            // 10. 删除缓存
-            ticketCacheManager.deleteTicket(purchaseDate);
+            // 10. 扣减缓存中的剩余票数
+            ticketCacheManager.applyStockDelta(purchaseDate, -1);
 
             LOGGER.info("库存扣减成功，日期: {}, 原剩余: {}, 现剩余: {}, 原已售: {}, 现已售: {}",
                     purchaseDate, originalRemaining, ticketEntity.getRemainingCount(),
@@ -1775,20 +2100,10 @@ public class TicketServiceImpl implements TicketService {
             String ticketCode = ticketCodeGeneratorService.generateUniqueTicketCode(userId, purchaseDate);
 
             // 8. 生成订单编号
-            String orderNo = generateOrderNo(userId, purchaseDate);
+            String orderNo = OrderNoGenerator.generate(userId);
 
             // 9. 创建ticket_order订单
-            TicketOrder ticketOrder = new TicketOrder();
-            ticketOrder.setOrderNo(orderNo);
-            ticketOrder.setUserId(userId);
-            ticketOrder.setTicketId(ticketEntity.getId());
-            ticketOrder.setTicketCode(ticketCode);
-            ticketOrder.setTicketDate(purchaseDate);
-            ticketOrder.setStatus(1); // 待支付
-            ticketOrder.setAmount(0L); // 免费票券，金额为0
-            ticketOrder.setCreateTime(new Date());
-            ticketOrder.setUpdateTime(new Date());
-            ticketOrder.setRemark("悲观锁购票生成");
+            TicketOrder ticketOrder = TicketOrderFactory.buildOrder(orderNo, userId, ticketEntity.getId(), purchaseDate, ticketCode, "悲观锁购票生成");
 
             int insertResult = ticketOrderMapper.insert(ticketOrder);
             if (insertResult <= 0) {
@@ -1818,6 +2133,87 @@ public class TicketServiceImpl implements TicketService {
     }
 
 
+    /**
+     * 按引擎扣减库存并创建订单，同时记录引擎统计（已购买的请求不计入）
+     */
+    private PurchaseRecord doPurchaseTicketWithEngine(PurchaseRequest request, String engine) throws Exception {
+        String statsEngine = StockDeductStatisticsService.ENGINE_CONDITIONAL.equals(engine)
+                ? StockDeductStatisticsService.ENGINE_CONDITIONAL : StockDeductStatisticsService.ENGINE_OPTIMISTIC;
+        long startNanos = System.nanoTime();
+        String outcome = StockDeductStatisticsService.OUTCOME_FAILED;
+        try {
+            PurchaseRecord purchaseRecord = StockDeductStatisticsService.ENGINE_CONDITIONAL.equals(statsEngine)
+                    ? doPurchaseTicketWithConditionalDecrement(request)
+                    : doPurchaseTicketWithOptimisticLock(request);
+            outcome = StockDeductStatisticsService.OUTCOME_SUCCESS;
+            return purchaseRecord;
+        } catch (IllegalStateException e) {
+            outcome = null;
+            throw e;
+        } catch (BusinessException e) {
+            if ("票券已售罄".equals(e.getMessage())) {
+                outcome = StockDeductStatisticsService.OUTCOME_SOLD_OUT;
+            }
+            throw e;
+        } finally {
+            if (outcome != null) {
+                stockDeductStatisticsService.recordResult(statsEngine, outcome, System.nanoTime() - startNanos);
+            }
+        }
+    }
+
+    /**
+     * 条件扣减购票
+     * 一条 remaining_count >= 1 的条件UPDATE完成扣减，无需先查询、无版本冲突和重试；
+     * 扣减在自动提交下完成，行锁不跨越订单创建，订单创建失败时归还库存
+     */
+    public PurchaseRecord doPurchaseTicketWithConditionalDecrement(PurchaseRequest request) throws Exception {
+        Long userId = request.getUserId();
+        String purchaseDate = request.getDate();
+
+        if (hasPurchased(userId, purchaseDate)) {
+            throw new IllegalStateException("您已购买过当天的票券，每人每天限购一张");
+        }
+
+        stockDeductStatisticsService.recordStatement(StockDeductStatisticsService.ENGINE_CONDITIONAL);
+        if (ticketEntityMapper.decrementIfAvailable(purchaseDate, 1) <= 0) {
+            throw new BusinessException("票券已售罄");
+        }
+
+        boolean orderCreated = false;
+        try {
+            TicketEntity ticketEntity = ticketEntityMapper.selectByDate(purchaseDate);
+            if (ticketEntity == null) {
+                throw new BusinessException("票券不存在");
+            }
+
+            String ticketCode = ticketCodeGeneratorService.generateUniqueTicketCode(userId, purchaseDate);
+            String orderNo = OrderNoGenerator.generate(userId);
+
+            TicketOrder ticketOrder = TicketOrderFactory.buildOrder(orderNo, userId, ticketEntity.getId(), purchaseDate, ticketCode, "条件扣减购票生成");
+
+            int insertResult = ticketOrderMapper.insert(ticketOrder);
+            if (insertResult <= 0) {
+                throw new RuntimeException("订单创建失败");
+            }
+            orderCreated = true;
+
+            ticketCacheManager.applyStockDelta(purchaseDate, -1);
+
+            PurchaseRecord purchaseRecord = new PurchaseRecord(userId, LocalDate.parse(purchaseDate), ticketCode);
+            ticketCacheManager.addPurchaseRecord(userId, purchaseDate, purchaseRecord);
+
+            LOGGER.info("条件扣减购票成功，用户ID: {}, 日期: {}, 票券编码: {}, 订单号: {}",
+                    userId, purchaseDate, ticketCode, orderNo);
+            return purchaseRecord;
+        } catch (Exception e) {
+            if (!orderCreated) {
+                ticketEntityMapper.incrementStock(purchaseDate, 1);
+            }
+            throw e;
+        }
+    }
+
     /**
      * 乐观锁购票
      * <p>
@@ -1843,88 +2239,14 @@ public class TicketServiceImpl implements TicketService {
             Long userId = request.getUserId();
             String purchaseDate = request.getDate();
 
-            // 4. 使用乐观锁扣减库存，支持重试机制
-            TicketEntity ticketEntity = null;
-            int maxRetries = 3;
-            int retryCount = 0;
-            boolean stockUpdated = false;
-            int originalRemaining = 0;
-            int originalSold = 0;
-
-            while (retryCount < maxRetries && !stockUpdated) {
-                try {
-                    // 查询票券信息（不使用FOR UPDATE）
-                    ticketEntity = ticketEntityMapper.selectByDate(purchaseDate);
-                    if (ticketEntity == null) {
-                        throw new BusinessException("票券不存在");
-                    }
-
-                    // 检查库存
-                    if (ticketEntity.getRemainingCount() <= 0) {
-                        throw new BusinessException("票券已售罄");
-                    }
-
-                    // 准备扣减库存（乐观锁）
-                    originalRemaining = ticketEntity.getRemainingCount();
-                    originalSold = ticketEntity.getSoldCount();
-                    int originalVersion = ticketEntity.getVersion();
-
-                    ticketEntity.setRemainingCount(originalRemaining - 1);
-                    ticketEntity.setSoldCount(originalSold + 1);
-                    ticketEntity.setUpdateTime(new Date());
-
-                    // 使用乐观锁更新库存（version字段自动处理）
-                    int updateResult = ticketEntityMapper.updateStockByOptimistic(ticketEntity);
-                    if (updateResult > 0) {
-                        stockUpdated = true;
-                        LOGGER.info("乐观锁库存扣减成功，日期: {}, 原剩余: {}, 现剩余: {}, 原已售: {}, 现已售: {}, 版本: {}->{}",
-                                purchaseDate, originalRemaining, ticketEntity.getRemainingCount(),
-                                originalSold, ticketEntity.getSoldCount(), originalVersion, ticketEntity.getVersion());
-                    } else {
-                        // 乐观锁更新失败，版本冲突
-                        retryCount++;
-                        if (retryCount < maxRetries) {
-                            // TODO 重试表 针对因为乐观锁错误导致订单同步问题，抛出异常重试
-                            // 总重试时间不超过业务超时时间：例如秒杀接口超时为 5 秒，总重试时间（含处理时间）需≤3 秒，预留网络等其他耗时空间。
-                            // 最大间隔上限（如不超过 500ms），避免总耗时过长。
-                            LOGGER.warn("乐观锁更新失败，版本冲突，重试第{}次，用户ID: {}, 日期: {}",
-                                    retryCount, userId, purchaseDate);
-                            // 短暂等待后重试
-                            // 修改重试时间间隔：第一次50ms，第二次100ms，第三次300ms，控制在500ms内
-                            Thread.sleep(10 + (int) (Math.random() * 20));
-
-                        } else {
-                            // 业务提示：抢购失败，请重试
-                            LOGGER.warn("乐观锁更新失败，重试" + maxRetries + "次后仍失败");
-                            throw new RuntimeException("抢购失败，请重试");
-                        }
-                    }
-                } catch (Exception e) {
-                    if (e instanceof BusinessException) {
-                        throw e; // 业务异常直接抛出
-                    }
-                    retryCount++;
-                    if (retryCount >= maxRetries) {
-                        LOGGER.warn("乐观锁购票失败，重试" + maxRetries + "次后仍失败: " + e.getMessage(), e);
-                        throw new RuntimeException("抢购失败，请重试");
-                    }
-                    LOGGER.warn("乐观锁购票异常，重试第{}次，用户ID: {}, 日期: {}, 错误: {}",
-                            retryCount, userId, purchaseDate, e.getMessage());
-                    // 修改重试时间间隔：第一次50ms，第二次100ms，第三次300ms，控制在500ms内
-                    Thread.sleep(10 + (int) (Math.random() * 20));
-                }
-            }
-
-            if (!stockUpdated) {
-                throw new RuntimeException("乐观锁库存扣减失败，重试" + maxRetries + "次后仍失败");
-            }
+            // 4. 使用乐观锁扣减库存，按重试策略退避重试，冲突率过高时切换悲观模式
+            TicketEntity ticketEntity = deductStockWithRetryPolicy(userId, purchaseDate, true);
 
-            // 10. 删除缓存
-            ticketCacheManager.deleteTicket(purchaseDate);
+            // 10. 扣减缓存中的剩余票数
+            ticketCacheManager.applyStockDelta(purchaseDate, -1);
 
-            LOGGER.info("库存扣减成功，日期: {}, 原剩余: {}, 现剩余: {}, 原已售: {}, 现已售: {}",
-                    purchaseDate, originalRemaining, ticketEntity.getRemainingCount(),
-                    originalSold, ticketEntity.getSoldCount());
+            LOGGER.info("库存扣减成功，日期: {}, 现剩余: {}, 现已售: {}",
+                    purchaseDate, ticketEntity.getRemainingCount(), ticketEntity.getSoldCount());
 
             // TODO 异步生成订单 + 调用访客接口生成预约记录，消息+重试表
 
@@ -1932,20 +2254,10 @@ public class TicketServiceImpl implements TicketService {
             String ticketCode = ticketCodeGeneratorService.generateUniqueTicketCode(userId, purchaseDate);
 
             // 8. 生成订单编号
-            String orderNo = generateOrderNo(userId, purchaseDate);
+            String orderNo = OrderNoGenerator.generate(userId);
 
             // 9. 创建ticket_order订单
-            TicketOrder ticketOrder = new TicketOrder();
-            ticketOrder.setOrderNo(orderNo);
-            ticketOrder.setUserId(userId);
-            ticketOrder.setTicketId(ticketEntity.getId());
-            ticketOrder.setTicketCode(ticketCode);
-            ticketOrder.setTicketDate(purchaseDate);
-            ticketOrder.setStatus(1); // 待支付
-            ticketOrder.setAmount(0L); // 免费票券，金额为0
-            ticketOrder.setCreateTime(new Date());
-            ticketOrder.setUpdateTime(new Date());
-            ticketOrder.setRemark("乐观锁购票生成");
+            TicketOrder ticketOrder = TicketOrderFactory.buildOrder(orderNo, userId, ticketEntity.getId(), purchaseDate, ticketCode, "乐观锁购票生成");
 
             int insertResult = ticketOrderMapper.insert(ticketOrder);
             if (insertResult <= 0) {
@@ -1974,6 +2286,88 @@ public class TicketServiceImpl implements TicketService {
         }
     }
 
+    /**
+     * 乐观锁扣减一张票，版本冲突时按重试策略退避重试
+     * 日期冲突率超过阈值时切换为悲观模式：单条条件UPDATE在行锁上串行扣减，不再读改写重试
+     *
+     * @param userId           用户ID
+     * @param purchaseDate     日期
+     * @param trackEngineStats 是否计入库存扣减引擎统计（V1接口）
+     * @return 扣减后的票券信息
+     */
+    private TicketEntity deductStockWithRetryPolicy(Long userId, String purchaseDate, boolean trackEngineStats) throws Exception {
+        if (optimisticRetryPolicyService.isPessimisticPreferred(purchaseDate)) {
+            LOGGER.info("日期{}乐观锁冲突率过高，直接使用悲观模式扣减，用户ID: {}", purchaseDate, userId);
+            return deductStockPessimistic(purchaseDate, trackEngineStats);
+        }
+
+        OptimisticRetryPolicyService.Session session = optimisticRetryPolicyService.newSession(purchaseDate);
+        while (true) {
+            // 查询票券信息（不使用FOR UPDATE）
+            TicketEntity ticketEntity = ticketEntityMapper.selectByDate(purchaseDate);
+            if (ticketEntity == null) {
+                throw new BusinessException("票券不存在");
+            }
+
+            // 检查库存
+            if (ticketEntity.getRemainingCount() <= 0) {
+                throw new BusinessException("票券已售罄");
+            }
+
+            int originalVersion = ticketEntity.getVersion();
+            ticketEntity.setRemainingCount(ticketEntity.getRemainingCount() - 1);
+            ticketEntity.setSoldCount(ticketEntity.getSoldCount() + 1);
+            ticketEntity.setUpdateTime(new Date());
+
+            // 使用乐观锁更新库存（version字段自动处理）
+            if (trackEngineStats) {
+                stockDeductStatisticsService.recordStatement(StockDeductStatisticsService.ENGINE_OPTIMISTIC);
+            }
+            if (ticketEntityMapper.updateStockByOptimistic(ticketEntity) > 0) {
+                session.recordSuccess();
+                LOGGER.info("乐观锁库存扣减成功，日期: {}, 版本: {}, 重试次数: {}",
+                        purchaseDate, originalVersion, session.getRetryCount());
+                return ticketEntity;
+            }
+
+            // 乐观锁更新失败，版本冲突
+            if (trackEngineStats) {
+                stockDeductStatisticsService.recordConflict(StockDeductStatisticsService.ENGINE_OPTIMISTIC);
+            }
+            if (session.backoffAndRetry()) {
+                LOGGER.warn("乐观锁更新失败，版本冲突，重试第{}次，用户ID: {}, 日期: {}",
+                        session.getRetryCount(), userId, purchaseDate);
+                continue;
+            }
+            if (session.isSwitchRecommended()) {
+                LOGGER.warn("乐观锁冲突率超过阈值，切换悲观模式扣减，用户ID: {}, 日期: {}", userId, purchaseDate);
+                return deductStockPessimistic(purchaseDate, trackEngineStats);
+            }
+
+            // 业务提示：抢购失败，请重试
+            LOGGER.warn("乐观锁更新失败，重试{}次后仍失败，用户ID: {}, 日期: {}",
+                    session.getRetryCount(), userId, purchaseDate);
+            throw new RuntimeException("抢购失败，请重试");
+        }
+    }
+
+    /**
+     * 悲观模式扣减一张票：条件UPDATE持有行锁串行执行，无版本校验和重试
+     */
+    private TicketEntity deductStockPessimistic(String purchaseDate, boolean trackEngineStats) {
+        if (trackEngineStats) {
+            stockDeductStatisticsService.recordStatement(StockDeductStatisticsService.ENGINE_OPTIMISTIC);
+        }
+        if (ticketEntityMapper.decrementIfAvailable(purchaseDate, 1) <= 0) {
+            if (ticketEntityMapper.selectByDate(purchaseDate) == null) {
+                throw new BusinessException("票券不存在");
+            }
+            throw new BusinessException("票券已售罄");
+        }
+        optimisticRetryPolicyService.recordPessimisticUpdate(purchaseDate);
+        return ticketEntityMapper.selectByDate(purchaseDate);
+    }
+
     /**
      * 异步乐观锁购票，不需要限流检查
      * @param request
@@ -2006,88 +2400,14 @@ public class TicketServiceImpl implements TicketService {
             Long userId = request.getUserId();
             String purchaseDate = request.getDate();
 
-            // 4. 使用乐观锁扣减库存，支持重试机制
-            TicketEntity ticketEntity = null;
-            int maxRetries = 3;
-            int retryCount = 0;
-            boolean stockUpdated = false;
-            int originalRemaining = 0;
-            int originalSold = 0;
-
-            while (retryCount < maxRetries && !stockUpdated) {
-                try {
-                    // 查询票券信息（不使用FOR UPDATE）
-                    ticketEntity = ticketEntityMapper.selectByDate(purchaseDate);
-                    if (ticketEntity == null) {
-                        throw new BusinessException("票券不存在");
-                    }
-
-                    // 检查库存
-                    if (ticketEntity.getRemainingCount() <= 0) {
-                        throw new BusinessException("票券已售罄");
-                    }
-
-                    // 准备扣减库存（乐观锁）
-                    originalRemaining = ticketEntity.getRemainingCount();
-                    originalSold = ticketEntity.getSoldCount();
-                    int originalVersion = ticketEntity.getVersion();
-
-                    ticketEntity.setRemainingCount(originalRemaining - 1);
-                    ticketEntity.setSoldCount(originalSold + 1);
-                    ticketEntity.setUpdateTime(new Date());
-
-                    // 使用乐观锁更新库存（version字段自动处理）
-                    int updateResult = ticketEntityMapper.updateStockByOptimistic(ticketEntity);
-                    if (updateResult > 0) {
-                        stockUpdated = true;
-                        LOGGER.info("乐观锁库存扣减成功，日期: {}, 原剩余: {}, 现剩余: {}, 原已售: {}, 现已售: {}, 版本: {}->{}",
-                                purchaseDate, originalRemaining, ticketEntity.getRemainingCount(),
-                                originalSold, ticketEntity.getSoldCount(), originalVersion, ticketEntity.getVersion());
-                    } else {
-                        // 乐观锁更新失败，版本冲突
-                        retryCount++;
-                        if (retryCount < maxRetries) {
-                            // TODO 重试表 针对因为乐观锁错误导致订单同步问题，抛出异常重试
-                            // 总重试时间不超过业务超时时间：例如秒杀接口超时为 5 秒，总重试时间（含处理时间）需≤3 秒，预留网络等其他耗时空间。
-                            // 最大间隔上限（如不超过 500ms），避免总耗时过长。
-                            LOGGER.warn("乐观锁更新失败，版本冲突，重试第{}次，用户ID: {}, 日期: {}",
-                                    retryCount, userId, purchaseDate);
-                            // 短暂等待后重试
-                            // 修改重试时间间隔：第一次50ms，第二次100ms，第三次300ms，控制在500ms内
-                            Thread.sleep(10 + (int) (Math.random() * 20));
-
-                        } else {
-                            // 业务提示：抢购失败，请重试
-                            LOGGER.warn("乐观锁更新失败，重试" + maxRetries + "次后仍失败");
-                            throw new RuntimeException("抢购失败，请重试");
-                        }
-                    }
-                } catch (Exception e) {
-                    if (e instanceof BusinessException) {
-                        throw e; // 业务异常直接抛出
-                    }
-                    retryCount++;
-                    if (retryCount >= maxRetries) {
-                        LOGGER.warn("乐观锁购票失败，重试" + maxRetries + "次后仍失败: " + e.getMessage(), e);
-                        throw new RuntimeException("抢购失败，请重试");
-                    }
-                    LOGGER.warn("乐观锁购票异常，重试第{}次，用户ID: {}, 日期: {}, 错误: {}",
-                            retryCount, userId, purchaseDate, e.getMessage());
-                    // 修改重试时间间隔：第一次50ms，第二次100ms，第三次300ms，控制在500ms内
-                    Thread.sleep(10 + (int) (Math.random() * 20));
-                }
-            }
-
-            if (!stockUpdated) {
-                throw new RuntimeException("乐观锁库存扣减失败，重试" + maxRetries + "次后仍失败");
-            }
+            // 4. 使用乐观锁扣减库存，按重试策略退避重试，冲突率过高时切换悲观模式
+            TicketEntity ticketEntity = deductStockWithRetryPolicy(userId, purchaseDate, false);
 
-            // 10. 删除缓存
-            ticketCacheManager.deleteTicket(purchaseDate);
+            // 10. 扣减缓存中的剩余票数
+            ticketCacheManager.applyStockDelta(purchaseDate, -1);
 
-            LOGGER.info("库存扣减成功，日期: {}, 原剩余: {}, 现剩余: {}, 原已售: {}, 现已售: {}",
-                    purchaseDate, originalRemaining, ticketEntity.getRemainingCount(),
-                    originalSold, ticketEntity.getSoldCount());
+            LOGGER.info("库存扣减成功，日期: {}, 现剩余: {}, 现已售: {}",
+                    purchaseDate, ticketEntity.getRemainingCount(), ticketEntity.getSoldCount());
 
             // TODO 异步生成订单 + 调用访客接口生成预约记录，消息+重试表
             // 将请求封装后发送到MQ队列
@@ -2125,88 +2445,14 @@ public class TicketServiceImpl implements TicketService {
             Long userId = request.getUserId();
             String purchaseDate = request.getDate();
 
-            // 4. 使用乐观锁扣减库存，支持重试机制
-            TicketEntity ticketEntity = null;
-            int maxRetries = 3;
-            int retryCount = 0;
-            boolean stockUpdated = false;
-            int originalRemaining = 0;
-            int originalSold = 0;
+            // 4. 使用乐观锁扣减库存，按重试策略退避重试，冲突率过高时切换悲观模式
+            TicketEntity ticketEntity = deductStockWithRetryPolicy(userId, purchaseDate, false);
 
-            while (retryCount < maxRetries && !stockUpdated) {
-                try {
-                    // 查询票券信息（不使用FOR UPDATE）
-                    ticketEntity = ticketEntityMapper.selectByDate(purchaseDate);
-                    if (ticketEntity == null) {
-                        throw new BusinessException("票券不存在");
-                    }
-
-                    // 检查库存
-                    if (ticketEntity.getRemainingCount() <= 0) {
-                        throw new BusinessException("票券已售罄");
-                    }
+            // 10. 扣减缓存中的剩余票数
+            ticketCacheManager.applyStockDelta(purchaseDate, -1);
 
-                    // 准备扣减库存（乐观锁）
-                    originalRemaining = ticketEntity.getRemainingCount();
-                    originalSold = ticketEntity.getSoldCount();
-                    int originalVersion = ticketEntity.getVersion();
-
-                    ticketEntity.setRemainingCount(originalRemaining - 1);
-                    ticketEntity.setSoldCount(originalSold + 1);
-                    ticketEntity.setUpdateTime(new Date());
-
-                    // 使用乐观锁更新库存（version字段自动处理）
-                    int updateResult = ticketEntityMapper.updateStockByOptimistic(ticketEntity);
-                    if (updateResult > 0) {
-                        stockUpdated = true;
-                        LOGGER.info("乐观锁库存扣减成功，日期: {}, 原剩余: {}, 现剩余: {}, 原已售: {}, 现已售: {}, 版本: {}->{}",
-                                purchaseDate, originalRemaining, ticketEntity.getRemainingCount(),
-                                originalSold, ticketEntity.getSoldCount(), originalVersion, ticketEntity.getVersion());
-                    } else {
-                        // 乐观锁更新失败，版本冲突
-                        retryCount++;
-                        if (retryCount < maxRetries) {
-                            // TODO 重试表 针对因为乐观锁错误导致订单同步问题，抛出异常重试
-                            // 总重试时间不超过业务超时时间：例如秒杀接口超时为 5 秒，总重试时间（含处理时间）需≤3 秒，预留网络等其他耗时空间。
-                            // 最大间隔上限（如不超过 500ms），避免总耗时过长。
-                            LOGGER.warn("乐观锁更新失败，版本冲突，重试第{}次，用户ID: {}, 日期: {}",
-                                    retryCount, userId, purchaseDate);
-                            // 短暂等待后重试
-                            // 修改重试时间间隔：第一次50ms，第二次100ms，第三次300ms，控制在500ms内
-                            Thread.sleep(10 + (int) (Math.random() * 20));
-
-                        } else {
-                            // 业务提示：抢购失败，请重试
-                            LOGGER.warn("乐观锁更新失败，重试" + maxRetries + "次后仍失败");
-                            throw new RuntimeException("抢购失败，请重试");
-                        }
-                    }
-                } catch (Exception e) {
-                    if (e instanceof BusinessException) {
-                        throw e; // 业务异常直接抛出
-                    }
-                    retryCount++;
-                    if (retryCount >= maxRetries) {
-                        LOGGER.warn("乐观锁购票失败，重试" + maxRetries + "次后仍失败: " + e.getMessage(), e);
-                        throw new RuntimeException("抢购失败，请重试");
-                    }
-                    LOGGER.warn("乐观锁购票异常，重试第{}次，用户ID: {}, 日期: {}, 错误: {}",
-                            retryCount, userId, purchaseDate, e.getMessage());
-                    // 修改重试时间间隔：第一次50ms，第二次100ms，第三次300ms，控制在500ms内
-                    Thread.sleep(10 + (int) (Math.random() * 20));
-                }
-            }
-
-            if (!stockUpdated) {
-                throw new RuntimeException("乐观锁库存扣减失败，重试" + maxRetries + "次后仍失败");
-            }
-
-            // 10. 删除缓存
-            ticketCacheManager.deleteTicket(purchaseDate);
-
-            LOGGER.info("库存扣减成功，日期: {}, 原剩余: {}, 现剩余: {}, 原已售: {}, 现已售: {}",
-                    purchaseDate, originalRemaining, ticketEntity.getRemainingCount(),
-                    originalSold, ticketEntity.getSoldCount());
+            LOGGER.info("库存扣减成功，日期: {}, 现剩余: {}, 现已售: {}",
+                    purchaseDate, ticketEntity.getRemainingCount(), ticketEntity.getSoldCount());
 
             // TODO 异步生成订单 + 调用访客接口生成预约记录，消息+重试表
             // 将请求封装后发送到MQ队列
@@ -2230,19 +2476,40 @@ public class TicketServiceImpl implements TicketService {
 
 
     /**
-     * 生成订单编号
-     * 格式：TB + 时间戳 + 用户ID后4位 + 随机数
+     * 在用户+日期锁内购票
+     * 锁超时和业务失败（已购买、售罄等）返回对应提示，其他异常返回"购买失败"；锁超时和下游过载的返回码为 SYSTEM_BUSY
      *
-     * @param userId 用户ID
-     * @param date   购票日期
-     * @return 订单编号
+     * @param request  购票请求
+     * @param mode     购票方式，用于日志
+     * @param purchase 锁内执行的购票逻辑
+     * @return 购票结果
      */
-    private String generateOrderNo(Long userId, String date) {
-        long timestamp = System.currentTimeMillis();
-        String userIdSuffix = String.valueOf(userId).substring(Math.max(0, String.valueOf(userId).length() - 4));
-        int random = (int) (Math.random() * 1000);
+    private ApiResponse<PurchaseRecord> withUserDateLock(PurchaseRequest request, String mode, Callable<PurchaseRecord> purchase) {
+        Long userId = request.getUserId();
+        String purchaseDate = request.getDate();
+
+        final String lockKey = CacheKey.LOCK_USER_TICKET_DATE.getKey() + userId + purchaseDate;
+        RedisLock redisLock = RedisCache.createRedisLock(lockKey, CacheExpiredTime.ONE_MINUTE, 3000);
+        try {
+            if (null != redisLock && redisLock.lock()) {
+                PurchaseRecord purchaseRecord = purchase.call();
 
-        return String.format("TB%d%s%03d", timestamp, userIdSuffix, random);
+                LOGGER.info("用户{}成功购买{}的票券，票券编号：{}", userId, purchaseDate, purchaseRecord.getTicketCode());
+                return ApiResponse.success(purchaseRecord);
+            } else {
+                throw new BusinessException(ErrorCode.SYSTEM_BUSY, "获取订单创建锁超时");
+            }
+        } catch (BusinessException | IllegalStateException e) {
+            LOGGER.warn("{}购票失败，用户ID: {}, 日期: {}, 原因: {}", mode, userId, purchaseDate, e.getMessage());
+            return OverloadSignals.failure(e, e.getMessage());
+        } catch (Exception e) {
+            LOGGER.error("购买票券失败，日期: {}", purchaseDate, e);
+            return OverloadSignals.failure(e, "购买失败");
+        } finally {
+            if (null != redisLock) {
+                redisLock.unlock();
+            }
+        }
     }
 
     @Override
@@ -2257,9 +2524,14 @@ public class TicketServiceImpl implements TicketService {
                 return tickets;
             }
 
-            // 为每个票券添加用户购买状态
+            // 批量查询用户购买状态（位图、缓存、数据库各最多一次往返）
+            List<String> dates = new ArrayList<>(tickets.size());
+            for (Ticket ticket : tickets) {
+                dates.add(ticket.getDate());
+            }
+            Map<String, Boolean> purchaseStatus = ticketCacheManager.getUserPurchaseStatus(userId, dates);
             for (Ticket ticket : tickets) {
-                boolean hasPurchased = checkUserPurchaseStatus(userId, ticket.getDate());
+                boolean hasPurchased = Boolean.TRUE.equals(purchaseStatus.get(ticket.getDate()));
                 ticket.setUserPurchased(hasPurchased);
                 LOGGER.debug("票券日期: {}, 用户ID: {}, 已购买: {}", ticket.getDate(), userId, hasPurchased);
             }
@@ -2274,83 +2546,6 @@ public class TicketServiceImpl implements TicketService {
         }
     }
 
-    /**
-     * 检查用户是否已购买指定日期的票券
-     * 优先从缓存查询，缓存未命中则从数据库ticket_order表查询
-     *
-     * @param userId 用户ID
-     * @param date   日期
-     * @return 是否已购买
-     */
-    private boolean checkUserPurchaseStatus(Long userId, String date) {
-        try {
-            if (userId == null) {
-                return false;
-            }
-
-            // 1. 先从缓存查询用户购买状态
-            boolean fromCache = checkUserPurchaseStatusFromCache(userId, date);
-            if (fromCache) {
-                LOGGER.debug("从缓存查询到用户购买状态，用户ID: {}, 日期: {}, 已购买: true", userId, date);
-                return true;
-            }
-
-            // 2. 缓存中没有，查询数据库ticket_order表
-            LOGGER.debug("缓存中未找到用户购买记录，尝试从数据库查询，用户ID: {}, 日期: {}", userId, date);
-            TicketOrder ticketOrder = ticketOrderMapper.selectByUserIdAndDate(userId, date);
-
-            boolean hasPurchased = ticketOrder != null;
-
-            // 3. 将查询结果写入缓存
-            String cacheKey = CacheKey.USER_HAS_ORDER.getKey() + "_" + date + "_" + userId;
-            if (hasPurchased) {
-                stringRedisTemplate.opsForValue().set(cacheKey, "1", 12, TimeUnit.HOURS);
-                LOGGER.debug("用户已购买，写入缓存，用户ID: {}, 日期: {}, 缓存键: {}", userId, date, cacheKey);
-            } else {
-                stringRedisTemplate.opsForValue().set(cacheKey, "0", 12, TimeUnit.HOURS);
-                LOGGER.debug("用户未购买，写入缓存，用户ID: {}, 日期: {}, 缓存键: {}", userId, date, cacheKey);
-            }
-
-            LOGGER.debug("从数据库查询用户购买状态，用户ID: {}, 日期: {}, 已购买: {}", userId, date, hasPurchased);
-            return hasPurchased;
-
-        } catch (Exception e) {
-            LOGGER.error("查询用户购买状态失败，用户ID: {}, 日期: {}", userId, date, e);
-            return false;
-        }
-    }
-
-    /**
-     * 从缓存查询用户购买状态
-     *
-     * @param userId 用户ID
-     * @param date   日期
-     * @return 是否已购买
-     */
-    private boolean checkUserPurchaseStatusFromCache(Long userId, String date) {
-        try {
-            if (userId == null) {
-                return false;
-            }
-
-            // 从Redis缓存查询
-            String cacheKey = CacheKey.USER_HAS_ORDER.getKey() + "_" + date + "_" + userId;
-            String cacheValue = stringRedisTemplate.opsForValue().get(cacheKey);
-
-            if (cacheValue != null) {
-                boolean hasPurchased = "1".equals(cacheValue);
-                LOGGER.debug("从缓存查询用户购买状态，用户ID: {}, 日期: {}, 已购买: {}", userId, date, hasPurchased);
-                return hasPurchased;
-            }
-
-            return false;
-
-        } catch (Exception e) {
-            LOGGER.error("从缓存查询用户购买状态失败，用户ID: {}, 日期: {}", userId, date, e);
-            return false;
-        }
-    }
-
     /**
      * 验证取消条件
      *
@@ -2512,6 +2707,11 @@ public class TicketServiceImpl implements TicketService {
      * @param order 订单信息
      */
     private void restoreTicketStock(TicketOrder order) {
+        // 启用分段的日期归还到分段，ticket行剩余库存保持为0
+        if (ticketSegmentService.restoreForCancel(order.getTicketDate(), order.getUserId(), order.getRemark())) {
+            return;
+        }
+
         // 1. 使用悲观锁查询票券信息
         TicketEntity ticketEntity = ticketEntityMapper.selectByDateForUpdate(order.getTicketDate());
         if (ticketEntity == null) {
@@ -2569,12 +2769,15 @@ public class TicketServiceImpl implements TicketService {
             // 2. 清除购买记录缓存
             ticketCacheManager.deletePurchaseRecord(order.getUserId(), order.getTicketDate());
 
-            // 3. 清除票券库存缓存
-            ticketCacheManager.deleteTicket(order.getTicketDate());
+            // 3. 归还票券缓存中的剩余票数
+            ticketCacheManager.applyStockDelta(order.getTicketDate(), 1);
 
             // 清除购票状态 CacheKey.USER_HAS_ORDER.getKey() + "_" + date + "_" + userId
             ticketCacheManager.clearUserPurchaseStatus(order.getUserId(), order.getTicketDate());
 
+            // 数据库库存已归还，同步归还Lua准入库存计数（脚本只对经过准入的用户归还）
+            ticketAdmissionService.releaseAfterCancel(order.getUserId(), order.getTicketDate());
+
             // 4. 清除票券列表缓存
 //            ticketCacheManager.deleteTicketList();
 
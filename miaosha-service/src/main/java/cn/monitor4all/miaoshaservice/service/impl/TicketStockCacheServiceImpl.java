@@ -0,0 +1,643 @@
+package cn.monitor4all.miaoshaservice.service.impl;
+
+import cn.monitor4all.miaoshadao.dao.TicketEntity;
+import cn.monitor4all.miaoshadao.mapper.TicketEntityMapper;
+import cn.monitor4all.miaoshadao.model.Ticket;
+import cn.monitor4all.miaoshaservice.service.HotKeyService;
+import cn.monitor4all.miaoshaservice.service.TicketStockCacheService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 票券库存写穿缓存服务实现类
+ * 1. 读取：HGETALL票券hash，批量读取用一次管道；未命中时同一日期只有一个线程回源，其他线程等待回源结果
+ * 2. 回源：先读版本号，再查数据库汇总库存，最后用Lua脚本写入，版本号变化时放弃写入（只返回数据库结果）；
+ *    回源前按日期抢占Redis加载租约（键:loading），抢不到说明其他线程或节点正在回源，轮询等待其写入缓存，
+ *    等待超时后自行回源；写入和增减时有效期随机延长，同时回源的日期不会同时过期
+ * 3. 增减：Lua脚本递增版本号后HINCRBY剩余和已售票数，hash不存在时只递增版本号
+ * 4. 对账：定时检查今天起 reconcile-days 天中缓存存在的日期，与数据库不一致时用回源脚本覆盖；
+ *    数据库提交与缓存增减之间的短暂偏差、事务回滚或进程崩溃导致的偏差由对账修正
+ * 5. 热键：晋升为本地副本的日期先读副本；本节点增减后用返回的剩余票数替换副本，其他节点收到合并的失效通知
+ */
+@Service
+public class TicketStockCacheServiceImpl implements TicketStockCacheService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TicketStockCacheServiceImpl.class);
+
+    // 票券库存hash键前缀
+    private static final String TICKET_STOCK_PREFIX = "ticket:stock:";
+
+    // 票券库存版本号键前缀
+    private static final String TICKET_STOCK_VERSION_PREFIX = "ticket:stock:ver:";
+
+    // 加载租约键后缀
+    private static final String LEASE_SUFFIX = ":loading";
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private TicketEntityMapper ticketEntityMapper;
+
+    @Resource
+    private HotKeyService hotKeyService;
+
+    // 缓存过期时间（秒），每次增减都会刷新
+    @Value("${miaosha.ticket-stock-cache.ttl-seconds:3600}")
+    private long ttlSeconds = 3600;
+
+    // 等待其他线程回源的最长时间（毫秒），超时后自行查询数据库
+    @Value("${miaosha.ticket-stock-cache.load-wait-ms:3000}")
+    private long loadWaitMs = 3000;
+
+    // 有效期随机延长比例，实际有效期在 [ttl, ttl * (1 + ratio)] 之间
+    @Value("${miaosha.ticket-stock-cache.ttl-jitter-ratio:0.1}")
+    private double ttlJitterRatio = 0.1;
+
+    // 是否启用跨节点加载租约
+    @Value("${miaosha.ticket-stock-cache.lease-enabled:true}")
+    private boolean leaseEnabled = true;
+
+    // 加载租约有效期（毫秒），应大于一次回源耗时
+    @Value("${miaosha.ticket-stock-cache.lease-ms:3000}")
+    private long leaseMs = 3000;
+
+    // 未抢到租约时等待其他节点写入缓存的最长时间（毫秒）
+    @Value("${miaosha.ticket-stock-cache.lease-wait-ms:500}")
+    private long leaseWaitMs = 500;
+
+    // 等待其他节点写入缓存的轮询间隔（毫秒）
+    @Value("${miaosha.ticket-stock-cache.lease-poll-ms:20}")
+    private long leasePollMs = 20;
+
+    // 对账间隔（毫秒），0表示不启动定时对账
+    @Value("${miaosha.ticket-stock-cache.reconcile-interval-ms:30000}")
+    private long reconcileIntervalMs = 30000;
+
+    // 对账的日期数（今天起）
+    @Value("${miaosha.ticket-stock-cache.reconcile-days:3}")
+    private int reconcileDays = 3;
+
+    private DefaultRedisScript<Long> deltaScript;
+
+    private DefaultRedisScript<Long> loadScript;
+
+    private DefaultRedisScript<Long> leaseReleaseScript;
+
+    private ScheduledThreadPoolExecutor reconcileExecutor;
+
+    // 日期 -> 进行中的回源
+    private final Map<String, CompletableFuture<Ticket>> loading = new ConcurrentHashMap<>();
+
+    private final String nodeId = UUID.randomUUID().toString().replace("-", "").substring(0, 8);
+
+    private final AtomicLong leaseSequence = new AtomicLong(0);
+
+    // 统计信息
+    private final AtomicLong hitCount = new AtomicLong(0);
+    private final AtomicLong missCount = new AtomicLong(0);
+    private final AtomicLong loadCount = new AtomicLong(0);
+    private final AtomicLong sharedLoadCount = new AtomicLong(0);
+    private final AtomicLong loadRejectedCount = new AtomicLong(0);
+    private final AtomicLong leaseContendedCount = new AtomicLong(0);
+    private final AtomicLong leaseWaitHitCount = new AtomicLong(0);
+    private final AtomicLong deltaCount = new AtomicLong(0);
+    private final AtomicLong deltaMissCount = new AtomicLong(0);
+    private final AtomicLong putCount = new AtomicLong(0);
+    private final AtomicLong invalidateCount = new AtomicLong(0);
+    private final AtomicLong reconcileRunCount = new AtomicLong(0);
+    private final AtomicLong reconcileCheckedCount = new AtomicLong(0);
+    private final AtomicLong reconcileCorrectedCount = new AtomicLong(0);
+    private final AtomicLong reconcileSkippedCount = new AtomicLong(0);
+    private final AtomicLong maxDrift = new AtomicLong(0);
+    private final AtomicLong redisErrorCount = new AtomicLong(0);
+
+    @PostConstruct
+    public void init() {
+        deltaScript = new DefaultRedisScript<>();
+        deltaScript.setScriptSource(new ResourceScriptSource(new ClassPathResource("scripts/ticket_stock_delta.lua")));
+        deltaScript.setResultType(Long.class);
+
+        loadScript = new DefaultRedisScript<>();
+        loadScript.setScriptSource(new ResourceScriptSource(new ClassPathResource("scripts/ticket_stock_load.lua")));
+        loadScript.setResultType(Long.class);
+
+        leaseReleaseScript = new DefaultRedisScript<>();
+        leaseReleaseScript.setScriptSource(new ResourceScriptSource(new ClassPathResource("scripts/cache_lease_release.lua")));
+        leaseReleaseScript.setResultType(Long.class);
+
+        if (reconcileIntervalMs > 0) {
+            reconcileExecutor = new ScheduledThreadPoolExecutor(1, r -> {
+                Thread thread = new Thread(r, "ticket-stock-reconcile");
+                thread.setDaemon(true);
+                return thread;
+            });
+            reconcileExecutor.scheduleWithFixedDelay(this::reconcileRecentDates, reconcileIntervalMs, reconcileIntervalMs, TimeUnit.MILLISECONDS);
+        }
+        LOGGER.info("票券库存写穿缓存初始化完成，过期时间: {}s, 有效期随机比例: {}, 加载租约: {}, 对账间隔: {}ms, 对账天数: {}",
+                ttlSeconds, ttlJitterRatio, leaseEnabled, reconcileIntervalMs, reconcileDays);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (reconcileExecutor != null) {
+            reconcileExecutor.shutdownNow();
+        }
+    }
+
+    @Override
+    public Ticket getOrLoad(String date) {
+        Ticket replica = replicaOf(date);
+        if (replica != null) {
+            hitCount.incrementAndGet();
+            return replica;
+        }
+        Map<String, String> fields = null;
+        try {
+            fields = stringRedisTemplate.<String, String>opsForHash().entries(stockKey(date));
+        } catch (Exception e) {
+            redisErrorCount.incrementAndGet();
+            LOGGER.warn("读取票券库存缓存失败，回退到数据库，日期: {}, 错误: {}", date, e.getMessage());
+        }
+        Ticket cached = toTicket(date, fields);
+        if (cached != null) {
+            hitCount.incrementAndGet();
+            hotKeyService.putReplica(stockKey(date), snapshot(cached));
+            return cached;
+        }
+        missCount.incrementAndGet();
+
+        // 同一日期只有一个线程回源
+        CompletableFuture<Ticket> future = new CompletableFuture<>();
+        CompletableFuture<Ticket> existing = loading.putIfAbsent(date, future);
+        if (existing != null) {
+            sharedLoadCount.incrementAndGet();
+            try {
+                return existing.get(loadWaitMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                LOGGER.warn("等待票券回源失败，自行查询数据库，日期: {}, 错误: {}", date, e.getMessage());
+            }
+            return loadWithLease(Collections.singletonList(date)).get(date);
+        }
+        try {
+            Ticket ticket = loadWithLease(Collections.singletonList(date)).get(date);
+            future.complete(ticket);
+            return ticket;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(date, future);
+        }
+    }
+
+    @Override
+    public Map<String, Ticket> getOrLoadAll(List<String> dates) {
+        Map<String, Ticket> found = new HashMap<>();
+        List<String> dbDates = new ArrayList<>();
+        List<String> redisDates = new ArrayList<>(dates.size());
+        for (String date : dates) {
+            Ticket replica = replicaOf(date);
+            if (replica != null) {
+                hitCount.incrementAndGet();
+                found.put(date, replica);
+            } else {
+                redisDates.add(date);
+            }
+        }
+        List<Object> results = null;
+        try {
+            results = redisDates.isEmpty() ? Collections.emptyList() : stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (String date : redisDates) {
+                    connection.hGetAll(stockKey(date).getBytes(StandardCharsets.UTF_8));
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            redisErrorCount.incrementAndGet();
+            LOGGER.warn("批量读取票券库存缓存失败，回退到数据库，日期: {}, 错误: {}", redisDates, e.getMessage());
+        }
+        for (int i = 0; i < redisDates.size(); i++) {
+            Object result = results != null && i < results.size() ? results.get(i) : null;
+            @SuppressWarnings("unchecked")
+            Ticket ticket = result instanceof Map ? toTicket(redisDates.get(i), (Map<String, String>) result) : null;
+            if (ticket != null) {
+                hitCount.incrementAndGet();
+                found.put(redisDates.get(i), ticket);
+                hotKeyService.putReplica(stockKey(redisDates.get(i)), snapshot(ticket));
+            } else {
+                missCount.incrementAndGet();
+                dbDates.add(redisDates.get(i));
+            }
+        }
+        if (!dbDates.isEmpty()) {
+            found.putAll(loadWithLease(dbDates));
+        }
+
+        // 按传入顺序返回
+        Map<String, Ticket> tickets = new LinkedHashMap<>();
+        for (String date : dates) {
+            Ticket ticket = found.get(date);
+            if (ticket != null) {
+                tickets.put(date, ticket);
+            }
+        }
+        return tickets;
+    }
+
+    @Override
+    public Long applyDelta(String date, int remainingDelta) {
+        Long remaining = stringRedisTemplate.execute(deltaScript, Arrays.asList(stockKey(date), versionKey(date)),
+                String.valueOf(remainingDelta), String.valueOf(jitteredTtlSeconds()));
+        deltaCount.incrementAndGet();
+        if (remaining == null) {
+            deltaMissCount.incrementAndGet();
+            LOGGER.debug("票券库存缓存不存在，只递增版本号，日期: {}, 变化量: {}", date, remainingDelta);
+        }
+        // 本节点的副本直接换成增减后的值，其他节点的副本失效
+        Object replica = remaining != null ? hotKeyService.getReplica(stockKey(date)) : null;
+        Ticket updated = null;
+        if (replica instanceof Ticket) {
+            updated = new Ticket(date, ((Ticket) replica).getTotal());
+            updated.setRemaining(remaining.intValue());
+        }
+        hotKeyService.update(stockKey(date), updated);
+        return remaining;
+    }
+
+    @Override
+    public void put(Ticket ticket) {
+        long version = bumpVersionAndDelete(ticket.getDate());
+        Long written = stringRedisTemplate.execute(loadScript, Arrays.asList(stockKey(ticket.getDate()), versionKey(ticket.getDate())),
+                String.valueOf(version), String.valueOf(ticket.getTotal()), String.valueOf(ticket.getRemaining()),
+                String.valueOf(ticket.getTotal() - ticket.getRemaining()), String.valueOf(jitteredTtlSeconds()));
+        putCount.incrementAndGet();
+        hotKeyService.invalidate(stockKey(ticket.getDate()));
+        if (written == null || written == 0) {
+            // 写入前已有增减，缓存保持删除状态，下次读取时回源
+            loadRejectedCount.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void invalidate(String date) {
+        bumpVersionAndDelete(date);
+        invalidateCount.incrementAndGet();
+        hotKeyService.invalidate(stockKey(date));
+    }
+
+    /**
+     * 一次管道递增版本号并删除hash
+     * @return 递增后的版本号
+     */
+    private long bumpVersionAndDelete(String date) {
+        byte[] versionKey = versionKey(date).getBytes(StandardCharsets.UTF_8);
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.incr(versionKey);
+            connection.expire(versionKey, ttlSeconds);
+            connection.del(stockKey(date).getBytes(StandardCharsets.UTF_8));
+            return null;
+        });
+        return results != null && !results.isEmpty() && results.get(0) instanceof Long ? (Long) results.get(0) : 0L;
+    }
+
+    /**
+     * 按日期抢占加载租约后回源；抢不到租约的日期等待其他线程或节点写入缓存，等待超时后自行回源
+     * @return 日期到票券的映射，数据库中不存在的日期不包含在内
+     */
+    private Map<String, Ticket> loadWithLease(List<String> dates) {
+        if (!leaseEnabled) {
+            return load(dates);
+        }
+        String token = nodeId + ":" + leaseSequence.incrementAndGet();
+        List<String> leased = new ArrayList<>(dates.size());
+        List<String> contended = new ArrayList<>();
+        for (String date : dates) {
+            Boolean acquired;
+            try {
+                acquired = stringRedisTemplate.opsForValue().setIfAbsent(leaseKey(date), token, leaseMs, TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                // Redis不可用时直接回源
+                redisErrorCount.incrementAndGet();
+                acquired = true;
+            }
+            if (Boolean.TRUE.equals(acquired)) {
+                leased.add(date);
+            } else {
+                contended.add(date);
+            }
+        }
+
+        Map<String, Ticket> tickets = new HashMap<>();
+        if (!leased.isEmpty()) {
+            try {
+                tickets.putAll(load(leased));
+            } finally {
+                for (String date : leased) {
+                    releaseLease(date, token);
+                }
+            }
+        }
+        if (!contended.isEmpty()) {
+            leaseContendedCount.addAndGet(contended.size());
+            Map<String, Ticket> written = awaitOtherLoader(contended);
+            leaseWaitHitCount.addAndGet(written.size());
+            tickets.putAll(written);
+            contended.removeAll(written.keySet());
+            if (!contended.isEmpty()) {
+                tickets.putAll(load(contended));
+            }
+        }
+        return tickets;
+    }
+
+    /**
+     * 轮询等待持有租约的线程或节点写入缓存
+     * @return 已写入缓存的日期到票券的映射
+     */
+    private Map<String, Ticket> awaitOtherLoader(List<String> dates) {
+        Map<String, Ticket> written = new HashMap<>();
+        long deadline = System.currentTimeMillis() + leaseWaitMs;
+        try {
+            while (written.size() < dates.size() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(leasePollMs);
+                List<String> pending = new ArrayList<>(dates);
+                pending.removeAll(written.keySet());
+                List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    for (String date : pending) {
+                        connection.hGetAll(stockKey(date).getBytes(StandardCharsets.UTF_8));
+                    }
+                    return null;
+                });
+                for (int i = 0; results != null && i < pending.size() && i < results.size(); i++) {
+                    @SuppressWarnings("unchecked")
+                    Ticket ticket = results.get(i) instanceof Map ? toTicket(pending.get(i), (Map<String, String>) results.get(i)) : null;
+                    if (ticket != null) {
+                        written.put(pending.get(i), ticket);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            redisErrorCount.incrementAndGet();
+        }
+        return written;
+    }
+
+    private void releaseLease(String date, String token) {
+        try {
+            stringRedisTemplate.execute(leaseReleaseScript, Collections.singletonList(leaseKey(date)), token);
+        } catch (Exception e) {
+            // 租约到期后自动释放
+            redisErrorCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * 有效期随机延长，同时写入的日期不会同时过期
+     */
+    private long jitteredTtlSeconds() {
+        long extra = (long) (ttlSeconds * ttlJitterRatio);
+        return extra > 0 ? ttlSeconds + ThreadLocalRandom.current().nextLong(extra + 1) : ttlSeconds;
+    }
+
+    /**
+     * 回源：先读版本号，再批量查询数据库，版本号没有变化的日期写入缓存
+     * @return 日期到票券的映射，数据库中不存在的日期不包含在内
+     */
+    private Map<String, Ticket> load(List<String> dates) {
+        loadCount.incrementAndGet();
+        List<String> versions = readVersions(dates);
+        Map<String, Ticket> tickets = new HashMap<>();
+        for (TicketEntity ticketEntity : ticketEntityMapper.selectByDatesAggregated(dates)) {
+            Ticket ticket = toTicket(ticketEntity);
+            tickets.put(ticket.getDate(), ticket);
+            if (versions != null) {
+                String version = versions.get(dates.indexOf(ticket.getDate()));
+                writeIfVersionUnchanged(ticketEntity, version == null ? "0" : version);
+            }
+        }
+        LOGGER.info("从数据库加载票券库存，日期: {}, 获取数量: {}", dates, tickets.size());
+        return tickets;
+    }
+
+    /**
+     * 一次MGET读取版本号
+     * @return 与日期一一对应的版本号，读取失败时为null（不写回缓存）
+     */
+    private List<String> readVersions(List<String> dates) {
+        List<String> keys = new ArrayList<>(dates.size());
+        for (String date : dates) {
+            keys.add(versionKey(date));
+        }
+        try {
+            List<String> versions = stringRedisTemplate.opsForValue().multiGet(keys);
+            return versions != null && versions.size() == dates.size() ? versions : null;
+        } catch (Exception e) {
+            redisErrorCount.incrementAndGet();
+            LOGGER.warn("读取票券库存版本号失败，本次回源不写缓存，日期: {}, 错误: {}", dates, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 版本号没有变化时写入缓存
+     * @return 是否写入
+     */
+    private boolean writeIfVersionUnchanged(TicketEntity ticketEntity, String version) {
+        try {
+            Long written = stringRedisTemplate.execute(loadScript,
+                    Arrays.asList(stockKey(ticketEntity.getDate()), versionKey(ticketEntity.getDate())),
+                    version, String.valueOf(ticketEntity.getTotalCount()), String.valueOf(ticketEntity.getRemainingCount()),
+                    String.valueOf(soldCount(ticketEntity)), String.valueOf(jitteredTtlSeconds()));
+            if (written != null && written == 1) {
+                return true;
+            }
+            loadRejectedCount.incrementAndGet();
+            LOGGER.debug("回源期间票券库存已变化，放弃写入，日期: {}, 回源版本号: {}", ticketEntity.getDate(), version);
+        } catch (Exception e) {
+            redisErrorCount.incrementAndGet();
+            LOGGER.warn("写入票券库存缓存失败，日期: {}, 错误: {}", ticketEntity.getDate(), e.getMessage());
+        }
+        return false;
+    }
+
+    @Override
+    public int reconcile(List<String> dates) {
+        reconcileRunCount.incrementAndGet();
+        List<String> versions = readVersions(dates);
+        if (versions == null) {
+            return 0;
+        }
+        Map<String, Ticket> cached = new HashMap<>();
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String date : dates) {
+                connection.hGetAll(stockKey(date).getBytes(StandardCharsets.UTF_8));
+            }
+            return null;
+        });
+        for (int i = 0; results != null && i < dates.size() && i < results.size(); i++) {
+            @SuppressWarnings("unchecked")
+            Ticket ticket = results.get(i) instanceof Map ? toTicket(dates.get(i), (Map<String, String>) results.get(i)) : null;
+            if (ticket != null) {
+                cached.put(dates.get(i), ticket);
+            }
+        }
+        if (cached.isEmpty()) {
+            return 0;
+        }
+
+        int corrected = 0;
+        for (TicketEntity ticketEntity : ticketEntityMapper.selectByDatesAggregated(new ArrayList<>(cached.keySet()))) {
+            Ticket ticket = cached.get(ticketEntity.getDate());
+            if (ticket == null) {
+                continue;
+            }
+            reconcileCheckedCount.incrementAndGet();
+            long drift = (long) ticket.getRemaining() - ticketEntity.getRemainingCount();
+            if (drift == 0 && ticket.getTotal() == ticketEntity.getTotalCount()) {
+                continue;
+            }
+            String version = versions.get(dates.indexOf(ticketEntity.getDate()));
+            if (writeIfVersionUnchanged(ticketEntity, version == null ? "0" : version)) {
+                hotKeyService.invalidate(stockKey(ticketEntity.getDate()));
+                corrected++;
+                reconcileCorrectedCount.incrementAndGet();
+                maxDrift.accumulateAndGet(Math.abs(drift), Math::max);
+                LOGGER.warn("票券库存缓存与数据库不一致，已修正，日期: {}, 缓存剩余: {}, 数据库剩余: {}, 缓存总数: {}, 数据库总数: {}",
+                        ticketEntity.getDate(), ticket.getRemaining(), ticketEntity.getRemainingCount(),
+                        ticket.getTotal(), ticketEntity.getTotalCount());
+            } else {
+                // 对账期间有增减，下一轮再检查
+                reconcileSkippedCount.incrementAndGet();
+            }
+        }
+        return corrected;
+    }
+
+    /**
+     * 定时对账今天起 reconcile-days 天
+     */
+    private void reconcileRecentDates() {
+        try {
+            LocalDate today = LocalDate.now();
+            List<String> dates = new ArrayList<>(reconcileDays);
+            for (int i = 0; i < reconcileDays; i++) {
+                dates.add(today.plusDays(i).format(DateTimeFormatter.ofPattern("yyyy-MM-dd")));
+            }
+            int corrected = reconcile(dates);
+            if (corrected > 0) {
+                LOGGER.info("票券库存对账完成，修正日期数: {}", corrected);
+            }
+        } catch (Exception e) {
+            redisErrorCount.incrementAndGet();
+            LOGGER.warn("票券库存对账失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * hash字段转换为票券，字段不完整时视为未命中
+     */
+    private Ticket toTicket(String date, Map<String, String> fields) {
+        if (fields == null || fields.get("total") == null || fields.get("remaining") == null) {
+            return null;
+        }
+        Ticket ticket = new Ticket(date, Integer.parseInt(fields.get("total")));
+        ticket.setRemaining(Integer.parseInt(fields.get("remaining")));
+        return ticket;
+    }
+
+    /**
+     * 热键本地副本的拷贝，调用方修改返回的票券不影响副本
+     */
+    private Ticket replicaOf(String date) {
+        Object replica = hotKeyService.getReplica(stockKey(date));
+        return replica instanceof Ticket ? snapshot((Ticket) replica) : null;
+    }
+
+    private Ticket snapshot(Ticket ticket) {
+        Ticket copy = new Ticket(ticket.getDate(), ticket.getTotal());
+        copy.setRemaining(ticket.getRemaining());
+        return copy;
+    }
+
+    private Ticket toTicket(TicketEntity ticketEntity) {
+        Ticket ticket = new Ticket(ticketEntity.getDate(), ticketEntity.getTotalCount());
+        ticket.setRemaining(ticketEntity.getRemainingCount());
+        return ticket;
+    }
+
+    private int soldCount(TicketEntity ticketEntity) {
+        return ticketEntity.getSoldCount() != null ? ticketEntity.getSoldCount()
+                : ticketEntity.getTotalCount() - ticketEntity.getRemainingCount();
+    }
+
+    private String stockKey(String date) {
+        return TICKET_STOCK_PREFIX + date;
+    }
+
+    private String versionKey(String date) {
+        return TICKET_STOCK_VERSION_PREFIX + date;
+    }
+
+    private String leaseKey(String date) {
+        return stockKey(date) + LEASE_SUFFIX;
+    }
+
+    @Override
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        long hits = hitCount.get();
+        long misses = missCount.get();
+        stats.put("hitCount", hits);
+        stats.put("missCount", misses);
+        stats.put("hitRate", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+        stats.put("loadCount", loadCount.get());
+        stats.put("sharedLoadCount", sharedLoadCount.get());
+        stats.put("loadRejectedCount", loadRejectedCount.get());
+        stats.put("leaseContendedCount", leaseContendedCount.get());
+        stats.put("leaseWaitHitCount", leaseWaitHitCount.get());
+        stats.put("deltaCount", deltaCount.get());
+        stats.put("deltaMissCount", deltaMissCount.get());
+        stats.put("putCount", putCount.get());
+        stats.put("invalidateCount", invalidateCount.get());
+        stats.put("reconcileRunCount", reconcileRunCount.get());
+        stats.put("reconcileCheckedCount", reconcileCheckedCount.get());
+        stats.put("reconcileCorrectedCount", reconcileCorrectedCount.get());
+        stats.put("reconcileSkippedCount", reconcileSkippedCount.get());
+        stats.put("maxDrift", maxDrift.get());
+        stats.put("redisErrorCount", redisErrorCount.get());
+        return stats;
+    }
+}
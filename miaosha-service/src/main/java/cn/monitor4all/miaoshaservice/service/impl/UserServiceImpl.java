@@ -4,24 +4,19 @@ import cn.monitor4all.miaoshadao.dao.Stock;
 import cn.monitor4all.miaoshadao.dao.User;
 import cn.monitor4all.miaoshadao.mapper.UserMapper;
 import cn.monitor4all.miaoshadao.utils.CacheKey;
+import cn.monitor4all.miaoshaservice.service.DistributedRateLimitService;
 import cn.monitor4all.miaoshaservice.service.StockService;
 import cn.monitor4all.miaoshaservice.service.ValidationService;
 import cn.monitor4all.miaoshaservice.service.UserService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.core.io.ClassPathResource;
 import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.data.redis.core.script.DefaultRedisScript;
-import org.springframework.data.redis.core.script.RedisScript;
-import org.springframework.scripting.support.ResourceScriptSource;
 import org.springframework.stereotype.Service;
 
-import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
 import org.springframework.util.DigestUtils;
 
 import java.time.LocalTime;
-import java.util.Collections;
 import java.util.concurrent.TimeUnit;
 
 @Service
@@ -47,28 +42,17 @@ public class UserServiceImpl implements UserService {
     @Resource
     private ValidationService validationService;
 
+    @Resource
+    private DistributedRateLimitService distributedRateLimitService;
+
     // 注入Redis模板
     private final StringRedisTemplate stringRedisTemplate;
 
-    // 定义Redis脚本（返回值为Long类型）
-    private DefaultRedisScript<Long> rateLimitScript;  // 这里是关键修复点
-
     // 构造函数注入
     public UserServiceImpl(StringRedisTemplate stringRedisTemplate) {
         this.stringRedisTemplate = stringRedisTemplate;
     }
 
-    // 初始化：加载Lua脚本
-    @PostConstruct
-    public void init() {
-        rateLimitScript = new DefaultRedisScript<>();
-        // 简化类名引用（需提前导入对应包）
-        rateLimitScript.setScriptSource(new ResourceScriptSource(
-                new ClassPathResource("user_rate_limit.lua")
-        ));
-        rateLimitScript.setResultType(Long.class);
-    }
-
 
     @Override
     public String getVerifyHash(Integer sid, Long userId) throws Exception {
@@ -161,18 +145,8 @@ public class UserServiceImpl implements UserService {
      * @return true：允许请求；false：限流
      */
     public boolean isAllowed(Long userId, int maxRequests, int windowSeconds) {
-        // 构建限流键（格式：user:limit:123456）
+        // 构建限流键（格式：user:limit:123456），滑动窗口计数器，每个用户一个固定大小的哈希
         String limitKey = "user:limit:" + userId;
-
-        // 执行Lua脚本
-        Long result = stringRedisTemplate.execute(
-                rateLimitScript,
-                Collections.singletonList(limitKey), // KEYS参数
-                String.valueOf(maxRequests),         // ARGV[1]：最大次数
-                String.valueOf(windowSeconds)        // ARGV[2]：时间窗口，key没过期，值加1，key过期，则重置1分钟
-        );
-
-        // 结果为1表示允许，0表示限流
-        return result != null && result == 1;
+        return distributedRateLimitService.tryAcquire(limitKey, maxRequests, windowSeconds);
     }
 }
\ No newline at end of file
@@ -6,16 +6,22 @@ import cn.monitor4all.miaoshadao.mapper.UserMapper;
 import cn.monitor4all.miaoshadao.model.Ticket;
 import cn.monitor4all.miaoshaservice.service.ValidationService;
 import cn.monitor4all.miaoshaservice.service.TicketCacheManager;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 验证服务实现类
@@ -39,6 +45,27 @@ public class ValidationServiceImpl implements ValidationService {
     @Resource
     private TicketCacheManager ticketCacheManager;
 
+    // 本地用户缓存最大条数，只缓存存在的用户
+    @Value("${miaosha.validation.user-cache-size:100000}")
+    private long userCacheSize = 100000;
+
+    // 本地用户缓存过期时间（秒）
+    @Value("${miaosha.validation.user-cache-ttl-seconds:3600}")
+    private long userCacheTtlSeconds = 3600;
+
+    // 预加载用户时每页条数
+    private static final int USER_PRELOAD_PAGE_SIZE = 1000;
+
+    private Cache<Long, User> userCache;
+
+    @PostConstruct
+    public void init() {
+        userCache = CacheBuilder.newBuilder()
+                .maximumSize(userCacheSize)
+                .expireAfterWrite(userCacheTtlSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
     @Override
     public Map<String, Object> validateTicketCount(String date) {
         Map<String, Object> result = new HashMap<>();
@@ -148,8 +175,14 @@ public class ValidationServiceImpl implements ValidationService {
                 return result;
             }
             
-            // 查询用户是否存在
-            User user = userMapper.selectByPrimaryKey(userId);
+            // 查询用户是否存在，先查本地用户缓存
+            User user = userCache.getIfPresent(userId);
+            if (user == null) {
+                user = userMapper.selectByPrimaryKey(userId);
+                if (user != null) {
+                    userCache.put(userId, user);
+                }
+            }
             if (user == null) {
                 result.put("valid", false);
                 result.put("message", "用户不存在");
@@ -195,6 +228,25 @@ public class ValidationServiceImpl implements ValidationService {
         }
     }
     
+    @Override
+    public int preloadUsers(int limit) {
+        int loaded = 0;
+        long afterId = 0;
+        while (loaded < limit) {
+            List<User> users = userMapper.selectAfterId(afterId, Math.min(USER_PRELOAD_PAGE_SIZE, limit - loaded));
+            if (users == null || users.isEmpty()) {
+                break;
+            }
+            for (User user : users) {
+                userCache.put(user.getId(), user);
+                afterId = user.getId();
+            }
+            loaded += users.size();
+        }
+        LOGGER.info("预加载用户完成，加载数量: {}", loaded);
+        return loaded;
+    }
+    
     @Override
     public Map<String, Object> validatePurchaseTime(String date) {
         Map<String, Object> result = new HashMap<>();
@@ -1,22 +1,20 @@
 package cn.monitor4all.miaoshaservice.task;
 
 import cn.monitor4all.miaoshadao.utils.CacheKey;
+import cn.monitor4all.miaoshaservice.service.KeyMaintenanceService;
 import lombok.extern.slf4j.Slf4j;
 import javax.annotation.Resource;
-import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
-import java.util.Set;
-
 @Slf4j
 @EnableScheduling
 @Component
 public class DailyCacheCleanTask {
 
     @Resource
-    private StringRedisTemplate stringRedisTemplate;
+    private KeyMaintenanceService keyMaintenanceService;
 
     /**
      * 每天21点执行缓存清理任务
@@ -26,12 +24,11 @@ public class DailyCacheCleanTask {
         try {
             // 匹配所有USER_HAS_ORDER相关的key
             String pattern = CacheKey.USER_HAS_ORDER.getKey() + "*";
-            Set<String> keys = stringRedisTemplate.keys(pattern);
+            // SCAN分批遍历并UNLINK，不阻塞Redis
+            long deleted = keyMaintenanceService.unlinkByPattern(pattern);
             
-            if (keys != null && !keys.isEmpty()) {
-                // 删除匹配的keys
-                stringRedisTemplate.delete(keys);
-                log.info("成功清理USER_HAS_ORDER缓存，共删除{}个key", keys.size());
+            if (deleted > 0) {
+                log.info("成功清理USER_HAS_ORDER缓存，共删除{}个key", deleted);
             } else {
                 log.info("未找到USER_HAS_ORDER相关缓存");
             }
@@ -0,0 +1,62 @@
+package cn.monitor4all.miaoshaservice.task;
+
+import cn.monitor4all.miaoshaservice.service.StockLeaseService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+
+/**
+ * 库存租约定时任务
+ * 节点心跳、失效节点租约回收、抢购结束归还剩余租约
+ */
+@Slf4j
+@EnableScheduling
+@Component
+public class StockLeaseTask {
+
+    @Resource
+    private StockLeaseService stockLeaseService;
+
+    /**
+     * 刷新节点心跳，间隔需小于心跳过期时间
+     */
+    @Scheduled(fixedDelayString = "${miaosha.stock.lease.heartbeat-interval-ms:10000}")
+    public void heartbeat() {
+        try {
+            stockLeaseService.heartbeat();
+        } catch (Exception e) {
+            log.error("库存租约心跳失败，节点ID: {}", stockLeaseService.getNodeId(), e);
+        }
+    }
+
+    /**
+     * 回收失效节点的租约
+     */
+    @Scheduled(fixedDelayString = "${miaosha.stock.lease.reclaim-interval-ms:30000}")
+    public void reclaimDeadNodeLeases() {
+        try {
+            int reclaimed = stockLeaseService.reclaimDeadNodeLeases();
+            if (reclaimed > 0) {
+                log.info("回收失效节点库存租约完成，共归还{}张", reclaimed);
+            }
+        } catch (Exception e) {
+            log.error("回收失效节点库存租约失败", e);
+        }
+    }
+
+    /**
+     * 每天21点抢购结束，归还本节点剩余租约
+     */
+    @Scheduled(cron = "${miaosha.stock.lease.return-cron:0 0 21 * * ?}")
+    public void returnLeasesAfterWindowClose() {
+        try {
+            int returned = stockLeaseService.returnAllLeases();
+            log.info("抢购结束归还库存租约，节点ID: {}, 共归还{}张", stockLeaseService.getNodeId(), returned);
+        } catch (Exception e) {
+            log.error("抢购结束归还库存租约失败", e);
+        }
+    }
+}
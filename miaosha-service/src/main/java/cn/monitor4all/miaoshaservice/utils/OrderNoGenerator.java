@@ -0,0 +1,39 @@
+package cn.monitor4all.miaoshaservice.utils;
+
+/**
+ * 购票订单编号生成
+ * 格式：前缀 + 时间戳 + 用户ID后4位 + 3位随机数，默认前缀为TB
+ */
+public final class OrderNoGenerator {
+
+    // 购票订单默认前缀
+    public static final String DEFAULT_PREFIX = "TB";
+
+    private OrderNoGenerator() {
+    }
+
+    /**
+     * 生成TB前缀的订单编号
+     *
+     * @param userId 用户ID
+     * @return 订单编号
+     */
+    public static String generate(Long userId) {
+        return generate(DEFAULT_PREFIX, userId);
+    }
+
+    /**
+     * 生成指定前缀的订单编号
+     *
+     * @param prefix 订单编号前缀，按前缀统计订单时使用（例如本地租约订单）
+     * @param userId 用户ID
+     * @return 订单编号
+     */
+    public static String generate(String prefix, Long userId) {
+        long timestamp = System.currentTimeMillis();
+        String userIdSuffix = String.valueOf(userId).substring(Math.max(0, String.valueOf(userId).length() - 4));
+        int random = (int) (Math.random() * 1000);
+
+        return String.format("%s%d%s%03d", prefix, timestamp, userIdSuffix, random);
+    }
+}
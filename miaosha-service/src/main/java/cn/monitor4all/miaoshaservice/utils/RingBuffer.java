@@ -0,0 +1,152 @@
+package cn.monitor4all.miaoshaservice.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 预分配的多生产者、单消费者环形队列
+ * 1. 槽位对象在创建时一次性分配，发布时只填充字段，不产生新对象
+ * 2. 生产者CAS领取序号后写入槽位，再按序号标记可用；队列满时立即失败，不阻塞请求线程
+ * 3. 消费者按序号批量读取已发布的槽位，整批处理完成后才推进消费序号，槽位在此之前不会被覆盖
+ *
+ * @param <E> 槽位类型
+ */
+public class RingBuffer<E> {
+
+    private final Object[] slots;
+
+    private final int mask;
+
+    /**
+     * 各槽位最近一次发布的序号
+     */
+    private final AtomicLongArray published;
+
+    /**
+     * 生产者已领取的最大序号
+     */
+    private final AtomicLong claimSequence = new AtomicLong(-1);
+
+    /**
+     * 消费者已处理完成的最大序号
+     */
+    private final AtomicLong consumedSequence = new AtomicLong(-1);
+
+    private volatile Thread consumerThread;
+
+    private volatile boolean consumerWaiting;
+
+    /**
+     * @param capacity 容量，必须为2的幂
+     * @param factory  槽位对象工厂
+     */
+    public RingBuffer(int capacity, Supplier<E> factory) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("环形队列容量必须为2的幂: " + capacity);
+        }
+        this.slots = new Object[capacity];
+        this.mask = capacity - 1;
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = factory.get();
+            published.set(i, -1);
+        }
+    }
+
+    /**
+     * 发布一个事件
+     *
+     * @param translator 在槽位上填充事件字段
+     * @return false表示队列已满
+     */
+    public boolean tryPublish(Consumer<E> translator) {
+        long sequence;
+        do {
+            long current = claimSequence.get();
+            sequence = current + 1;
+            if (sequence - slots.length > consumedSequence.get()) {
+                return false;
+            }
+            if (claimSequence.compareAndSet(current, sequence)) {
+                break;
+            }
+        } while (true);
+
+        int index = (int) (sequence & mask);
+        translator.accept(slot(index));
+        published.set(index, sequence);
+
+        if (consumerWaiting) {
+            Thread consumer = consumerThread;
+            if (consumer != null) {
+                LockSupport.unpark(consumer);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 由消费者线程调用，读取从下一个序号开始连续已发布的事件，最多maxBatch个
+     *
+     * @param handler 事件处理器，读取期间不得保留槽位引用到commit之后
+     * @return 读取的事件数
+     */
+    public int poll(int maxBatch, Consumer<E> handler) {
+        long next = consumedSequence.get() + 1;
+        int count = 0;
+        while (count < maxBatch) {
+            long sequence = next + count;
+            int index = (int) (sequence & mask);
+            if (published.get(index) != sequence) {
+                break;
+            }
+            handler.accept(slot(index));
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 由消费者线程调用，标记已读取的事件处理完成，释放对应槽位
+     */
+    public void commit(int count) {
+        if (count > 0) {
+            consumedSequence.lazySet(consumedSequence.get() + count);
+        }
+    }
+
+    /**
+     * 由消费者线程调用，无事件时挂起最多maxWaitNanos，生产者发布时会唤醒
+     */
+    public void awaitPublish(long maxWaitNanos) {
+        consumerThread = Thread.currentThread();
+        consumerWaiting = true;
+        try {
+            long next = consumedSequence.get() + 1;
+            if (published.get((int) (next & mask)) != next) {
+                LockSupport.parkNanos(this, maxWaitNanos);
+            }
+        } finally {
+            consumerWaiting = false;
+        }
+    }
+
+    /**
+     * @return 已发布但未处理完成的事件数
+     */
+    public long backlog() {
+        return claimSequence.get() - consumedSequence.get();
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+
+    @SuppressWarnings("unchecked")
+    private E slot(int index) {
+        return (E) slots[index];
+    }
+}
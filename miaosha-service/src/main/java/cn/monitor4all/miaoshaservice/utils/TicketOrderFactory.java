@@ -0,0 +1,42 @@
+package cn.monitor4all.miaoshaservice.utils;
+
+import cn.monitor4all.miaoshadao.dao.TicketOrder;
+
+import java.util.Date;
+
+/**
+ * 购票订单构建
+ * 各购票路径（同步、组提交、本地租约、分段、流水线、准入）统一构建待支付订单，只有备注区分来源
+ */
+public final class TicketOrderFactory {
+
+    private TicketOrderFactory() {
+    }
+
+    /**
+     * 构建待支付订单（免费票券，金额为0）
+     *
+     * @param orderNo    订单编号
+     * @param userId     用户ID
+     * @param ticketId   票券ID
+     * @param date       购票日期
+     * @param ticketCode 票券编码
+     * @param remark     订单备注
+     * @return 订单
+     */
+    public static TicketOrder buildOrder(String orderNo, Long userId, Integer ticketId, String date, String ticketCode, String remark) {
+        TicketOrder ticketOrder = new TicketOrder();
+        ticketOrder.setOrderNo(orderNo);
+        ticketOrder.setUserId(userId);
+        ticketOrder.setTicketId(ticketId);
+        ticketOrder.setTicketCode(ticketCode);
+        ticketOrder.setTicketDate(date);
+        ticketOrder.setStatus(1); // 待支付
+        ticketOrder.setAmount(0L); // 免费票券，金额为0
+        Date now = new Date();
+        ticketOrder.setCreateTime(now);
+        ticketOrder.setUpdateTime(now);
+        ticketOrder.setRemark(remark);
+        return ticketOrder;
+    }
+}
@@ -0,0 +1,123 @@
+package cn.monitor4all.miaoshaservice.utils.codec;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 紧凑二进制编码入口
+ * 数据头：魔数0xC1 + 格式版本 + 类型编号（变长整数），之后是各类型的字段
+ * 魔数在UTF-8中不会出现，也不同于Java序列化（0xAC）和JSON文本的首字节，
+ * 读取方据此区分紧凑编码和旧格式，旧格式交给原有的反序列化方式
+ */
+public final class CompactCodec {
+
+    public static final byte MAGIC = (byte) 0xC1;
+
+    public static final int FORMAT_VERSION = 1;
+
+    private static final List<EntityCodec<?>> CODECS = Collections.unmodifiableList(Arrays.<EntityCodec<?>>asList(
+            new TicketCodec(), new PurchaseRecordCodec(), new TicketOrderCodec(), new PurchaseMessageCodec()));
+
+    private static final EntityCodec<?>[] BY_TYPE_ID;
+
+    static {
+        int maxTypeId = 0;
+        for (EntityCodec<?> codec : CODECS) {
+            maxTypeId = Math.max(maxTypeId, codec.typeId());
+        }
+        BY_TYPE_ID = new EntityCodec<?>[maxTypeId + 1];
+        for (EntityCodec<?> codec : CODECS) {
+            if (BY_TYPE_ID[codec.typeId()] != null) {
+                throw new IllegalStateException("类型编号重复: " + codec.typeId());
+            }
+            BY_TYPE_ID[codec.typeId()] = codec;
+        }
+    }
+
+    private CompactCodec() {
+    }
+
+    /**
+     * 是否为紧凑编码的数据
+     */
+    public static boolean isCompact(byte[] bytes) {
+        return bytes != null && bytes.length >= 3 && bytes[0] == MAGIC;
+    }
+
+    /**
+     * 是否有对应的紧凑编码
+     */
+    public static boolean supports(Object value) {
+        return codecFor(value) != null;
+    }
+
+    /**
+     * 编码
+     * @throws IllegalArgumentException 没有对应的紧凑编码
+     */
+    @SuppressWarnings("unchecked")
+    public static byte[] encode(Object value) {
+        EntityCodec<Object> codec = (EntityCodec<Object>) codecFor(value);
+        if (codec == null) {
+            throw new IllegalArgumentException("没有对应的紧凑编码: " + (value == null ? null : value.getClass().getName()));
+        }
+        CompactWriter writer = new CompactWriter();
+        writer.writeRawByte(MAGIC);
+        writer.writeRawByte(FORMAT_VERSION);
+        writer.writeRawVarint(codec.typeId());
+        codec.write(value, writer);
+        return writer.toByteArray();
+    }
+
+    /**
+     * 解码，类型由数据头决定
+     * @throws IllegalArgumentException 不是紧凑编码或格式版本、类型编号未知
+     */
+    public static Object decode(byte[] bytes) {
+        if (!isCompact(bytes)) {
+            throw new IllegalArgumentException("不是紧凑编码的数据");
+        }
+        CompactReader reader = new CompactReader(bytes, 1, bytes.length - 1);
+        int version = reader.readRawByte();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("不支持的格式版本: " + version);
+        }
+        long typeId = reader.readRawVarint();
+        if (typeId <= 0 || typeId >= BY_TYPE_ID.length || BY_TYPE_ID[(int) typeId] == null) {
+            throw new IllegalArgumentException("未知的类型编号: " + typeId);
+        }
+        return BY_TYPE_ID[(int) typeId].read(reader);
+    }
+
+    /**
+     * 解码并检查类型
+     */
+    public static <T> T decode(byte[] bytes, Class<T> type) {
+        Object value = decode(bytes);
+        if (!type.isInstance(value)) {
+            throw new IllegalArgumentException("类型不匹配，期望: " + type.getName() + "，实际: " + value.getClass().getName());
+        }
+        return type.cast(value);
+    }
+
+    /**
+     * 已注册的编码器
+     */
+    public static List<EntityCodec<?>> codecs() {
+        return new ArrayList<>(CODECS);
+    }
+
+    private static EntityCodec<?> codecFor(Object value) {
+        if (value == null) {
+            return null;
+        }
+        for (EntityCodec<?> codec : CODECS) {
+            if (codec.supports(value)) {
+                return codec;
+            }
+        }
+        return null;
+    }
+}
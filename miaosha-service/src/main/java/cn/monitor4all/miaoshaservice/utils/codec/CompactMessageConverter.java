@@ -0,0 +1,48 @@
+package cn.monitor4all.miaoshaservice.utils.codec;
+
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+/**
+ * RabbitMQ消息转换器
+ * 已注册类型（购票消息Map、票券、订单等）以紧凑编码发送，content-type为 application/x-miaosha-compact；
+ * 其他消息和旧节点发送的Java序列化、文本消息交给原有转换器处理
+ */
+public class CompactMessageConverter implements MessageConverter {
+
+    public static final String CONTENT_TYPE_COMPACT = "application/x-miaosha-compact";
+
+    private final MessageConverter legacy;
+
+    private final boolean compactEnabled;
+
+    public CompactMessageConverter(MessageConverter legacy, boolean compactEnabled) {
+        this.legacy = legacy;
+        this.compactEnabled = compactEnabled;
+    }
+
+    @Override
+    public Message toMessage(Object object, MessageProperties messageProperties) throws MessageConversionException {
+        if (compactEnabled && CompactCodec.supports(object)) {
+            byte[] body = CompactCodec.encode(object);
+            messageProperties.setContentType(CONTENT_TYPE_COMPACT);
+            messageProperties.setContentLength(body.length);
+            return new Message(body, messageProperties);
+        }
+        return legacy.toMessage(object, messageProperties);
+    }
+
+    @Override
+    public Object fromMessage(Message message) throws MessageConversionException {
+        if (CONTENT_TYPE_COMPACT.equals(message.getMessageProperties().getContentType())) {
+            try {
+                return CompactCodec.decode(message.getBody());
+            } catch (IllegalArgumentException e) {
+                throw new MessageConversionException("紧凑编码消息解码失败", e);
+            }
+        }
+        return legacy.fromMessage(message);
+    }
+}
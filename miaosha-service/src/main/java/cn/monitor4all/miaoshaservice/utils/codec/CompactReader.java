@@ -0,0 +1,134 @@
+package cn.monitor4all.miaoshaservice.utils.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Date;
+
+/**
+ * 紧凑二进制编码读取器，与 CompactWriter 对应
+ * 读取方按 nextField() 返回的字段号分派，不认识的字段调用 skip() 跳过，
+ * 因此新版本写入的数据可以被旧版本读取，旧数据缺少的字段保持默认值
+ */
+public class CompactReader {
+
+    private final byte[] buffer;
+
+    private final int limit;
+
+    private int position;
+
+    private int wireType;
+
+    public CompactReader(byte[] buffer) {
+        this(buffer, 0, buffer.length);
+    }
+
+    public CompactReader(byte[] buffer, int offset, int length) {
+        this.buffer = buffer;
+        this.position = offset;
+        this.limit = offset + length;
+    }
+
+    /**
+     * 读取下一个字段号
+     * @return 字段号，已读完时为0
+     */
+    public int nextField() {
+        if (position >= limit) {
+            return 0;
+        }
+        long tag = readRawVarint();
+        wireType = (int) (tag & 0x7);
+        int field = (int) (tag >>> 3);
+        if (field <= 0) {
+            throw new IllegalArgumentException("非法的字段号: " + field);
+        }
+        return field;
+    }
+
+    public long readLong() {
+        expect(CompactWriter.WIRE_VARINT);
+        long value = readRawVarint();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public int readInt() {
+        return (int) readLong();
+    }
+
+    public boolean readBoolean() {
+        expect(CompactWriter.WIRE_VARINT);
+        return readRawVarint() != 0;
+    }
+
+    public String readString() {
+        int length = readLength();
+        String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+
+    public byte[] readBytes() {
+        int length = readLength();
+        byte[] value = new byte[length];
+        System.arraycopy(buffer, position, value, 0, length);
+        position += length;
+        return value;
+    }
+
+    public LocalDate readLocalDate() {
+        return LocalDate.ofEpochDay(readLong());
+    }
+
+    public Date readDate() {
+        return new Date(readLong());
+    }
+
+    /**
+     * 跳过当前字段的值
+     */
+    public void skip() {
+        if (wireType == CompactWriter.WIRE_VARINT) {
+            readRawVarint();
+        } else if (wireType == CompactWriter.WIRE_LENGTH) {
+            int length = readLength();
+            position += length;
+        } else {
+            throw new IllegalArgumentException("不支持的线型: " + wireType);
+        }
+    }
+
+    public int readRawByte() {
+        if (position >= limit) {
+            throw new IllegalArgumentException("数据不完整");
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    public long readRawVarint() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readRawByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("变长整数过长");
+    }
+
+    private int readLength() {
+        expect(CompactWriter.WIRE_LENGTH);
+        long length = readRawVarint();
+        if (length < 0 || length > limit - position) {
+            throw new IllegalArgumentException("长度越界: " + length);
+        }
+        return (int) length;
+    }
+
+    private void expect(int expected) {
+        if (wireType != expected) {
+            throw new IllegalArgumentException("线型不匹配，期望: " + expected + "，实际: " + wireType);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package cn.monitor4all.miaoshaservice.utils.codec;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+/**
+ * RedisTemplate值序列化器
+ * 已注册类型写入紧凑编码（不再携带类名），其他对象仍交给原有的Jackson序列化器；
+ * 读取时按魔数识别，紧凑编码之前写入的Jackson数据照常读取
+ */
+public class CompactRedisSerializer implements RedisSerializer<Object> {
+
+    private final RedisSerializer<Object> legacy;
+
+    private final boolean compactEnabled;
+
+    public CompactRedisSerializer(RedisSerializer<Object> legacy, boolean compactEnabled) {
+        this.legacy = legacy;
+        this.compactEnabled = compactEnabled;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (compactEnabled && CompactCodec.supports(value)) {
+            return CompactCodec.encode(value);
+        }
+        return legacy.serialize(value);
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (CompactCodec.isCompact(bytes)) {
+            try {
+                return CompactCodec.decode(bytes);
+            } catch (IllegalArgumentException e) {
+                throw new SerializationException("紧凑编码解码失败", e);
+            }
+        }
+        return legacy.deserialize(bytes);
+    }
+}
@@ -0,0 +1,123 @@
+package cn.monitor4all.miaoshaservice.utils.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * 紧凑二进制编码写入器
+ * 1. 每个字段以 tag = 字段号 << 3 | 线型 开头，线型只有变长整数和长度前缀两种
+ * 2. 有符号整数使用zigzag变长编码，小数值只占1~2字节
+ * 3. null字段不写入，读取时保持默认值；字段号一经分配不再复用，新增字段只追加新字段号
+ */
+public class CompactWriter {
+
+    static final int WIRE_VARINT = 0;
+
+    static final int WIRE_LENGTH = 2;
+
+    private byte[] buffer;
+
+    private int position;
+
+    public CompactWriter() {
+        this(64);
+    }
+
+    public CompactWriter(int initialCapacity) {
+        this.buffer = new byte[Math.max(initialCapacity, 16)];
+    }
+
+    public CompactWriter writeLong(int field, Long value) {
+        if (value != null) {
+            writeTag(field, WIRE_VARINT);
+            writeRawVarint(zigzag(value));
+        }
+        return this;
+    }
+
+    public CompactWriter writeInt(int field, Integer value) {
+        return writeLong(field, value == null ? null : value.longValue());
+    }
+
+    public CompactWriter writeBoolean(int field, boolean value) {
+        if (value) {
+            writeTag(field, WIRE_VARINT);
+            writeRawVarint(1);
+        }
+        return this;
+    }
+
+    public CompactWriter writeString(int field, String value) {
+        if (value != null) {
+            writeBytes(field, value.getBytes(StandardCharsets.UTF_8));
+        }
+        return this;
+    }
+
+    public CompactWriter writeBytes(int field, byte[] value) {
+        if (value != null) {
+            writeTag(field, WIRE_LENGTH);
+            writeRawVarint(value.length);
+            writeRaw(value, 0, value.length);
+        }
+        return this;
+    }
+
+    /**
+     * 日期按纪元日写入
+     */
+    public CompactWriter writeLocalDate(int field, LocalDate value) {
+        return writeLong(field, value == null ? null : value.toEpochDay());
+    }
+
+    /**
+     * 时间按毫秒时间戳写入
+     */
+    public CompactWriter writeDate(int field, Date value) {
+        return writeLong(field, value == null ? null : value.getTime());
+    }
+
+    public void writeTag(int field, int wireType) {
+        writeRawVarint(((long) field << 3) | wireType);
+    }
+
+    public void writeRawByte(int value) {
+        ensureCapacity(1);
+        buffer[position++] = (byte) value;
+    }
+
+    public void writeRawVarint(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    public void writeRaw(byte[] bytes, int offset, int length) {
+        ensureCapacity(length);
+        System.arraycopy(bytes, offset, buffer, position, length);
+        position += length;
+    }
+
+    public int size() {
+        return position;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, position);
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private void ensureCapacity(int extra) {
+        if (position + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, position + extra));
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package cn.monitor4all.miaoshaservice.utils.codec;
+
+/**
+ * 单个类型的紧凑编码
+ * 类型编号写入数据头，分配后不能修改；字段号同理
+ *
+ * @param <T> 编码的类型
+ */
+public interface EntityCodec<T> {
+
+    /**
+     * 类型编号，写入数据头用于解码时选择编码器
+     */
+    int typeId();
+
+    /**
+     * 编码的类型
+     */
+    Class<T> type();
+
+    /**
+     * 是否能编码该对象（默认按类型判断，Map类消息需要检查键）
+     */
+    default boolean supports(Object value) {
+        return type().isInstance(value);
+    }
+
+    void write(T value, CompactWriter writer);
+
+    T read(CompactReader reader);
+}
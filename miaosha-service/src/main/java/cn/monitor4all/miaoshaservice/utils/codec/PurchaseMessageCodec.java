@@ -0,0 +1,93 @@
+package cn.monitor4all.miaoshaservice.utils.codec;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 购票消息编码：1-requestId 2-userId 3-date 4-verifyHash 5-timestamp 6-mode
+ * 只编码键全部在上述范围内、值类型与约定一致的Map，其他Map仍走原有消息格式，
+ * 解码结果中userId、timestamp为Long，与Java序列化的HashMap一致，消费者代码不需要修改
+ */
+public class PurchaseMessageCodec implements EntityCodec<Map<String, Object>> {
+
+    // 字段名到字段号
+    private static final Map<String, Integer> FIELDS = new LinkedHashMap<>();
+
+    // 字段号到字段名
+    private static final String[] NAMES = new String[7];
+
+    // 值为Long的字段，其余为String
+    private static final boolean[] LONG_FIELDS = new boolean[7];
+
+    static {
+        register(1, "requestId", false);
+        register(2, "userId", true);
+        register(3, "date", false);
+        register(4, "verifyHash", false);
+        register(5, "timestamp", true);
+        register(6, "mode", false);
+    }
+
+    private static void register(int field, String name, boolean longValue) {
+        FIELDS.put(name, field);
+        NAMES[field] = name;
+        LONG_FIELDS[field] = longValue;
+    }
+
+    @Override
+    public int typeId() {
+        return 4;
+    }
+
+    @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public Class<Map<String, Object>> type() {
+        return (Class) Map.class;
+    }
+
+    @Override
+    public boolean supports(Object value) {
+        if (!(value instanceof Map) || ((Map<?, ?>) value).isEmpty()) {
+            return false;
+        }
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+            Integer field = FIELDS.get(entry.getKey());
+            if (field == null) {
+                return false;
+            }
+            Object fieldValue = entry.getValue();
+            if (fieldValue != null && fieldValue.getClass() != (LONG_FIELDS[field] ? Long.class : String.class)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void write(Map<String, Object> message, CompactWriter writer) {
+        for (int field = 1; field < NAMES.length; field++) {
+            Object value = message.get(NAMES[field]);
+            if (LONG_FIELDS[field]) {
+                writer.writeLong(field, (Long) value);
+            } else {
+                writer.writeString(field, (String) value);
+            }
+        }
+    }
+
+    @Override
+    public Map<String, Object> read(CompactReader reader) {
+        Map<String, Object> message = new HashMap<>();
+        for (int field = reader.nextField(); field != 0; field = reader.nextField()) {
+            if (field >= NAMES.length) {
+                reader.skip();
+            } else if (LONG_FIELDS[field]) {
+                message.put(NAMES[field], reader.readLong());
+            } else {
+                message.put(NAMES[field], reader.readString());
+            }
+        }
+        return message;
+    }
+}
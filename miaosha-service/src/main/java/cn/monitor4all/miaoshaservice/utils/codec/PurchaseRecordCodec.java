@@ -0,0 +1,51 @@
+package cn.monitor4all.miaoshaservice.utils.codec;
+
+import cn.monitor4all.miaoshadao.model.PurchaseRecord;
+
+import java.time.LocalDate;
+
+/**
+ * 购买记录编码：1-userId 2-date（纪元日） 3-ticketCode
+ */
+public class PurchaseRecordCodec implements EntityCodec<PurchaseRecord> {
+
+    @Override
+    public int typeId() {
+        return 2;
+    }
+
+    @Override
+    public Class<PurchaseRecord> type() {
+        return PurchaseRecord.class;
+    }
+
+    @Override
+    public void write(PurchaseRecord record, CompactWriter writer) {
+        writer.writeLong(1, record.getUserId());
+        writer.writeLocalDate(2, record.getDate());
+        writer.writeString(3, record.getTicketCode());
+    }
+
+    @Override
+    public PurchaseRecord read(CompactReader reader) {
+        Long userId = null;
+        LocalDate date = null;
+        String ticketCode = null;
+        for (int field = reader.nextField(); field != 0; field = reader.nextField()) {
+            switch (field) {
+                case 1:
+                    userId = reader.readLong();
+                    break;
+                case 2:
+                    date = reader.readLocalDate();
+                    break;
+                case 3:
+                    ticketCode = reader.readString();
+                    break;
+                default:
+                    reader.skip();
+            }
+        }
+        return new PurchaseRecord(userId, date, ticketCode);
+    }
+}
@@ -0,0 +1,55 @@
+package cn.monitor4all.miaoshaservice.utils.codec;
+
+import cn.monitor4all.miaoshadao.model.Ticket;
+
+/**
+ * 票券编码：1-date 2-weekday 3-total 4-remaining 5-userPurchased
+ */
+public class TicketCodec implements EntityCodec<Ticket> {
+
+    @Override
+    public int typeId() {
+        return 1;
+    }
+
+    @Override
+    public Class<Ticket> type() {
+        return Ticket.class;
+    }
+
+    @Override
+    public void write(Ticket ticket, CompactWriter writer) {
+        writer.writeString(1, ticket.getDate());
+        writer.writeString(2, ticket.getWeekday());
+        writer.writeInt(3, ticket.getTotal());
+        writer.writeInt(4, ticket.getRemaining());
+        writer.writeBoolean(5, ticket.isUserPurchased());
+    }
+
+    @Override
+    public Ticket read(CompactReader reader) {
+        Ticket ticket = new Ticket();
+        for (int field = reader.nextField(); field != 0; field = reader.nextField()) {
+            switch (field) {
+                case 1:
+                    ticket.setDate(reader.readString());
+                    break;
+                case 2:
+                    ticket.setWeekday(reader.readString());
+                    break;
+                case 3:
+                    ticket.setTotal(reader.readInt());
+                    break;
+                case 4:
+                    ticket.setRemaining(reader.readInt());
+                    break;
+                case 5:
+                    ticket.setUserPurchased(reader.readBoolean());
+                    break;
+                default:
+                    reader.skip();
+            }
+        }
+        return ticket;
+    }
+}
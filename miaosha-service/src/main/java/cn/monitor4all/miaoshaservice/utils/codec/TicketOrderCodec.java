@@ -0,0 +1,84 @@
+package cn.monitor4all.miaoshaservice.utils.codec;
+
+import cn.monitor4all.miaoshadao.dao.TicketOrder;
+
+/**
+ * 订单编码：1-id 2-orderNo 3-userId 4-ticketId 5-ticketCode 6-ticketDate 7-status
+ * 8-amount 9-payTime 10-createTime 11-updateTime 12-remark，时间按毫秒时间戳
+ */
+public class TicketOrderCodec implements EntityCodec<TicketOrder> {
+
+    @Override
+    public int typeId() {
+        return 3;
+    }
+
+    @Override
+    public Class<TicketOrder> type() {
+        return TicketOrder.class;
+    }
+
+    @Override
+    public void write(TicketOrder order, CompactWriter writer) {
+        writer.writeInt(1, order.getId());
+        writer.writeString(2, order.getOrderNo());
+        writer.writeLong(3, order.getUserId());
+        writer.writeInt(4, order.getTicketId());
+        writer.writeString(5, order.getTicketCode());
+        writer.writeString(6, order.getTicketDate());
+        writer.writeInt(7, order.getStatus());
+        writer.writeLong(8, order.getAmount());
+        writer.writeDate(9, order.getPayTime());
+        writer.writeDate(10, order.getCreateTime());
+        writer.writeDate(11, order.getUpdateTime());
+        writer.writeString(12, order.getRemark());
+    }
+
+    @Override
+    public TicketOrder read(CompactReader reader) {
+        TicketOrder order = new TicketOrder();
+        for (int field = reader.nextField(); field != 0; field = reader.nextField()) {
+            switch (field) {
+                case 1:
+                    order.setId(reader.readInt());
+                    break;
+                case 2:
+                    order.setOrderNo(reader.readString());
+                    break;
+                case 3:
+                    order.setUserId(reader.readLong());
+                    break;
+                case 4:
+                    order.setTicketId(reader.readInt());
+                    break;
+                case 5:
+                    order.setTicketCode(reader.readString());
+                    break;
+                case 6:
+                    order.setTicketDate(reader.readString());
+                    break;
+                case 7:
+                    order.setStatus(reader.readInt());
+                    break;
+                case 8:
+                    order.setAmount(reader.readLong());
+                    break;
+                case 9:
+                    order.setPayTime(reader.readDate());
+                    break;
+                case 10:
+                    order.setCreateTime(reader.readDate());
+                    break;
+                case 11:
+                    order.setUpdateTime(reader.readDate());
+                    break;
+                case 12:
+                    order.setRemark(reader.readString());
+                    break;
+                default:
+                    reader.skip();
+            }
+        }
+        return order;
+    }
+}
@@ -0,0 +1,193 @@
+package cn.monitor4all.miaoshaservice.utils.hotkey;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 采样热键探测器
+ * 1. 每 sampleRate 次访问采样一次，采样到的键计入count-min sketch（depth行 × width列计数器，估计值取各行最小值）
+ * 2. 估计值达到候选阈值的键记入候选集合（有上限），sketch本身不保存键
+ * 3. 每个窗口结束时 rotate() 按候选键的估计值换算每秒访问次数，按降序返回并清空sketch和候选集合
+ * 采样和计数都是无锁的，窗口切换与并发记录之间的少量计数误差可以接受
+ */
+public class HotKeyDetector {
+
+    private static final long[] SEEDS = {
+            0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L,
+            0xFF51AFD7ED558CCDL, 0xC4CEB9FE1A85EC53L, 0x27D4EB2F165667C5L, 0x94D049BB133111EBL};
+
+    private final int sampleRate;
+
+    private final int depth;
+
+    private final int mask;
+
+    private final long candidateSamples;
+
+    private final int maxCandidates;
+
+    private volatile AtomicLongArray counters;
+
+    private volatile long windowStart;
+
+    private final ConcurrentHashMap<String, Boolean> candidates = new ConcurrentHashMap<>();
+
+    private final AtomicLong sampledCount = new AtomicLong(0);
+
+    private final AtomicLong droppedCandidateCount = new AtomicLong(0);
+
+    /**
+     * @param sampleRate 采样间隔，1表示每次访问都记录
+     * @param depth sketch行数（哈希函数个数），不超过8
+     * @param width sketch列数，向上取整为2的幂
+     * @param candidateSamples 单个窗口内采样次数达到该值的键进入候选集合
+     * @param maxCandidates 候选集合上限
+     */
+    public HotKeyDetector(int sampleRate, int depth, int width, long candidateSamples, int maxCandidates) {
+        this.sampleRate = Math.max(1, sampleRate);
+        this.depth = Math.max(1, Math.min(depth, SEEDS.length));
+        int columns = width <= 16 ? 16 : Integer.highestOneBit(width - 1) << 1;
+        this.mask = columns - 1;
+        this.candidateSamples = Math.max(1, candidateSamples);
+        this.maxCandidates = maxCandidates;
+        this.counters = new AtomicLongArray(this.depth * columns);
+        this.windowStart = System.currentTimeMillis();
+    }
+
+    /**
+     * 记录一次键访问（按采样率决定是否计数）
+     */
+    public void record(byte[] key) {
+        if (key != null && sampled()) {
+            add(new String(key, StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * 记录一次键访问（按采样率决定是否计数）
+     */
+    public void record(String key) {
+        if (key != null && sampled()) {
+            add(key);
+        }
+    }
+
+    /**
+     * 本次访问是否被采样，调用方可以先判断再解析键，避免未采样的访问产生开销
+     */
+    public boolean sampled() {
+        return sampleRate == 1 || ThreadLocalRandom.current().nextInt(sampleRate) == 0;
+    }
+
+    /**
+     * 计入一次采样（不再按采样率过滤）
+     */
+    public void add(String key) {
+        sampledCount.incrementAndGet();
+        AtomicLongArray current = counters;
+        long hash = key.hashCode();
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int index = row * (mask + 1) + (int) (mix(hash ^ SEEDS[row]) & mask);
+            estimate = Math.min(estimate, current.incrementAndGet(index));
+        }
+        if (estimate >= candidateSamples && !candidates.containsKey(key)) {
+            if (candidates.size() < maxCandidates) {
+                candidates.put(key, Boolean.TRUE);
+            } else {
+                droppedCandidateCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 估计键在当前窗口内的访问次数（已乘以采样率）
+     */
+    public long estimate(String key) {
+        return estimate(counters, key) * sampleRate;
+    }
+
+    /**
+     * 结束当前窗口，返回候选键的每秒访问次数估计（降序），并开始新窗口
+     */
+    public List<HotKey> rotate() {
+        long now = System.currentTimeMillis();
+        long elapsedMs = Math.max(1, now - windowStart);
+        AtomicLongArray finished = counters;
+        counters = new AtomicLongArray(finished.length());
+        windowStart = now;
+
+        List<HotKey> hotKeys = new ArrayList<>(candidates.size());
+        for (String key : candidates.keySet()) {
+            long qps = estimate(finished, key) * sampleRate * 1000 / elapsedMs;
+            hotKeys.add(new HotKey(key, qps));
+        }
+        candidates.clear();
+        Collections.sort(hotKeys);
+        return hotKeys;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public long getSampledCount() {
+        return sampledCount.get();
+    }
+
+    public long getDroppedCandidateCount() {
+        return droppedCandidateCount.get();
+    }
+
+    private long estimate(AtomicLongArray array, String key) {
+        long hash = key.hashCode();
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, array.get(row * (mask + 1) + (int) (mix(hash ^ SEEDS[row]) & mask)));
+        }
+        return estimate;
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * 热键及其每秒访问次数估计
+     */
+    public static class HotKey implements Comparable<HotKey> {
+
+        private final String key;
+
+        private final long qps;
+
+        public HotKey(String key, long qps) {
+            this.key = key;
+            this.qps = qps;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public long getQps() {
+            return qps;
+        }
+
+        @Override
+        public int compareTo(HotKey other) {
+            return Long.compare(other.qps, qps);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package cn.monitor4all.miaoshaservice.utils.hotkey;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisSentinelConnection;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 记录键访问的连接工厂
+ * RedisTemplate/StringRedisTemplate 通过它获取连接，连接上每次带键的命令按采样率交给 HotKeyDetector 计数：
+ * 第一个参数为键（byte[]）或键数组（byte[][]，如MGET、DEL），EVAL/EVALSHA 记录 KEYS 部分；
+ * 发布订阅、脚本加载等第一个参数不是键的命令不记录
+ */
+public class HotKeyTrackingConnectionFactory implements RedisConnectionFactory {
+
+    private static final Set<String> NON_KEY_COMMANDS = new HashSet<>(Arrays.asList(
+            "publish", "subscribe", "pSubscribe", "scriptLoad", "execute", "echo", "scriptExists"));
+
+    private final RedisConnectionFactory delegate;
+
+    private final HotKeyDetector detector;
+
+    public HotKeyTrackingConnectionFactory(RedisConnectionFactory delegate, HotKeyDetector detector) {
+        this.delegate = delegate;
+        this.detector = detector;
+    }
+
+    public RedisConnectionFactory getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public RedisConnection getConnection() {
+        RedisConnection connection = delegate.getConnection();
+        return (RedisConnection) Proxy.newProxyInstance(RedisConnection.class.getClassLoader(),
+                new Class<?>[]{RedisConnection.class}, (proxy, method, args) -> {
+                    if (args != null && args.length > 0 && detector.sampled()) {
+                        recordKeys(method, args);
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+                });
+    }
+
+    private void recordKeys(Method method, Object[] args) {
+        String name = method.getName();
+        if (NON_KEY_COMMANDS.contains(name)) {
+            return;
+        }
+        if (("eval".equals(name) || "evalSha".equals(name)) && args.length == 4 && args[3] instanceof byte[][]) {
+            byte[][] keysAndArgs = (byte[][]) args[3];
+            int numKeys = Math.min((Integer) args[2], keysAndArgs.length);
+            for (int i = 0; i < numKeys; i++) {
+                detector.add(new String(keysAndArgs[i], StandardCharsets.UTF_8));
+            }
+            return;
+        }
+        Object first = args[0];
+        if (first instanceof byte[]) {
+            detector.add(new String((byte[]) first, StandardCharsets.UTF_8));
+        } else if (first instanceof byte[][]) {
+            for (byte[] key : (byte[][]) first) {
+                if (key != null) {
+                    detector.add(new String(key, StandardCharsets.UTF_8));
+                }
+            }
+        }
+    }
+
+    @Override
+    public RedisClusterConnection getClusterConnection() {
+        return delegate.getClusterConnection();
+    }
+
+    @Override
+    public boolean getConvertPipelineAndTxResults() {
+        return delegate.getConvertPipelineAndTxResults();
+    }
+
+    @Override
+    public RedisSentinelConnection getSentinelConnection() {
+        return delegate.getSentinelConnection();
+    }
+
+    @Override
+    public DataAccessException translateExceptionIfPossible(RuntimeException ex) {
+        return delegate.translateExceptionIfPossible(ex);
+    }
+}
@@ -0,0 +1,200 @@
+package cn.monitor4all.miaoshaservice.utils.ratelimit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于延迟的自适应并发限制（梯度算法）
+ * 1. 并发数（在途请求数）达到当前限制时立即拒绝，不排队；获取和释放都是无锁操作
+ * 2. 每个采样窗口结束时用窗口内的平均响应时间（短期RTT）和无负载RTT（各窗口平均响应时间的最小值）比较：
+ *    gradient = clamp(tolerance × 无负载RTT / 短期RTT, 0.5, 1)，
+ *    新限制 = 当前限制 × gradient + sqrt(当前限制)，再按 smoothing 平滑；
+ *    响应时间没有变长时限制每个窗口增加约 sqrt(限制)，开始排队（短期RTT变长）时按比例收缩，
+ *    吞吐量停留在延迟曲线的拐点附近，而不是越过拐点后请求排队、响应时间失控
+ * 3. 窗口内有请求失败（超时、下游异常）时，新限制不超过 当前限制 × backoffRatio
+ * 4. 窗口内最大在途请求数不到限制的一半时不调整（流量不足，无法判断下游能否承受更高并发）
+ * 5. 每 probeInterval 个窗口探测一次：限制减半，无负载RTT重新取最小值。
+ *    不用长期平均作为基准，是因为持续超载时长期平均会跟着排队后的响应时间一起变长，限制随之不断放大；
+ *    探测使下游响应时间的真实变化（例如数据库变慢）最多在一个探测周期后反映到基准上
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    // 梯度下限，单个窗口最多收缩一半
+    private static final double MIN_GRADIENT = 0.5;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final double tolerance;
+
+    private final double smoothing;
+
+    private final double backoffRatio;
+
+    private final long windowNanos;
+
+    private final int minWindowSamples;
+
+    private final int probeInterval;
+
+    private final AtomicInteger inflight = new AtomicInteger(0);
+
+    private volatile int limit;
+
+    private final AtomicLong rejectedCount = new AtomicLong(0);
+
+    private final AtomicLong completedCount = new AtomicLong(0);
+
+    private final AtomicLong droppedCount = new AtomicLong(0);
+
+    // 以下字段由 this 保护
+    private double estimatedLimit;
+
+    // 无负载RTT（纳秒），0表示尚未测量
+    private double noLoadRtt;
+
+    private int windowsSinceProbe;
+
+    private long windowStartNanos = -1;
+
+    private long windowRttSum;
+
+    private int windowSamples;
+
+    private int windowMaxInflight;
+
+    private boolean windowDropped;
+
+    // 最近一个窗口的短期RTT（纳秒），只用于统计
+    private volatile double lastShortRtt;
+
+    /**
+     * @param initialLimit 初始并发限制
+     * @param minLimit 最小并发限制
+     * @param maxLimit 最大并发限制
+     * @param tolerance 可容忍的RTT增长倍数，短期RTT不超过 tolerance × 无负载RTT 时不收缩
+     * @param smoothing 新限制的平滑系数，取值(0, 1]
+     * @param backoffRatio 窗口内有请求失败时的收缩比例
+     * @param windowMs 采样窗口长度（毫秒）
+     * @param minWindowSamples 采样窗口最少样本数，不足时窗口延长
+     * @param probeInterval 探测间隔（窗口数）
+     */
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double tolerance, double smoothing,
+                                      double backoffRatio, long windowMs, int minWindowSamples, int probeInterval) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.tolerance = Math.max(1.0, tolerance);
+        this.smoothing = Math.min(1.0, Math.max(0.01, smoothing));
+        this.backoffRatio = Math.min(1.0, Math.max(0.1, backoffRatio));
+        this.windowNanos = Math.max(1, windowMs) * 1_000_000L;
+        this.minWindowSamples = Math.max(1, minWindowSamples);
+        this.probeInterval = Math.max(1, probeInterval);
+        this.estimatedLimit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+        this.limit = (int) estimatedLimit;
+    }
+
+    /**
+     * 尝试占用一个并发名额，成功后必须调用 onComplete 释放
+     * @return 在途请求数未达到限制返回true
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inflight.get();
+            if (current >= limit) {
+                rejectedCount.incrementAndGet();
+                return false;
+            }
+            if (inflight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 释放并发名额并记录一个响应时间样本
+     * @param rttNanos 请求耗时（纳秒）
+     * @param dropped 请求是否因超时、下游异常失败
+     * @param nowNanos 当前时间（System.nanoTime）
+     */
+    public void onComplete(long rttNanos, boolean dropped, long nowNanos) {
+        int inflightBefore = inflight.getAndDecrement();
+        completedCount.incrementAndGet();
+        if (dropped) {
+            droppedCount.incrementAndGet();
+        }
+        synchronized (this) {
+            if (windowStartNanos < 0) {
+                windowStartNanos = nowNanos;
+            }
+            windowRttSum += Math.max(1, rttNanos);
+            windowSamples++;
+            windowMaxInflight = Math.max(windowMaxInflight, inflightBefore);
+            windowDropped |= dropped;
+            if (nowNanos - windowStartNanos >= windowNanos && windowSamples >= minWindowSamples) {
+                update((double) windowRttSum / windowSamples, windowMaxInflight, windowDropped);
+                windowStartNanos = nowNanos;
+                windowRttSum = 0;
+                windowSamples = 0;
+                windowMaxInflight = 0;
+                windowDropped = false;
+            }
+        }
+    }
+
+    private void update(double shortRtt, int maxInflight, boolean dropped) {
+        lastShortRtt = shortRtt;
+        if (noLoadRtt == 0 || shortRtt < noLoadRtt) {
+            noLoadRtt = shortRtt;
+        }
+        if (++windowsSinceProbe >= probeInterval) {
+            // 探测：减半限制让排队的请求排空，之后几个窗口的最小值即为当前的无负载RTT
+            windowsSinceProbe = 0;
+            noLoadRtt = 0;
+            estimatedLimit = Math.max(minLimit, estimatedLimit / 2);
+            limit = (int) estimatedLimit;
+            return;
+        }
+
+        if (!dropped && maxInflight < estimatedLimit / 2) {
+            return;
+        }
+
+        double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, tolerance * noLoadRtt / shortRtt));
+        double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        if (dropped) {
+            newLimit = Math.min(newLimit, estimatedLimit * backoffRatio);
+        }
+        newLimit = estimatedLimit * (1 - smoothing) + newLimit * smoothing;
+        estimatedLimit = Math.min(maxLimit, Math.max(minLimit, newLimit));
+        limit = (int) estimatedLimit;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInflight() {
+        return inflight.get();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    public long getCompletedCount() {
+        return completedCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public synchronized double getNoLoadRttMs() {
+        return noLoadRtt / 1_000_000.0;
+    }
+
+    public double getShortRttMs() {
+        return lastShortRtt / 1_000_000.0;
+    }
+}
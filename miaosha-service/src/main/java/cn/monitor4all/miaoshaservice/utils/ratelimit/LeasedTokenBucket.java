@@ -0,0 +1,196 @@
+package cn.monitor4all.miaoshaservice.utils.ratelimit;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地租约令牌桶（无锁）
+ * 1. 令牌以租约为单位从Redis令牌桶批量取得，每个租约记录剩余令牌数和过期时间，先取得的租约先消耗
+ * 2. 租约过期时间 = 发起租约请求的时间 + leaseTtlMs，过期后剩余令牌作废，不归还Redis
+ * 3. 按观测到的请求速率计算下一批租约的令牌数，使一批令牌大约够用 leaseIntervalMs；
+ *    上一批在续租前已用完（冷启动或流量突增）时下一批至少翻倍
+ *
+ * 超发上界：任一节点在某时刻消耗的令牌，都是Redis在此前 leaseTtlMs 内发出的，因此任意长度为T的时间段内
+ * 所有节点合计放行数 ≤ Redis令牌桶在长度为 T + leaseTtlMs 的时间段内发出的令牌数 ≤ capacity + rate × (T + leaseTtlMs)，
+ * 即相对直接使用Redis令牌桶最多多放行 rate × leaseTtlMs 个；
+ * 同时任一时刻各节点本地未消耗的令牌合计不超过 节点数 × maxBatch，两者取较小值
+ */
+public class LeasedTokenBucket {
+
+    // 观测速率的平滑系数
+    private static final double RATE_SMOOTHING = 0.5;
+
+    private final ConcurrentLinkedQueue<Lease> leases = new ConcurrentLinkedQueue<>();
+
+    // 同一时刻只有一个线程向Redis申请租约
+    private final AtomicBoolean leasing = new AtomicBoolean(false);
+
+    // 请求次数（包括被拒绝的），用于估计速率
+    private final AtomicLong demand = new AtomicLong(0);
+
+    private final AtomicLong expiredTokens = new AtomicLong(0);
+
+    private volatile long lastRateSampleMs;
+
+    private volatile long lastRateSampleDemand;
+
+    private volatile double observedRate;
+
+    private volatile int lastBatch;
+
+    // 上次申请租约后本地令牌是否出现过用完
+    private volatile boolean ranOut;
+
+    // Redis令牌桶为空时，在此之前不再申请租约
+    private volatile long emptyUntilMs;
+
+    public LeasedTokenBucket(long nowMs) {
+        this.lastRateSampleMs = nowMs;
+    }
+
+    /**
+     * 请求一个令牌，计入请求速率
+     * @param nowMs 当前时间
+     * @return 是否取得令牌
+     */
+    public boolean tryAcquire(long nowMs) {
+        demand.incrementAndGet();
+        if (take(nowMs)) {
+            return true;
+        }
+        ranOut = true;
+        return false;
+    }
+
+    /**
+     * 取一个令牌，不计入请求速率（租约到达后重试时使用）
+     * @param nowMs 当前时间
+     * @return 是否取得令牌
+     */
+    public boolean take(long nowMs) {
+        for (Lease lease : leases) {
+            if (lease.expiresAtMs <= nowMs) {
+                expiredTokens.addAndGet(lease.remaining.getAndSet(0));
+                leases.remove(lease);
+                continue;
+            }
+            if (lease.tryTake()) {
+                return true;
+            }
+            leases.remove(lease);
+        }
+        return false;
+    }
+
+    /**
+     * 加入一个租约
+     * @param tokens 租到的令牌数
+     * @param expiresAtMs 过期时间
+     */
+    public void addLease(int tokens, long expiresAtMs) {
+        if (tokens > 0) {
+            leases.add(new Lease(tokens, expiresAtMs));
+        }
+    }
+
+    /**
+     * 当前未过期的剩余令牌数
+     */
+    public int available(long nowMs) {
+        int available = 0;
+        for (Lease lease : leases) {
+            if (lease.expiresAtMs > nowMs) {
+                available += lease.remaining.get();
+            }
+        }
+        return available;
+    }
+
+    /**
+     * 剩余令牌是否已低于预取水位（上一批租约的 lowWatermarkRatio）
+     */
+    public boolean shouldPrefetch(long nowMs, double lowWatermarkRatio) {
+        return nowMs >= emptyUntilMs && available(nowMs) <= Math.max(1, (int) (lastBatch * lowWatermarkRatio));
+    }
+
+    /**
+     * 按观测速率计算下一批租约的令牌数，使一批令牌大约够用 leaseIntervalMs
+     */
+    public int nextBatchSize(long nowMs, int minBatch, int maxBatch, long leaseIntervalMs) {
+        long elapsedMs = nowMs - lastRateSampleMs;
+        if (elapsedMs > 0) {
+            long currentDemand = demand.get();
+            double rate = (currentDemand - lastRateSampleDemand) * 1000.0 / elapsedMs;
+            observedRate = observedRate == 0 ? rate : RATE_SMOOTHING * rate + (1 - RATE_SMOOTHING) * observedRate;
+            lastRateSampleMs = nowMs;
+            lastRateSampleDemand = currentDemand;
+        }
+        int batch = (int) Math.ceil(observedRate * leaseIntervalMs / 1000.0);
+        if (ranOut) {
+            batch = Math.max(batch, lastBatch * 2);
+            ranOut = false;
+        }
+        batch = Math.max(minBatch, Math.min(maxBatch, batch));
+        lastBatch = batch;
+        return batch;
+    }
+
+    /**
+     * 开始申请租约
+     * @return 是否由本线程申请，已有线程在申请时返回false
+     */
+    public boolean startLeasing() {
+        return leasing.compareAndSet(false, true);
+    }
+
+    public void finishLeasing() {
+        leasing.set(false);
+    }
+
+    /**
+     * Redis令牌桶为空，在 untilMs 之前本地直接拒绝，不再申请租约
+     */
+    public void markEmptyUntil(long untilMs) {
+        emptyUntilMs = untilMs;
+    }
+
+    public boolean isEmptyAt(long nowMs) {
+        return nowMs < emptyUntilMs;
+    }
+
+    public double getObservedRate() {
+        return observedRate;
+    }
+
+    public long getExpiredTokens() {
+        return expiredTokens.get();
+    }
+
+    /**
+     * 一次租约
+     */
+    private static class Lease {
+
+        private final AtomicInteger remaining;
+
+        private final long expiresAtMs;
+
+        private Lease(int tokens, long expiresAtMs) {
+            this.remaining = new AtomicInteger(tokens);
+            this.expiresAtMs = expiresAtMs;
+        }
+
+        private boolean tryTake() {
+            int current;
+            do {
+                current = remaining.get();
+                if (current <= 0) {
+                    return false;
+                }
+            } while (!remaining.compareAndSet(current, current - 1));
+            return true;
+        }
+    }
+}
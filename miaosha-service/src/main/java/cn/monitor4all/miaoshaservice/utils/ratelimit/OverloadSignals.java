@@ -0,0 +1,60 @@
+package cn.monitor4all.miaoshaservice.utils.ratelimit;
+
+import cn.monitor4all.miaoshadao.model.ApiResponse;
+import cn.monitor4all.miaoshadao.model.BusinessException;
+import cn.monitor4all.miaoshadao.model.ErrorCode;
+import org.springframework.amqp.AmqpConnectException;
+import org.springframework.amqp.AmqpTimeoutException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 过载信号
+ * 购票失败时区分下游过载（锁等待超时、数据库/Redis/MQ超时或连接失败）和业务拒绝（售罄、已购买、限流等）：
+ * 过载以 ErrorCode.SYSTEM_BUSY 返回，自适应并发限制只把这类响应计为失败样本；
+ * 业务拒绝在抢购中占多数，计为失败会让限制持续收缩到最小值
+ */
+public final class OverloadSignals {
+
+    private OverloadSignals() {
+    }
+
+    /**
+     * 异常（含原因链）是否表示下游过载
+     */
+    public static boolean isOverload(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof BusinessException && ((BusinessException) cause).getCode() == ErrorCode.SYSTEM_BUSY.getCode()) {
+                return true;
+            }
+            // 查询超时、锁等待超时、连接池耗尽、Redis/MQ连接失败或超时
+            if (cause instanceof TransientDataAccessException || cause instanceof DataAccessResourceFailureException
+                    || cause instanceof TimeoutException || cause instanceof AmqpTimeoutException
+                    || cause instanceof AmqpConnectException) {
+                return true;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 构建购票失败响应，提示信息不变，下游过载时返回码为 SYSTEM_BUSY
+     * @param e 失败原因
+     * @param message 提示信息
+     */
+    public static <T> ApiResponse<T> failure(Throwable e, String message) {
+        return isOverload(e) ? ApiResponse.error(ErrorCode.SYSTEM_BUSY, message) : ApiResponse.error(message);
+    }
+
+    /**
+     * 响应是否表示下游过载
+     */
+    public static boolean isOverload(ApiResponse<?> response) {
+        return response != null && response.getCode() == ErrorCode.SYSTEM_BUSY.getCode();
+    }
+}
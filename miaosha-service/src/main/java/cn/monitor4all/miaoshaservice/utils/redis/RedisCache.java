@@ -18,14 +18,20 @@ public class RedisCache {
     @Resource(name = "redisTemplate")
     private RedisTemplate<String, Object> jedisTemplate;
     
+    @Resource
+    private RedisLockCoordinator redisLockCoordinator;
+
     private static RedisTemplate<String, Object> redisTemplateStatic;
 
+    private static RedisLockCoordinator redisLockCoordinatorStatic;
+
     @PostConstruct
     public void init() {
         redisTemplateStatic = jedisTemplate;
+        redisLockCoordinatorStatic = redisLockCoordinator;
     }
 
     public static RedisLock createRedisLock(String key, int expireTime, long timeOut) {
-        return new RedisLock(redisTemplateStatic, key, expireTime, timeOut);
+        return new RedisLock(redisLockCoordinatorStatic, key, expireTime, timeOut);
     }
 }
@@ -0,0 +1,310 @@
+package cn.monitor4all.miaoshaservice.utils.redis;
+
+import cn.monitor4all.miaoshadao.utils.CacheKey;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 分布式锁协调器，每个JVM一个实例
+ * 1. 本地合并：同一个锁键在本JVM内先竞争本地信号量，只有持有信号量的线程访问Redis，其余线程在本地排队
+ * 2. 释放通知：释放脚本删除锁后PUBLISH锁键，等待线程收到通知立即重试，不再定时轮询；
+ *    通知丢失（如持有者宕机、锁自然过期）时按兜底间隔重试
+ * 3. 看门狗：持有期间每 1/3 有效期按令牌续期一次，释放或失去持有权后停止
+ */
+@Component
+@Slf4j
+public class RedisLockCoordinator implements MessageListener {
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    // 未收到释放通知时的兜底重试间隔（毫秒）
+    @Value("${miaosha.redis-lock.fallback-poll-ms:100}")
+    private long fallbackPollMs = 100;
+
+    // 看门狗线程数
+    @Value("${miaosha.redis-lock.watchdog-threads:1}")
+    private int watchdogThreads = 1;
+
+    private final String nodeId = UUID.randomUUID().toString().replace("-", "").substring(0, 8);
+
+    private final AtomicLong tokenSequence = new AtomicLong(0);
+
+    private final Map<String, LocalKeyState> localStates = new ConcurrentHashMap<>();
+
+    private DefaultRedisScript<Long> releaseScript;
+
+    private DefaultRedisScript<Long> renewScript;
+
+    private ScheduledThreadPoolExecutor watchdogExecutor;
+
+    private String releaseChannel;
+
+    // 统计信息
+    private final AtomicLong acquiredCount = new AtomicLong(0);
+    private final AtomicLong timeoutCount = new AtomicLong(0);
+    private final AtomicLong redisCommandCount = new AtomicLong(0);
+    private final AtomicLong notifyWakeupCount = new AtomicLong(0);
+    private final AtomicLong fallbackWakeupCount = new AtomicLong(0);
+    private final AtomicLong totalWaitMicros = new AtomicLong(0);
+    private final AtomicLong maxWaitMicros = new AtomicLong(0);
+    private final AtomicLong watchdogRenewCount = new AtomicLong(0);
+    private final AtomicLong ownershipLostCount = new AtomicLong(0);
+
+    @PostConstruct
+    public void init() {
+        releaseScript = new DefaultRedisScript<>();
+        releaseScript.setScriptSource(new ResourceScriptSource(new ClassPathResource("scripts/lock_release.lua")));
+        releaseScript.setResultType(Long.class);
+
+        renewScript = new DefaultRedisScript<>();
+        renewScript.setScriptSource(new ResourceScriptSource(new ClassPathResource("scripts/lock_renew.lua")));
+        renewScript.setResultType(Long.class);
+
+        watchdogExecutor = new ScheduledThreadPoolExecutor(watchdogThreads, r -> {
+            Thread thread = new Thread(r, "redis-lock-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        watchdogExecutor.setRemoveOnCancelPolicy(true);
+
+        releaseChannel = CacheKey.LOCK_RELEASE_CHANNEL.getKey();
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(releaseChannel));
+        log.info("分布式锁协调器初始化完成，节点ID: {}, 释放通知频道: {}", nodeId, releaseChannel);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (watchdogExecutor != null) {
+            watchdogExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * 生成持有者令牌，全局唯一
+     */
+    String newToken() {
+        return nodeId + ":" + Thread.currentThread().getId() + ":" + tokenSequence.incrementAndGet();
+    }
+
+    /**
+     * 引用本地锁状态（引用计数+1）
+     */
+    LocalKeyState retainLocal(String lockKey) {
+        return localStates.compute(lockKey, (key, state) -> {
+            LocalKeyState retained = state == null ? new LocalKeyState() : state;
+            retained.refs++;
+            return retained;
+        });
+    }
+
+    /**
+     * 释放本地锁状态引用，无引用时移除
+     */
+    void releaseLocal(String lockKey) {
+        localStates.computeIfPresent(lockKey, (key, state) -> --state.refs <= 0 ? null : state);
+    }
+
+    /**
+     * 尝试在Redis中加锁：SET NX PX
+     */
+    boolean trySet(String lockKey, String token, long expireMillis) {
+        redisCommandCount.incrementAndGet();
+        Boolean success = stringRedisTemplate.opsForValue().setIfAbsent(lockKey, token, expireMillis, TimeUnit.MILLISECONDS);
+        return Boolean.TRUE.equals(success);
+    }
+
+    /**
+     * 等待锁释放通知，最长等待 min(剩余时间, 兜底间隔)
+     *
+     * @param seenSequence 加锁尝试前读到的释放序号，期间已有释放通知时不再等待
+     */
+    void awaitRelease(LocalKeyState state, long seenSequence, long remainingNanos, long pollMillis) throws InterruptedException {
+        long waitMillis = Math.max(1, Math.min(TimeUnit.NANOSECONDS.toMillis(remainingNanos), pollMillis));
+        state.monitor.lock();
+        try {
+            if (state.releaseSequence == seenSequence) {
+                state.released.await(waitMillis, TimeUnit.MILLISECONDS);
+            }
+            if (state.releaseSequence != seenSequence) {
+                notifyWakeupCount.incrementAndGet();
+            } else {
+                fallbackWakeupCount.incrementAndGet();
+            }
+        } finally {
+            state.monitor.unlock();
+        }
+    }
+
+    /**
+     * 读取当前释放通知序号，加锁尝试前调用
+     */
+    long currentSequence(LocalKeyState state) {
+        state.monitor.lock();
+        try {
+            return state.releaseSequence;
+        } finally {
+            state.monitor.unlock();
+        }
+    }
+
+    /**
+     * 按令牌释放锁并发布释放通知
+     *
+     * @return true表示释放成功，false表示锁已过期或已被其他持有者占用
+     */
+    boolean release(String lockKey, String token) {
+        redisCommandCount.incrementAndGet();
+        Long result = stringRedisTemplate.execute(releaseScript, Collections.singletonList(lockKey), token, releaseChannel);
+        if (result == null || result == 0) {
+            ownershipLostCount.incrementAndGet();
+            log.warn("释放分布式锁时已不再持有，锁键: {}, 令牌: {}", lockKey, token);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 启动看门狗，每 1/3 有效期续期一次
+     */
+    ScheduledFuture<?> startWatchdog(String lockKey, String token, long expireMillis) {
+        long period = Math.max(1, expireMillis / 3);
+        ScheduledFuture<?>[] holder = new ScheduledFuture<?>[1];
+        holder[0] = watchdogExecutor.scheduleAtFixedRate(() -> {
+            try {
+                redisCommandCount.incrementAndGet();
+                Long renewed = stringRedisTemplate.execute(renewScript, Collections.singletonList(lockKey),
+                        token, String.valueOf(expireMillis));
+                if (renewed != null && renewed > 0) {
+                    watchdogRenewCount.incrementAndGet();
+                } else {
+                    ownershipLostCount.incrementAndGet();
+                    log.warn("看门狗续期失败，已失去锁持有权，锁键: {}", lockKey);
+                    holder[0].cancel(false);
+                }
+            } catch (Exception e) {
+                log.warn("看门狗续期异常，锁键: {}, 错误: {}", lockKey, e.getMessage());
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+        return holder[0];
+    }
+
+    void recordAcquired(long waitNanos) {
+        acquiredCount.incrementAndGet();
+        recordWait(waitNanos);
+    }
+
+    void recordTimeout(long waitNanos) {
+        timeoutCount.incrementAndGet();
+        recordWait(waitNanos);
+    }
+
+    private void recordWait(long waitNanos) {
+        long waitMicros = waitNanos / 1000;
+        totalWaitMicros.addAndGet(waitMicros);
+        maxWaitMicros.accumulateAndGet(waitMicros, Math::max);
+    }
+
+    long getFallbackPollMs() {
+        return fallbackPollMs;
+    }
+
+    /**
+     * 收到锁释放通知，唤醒本JVM内等待该锁的线程
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String lockKey = new String(message.getBody(), StandardCharsets.UTF_8);
+        LocalKeyState state = localStates.get(lockKey);
+        if (state != null) {
+            state.monitor.lock();
+            try {
+                state.releaseSequence++;
+                state.released.signalAll();
+            } finally {
+                state.monitor.unlock();
+            }
+        }
+    }
+
+    /**
+     * 获取分布式锁统计信息
+     * @return 统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        long acquired = acquiredCount.get();
+        long timeouts = timeoutCount.get();
+        long total = acquired + timeouts;
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("nodeId", nodeId);
+        stats.put("acquiredCount", acquired);
+        stats.put("timeoutCount", timeouts);
+        stats.put("redisCommandCount", redisCommandCount.get());
+        stats.put("redisCommandsPerLock", total > 0 ? String.format("%.2f", (double) redisCommandCount.get() / total) : "0.00");
+        stats.put("notifyWakeupCount", notifyWakeupCount.get());
+        stats.put("fallbackWakeupCount", fallbackWakeupCount.get());
+        stats.put("avgWaitMs", total > 0 ? String.format("%.3f", totalWaitMicros.get() / 1000.0 / total) : "0.000");
+        stats.put("maxWaitMs", String.format("%.3f", maxWaitMicros.get() / 1000.0));
+        stats.put("watchdogRenewCount", watchdogRenewCount.get());
+        stats.put("ownershipLostCount", ownershipLostCount.get());
+        stats.put("localKeys", localStates.size());
+        return stats;
+    }
+
+    /**
+     * 单个锁键在本JVM内的状态
+     */
+    static class LocalKeyState {
+        /**
+         * 本地信号量：同一锁键只有一个线程访问Redis，公平排队
+         */
+        final Semaphore localPermit = new Semaphore(1, true);
+
+        /**
+         * 释放通知的等待/唤醒使用ReentrantLock而非对象监视器，等待时不会钉住虚拟线程的载体线程
+         */
+        final ReentrantLock monitor = new ReentrantLock();
+
+        final Condition released = monitor.newCondition();
+
+        /**
+         * 收到的释放通知序号，受monitor保护
+         */
+        long releaseSequence;
+
+        /**
+         * 引用计数，受localStates的compute保护
+         */
+        int refs;
+    }
+}
@@ -0,0 +1,12 @@
+-- 读取缓存值及剩余有效期Lua脚本
+-- 一次往返同时返回值和剩余有效期，用于判断是否需要提前刷新
+-- 参数说明：
+-- KEYS[1]: 缓存键
+-- 返回值：{值, 剩余有效期毫秒}，键不存在时返回空列表
+
+local value = redis.call('GET', KEYS[1])
+if not value then
+    return {}
+end
+
+return {value, redis.call('PTTL', KEYS[1])}
@@ -0,0 +1,13 @@
+-- 缓存加载租约释放Lua脚本
+-- 只有持有者（令牌一致）才能删除租约，避免租约过期后误删其他节点的租约
+-- 参数说明：
+-- KEYS[1]: 租约键
+-- ARGV[1]: 持有者令牌
+-- 返回值：1 释放成功，0 租约已过期或被其他节点占用
+
+if redis.call('GET', KEYS[1]) == ARGV[1] then
+    redis.call('DEL', KEYS[1])
+    return 1
+end
+
+return 0
@@ -0,0 +1,53 @@
+-- GCRA（通用信元速率算法）限流Lua脚本
+-- 与令牌桶等价，每个键只保存一个值：理论到达时间TAT（微秒）。
+-- 每个令牌的发放间隔 interval = 1000000 / rate，允许的突发量为 capacity 个令牌，
+-- 当前可用令牌数 = (now + capacity * interval - TAT) / interval
+-- 参数说明：
+-- KEYS[1]: 限流键
+-- ARGV[1]: 桶容量（允许的突发量）
+-- ARGV[2]: 令牌填充速率（每秒）
+-- ARGV[3]: 请求令牌数
+-- ARGV[4]: 1-租约模式，令牌不足时取走全部整数个可用令牌；0-令牌不足时拒绝
+-- 返回值：{取得的令牌数, 剩余令牌数（向下取整）, 拒绝时令牌足够还需等待的微秒数}
+
+-- TIME 为非确定性命令，之后的写命令按效果复制（Redis 5 起为默认行为）
+redis.replicate_commands()
+
+local capacity = tonumber(ARGV[1])
+local rate = tonumber(ARGV[2])
+local requested = tonumber(ARGV[3])
+local partial = ARGV[4] == '1'
+
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000000 + tonumber(time[2])
+
+local interval = 1000000 / rate
+local burst = capacity * interval
+
+local tat = tonumber(redis.call('GET', KEYS[1])) or now
+if tat < now then
+    tat = now
+end
+
+local available = (now + burst - tat) / interval
+local granted = requested
+if available < requested then
+    if partial then
+        granted = math.floor(available)
+    else
+        granted = 0
+    end
+end
+
+if granted < 1 then
+    local needed = requested
+    if partial then
+        needed = 1
+    end
+    return {0, math.floor(math.max(available, 0)), math.ceil((needed - available) * interval)}
+end
+
+tat = tat + granted * interval
+redis.call('SET', KEYS[1], string.format('%.17g', tat), 'PX', math.ceil((tat - now) / 1000) + 1)
+
+return {granted, math.floor((now + burst - tat) / interval), 0}
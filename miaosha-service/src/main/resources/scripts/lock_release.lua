@@ -0,0 +1,15 @@
+-- 分布式锁释放Lua脚本
+-- 只有持有者（令牌一致）才能删除锁，删除后发布释放通知唤醒其他节点的等待线程
+-- 参数说明：
+-- KEYS[1]: 锁键
+-- ARGV[1]: 持有者令牌
+-- ARGV[2]: 释放通知频道
+-- 返回值：1 释放成功，0 锁已过期或被其他持有者占用
+
+if redis.call('GET', KEYS[1]) == ARGV[1] then
+    redis.call('DEL', KEYS[1])
+    redis.call('PUBLISH', ARGV[2], KEYS[1])
+    return 1
+end
+
+return 0
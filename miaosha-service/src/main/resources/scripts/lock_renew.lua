@@ -0,0 +1,13 @@
+-- 分布式锁续期Lua脚本（看门狗）
+-- 只有持有者（令牌一致）才能延长锁的有效期
+-- 参数说明：
+-- KEYS[1]: 锁键
+-- ARGV[1]: 持有者令牌
+-- ARGV[2]: 新的有效期（毫秒）
+-- 返回值：1 续期成功，0 已不再持有锁
+
+if redis.call('GET', KEYS[1]) == ARGV[1] then
+    return redis.call('PEXPIRE', KEYS[1], ARGV[2])
+end
+
+return 0
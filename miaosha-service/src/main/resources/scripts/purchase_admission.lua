@@ -0,0 +1,39 @@
+-- 购票准入Lua脚本
+-- 一次Redis往返内完成：一人一天限购校验、按日期扣减库存计数、记录下单意向
+-- 参数说明：
+-- KEYS[1]: 库存计数键（按日期）
+-- KEYS[2]: 已准入用户集合键（按日期）
+-- KEYS[3]: 下单意向哈希键（按日期，field为用户ID，value为请求ID）
+-- ARGV[1]: 用户ID
+-- ARGV[2]: 请求ID
+-- ARGV[3]: 用户集合与意向哈希的过期时间（秒）
+-- 返回值：
+--  1 准入成功
+--  0 库存不足
+-- -1 库存计数未初始化
+-- -2 用户当天已购买
+
+local stock = redis.call('GET', KEYS[1])
+if not stock then
+    return -1
+end
+
+if redis.call('SISMEMBER', KEYS[2], ARGV[1]) == 1 then
+    return -2
+end
+
+if tonumber(stock) <= 0 then
+    return 0
+end
+
+redis.call('DECR', KEYS[1])
+redis.call('SADD', KEYS[2], ARGV[1])
+redis.call('HSET', KEYS[3], ARGV[1], ARGV[2])
+
+local expire = tonumber(ARGV[3])
+if expire and expire > 0 then
+    redis.call('EXPIRE', KEYS[2], expire)
+    redis.call('EXPIRE', KEYS[3], expire)
+end
+
+return 1
@@ -0,0 +1,19 @@
+-- 购票准入释放Lua脚本
+-- 订单取消、库存已归还数据库后，同步归还库存计数并移除用户限购标记
+-- 只有经过准入的用户（在已准入用户集合中）才归还库存计数：其他购票方式的订单没有占用库存计数，
+-- 取消时归还会使库存计数多于数据库库存，多放行的请求在数据库扣减时才失败
+-- 参数说明：
+-- KEYS[1]: 库存计数键（按日期）
+-- KEYS[2]: 已准入用户集合键（按日期）
+-- ARGV[1]: 用户ID
+-- 返回值：归还后的库存计数，用户未经过准入返回-2，库存计数不存在时返回-1
+
+if redis.call('SREM', KEYS[2], ARGV[1]) == 0 then
+    return -2
+end
+
+if redis.call('EXISTS', KEYS[1]) == 1 then
+    return redis.call('INCR', KEYS[1])
+end
+
+return -1
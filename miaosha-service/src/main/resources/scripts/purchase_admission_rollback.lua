@@ -0,0 +1,25 @@
+-- 购票准入回滚Lua脚本
+-- 下单意向无法落库时（消息发送失败、用户已有订单、票券不存在等）撤销准入
+-- 参数说明：
+-- KEYS[1]: 库存计数键（按日期）
+-- KEYS[2]: 已准入用户集合键（按日期）
+-- KEYS[3]: 下单意向哈希键（按日期）
+-- ARGV[1]: 用户ID
+-- ARGV[2]: 是否移除用户限购标记（1是 0否）
+-- ARGV[3]: 是否归还库存计数（1是 0否）
+-- 返回值：1 意向存在并已回滚，0 意向不存在（已回滚或已落库）
+
+local removed = redis.call('HDEL', KEYS[3], ARGV[1])
+if removed == 0 then
+    return 0
+end
+
+if ARGV[2] == '1' then
+    redis.call('SREM', KEYS[2], ARGV[1])
+end
+
+if ARGV[3] == '1' and redis.call('EXISTS', KEYS[1]) == 1 then
+    redis.call('INCR', KEYS[1])
+end
+
+return 1
@@ -0,0 +1,13 @@
+-- 购买位图查询Lua脚本
+-- 位图重建完成后才作为权威结果，未完成时调用方回退到数据库查询
+-- 参数说明：
+-- KEYS[1]: 购买位图键
+-- KEYS[2]: 重建完成标记键
+-- ARGV[1]: 用户ID（位偏移量）
+-- 返回值：1 已购买，0 未购买，-1 位图未就绪
+
+if redis.call('EXISTS', KEYS[2]) == 0 then
+    return -1
+end
+
+return redis.call('GETBIT', KEYS[1], ARGV[1])
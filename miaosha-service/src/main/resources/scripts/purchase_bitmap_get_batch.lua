@@ -0,0 +1,18 @@
+-- 购买位图批量查询Lua脚本
+-- 一次往返查询同一用户多个日期的购买状态
+-- 参数说明：
+-- KEYS[2i-1]: 第i个日期的购买位图键
+-- KEYS[2i]: 第i个日期的重建完成标记键
+-- ARGV[1]: 用户ID（位偏移量）
+-- 返回值：按日期顺序的数组，1 已购买，0 未购买，-1 位图未就绪
+
+local result = {}
+for i = 1, #KEYS, 2 do
+    if redis.call('EXISTS', KEYS[i + 1]) == 0 then
+        result[#result + 1] = -1
+    else
+        result[#result + 1] = redis.call('GETBIT', KEYS[i], ARGV[1])
+    end
+end
+
+return result
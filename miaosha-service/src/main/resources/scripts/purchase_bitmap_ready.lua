@@ -0,0 +1,22 @@
+-- 购买位图重建完成Lua脚本
+-- 重新清除最近取消的用户（覆盖重建期间的取消），设置位图过期时间并写入重建完成标记，原子执行
+-- 标记的过期时间比位图短，保证标记存在时位图一定存在
+-- 参数说明：
+-- KEYS[1]: 购买位图键
+-- KEYS[2]: 重建完成标记键
+-- KEYS[3]: 最近取消集合键
+-- ARGV[1]: 位图过期时间（秒）
+-- ARGV[2]: 重建完成标记过期时间（秒）
+-- ARGV[3]: 重建完成标记值
+-- 返回值：重新清除的用户数
+
+local cleared = redis.call('SMEMBERS', KEYS[3])
+for _, userId in ipairs(cleared) do
+    redis.call('SETBIT', KEYS[1], userId, 0)
+end
+redis.call('DEL', KEYS[3])
+
+redis.call('EXPIRE', KEYS[1], ARGV[1])
+redis.call('SET', KEYS[2], ARGV[3], 'EX', ARGV[2])
+
+return #cleared
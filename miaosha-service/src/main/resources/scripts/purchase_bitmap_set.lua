@@ -0,0 +1,26 @@
+-- 购买位图更新Lua脚本
+-- 购票成功置1、取消购票置0；位图没有过期时间时（由购票路径首次创建）补设过期时间
+-- 取消的用户同时记入最近取消集合（短期过期），重建写完位图后重新置0，避免被重建时查询到的旧订单覆盖；
+-- 购票时从集合移除，取消后再次购票的用户不会被置0
+-- 参数说明：
+-- KEYS[1]: 购买位图键
+-- KEYS[2]: 最近取消集合键
+-- ARGV[1]: 用户ID（位偏移量）
+-- ARGV[2]: 位值（1 已购买，0 未购买）
+-- ARGV[3]: 位图过期时间（秒）
+-- ARGV[4]: 最近取消集合过期时间（秒）
+-- 返回值：原位值
+
+local previous = redis.call('SETBIT', KEYS[1], ARGV[1], ARGV[2])
+if redis.call('TTL', KEYS[1]) < 0 then
+    redis.call('EXPIRE', KEYS[1], ARGV[3])
+end
+
+if ARGV[2] == '1' then
+    redis.call('SREM', KEYS[2], ARGV[1])
+else
+    redis.call('SADD', KEYS[2], ARGV[1])
+    redis.call('EXPIRE', KEYS[2], ARGV[4])
+end
+
+return previous
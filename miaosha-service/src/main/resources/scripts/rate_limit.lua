@@ -1,41 +1,61 @@
 -- 分布式限流Lua脚本
--- 实现滑动时间窗口限流算法
+-- 实现滑动窗口计数器限流算法：每个键只保存一个哈希（当前固定窗口序号、当前窗口计数、上一窗口计数、限流次数、窗口长度），
+-- 内存与放行速率无关；窗口内请求数按 上一窗口计数 × 上一窗口与滑动窗口重叠的比例 + 当前窗口计数 估算，
+-- 假设上一窗口内的请求均匀分布
 -- 参数说明：
 -- KEYS[1]: 限流键
 -- ARGV[1]: 限流次数
 -- ARGV[2]: 时间窗口（秒）
--- ARGV[3]: 当前时间戳（秒）
+-- 返回值：{1-通过/0-限流, 滑动窗口内估算的请求数, 限流时再次请求前需等待的毫秒数}
+
+-- TIME 为非确定性命令，之后的写命令按效果复制（Redis 5 起为默认行为）
+redis.replicate_commands()
 
--- 获取当前时间戳
-local now = tonumber(ARGV[3])
--- 获取限流次数
 local limit = tonumber(ARGV[1])
--- 获取时间窗口
-local window = tonumber(ARGV[2])
+local size = tonumber(ARGV[2]) * 1000
 
--- 清理过期的记录（时间窗口外的记录）
-local expired = now - window
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+local index = math.floor(now / size)
+-- 当前固定窗口已经过的比例
+local elapsed = (now - index * size) / size
 
--- 获取当前键的所有成员
-local current = redis.call('ZRANGEBYSCORE', KEYS[1], 0, expired)
-if #current > 0 then
-    -- 删除过期的记录
-    redis.call('ZREMRANGEBYSCORE', KEYS[1], 0, expired)
+local state = redis.call('HMGET', KEYS[1], 'w', 'c', 'p')
+local current = tonumber(state[2]) or 0
+local previous = tonumber(state[3]) or 0
+local stored = tonumber(state[1])
+if stored ~= index then
+    if stored == index - 1 then
+        previous = current
+    else
+        previous = 0
+    end
+    current = 0
 end
 
--- 获取当前时间窗口内的记录数量
-local count = redis.call('ZCARD', KEYS[1])
+local estimate = previous * (1 - elapsed) + current
 
--- 检查是否超过限流次数
-if count >= limit then
-    -- 超过限流次数，返回0表示限流
-    return {0, count, now + window}
+if estimate + 1 > limit then
+    -- 估算值在上一窗口的权重降到足够低之前一直超限，计算需等待的时间
+    local wait
+    if current + 1 <= limit and previous > 0 then
+        wait = ((1 - (limit - current - 1) / previous) - elapsed) * size
+    else
+        -- 当前窗口已满，等到下一窗口，且当前窗口计数的权重降到足够低
+        local weight = 0
+        if current > 0 then
+            weight = math.max(0, 1 - (limit - 1) / current)
+        end
+        wait = (1 - elapsed + weight) * size
+    end
+    redis.call('HMSET', KEYS[1], 'w', index, 'c', current, 'p', previous, 'l', limit, 's', size)
+    redis.call('PEXPIRE', KEYS[1], size * 2)
+    return {0, math.floor(estimate), math.max(1, math.ceil(wait))}
 end
 
--- 未超过限流次数，添加当前请求记录
-redis.call('ZADD', KEYS[1], now, now .. ':' .. math.random(1000000, 9999999))
--- 设置过期时间，避免内存泄漏
-redis.call('EXPIRE', KEYS[1], window + 10)
+current = current + 1
+redis.call('HMSET', KEYS[1], 'w', index, 'c', current, 'p', previous, 'l', limit, 's', size)
+-- 两个窗口后上一窗口计数不再参与估算，键自然过期
+redis.call('PEXPIRE', KEYS[1], size * 2)
 
--- 返回1表示成功，当前记录数，重置时间
-return {1, count + 1, now + window}
+return {1, math.floor(estimate + 1), 0}
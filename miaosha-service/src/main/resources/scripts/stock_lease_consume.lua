@@ -0,0 +1,16 @@
+-- 库存租约售出/退回Lua脚本
+-- 纪元与节点当前纪元一致时才记账，租约已被回收（纪元已删除或已更新）时拒绝
+-- 参数说明：
+-- KEYS[1]: 租约纪元哈希键
+-- KEYS[2]: 已售数量哈希键
+-- ARGV[1]: 节点ID
+-- ARGV[2]: 售出时的租约纪元
+-- ARGV[3]: 已售数量增量（1 售出，-1 下单失败退回）
+-- 返回值：1 成功，0 租约已被回收
+
+if redis.call('HGET', KEYS[1], ARGV[1]) ~= ARGV[2] then
+    return 0
+end
+
+redis.call('HINCRBY', KEYS[2], ARGV[1], ARGV[3])
+return 1
@@ -0,0 +1,24 @@
+-- 库存租约续租记账Lua脚本
+-- 节点没有有效租约时分配新纪元（单调递增，被回收的旧纪元不会再次生效），再累加净租约数量
+-- 参数说明：
+-- KEYS[1]: 租约哈希键（节点 -> 净租约数量）
+-- KEYS[2]: 租约纪元哈希键（节点 -> 纪元）
+-- KEYS[3]: 已售数量哈希键（节点 -> 已售数量）
+-- KEYS[4]: 纪元序号键
+-- KEYS[5]: 租约日期集合键
+-- ARGV[1]: 节点ID
+-- ARGV[2]: 续租数量
+-- ARGV[3]: 日期
+-- 返回值：节点当前的租约纪元
+
+local epoch = redis.call('HGET', KEYS[2], ARGV[1])
+if not epoch then
+    epoch = redis.call('INCR', KEYS[4])
+    redis.call('HSET', KEYS[2], ARGV[1], epoch)
+    redis.call('HSET', KEYS[3], ARGV[1], 0)
+end
+
+redis.call('HINCRBY', KEYS[1], ARGV[1], ARGV[2])
+redis.call('SADD', KEYS[5], ARGV[3])
+
+return tonumber(epoch)
@@ -0,0 +1,21 @@
+-- 库存租约回收Lua脚本
+-- 原子地删除失效节点的净租约、纪元和已售数量：纪元删除后该节点的售出和归还都会被拒绝（隔离），
+-- 多个节点同时回收时只有一个节点取得租约数量
+-- 参数说明：
+-- KEYS[1]: 租约哈希键
+-- KEYS[2]: 租约纪元哈希键
+-- KEYS[3]: 已售数量哈希键
+-- ARGV[1]: 失效节点ID
+-- 返回值：{净租约数量, 已售数量}，没有已售数量记录时已售数量为-1；租约已被回收时返回空列表
+
+local leased = redis.call('HGET', KEYS[1], ARGV[1])
+if not leased then
+    return {}
+end
+local sold = redis.call('HGET', KEYS[3], ARGV[1])
+
+redis.call('HDEL', KEYS[1], ARGV[1])
+redis.call('HDEL', KEYS[2], ARGV[1])
+redis.call('HDEL', KEYS[3], ARGV[1])
+
+return {tonumber(leased), sold and tonumber(sold) or -1}
@@ -0,0 +1,16 @@
+-- 库存租约归还Lua脚本
+-- 纪元与节点当前纪元一致时扣减净租约数量，租约已被回收时拒绝（剩余库存已由回收节点归还）
+-- 参数说明：
+-- KEYS[1]: 租约哈希键
+-- KEYS[2]: 租约纪元哈希键
+-- ARGV[1]: 节点ID
+-- ARGV[2]: 租约纪元
+-- ARGV[3]: 归还数量
+-- 返回值：1 成功，0 租约已被回收
+
+if redis.call('HGET', KEYS[2], ARGV[1]) ~= ARGV[2] then
+    return 0
+end
+
+redis.call('HINCRBY', KEYS[1], ARGV[1], -tonumber(ARGV[3]))
+return 1
@@ -0,0 +1,23 @@
+-- 票券库存增减Lua脚本
+-- 先递增版本号（hash不存在时也递增，使进行中的回源写入失效），hash存在时再原子增减剩余和已售票数
+-- 参数说明：
+-- KEYS[1]: 票券库存hash键
+-- KEYS[2]: 版本号键
+-- ARGV[1]: 剩余票数变化量（购票为负，取消为正）
+-- ARGV[2]: 过期时间（秒）
+-- 返回值：变更后的剩余票数；hash不存在时返回nil
+
+local version = redis.call('INCR', KEYS[2])
+redis.call('EXPIRE', KEYS[2], ARGV[2])
+
+if redis.call('EXISTS', KEYS[1]) == 0 then
+    return false
+end
+
+local delta = tonumber(ARGV[1])
+local remaining = redis.call('HINCRBY', KEYS[1], 'remaining', delta)
+redis.call('HINCRBY', KEYS[1], 'sold', -delta)
+redis.call('HSET', KEYS[1], 'ver', version)
+redis.call('EXPIRE', KEYS[1], ARGV[2])
+
+return remaining
@@ -0,0 +1,21 @@
+-- 票券库存回源写入Lua脚本
+-- 只有版本号与回源前读取的版本号一致时才写入，回源期间发生过增减或失效时放弃写入
+-- 参数说明：
+-- KEYS[1]: 票券库存hash键
+-- KEYS[2]: 版本号键
+-- ARGV[1]: 回源前读取的版本号（版本号键不存在时为0）
+-- ARGV[2]: 总票数
+-- ARGV[3]: 剩余票数
+-- ARGV[4]: 已售票数
+-- ARGV[5]: 过期时间（秒）
+-- 返回值：1 已写入，0 版本号已变化未写入
+
+local current = tonumber(redis.call('GET', KEYS[2]) or '0')
+if current ~= tonumber(ARGV[1]) then
+    return 0
+end
+
+redis.call('HMSET', KEYS[1], 'total', ARGV[2], 'remaining', ARGV[3], 'sold', ARGV[4], 'ver', ARGV[1])
+redis.call('EXPIRE', KEYS[1], ARGV[5])
+
+return 1
@@ -0,0 +1,35 @@
+-- 令牌桶批量租约Lua脚本
+-- 与 token_bucket.lua 共用同一个令牌桶（tokens、lastRefillTime），一次取走最多 ARGV[4] 个令牌，令牌不足时取走全部剩余令牌
+-- 参数说明：
+-- KEYS[1]: 限流键
+-- ARGV[1]: 桶容量
+-- ARGV[2]: 令牌填充速率（每秒）
+-- ARGV[3]: 当前时间戳（秒）
+-- ARGV[4]: 申请租约的令牌数
+-- 返回值：{租到的令牌数, 桶内剩余令牌数}
+
+local capacity = tonumber(ARGV[1])
+local rate = tonumber(ARGV[2])
+local now = tonumber(ARGV[3])
+local requested = tonumber(ARGV[4])
+
+local bucket = redis.call('HMGET', KEYS[1], 'tokens', 'lastRefillTime')
+local currentTokens = tonumber(bucket[1]) or capacity
+local lastRefillTime = tonumber(bucket[2]) or now
+
+-- 计算需要填充的令牌数（与 token_bucket.lua 一致）
+local timePassed = now - lastRefillTime
+local tokensToAdd = math.floor(timePassed * rate)
+currentTokens = math.min(capacity, currentTokens + tokensToAdd)
+
+local granted = math.min(requested, math.floor(currentTokens))
+if granted < 1 then
+    return {0, currentTokens}
+end
+
+currentTokens = currentTokens - granted
+
+redis.call('HMSET', KEYS[1], 'tokens', currentTokens, 'lastRefillTime', now)
+redis.call('EXPIRE', KEYS[1], math.ceil(capacity / rate) + 10)
+
+return {granted, currentTokens}
@@ -0,0 +1,56 @@
+-- 微秒精度令牌桶Lua脚本
+-- 时间取自Redis TIME（微秒），不使用客户端时间；令牌数保留小数，按经过的时间连续填充，
+-- 低速率的桶不再按整秒跳变，高速率的桶不会在整秒边界一次补满
+-- 参数说明：
+-- KEYS[1]: 限流键
+-- ARGV[1]: 桶容量
+-- ARGV[2]: 令牌填充速率（每秒）
+-- ARGV[3]: 请求令牌数
+-- ARGV[4]: 1-租约模式，令牌不足时取走全部整数个剩余令牌；0-令牌不足时拒绝
+-- 返回值：{取得的令牌数, 剩余令牌数（向下取整）, 拒绝时令牌足够还需等待的微秒数}
+
+-- TIME 为非确定性命令，之后的写命令按效果复制（Redis 5 起为默认行为）
+redis.replicate_commands()
+
+local capacity = tonumber(ARGV[1])
+local rate = tonumber(ARGV[2])
+local requested = tonumber(ARGV[3])
+local partial = ARGV[4] == '1'
+
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000000 + tonumber(time[2])
+
+local bucket = redis.call('HMGET', KEYS[1], 'tokens', 'ts')
+local tokens = tonumber(bucket[1]) or capacity
+local ts = tonumber(bucket[2]) or now
+
+-- 时钟回拨时不填充，保留原时间戳
+if now > ts then
+    tokens = math.min(capacity, tokens + (now - ts) * rate / 1000000)
+    ts = now
+end
+
+local granted = requested
+if tokens < requested then
+    if partial then
+        granted = math.floor(tokens)
+    else
+        granted = 0
+    end
+end
+tokens = tokens - granted
+
+-- 拒绝时也写回，保留已填充的小数令牌
+redis.call('HMSET', KEYS[1], 'tokens', string.format('%.17g', tokens), 'ts', string.format('%.17g', ts))
+redis.call('PEXPIRE', KEYS[1], math.ceil(capacity / rate * 1000) + 1000)
+
+local wait = 0
+if granted == 0 then
+    local needed = requested
+    if partial then
+        needed = 1
+    end
+    wait = math.ceil((needed - tokens) / rate * 1000000)
+end
+
+return {granted, math.floor(tokens), wait}
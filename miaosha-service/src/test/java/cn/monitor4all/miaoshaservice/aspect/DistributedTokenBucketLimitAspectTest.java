@@ -0,0 +1,282 @@
+package cn.monitor4all.miaoshaservice.aspect;
+
+import cn.monitor4all.miaoshadao.model.BusinessException;
+import cn.monitor4all.miaoshadao.model.ErrorCode;
+import cn.monitor4all.miaoshaservice.annotation.DistributedTokenBucketLimit;
+import cn.monitor4all.miaoshaservice.annotation.DistributedTokenBucketLimit.Strategy;
+import cn.monitor4all.miaoshaservice.config.DistributedTokenBucketConfig;
+import cn.monitor4all.miaoshaservice.service.DistributedTokenBucketService;
+import org.aopalliance.intercept.MethodInvocation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 分布式令牌桶限流切面测试类
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class DistributedTokenBucketLimitAspectTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DistributedTokenBucketLimitAspectTest.class);
+
+    @Mock
+    private DistributedTokenBucketService distributedTokenBucketService;
+
+    @Spy
+    private DistributedTokenBucketConfig config = new DistributedTokenBucketConfig();
+
+    @InjectMocks
+    private DistributedTokenBucketLimitAspect aspect;
+
+    private DemoController proxy;
+
+    private DemoController target;
+
+    /**
+     * 被限流的示例控制器
+     */
+    public static class DemoController {
+
+        private int calls;
+
+        @DistributedTokenBucketLimit(capacity = 10, rate = 10.0)
+        public String interfaceLimit() {
+            calls++;
+            return "ok";
+        }
+
+        @DistributedTokenBucketLimit(strategy = Strategy.USER)
+        public String userLimit(Long userId) {
+            calls++;
+            return "ok";
+        }
+
+        @DistributedTokenBucketLimit(strategy = Strategy.USER)
+        public String anonymousLimit(String date) {
+            calls++;
+            return "ok";
+        }
+
+        @DistributedTokenBucketLimit(strategy = Strategy.GLOBAL)
+        public String globalLimit() {
+            calls++;
+            return "ok";
+        }
+
+        @DistributedTokenBucketLimit(key = "'custom:' + #request.userId + ':' + #p1", strategy = Strategy.CUSTOM, capacity = 50, rate = 5.0)
+        public String customLimit(DemoRequest request, String api) {
+            calls++;
+            return "ok";
+        }
+
+        @DistributedTokenBucketLimit(key = "#date", capacity = 5, rate = 1.0, tokens = 2, blocking = true, timeout = 300)
+        public String blockingLimit(String date) {
+            calls++;
+            return "ok";
+        }
+
+        @DistributedTokenBucketLimit(capacity = 1, rate = 1.0, message = "购票过于频繁", errorCode = "USER_ACCESS_LIMIT")
+        public String rejected() {
+            calls++;
+            return "ok";
+        }
+
+        public String notLimited() {
+            calls++;
+            return "ok";
+        }
+    }
+
+    public static class DemoRequest {
+
+        private final Long userId;
+
+        public DemoRequest(Long userId) {
+            this.userId = userId;
+        }
+
+        public Long getUserId() {
+            return userId;
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        when(distributedTokenBucketService.tryAcquire(anyString(), anyInt(), anyDouble(), anyInt())).thenReturn(true);
+        when(distributedTokenBucketService.tryAcquireWithTimeout(anyString(), anyInt(), anyDouble(), anyInt(), anyLong())).thenReturn(true);
+
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("distributedTokenBucketLimitAspect", aspect);
+        DistributedTokenBucketLimitAdvisingPostProcessor postProcessor = new DistributedTokenBucketLimitAdvisingPostProcessor();
+        postProcessor.setBeanFactory(beanFactory);
+        target = new DemoController();
+        proxy = (DemoController) postProcessor.postProcessAfterInitialization(target, "demoController");
+    }
+
+    @Test
+    void testStrategiesResolveToPrebuiltKeys() {
+        assertEquals("ok", proxy.interfaceLimit());
+        assertEquals("ok", proxy.userLimit(42L));
+        assertEquals("ok", proxy.userLimit(null));
+        assertEquals("ok", proxy.anonymousLimit("2030-01-15"));
+        assertEquals("ok", proxy.globalLimit());
+        assertEquals("ok", proxy.customLimit(new DemoRequest(7L), "purchase"));
+
+        verify(distributedTokenBucketService).tryAcquire("interface:DemoController.interfaceLimit", 10, 10.0, 1);
+        // 未指定容量和速率时使用配置中对应策略的规则
+        verify(distributedTokenBucketService).tryAcquire("user:42", 20, 2.0, 1);
+        verify(distributedTokenBucketService, times(2)).tryAcquire("user:anonymous", 20, 2.0, 1);
+        verify(distributedTokenBucketService).tryAcquire("global:DemoController.globalLimit", 1000, 100.0, 1);
+        verify(distributedTokenBucketService).tryAcquire("custom:7:purchase", 50, 5.0, 1);
+        assertEquals(6, target.calls);
+    }
+
+    @Test
+    void testKeyEvaluationFailureFallsBackToExpression() {
+        // 参数为null时访问属性求值失败，使用原始表达式作为限流键（CUSTOM 策略前缀为空），请求继续执行
+        assertEquals("ok", proxy.customLimit(null, "purchase"));
+
+        verify(distributedTokenBucketService).tryAcquire("'custom:' + #request.userId + ':' + #p1", 50, 5.0, 1);
+        assertEquals(1, target.calls);
+    }
+
+    @Test
+    void testNotAnnotatedMethodIsNotIntercepted() {
+        assertEquals("ok", proxy.notLimited());
+        verifyNoInteractions(distributedTokenBucketService);
+    }
+
+    @Test
+    void testBlockingUsesTimeoutAcquire() {
+        assertEquals("ok", proxy.blockingLimit("2030-01-15"));
+
+        verify(distributedTokenBucketService).tryAcquireWithTimeout("interface:2030-01-15", 5, 1.0, 2, 300L);
+        verify(distributedTokenBucketService, never()).tryAcquire(anyString(), anyInt(), anyDouble(), anyInt());
+    }
+
+    @Test
+    void testRejectThrowsBusinessExceptionWithoutInvokingTarget() {
+        when(distributedTokenBucketService.tryAcquire(eq("interface:DemoController.rejected"), anyInt(), anyDouble(), anyInt())).thenReturn(false);
+
+        BusinessException e = assertThrows(BusinessException.class, () -> proxy.rejected());
+
+        assertEquals(ErrorCode.USER_ACCESS_LIMIT.getCode(), e.getCode());
+        assertEquals("购票过于频繁", e.getMessage());
+        assertEquals(0, target.calls);
+        assertEquals(1L, aspect.getStatistics().get("rejectedCount"));
+    }
+
+    @Test
+    void testPlanIsBuiltOncePerMethod() {
+        for (int i = 0; i < 100; i++) {
+            proxy.customLimit(new DemoRequest((long) i), "purchase");
+            proxy.userLimit((long) i);
+        }
+
+        assertEquals(2, aspect.getStatistics().get("methodCount"));
+        // 注解和配置只在生成计划时读取
+        verify(config, times(1)).getUserTokenBucketRule();
+        verify(config, times(1)).getRule("DemoController.customLimit");
+        verify(distributedTokenBucketService).tryAcquire("custom:99:purchase", 50, 5.0, 1);
+    }
+
+    /**
+     * 切面自身每次调用的开销：限流服务替换为直接返回的桩，测量生成限流键、调用限流服务和放行的耗时
+     */
+    @Test
+    void testPerCallOverheadIsMicroseconds() throws Throwable {
+        DistributedTokenBucketService stub = (DistributedTokenBucketService) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[]{DistributedTokenBucketService.class},
+                (p, method, args) -> method.getReturnType() == boolean.class ? Boolean.TRUE : null);
+        ReflectionTestUtils.setField(aspect, "distributedTokenBucketService", stub);
+
+        Method prebuilt = DemoController.class.getMethod("globalLimit");
+        Method user = DemoController.class.getMethod("userLimit", Long.class);
+        Method spel = DemoController.class.getMethod("customLimit", DemoRequest.class, String.class);
+        DemoRequest request = new DemoRequest(7L);
+
+        double prebuiltNanos = measure(new DirectInvocation(target, prebuilt, new Object[0]));
+        double userNanos = measure(new DirectInvocation(target, user, new Object[]{42L}));
+        double spelNanos = measure(new DirectInvocation(target, spel, new Object[]{request, "purchase"}));
+        LOGGER.info("令牌桶限流切面每次调用开销：预拼接键 {}ns, 用户键 {}ns, SpEL键 {}ns",
+                String.format("%.0f", prebuiltNanos), String.format("%.0f", userNanos), String.format("%.0f", spelNanos));
+
+        assertTrue(prebuiltNanos < 5_000, "prebuilt=" + prebuiltNanos);
+        assertTrue(userNanos < 5_000, "user=" + userNanos);
+        assertTrue(spelNanos < 5_000, "spel=" + spelNanos);
+    }
+
+    private double measure(MethodInvocation invocation) throws Throwable {
+        for (int i = 0; i < 200_000; i++) {
+            aspect.invoke(invocation);
+        }
+        int iterations = 500_000;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            aspect.invoke(invocation);
+        }
+        return (double) (System.nanoTime() - start) / iterations;
+    }
+
+    /**
+     * 直接调用目标方法的 MethodInvocation，不经过代理和反射
+     */
+    private static class DirectInvocation implements MethodInvocation {
+
+        private final Object target;
+
+        private final Method method;
+
+        private final Object[] arguments;
+
+        private DirectInvocation(Object target, Method method, Object[] arguments) {
+            this.target = target;
+            this.method = method;
+            this.arguments = arguments;
+        }
+
+        @Override
+        public Method getMethod() {
+            return method;
+        }
+
+        @Override
+        public Object[] getArguments() {
+            return arguments;
+        }
+
+        @Override
+        public Object proceed() {
+            return "ok";
+        }
+
+        @Override
+        public Object getThis() {
+            return target;
+        }
+
+        @Override
+        public AccessibleObject getStaticPart() {
+            return method;
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package cn.monitor4all.miaoshaservice.service;
+
+import cn.monitor4all.miaoshaservice.service.impl.AdaptiveConcurrencyLimitServiceImpl;
+import cn.monitor4all.miaoshaservice.utils.ratelimit.AdaptiveConcurrencyLimiter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 自适应并发限制服务测试类
+ * 下游按处理器共享模型模拟：同时处理的请求不超过 capacity 个时每个请求耗时 serviceMs，
+ * 超过后所有请求平分处理能力、耗时按比例变长，即延迟曲线的拐点在 capacity 处，最大吞吐量为 capacity / serviceMs
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class AdaptiveConcurrencyLimitServiceTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AdaptiveConcurrencyLimitServiceTest.class);
+
+    // 客户端超时（毫秒），超时后即使完成也不算有效吞吐
+    private static final long CLIENT_TIMEOUT_MS = 1000;
+
+    @InjectMocks
+    private AdaptiveConcurrencyLimitServiceImpl adaptiveConcurrencyLimitService;
+
+    /**
+     * 按配置文件默认值创建限制器
+     */
+    private static AdaptiveConcurrencyLimiter newLimiter() {
+        return new AdaptiveConcurrencyLimiter(20, 4, 500, 1.5, 0.2, 0.9, 100, 10, 300);
+    }
+
+    /**
+     * 模拟的下游：处理器共享，所有请求耗时相同，按到达顺序完成
+     */
+    private static class Downstream {
+
+        private int capacity;
+
+        private double serviceMs;
+
+        // 虚拟时间：每个请求已获得的处理量（毫秒）
+        private double virtualMs;
+
+        // {完成时的虚拟时间, 到达时间}
+        private final ArrayDeque<double[]> inService = new ArrayDeque<>();
+
+        private Downstream(int capacity, double serviceMs) {
+            this.capacity = capacity;
+            this.serviceMs = serviceMs;
+        }
+    }
+
+    /**
+     * 模拟结果（只统计 measureFromMs 之后）
+     */
+    private static class Report {
+
+        private long arrived;
+
+        private long rejected;
+
+        private long completed;
+
+        private long goodput;
+
+        private double latencySumMs;
+
+        private double limitSum;
+
+        private long limitSamples;
+
+        private long durationMs;
+
+        double throughputPerMs() {
+            return (double) goodput / durationMs;
+        }
+
+        double avgLatencyMs() {
+            return completed == 0 ? Double.MAX_VALUE : latencySumMs / completed;
+        }
+
+        double avgLimit() {
+            return limitSamples == 0 ? 0 : limitSum / limitSamples;
+        }
+
+        double rejectRatio() {
+            return arrived == 0 ? 0 : (double) rejected / arrived;
+        }
+    }
+
+    /**
+     * 以每毫秒 arrivalsPerMs 个请求的速率（开环，客户端不因拒绝减少请求）运行 durationMs 毫秒
+     * @param limiter 为null时不限制
+     */
+    private Report simulate(String scenario, AdaptiveConcurrencyLimiter limiter, Downstream downstream,
+                            double arrivalsPerMs, long startMs, long durationMs, long measureFromMs) {
+        Report report = new Report();
+        double arrivalCredit = 0;
+        for (long now = startMs; now < startMs + durationMs; now++) {
+            boolean measuring = now >= measureFromMs;
+            arrivalCredit += arrivalsPerMs;
+            while (arrivalCredit >= 1) {
+                arrivalCredit -= 1;
+                report.arrived += measuring ? 1 : 0;
+                if (limiter != null && !limiter.tryAcquire()) {
+                    report.rejected += measuring ? 1 : 0;
+                    continue;
+                }
+                downstream.inService.addLast(new double[]{downstream.virtualMs + downstream.serviceMs, now});
+            }
+
+            int inflight = downstream.inService.size();
+            if (inflight > 0) {
+                downstream.virtualMs += Math.min(1.0, (double) downstream.capacity / inflight);
+            }
+            long completedAt = now + 1;
+            while (!downstream.inService.isEmpty() && downstream.inService.peekFirst()[0] <= downstream.virtualMs + 1e-9) {
+                double[] request = downstream.inService.pollFirst();
+                long latencyMs = completedAt - (long) request[1];
+                if (limiter != null) {
+                    limiter.onComplete(latencyMs * 1_000_000L, false, completedAt * 1_000_000L);
+                }
+                if (measuring) {
+                    report.completed++;
+                    report.latencySumMs += latencyMs;
+                    report.goodput += latencyMs <= CLIENT_TIMEOUT_MS ? 1 : 0;
+                }
+            }
+            if (measuring && limiter != null) {
+                report.limitSum += limiter.getLimit();
+                report.limitSamples++;
+            }
+        }
+        report.durationMs = startMs + durationMs - Math.max(startMs, measureFromMs);
+        LOGGER.info("自适应并发限制模拟 [{}] 到达: {}, 拒绝比例: {}, 有效吞吐: {}/ms, 平均响应时间: {}ms, 平均限制: {}",
+                scenario, report.arrived, String.format("%.3f", report.rejectRatio()),
+                String.format("%.2f", report.throughputPerMs()), String.format("%.1f", report.avgLatencyMs()),
+                String.format("%.1f", report.avgLimit()));
+        return report;
+    }
+
+    @Test
+    void testOverloadStaysNearKneeInsteadOfCollapsing() {
+        // 拐点40并发、10ms，最大吞吐量 4/ms；到达速率为其2倍
+        Downstream limited = new Downstream(40, 10);
+        Report withLimiter = simulate("2倍超载-自适应限制", newLimiter(), limited, 8, 0, 60_000, 10_000);
+        Report without = simulate("2倍超载-不限制", null, new Downstream(40, 10), 8, 0, 20_000, 10_000);
+
+        // 吞吐量接近下游最大吞吐量，响应时间不超过无负载时的2倍，多余的请求被直接拒绝
+        assertTrue(withLimiter.throughputPerMs() >= 0.95 * 4, "throughput=" + withLimiter.throughputPerMs());
+        assertTrue(withLimiter.avgLatencyMs() <= 2 * 10, "latency=" + withLimiter.avgLatencyMs());
+        assertTrue(withLimiter.avgLimit() >= 40 && withLimiter.avgLimit() <= 2.5 * 40, "limit=" + withLimiter.avgLimit());
+        assertEquals(0.5, withLimiter.rejectRatio(), 0.05);
+
+        // 不限制时所有请求排队，响应时间超过客户端超时，有效吞吐崩溃
+        assertTrue(without.avgLatencyMs() > CLIENT_TIMEOUT_MS, "latency=" + without.avgLatencyMs());
+        assertTrue(without.throughputPerMs() < 0.1 * 4, "throughput=" + without.throughputPerMs());
+    }
+
+    @Test
+    void testBelowCapacityNothingIsRejected() {
+        // 到达速率为最大吞吐量的一半，需要约20并发，与初始限制相同
+        Report report = simulate("0.5倍负载", newLimiter(), new Downstream(40, 10), 2, 0, 30_000, 1_000);
+
+        assertEquals(0, report.rejected);
+        assertEquals(10.0, report.avgLatencyMs(), 0.5);
+        assertEquals(2.0, report.throughputPerMs(), 0.01);
+    }
+
+    @Test
+    void testLimitFollowsDownstreamCapacityDrop() {
+        AdaptiveConcurrencyLimiter limiter = newLimiter();
+        Downstream downstream = new Downstream(40, 10);
+        simulate("容量下降前", limiter, downstream, 8, 0, 20_000, 0);
+        int before = limiter.getLimit();
+
+        // 下游只剩一半处理能力（例如数据库连接被其他业务占用），最大吞吐量变为 2/ms
+        downstream.capacity = 20;
+        Report report = simulate("容量下降后", limiter, downstream, 8, 20_000, 40_000, 25_000);
+
+        assertTrue(report.avgLimit() < before * 0.75, "before=" + before + ", after=" + report.avgLimit());
+        assertTrue(report.throughputPerMs() >= 0.95 * 2, "throughput=" + report.throughputPerMs());
+        assertTrue(report.avgLatencyMs() <= 2 * 10, "latency=" + report.avgLatencyMs());
+    }
+
+    @Test
+    void testProbeRelearnsSlowerNoLoadLatency() {
+        AdaptiveConcurrencyLimiter limiter = newLimiter();
+        Downstream downstream = new Downstream(40, 10);
+        simulate("变慢前", limiter, downstream, 8, 0, 30_000, 0);
+
+        // 下游每个请求的耗时翻倍，最大吞吐量变为 2/ms；
+        // 探测前仍以10ms为基准，限制偏低，探测（每300个窗口）后以20ms为新基准恢复
+        downstream.serviceMs = 20;
+        Report report = simulate("变慢后", limiter, downstream, 8, 30_000, 90_000, 90_000);
+
+        assertEquals(20.0, limiter.getNoLoadRttMs(), 5.0);
+        assertTrue(report.throughputPerMs() >= 0.9 * 2, "throughput=" + report.throughputPerMs());
+        assertTrue(report.avgLatencyMs() <= 2 * 20, "latency=" + report.avgLatencyMs());
+    }
+
+    @Test
+    void testDroppedRequestsBackOff() {
+        AdaptiveConcurrencyLimiter limiter = newLimiter();
+        long now = 0;
+        // 响应时间不变但窗口内有请求失败，限制持续收缩到最小值
+        for (int window = 0; window < 200; window++) {
+            now += 100_000_000L;
+            for (int i = 0; i < 20; i++) {
+                if (limiter.tryAcquire()) {
+                    limiter.onComplete(10_000_000L, i == 0, now);
+                }
+            }
+        }
+        assertEquals(4, limiter.getLimit());
+        assertTrue(limiter.getDroppedCount() > 0);
+    }
+
+    @Test
+    void testModesAreLimitedIndependently() {
+        ReflectionTestUtils.setField(adaptiveConcurrencyLimitService, "initialLimit", 5);
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(adaptiveConcurrencyLimitService.tryAcquire("purchaseTicket"));
+        }
+        // 一种购票方式的并发已满，不影响其他购票方式
+        assertFalse(adaptiveConcurrencyLimitService.tryAcquire("purchaseTicket"));
+        assertTrue(adaptiveConcurrencyLimitService.tryAcquire("purchaseTicketWithOptimistic"));
+
+        adaptiveConcurrencyLimitService.onComplete("purchaseTicket", System.nanoTime(), false);
+        assertTrue(adaptiveConcurrencyLimitService.tryAcquire("purchaseTicket"));
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> modes = (Map<String, Object>) adaptiveConcurrencyLimitService.getStatistics().get("modes");
+        @SuppressWarnings("unchecked")
+        Map<String, Object> purchase = (Map<String, Object>) modes.get("purchaseTicket");
+        assertEquals(2, modes.size());
+        assertEquals(5, purchase.get("inflight"));
+        assertEquals(1L, purchase.get("rejectedCount"));
+    }
+
+    @Test
+    void testDisabledAlwaysAllows() {
+        ReflectionTestUtils.setField(adaptiveConcurrencyLimitService, "enabled", false);
+        ReflectionTestUtils.setField(adaptiveConcurrencyLimitService, "initialLimit", 1);
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(adaptiveConcurrencyLimitService.tryAcquire("purchaseTicket"));
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, Object> modes = (Map<String, Object>) adaptiveConcurrencyLimitService.getStatistics().get("modes");
+        assertTrue(modes.isEmpty());
+    }
+}
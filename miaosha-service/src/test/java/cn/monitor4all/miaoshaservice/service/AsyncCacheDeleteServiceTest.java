@@ -0,0 +1,62 @@
+package cn.monitor4all.miaoshaservice.service;
+
+import cn.monitor4all.miaoshaservice.service.impl.AsyncCacheDeleteServiceImpl;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.amqp.core.AmqpTemplate;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 异步缓存删除服务单元测试类
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class AsyncCacheDeleteServiceTest {
+
+    private static final String CACHE_KEY = "ticket:2025-01-15";
+
+    @Mock
+    private AmqpTemplate amqpTemplate;
+
+    @Mock
+    private CacheInvalidationService cacheInvalidationService;
+
+    @InjectMocks
+    private AsyncCacheDeleteServiceImpl asyncCacheDeleteService;
+
+    @Test
+    void testDeleteCacheAsync_RejectedFallsBackToQueue() {
+        when(cacheInvalidationService.invalidate(CACHE_KEY, 0)).thenReturn(false);
+
+        asyncCacheDeleteService.deleteCacheAsync(CACHE_KEY);
+
+        verify(amqpTemplate, times(1)).convertAndSend(anyString(), anyString(), anyString());
+    }
+
+    @Test
+    void testDeleteCacheDualAsync_AcceptedSendsOneQueueMessage() {
+        when(cacheInvalidationService.invalidate(CACHE_KEY, 0)).thenReturn(true);
+
+        asyncCacheDeleteService.deleteCacheDualAsync(CACHE_KEY);
+
+        verify(cacheInvalidationService, times(1)).invalidate(CACHE_KEY, 0);
+        verify(amqpTemplate, times(1)).convertAndSend(anyString(), anyString(), anyString());
+    }
+
+    @Test
+    void testDeleteCacheDualAsync_RejectedStillSendsOneQueueMessage() {
+        when(cacheInvalidationService.invalidate(CACHE_KEY, 0)).thenReturn(false);
+
+        asyncCacheDeleteService.deleteCacheDualAsync(CACHE_KEY);
+
+        // 分发服务拒绝时不再单独兜底，只有双重保障的一条队列消息
+        verify(amqpTemplate, times(1)).convertAndSend(anyString(), anyString(), anyString());
+    }
+}
@@ -0,0 +1,167 @@
+package cn.monitor4all.miaoshaservice.service;
+
+import cn.monitor4all.miaoshaservice.service.impl.CacheInvalidationServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 缓存失效分发服务测试类
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class CacheInvalidationServiceTest {
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @InjectMocks
+    private CacheInvalidationServiceImpl cacheInvalidationService;
+
+    private final List<List<String>> unlinkedBatches = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(cacheInvalidationService, "tickMs", 5L);
+        ReflectionTestUtils.setField(cacheInvalidationService, "wheelSize", 16);
+        ReflectionTestUtils.setField(cacheInvalidationService, "flushIntervalMs", 50L);
+        ReflectionTestUtils.setField(cacheInvalidationService, "coalesceWindowMs", 50L);
+        ReflectionTestUtils.setField(cacheInvalidationService, "batchSize", 100);
+        ReflectionTestUtils.setField(cacheInvalidationService, "maxOutstanding", 100);
+        when(stringRedisTemplate.unlink(anyCollection())).thenAnswer(invocation -> {
+            Collection<String> keys = invocation.getArgument(0);
+            unlinkedBatches.add(new ArrayList<>(keys));
+            return (long) keys.size();
+        });
+        cacheInvalidationService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        cacheInvalidationService.destroy();
+    }
+
+    /**
+     * 统计在UNLINK返回后才更新，轮询等待
+     */
+    private Object awaitStat(String name, Object expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 1000;
+        Object value = cacheInvalidationService.getStatistics().get(name);
+        while (!expected.equals(value) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+            value = cacheInvalidationService.getStatistics().get(name);
+        }
+        return value;
+    }
+
+    /**
+     * verify(timeout) 在调用记录后即返回，此时mock的应答可能还没有记录批次，轮询等待
+     */
+    private List<String> firstUnlinkedBatch() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 1000;
+        while (unlinkedBatches.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        return unlinkedBatches.get(0);
+    }
+
+    @Test
+    void testInvalidate_DuplicatesCoalescedIntoOneUnlink() throws InterruptedException {
+        for (int i = 0; i < 10; i++) {
+            assertTrue(cacheInvalidationService.invalidate("ticket:2025-01-15"));
+        }
+        assertTrue(cacheInvalidationService.invalidate("ticket:2025-01-16"));
+
+        verify(stringRedisTemplate, timeout(1000).times(1)).unlink(anyCollection());
+        assertEquals(new HashSet<>(Arrays.asList("ticket:2025-01-15", "ticket:2025-01-16")), new HashSet<>(firstUnlinkedBatch()));
+        verify(stringRedisTemplate, never()).delete(anyString());
+
+        assertEquals(2L, awaitStat("flushedKeyCount", 2L));
+        assertEquals(9L, cacheInvalidationService.getStatistics().get("coalescedCount"));
+    }
+
+    @Test
+    void testInvalidateAll_OneRoundTrip() throws InterruptedException {
+        List<String> keys = Arrays.asList("a", "b", "c", "d");
+
+        assertTrue(cacheInvalidationService.invalidateAll(keys).isEmpty());
+
+        verify(stringRedisTemplate, timeout(1000).times(1)).unlink(anyCollection());
+        assertEquals(new HashSet<>(keys), new HashSet<>(firstUnlinkedBatch()));
+    }
+
+    @Test
+    void testDelayedInvalidate_FiresFromWheelAfterDelay() throws InterruptedException {
+        long start = System.currentTimeMillis();
+        assertTrue(cacheInvalidationService.invalidate("user_has_order_1", 200));
+        // 已调度的删除不早于本次要求的时间，不重复调度
+        assertTrue(cacheInvalidationService.invalidate("user_has_order_1", 150));
+
+        Thread.sleep(100);
+        verify(stringRedisTemplate, never()).unlink(anyCollection());
+
+        verify(stringRedisTemplate, timeout(2000).times(1)).unlink(anyCollection());
+        assertTrue(System.currentTimeMillis() - start >= 200);
+        assertEquals(Collections.singletonList("user_has_order_1"), firstUnlinkedBatch());
+
+        assertEquals(1L, cacheInvalidationService.getStatistics().get("scheduledCount"));
+        assertEquals(1L, awaitStat("firedCount", 1L));
+    }
+
+    @Test
+    void testDelayedInvalidate_LongerThanOneWheelRotation() {
+        // 一圈 5ms * 16 = 80ms，延迟300ms需要转多圈
+        long start = System.currentTimeMillis();
+        assertTrue(cacheInvalidationService.invalidate("k", 300));
+
+        verify(stringRedisTemplate, timeout(2000).times(1)).unlink(anyCollection());
+        assertTrue(System.currentTimeMillis() - start >= 300);
+    }
+
+    @Test
+    void testBackpressure_RejectsWhenOutstandingFull() {
+        ReflectionTestUtils.setField(cacheInvalidationService, "maxOutstanding", 3);
+        ReflectionTestUtils.setField(cacheInvalidationService, "flushIntervalMs", 60000L);
+
+        List<String> rejected = cacheInvalidationService.invalidateAll(Arrays.asList("k1", "k2", "k3", "k4", "k5"));
+
+        assertEquals(Arrays.asList("k4", "k5"), rejected);
+        Map<String, Object> stats = cacheInvalidationService.getStatistics();
+        assertEquals(2L, stats.get("rejectedCount"));
+        assertEquals(3L, stats.get("maxOutstandingSeen"));
+    }
+
+    @Test
+    void testUnlinkFailure_KeysRetriedOnNextFlush() throws InterruptedException {
+        reset(stringRedisTemplate);
+        when(stringRedisTemplate.unlink(anyCollection()))
+                .thenThrow(new RuntimeException("Redis不可用"))
+                .thenReturn(1L);
+
+        cacheInvalidationService.invalidate("k");
+
+        verify(stringRedisTemplate, timeout(1000).times(2)).unlink(anyCollection());
+        assertEquals(0, awaitStat("outstanding", 0));
+        assertEquals(1L, cacheInvalidationService.getStatistics().get("flushFailureCount"));
+    }
+}
@@ -0,0 +1,190 @@
+package cn.monitor4all.miaoshaservice.service;
+
+import cn.monitor4all.miaoshaservice.service.impl.CacheLoadingServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 缓存加载服务测试类
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class CacheLoadingServiceTest {
+
+    private static final String KEY = "ticket:2025-01-15";
+
+    private static final long TTL_SECONDS = 3600L;
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @InjectMocks
+    private CacheLoadingServiceImpl cacheLoadingService;
+
+    @BeforeEach
+    void setUp() {
+        cacheLoadingService.init();
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(eq(KEY + ":loading"), anyString(), anyLong(), eq(TimeUnit.MILLISECONDS))).thenReturn(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        cacheLoadingService.destroy();
+    }
+
+    @Test
+    void testGetOrLoad_HitSkipsLoader() {
+        mockCached(Arrays.asList("cached", TTL_SECONDS * 1000L));
+
+        String value = cacheLoadingService.getOrLoad(KEY, TTL_SECONDS, () -> {
+            fail("命中缓存时不应回源");
+            return null;
+        });
+
+        assertEquals("cached", value);
+        assertEquals(0L, cacheLoadingService.getStatistics().get("loadCount"));
+    }
+
+    @Test
+    void testGetOrLoad_MissLoadsWithJitteredTtlAndReleasesLease() {
+        mockCached(Collections.emptyList());
+
+        String value = cacheLoadingService.getOrLoad(KEY, TTL_SECONDS, () -> "loaded");
+
+        assertEquals("loaded", value);
+        ArgumentCaptor<Long> ttlCaptor = ArgumentCaptor.forClass(Long.class);
+        verify(valueOperations).set(eq(KEY), eq("loaded"), ttlCaptor.capture(), eq(TimeUnit.SECONDS));
+        assertTrue(ttlCaptor.getValue() >= TTL_SECONDS && ttlCaptor.getValue() <= TTL_SECONDS + TTL_SECONDS / 10);
+        verify(stringRedisTemplate).execute(any(RedisScript.class), eq(Collections.singletonList(KEY + ":loading")), anyString());
+    }
+
+    @Test
+    void testGetOrLoad_ConcurrentMissesShareOneLoad() throws Exception {
+        mockCached(Collections.emptyList());
+        CountDownLatch loaderStarted = new CountDownLatch(1);
+        CountDownLatch releaseLoader = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger(0);
+
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            futures.add(executor.submit(() -> cacheLoadingService.getOrLoad(KEY, TTL_SECONDS, () -> {
+                loads.incrementAndGet();
+                loaderStarted.countDown();
+                awaitQuietly(releaseLoader);
+                return "loaded";
+            })));
+            assertTrue(loaderStarted.await(1, TimeUnit.SECONDS));
+            for (int i = 0; i < 4; i++) {
+                futures.add(executor.submit(() -> cacheLoadingService.getOrLoad(KEY, TTL_SECONDS, () -> {
+                    loads.incrementAndGet();
+                    return "loaded";
+                })));
+            }
+            waitForCoalesced(4);
+            releaseLoader.countDown();
+
+            for (Future<String> future : futures) {
+                assertEquals("loaded", future.get(1, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void testGetOrLoad_LeaseHeldByOtherNodeWaitsForCache() {
+        mockCached(Collections.emptyList());
+        when(valueOperations.setIfAbsent(eq(KEY + ":loading"), anyString(), anyLong(), eq(TimeUnit.MILLISECONDS))).thenReturn(false);
+        when(valueOperations.get(KEY)).thenReturn(null, "loadedByOtherNode");
+
+        String value = cacheLoadingService.getOrLoad(KEY, TTL_SECONDS, () -> {
+            fail("其他节点持有租约时不应回源");
+            return null;
+        });
+
+        assertEquals("loadedByOtherNode", value);
+        assertEquals(1L, cacheLoadingService.getStatistics().get("leaseWaitHitCount"));
+    }
+
+    @Test
+    void testGetOrLoad_NearExpiryServesCurrentValueAndRefreshes() {
+        mockCached(Arrays.asList("stale", 1000L));
+
+        String value = cacheLoadingService.getOrLoad(KEY, TTL_SECONDS, () -> "fresh");
+
+        assertEquals("stale", value);
+        verify(valueOperations, timeout(1000)).set(eq(KEY), eq("fresh"), anyLong(), eq(TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testGetOrLoad_RedisFailureFallsBackToLoader() {
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList())).thenThrow(new RuntimeException("redis down"));
+
+        String value = cacheLoadingService.getOrLoad(KEY, TTL_SECONDS, () -> "loaded");
+
+        assertEquals("loaded", value);
+        assertEquals(1L, cacheLoadingService.getStatistics().get("redisErrorCount"));
+    }
+
+    @Test
+    void testGetOrLoad_MissingDataNotCached() {
+        mockCached(Collections.emptyList());
+
+        assertNull(cacheLoadingService.getOrLoad(KEY, TTL_SECONDS, () -> null));
+
+        verify(valueOperations, never()).set(anyString(), anyString(), anyLong(), any(TimeUnit.class));
+    }
+
+    private void mockCached(List<Object> result) {
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList())).thenReturn(result);
+    }
+
+    private void waitForCoalesced(long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 1000;
+        while ((long) cacheLoadingService.getStatistics().get("coalescedCount") < expected
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package cn.monitor4all.miaoshaservice.service;
+
+import cn.monitor4all.miaoshaservice.service.impl.DistributedRateLimitServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 分布式限流服务测试类
+ * 测试环境没有Redis和Lua运行时，以Java按 rate_limit.lua 相同的运算模拟脚本，时间由测试控制；
+ * 准确性与逐条记录请求时间的精确滑动窗口（原ZSET实现）对比
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class DistributedRateLimitServiceTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DistributedRateLimitServiceTest.class);
+
+    private static final String KEY = "purchase";
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private HashOperations<String, Object, Object> hashOperations;
+
+    @InjectMocks
+    private DistributedRateLimitServiceImpl rateLimitService;
+
+    // 模拟的Redis时间（毫秒）
+    private long nowMs;
+
+    private final Map<String, Map<String, Long>> hashes = new HashMap<>();
+
+    private final List<List<String>> calls = new ArrayList<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        rateLimitService.init();
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), anyString(), anyString()))
+                .thenAnswer(invocation -> {
+                    String key = ((List<String>) invocation.getArgument(1)).get(0);
+                    calls.add(Arrays.asList(key, invocation.getArgument(2), invocation.getArgument(3)));
+                    return slidingWindowScript(key, Integer.parseInt(invocation.getArgument(2)), Long.parseLong(invocation.getArgument(3)));
+                });
+        when(stringRedisTemplate.opsForHash()).thenReturn((HashOperations) hashOperations);
+        when(hashOperations.multiGet(anyString(), anyCollection())).thenAnswer(invocation -> {
+            Map<String, Long> hash = hashes.getOrDefault(invocation.<String>getArgument(0), new HashMap<>());
+            List<Object> values = new ArrayList<>();
+            for (Object field : invocation.<Collection<Object>>getArgument(1)) {
+                Long value = hash.get(field.toString());
+                values.add(value == null ? null : value.toString());
+            }
+            return values;
+        });
+    }
+
+    /**
+     * rate_limit.lua
+     */
+    private List<Object> slidingWindowScript(String key, int limit, long windowSeconds) {
+        long size = windowSeconds * 1000;
+        long index = nowMs / size;
+        double elapsed = (double) (nowMs - index * size) / size;
+
+        Map<String, Long> hash = hashes.get(key);
+        long current = hash == null ? 0 : hash.get("c");
+        long previous = hash == null ? 0 : hash.get("p");
+        Long stored = hash == null ? null : hash.get("w");
+        if (stored == null || stored != index) {
+            previous = stored != null && stored == index - 1 ? current : 0;
+            current = 0;
+        }
+        double estimate = previous * (1 - elapsed) + current;
+
+        long granted = 0;
+        double wait = 0;
+        if (estimate + 1 > limit) {
+            if (current + 1 <= limit && previous > 0) {
+                wait = ((1 - (double) (limit - current - 1) / previous) - elapsed) * size;
+            } else {
+                double weight = current > 0 ? Math.max(0, 1 - (double) (limit - 1) / current) : 0;
+                wait = (1 - elapsed + weight) * size;
+            }
+        } else {
+            granted = 1;
+            current++;
+        }
+        Map<String, Long> updated = new HashMap<>();
+        updated.put("w", index);
+        updated.put("c", current);
+        updated.put("p", previous);
+        updated.put("l", (long) limit);
+        updated.put("s", size);
+        hashes.put(key, updated);
+        return Arrays.asList(granted, (long) Math.floor(granted == 1 ? estimate + 1 : estimate),
+                granted == 1 ? 0L : Math.max(1, (long) Math.ceil(wait)));
+    }
+
+    /**
+     * 精确滑动窗口（原ZSET请求日志）：记录每个放行请求的时间，统计 (now - window, now] 内的放行数
+     */
+    private static class ExactLog {
+
+        private final ArrayDeque<Long> admitted = new ArrayDeque<>();
+
+        private final int limit;
+
+        private final long sizeMs;
+
+        private ExactLog(int limit, long sizeMs) {
+            this.limit = limit;
+            this.sizeMs = sizeMs;
+        }
+
+        private boolean tryAcquire(long now) {
+            while (!admitted.isEmpty() && admitted.peekFirst() <= now - sizeMs) {
+                admitted.pollFirst();
+            }
+            if (admitted.size() >= limit) {
+                return false;
+            }
+            admitted.addLast(now);
+            return true;
+        }
+    }
+
+    /**
+     * 同一请求序列分别交给滑动窗口计数器和精确滑动窗口，统计两者的放行数，
+     * 以及滑动窗口计数器在任意长度为一个窗口的时间段内的最大放行数；
+     * 稳态指标从第一个请求起两个窗口之后开始统计，排除从窗口中间开始、首个窗口计数不均匀带来的过渡期
+     */
+    private Map<String, Double> compare(String scenario, long[] requestTimes, int limit, int windowSeconds) {
+        long sizeMs = windowSeconds * 1000L;
+        long steadyFrom = requestTimes[0] + 2 * sizeMs;
+        ExactLog exact = new ExactLog(limit, sizeMs);
+        ArrayDeque<Long> admittedTimes = new ArrayDeque<>();
+        long approxAdmitted = 0;
+        long exactAdmitted = 0;
+        long steadyApprox = 0;
+        long steadyExact = 0;
+        long maxInWindow = 0;
+        long steadyMaxInWindow = 0;
+        hashes.clear();
+        for (long time : requestTimes) {
+            nowMs = time;
+            boolean approx = rateLimitService.tryAcquire(KEY, limit, windowSeconds);
+            boolean precise = exact.tryAcquire(time);
+            if (approx) {
+                approxAdmitted++;
+                admittedTimes.addLast(time);
+            }
+            if (precise) {
+                exactAdmitted++;
+            }
+            while (!admittedTimes.isEmpty() && admittedTimes.peekFirst() <= time - sizeMs) {
+                admittedTimes.pollFirst();
+            }
+            maxInWindow = Math.max(maxInWindow, admittedTimes.size());
+            if (time >= steadyFrom) {
+                steadyApprox += approx ? 1 : 0;
+                steadyExact += precise ? 1 : 0;
+                steadyMaxInWindow = Math.max(steadyMaxInWindow, admittedTimes.size());
+            }
+        }
+
+        Map<String, Double> report = new HashMap<>();
+        report.put("admittedRatio", (double) approxAdmitted / exactAdmitted);
+        report.put("maxInWindowRatio", (double) maxInWindow / limit);
+        report.put("steadyAdmittedRatio", steadyExact == 0 ? 1.0 : (double) steadyApprox / steadyExact);
+        report.put("steadyMaxInWindowRatio", (double) steadyMaxInWindow / limit);
+        LOGGER.info("滑动窗口计数器准确性 [{}] 请求: {}, 限额: {}/{}s, 放行: {} (精确: {}, 比例: {}), 任意窗口最大放行: {}; 稳态放行比例: {}, 稳态任意窗口最大放行: {}",
+                scenario, requestTimes.length, limit, windowSeconds, approxAdmitted, exactAdmitted,
+                String.format("%.3f", report.get("admittedRatio")), maxInWindow,
+                String.format("%.3f", report.get("steadyAdmittedRatio")), steadyMaxInWindow);
+        return report;
+    }
+
+    private static long[] poisson(Random random, double perSecond, long startMs, long durationMs) {
+        List<Long> times = new ArrayList<>();
+        double t = 0;
+        while (true) {
+            t += -Math.log(1 - random.nextDouble()) * 1000 / perSecond;
+            if (t >= durationMs) {
+                break;
+            }
+            times.add(startMs + (long) t);
+        }
+        return times.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    @Test
+    void testAccuracyAgainstExactLog() {
+        Random random = new Random(42);
+        // 从窗口中间开始
+        long start = 1_700_000_000_000L;
+
+        // 低于限额时两者一致
+        Map<String, Double> under = compare("泊松 0.5×限额", poisson(random, 5, start, 600_000), 600, 60);
+        assertEquals(1.0, under.get("admittedRatio"), 1e-9);
+        assertTrue(under.get("maxInWindowRatio") <= 1.0, "report=" + under);
+
+        // 持续超限：稳态放行数与精确滑动窗口相差不超过2%，任意窗口不超过限额的2%
+        for (double multiple : new double[]{1.2, 2, 10}) {
+            Map<String, Double> over = compare("泊松 " + multiple + "×限额", poisson(random, 10 * multiple, start, 600_000), 600, 60);
+            assertEquals(1.0, over.get("steadyAdmittedRatio"), 0.02, "report=" + over);
+            assertTrue(over.get("steadyMaxInWindowRatio") <= 1.02, "report=" + over);
+            // 过渡期：首个窗口的请求集中在后半段，下一窗口按均匀分布估算，最多多放行约半个限额
+            assertTrue(over.get("maxInWindowRatio") <= 1.5, "report=" + over);
+        }
+    }
+
+    @Test
+    void testBurstAtWindowEndIsTheWorstCase() {
+        // 最坏情况：上一窗口的请求全部集中在末尾，估算假设其均匀分布，下一窗口持续超限时接近2倍限额
+        long start = 1_700_000_040_000L;
+        long[] times = new long[1000 + 6000];
+        for (int i = 0; i < 1000; i++) {
+            // 窗口最后1秒内1000个请求
+            times[i] = start + 59_000 + i;
+        }
+        for (int i = 0; i < 6000; i++) {
+            // 下一窗口起每10毫秒一个请求
+            times[1000 + i] = start + 60_000 + i * 10L;
+        }
+        Map<String, Double> report = compare("窗口末尾突发后持续超限", times, 100, 60);
+        assertTrue(report.get("maxInWindowRatio") > 1.5 && report.get("maxInWindowRatio") <= 2.0, "report=" + report);
+    }
+
+    @Test
+    void testConstantMemoryPerKey() {
+        nowMs = 1_700_000_000_000L;
+        for (int i = 0; i < 100_000; i++) {
+            nowMs += 1;
+            rateLimitService.tryAcquire(KEY, 50_000, 60);
+        }
+        // 无论放行多少请求，每个限流键只有一个5个字段的哈希
+        assertEquals(1, hashes.size());
+        assertEquals(5, hashes.get("rate_limit:sw:" + KEY).size());
+    }
+
+    @Test
+    void testRejectsAtLimitAndRecoversAsPreviousWindowSlidesOut() {
+        nowMs = 600_000;
+        for (int i = 0; i < 10; i++) {
+            assertTrue(rateLimitService.tryAcquire(KEY, 10, 60));
+        }
+        assertFalse(rateLimitService.tryAcquire(KEY, 10, 60));
+        // 脚本参数只有限流次数和窗口，时间由Redis TIME提供
+        assertEquals(Arrays.asList("rate_limit:sw:" + KEY, "10", "60"), calls.get(0));
+
+        // 下一窗口开始时上一窗口计数权重为1，仍然限流；过去10%后权重0.9，估算9，放行1个
+        nowMs = 660_000;
+        assertFalse(rateLimitService.tryAcquire(KEY, 10, 60));
+        nowMs = 666_000;
+        assertTrue(rateLimitService.tryAcquire(KEY, 10, 60));
+        assertFalse(rateLimitService.tryAcquire(KEY, 10, 60));
+
+        // 两个窗口后计数全部清零
+        nowMs = 780_000;
+        for (int i = 0; i < 10; i++) {
+            assertTrue(rateLimitService.tryAcquire(KEY, 10, 60));
+        }
+    }
+
+    @Test
+    void testRateLimitInfoReadsWindowState() {
+        nowMs = System.currentTimeMillis();
+        for (int i = 0; i < 4; i++) {
+            rateLimitService.tryAcquire(KEY, 10, 60);
+        }
+
+        DistributedRateLimitService.RateLimitInfo info = rateLimitService.getRateLimitInfo(KEY);
+        assertEquals(10, info.getLimit());
+        assertEquals(60, info.getWindow());
+        assertEquals(6, info.getRemainingTokens());
+        assertEquals(4, rateLimitService.getCurrentTokens(KEY));
+        assertEquals(0, rateLimitService.getRateLimitInfo("unknown").getLimit());
+    }
+}
@@ -0,0 +1,292 @@
+package cn.monitor4all.miaoshaservice.service;
+
+import cn.monitor4all.miaoshaservice.service.DistributedTokenBucketService.Algorithm;
+import cn.monitor4all.miaoshaservice.service.impl.DistributedTokenBucketServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 分布式令牌桶算法测试类
+ * 测试环境没有Redis和Lua运行时，以Java按脚本相同的运算模拟三个脚本，时间由测试控制
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class DistributedTokenBucketAlgorithmTest {
+
+    private static final String KEY = "purchase";
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @InjectMocks
+    private DistributedTokenBucketServiceImpl tokenBucketService;
+
+    // 模拟的Redis时间（微秒）
+    private long nowMicros;
+
+    private final Map<String, Map<String, Double>> hashes = new HashMap<>();
+
+    private final Map<String, Double> values = new HashMap<>();
+
+    private final List<List<String>> calls = new ArrayList<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        tokenBucketService.init();
+
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), anyString(), anyString(), anyString(), anyString()))
+                .thenAnswer(invocation -> {
+                    Object script = invocation.getArgument(0);
+                    String key = ((List<String>) invocation.getArgument(1)).get(0);
+                    String[] argv = {invocation.getArgument(2), invocation.getArgument(3), invocation.getArgument(4), invocation.getArgument(5)};
+                    List<String> call = new ArrayList<>();
+                    call.add(key);
+                    call.addAll(Arrays.asList(argv));
+                    calls.add(call);
+                    // init 会重新加载脚本，每次调用时按当前字段区分
+                    if (script == ReflectionTestUtils.getField(tokenBucketService, "tokenBucketScript")) {
+                        return classicScript(key, argv);
+                    }
+                    if (script == ReflectionTestUtils.getField(tokenBucketService, "preciseScript")) {
+                        return preciseScript(key, argv);
+                    }
+                    if (script == ReflectionTestUtils.getField(tokenBucketService, "gcraScript")) {
+                        return gcraScript(key, argv);
+                    }
+                    throw new IllegalStateException("未知脚本");
+                });
+    }
+
+    /**
+     * token_bucket.lua；客户端传入的秒级时间戳替换为模拟时间
+     */
+    private List<Object> classicScript(String key, String[] argv) {
+        double capacity = Double.parseDouble(argv[0]);
+        double rate = Double.parseDouble(argv[1]);
+        long now = nowMicros / 1_000_000;
+        double tokens = Double.parseDouble(argv[3]);
+
+        Map<String, Double> bucket = hashes.get(key);
+        double currentTokens = bucket == null ? capacity : bucket.get("tokens");
+        double lastRefillTime = bucket == null ? now : bucket.get("lastRefillTime");
+        currentTokens = Math.min(capacity, currentTokens + Math.floor((now - lastRefillTime) * rate));
+        if (currentTokens < tokens) {
+            return Arrays.asList(0L, (long) currentTokens, now + (long) Math.ceil((tokens - currentTokens) / rate));
+        }
+        currentTokens -= tokens;
+        Map<String, Double> updated = new HashMap<>();
+        updated.put("tokens", currentTokens);
+        updated.put("lastRefillTime", (double) now);
+        hashes.put(key, updated);
+        return Arrays.asList(1L, (long) currentTokens, now + (long) Math.ceil((capacity - currentTokens) / rate));
+    }
+
+    /**
+     * token_bucket_precise.lua
+     */
+    private List<Object> preciseScript(String key, String[] argv) {
+        double capacity = Double.parseDouble(argv[0]);
+        double rate = Double.parseDouble(argv[1]);
+        double requested = Double.parseDouble(argv[2]);
+        boolean partial = "1".equals(argv[3]);
+
+        Map<String, Double> bucket = hashes.get(key);
+        double tokens = bucket == null ? capacity : bucket.get("tokens");
+        double ts = bucket == null ? nowMicros : bucket.get("ts");
+        if (nowMicros > ts) {
+            tokens = Math.min(capacity, tokens + (nowMicros - ts) * rate / 1_000_000);
+            ts = nowMicros;
+        }
+        double granted = requested;
+        if (tokens < requested) {
+            granted = partial ? Math.floor(tokens) : 0;
+        }
+        tokens -= granted;
+        Map<String, Double> updated = new HashMap<>();
+        updated.put("tokens", tokens);
+        updated.put("ts", ts);
+        hashes.put(key, updated);
+
+        long wait = 0;
+        if (granted == 0) {
+            double needed = partial ? 1 : requested;
+            wait = (long) Math.ceil((needed - tokens) / rate * 1_000_000);
+        }
+        return Arrays.asList((long) granted, (long) Math.floor(tokens), wait);
+    }
+
+    /**
+     * gcra.lua
+     */
+    private List<Object> gcraScript(String key, String[] argv) {
+        double capacity = Double.parseDouble(argv[0]);
+        double rate = Double.parseDouble(argv[1]);
+        double requested = Double.parseDouble(argv[2]);
+        boolean partial = "1".equals(argv[3]);
+
+        double interval = 1_000_000 / rate;
+        double burst = capacity * interval;
+        double tat = Math.max(values.getOrDefault(key, (double) nowMicros), nowMicros);
+        double available = (nowMicros + burst - tat) / interval;
+        double granted = requested;
+        if (available < requested) {
+            granted = partial ? Math.floor(available) : 0;
+        }
+        if (granted < 1) {
+            double needed = partial ? 1 : requested;
+            return Arrays.asList(0L, (long) Math.floor(Math.max(available, 0)), (long) Math.ceil((needed - available) * interval));
+        }
+        tat += granted * interval;
+        values.put(key, tat);
+        return Arrays.asList((long) granted, (long) Math.floor((nowMicros + burst - tat) / interval), 0L);
+    }
+
+    /**
+     * 每隔 stepMicros 请求一次，返回每个时间点是否放行
+     */
+    private boolean[] drive(Algorithm algorithm, int capacity, double rate, long stepMicros, int steps) {
+        boolean[] admitted = new boolean[steps];
+        for (int i = 0; i < steps; i++) {
+            nowMicros = 1_000_000_000L + i * stepMicros;
+            admitted[i] = tokenBucketService.tryAcquire(KEY, capacity, rate, 1, algorithm);
+        }
+        return admitted;
+    }
+
+    private static int count(boolean[] admitted, int from, int to) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (admitted[i]) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int maxInWindow(boolean[] admitted, int from, int window) {
+        int max = 0;
+        for (int i = from; i + window <= admitted.length; i++) {
+            max = Math.max(max, count(admitted, i, i + window));
+        }
+        return max;
+    }
+
+    @Test
+    void testHighRateAdmissionIsSmoothedAcrossSecondBoundaries() {
+        // 容量100、速率100/s，每毫秒请求一次，持续5秒；前1秒耗尽初始满桶
+        boolean[] classic = drive(Algorithm.CLASSIC, 100, 100, 1000, 5000);
+        hashes.clear();
+        boolean[] precise = drive(Algorithm.PRECISE, 100, 100, 1000, 5000);
+
+        // 长期速率相同
+        assertEquals(400, count(classic, 1000, 5000), 10);
+        assertEquals(400, count(precise, 1000, 5000), 10);
+        // 经典令牌桶在整秒边界一次补满，100毫秒内放行整桶；微秒精度令牌桶约每10毫秒放行一个
+        assertTrue(maxInWindow(classic, 1000, 100) >= 90, "classic=" + maxInWindow(classic, 1000, 100));
+        assertTrue(maxInWindow(precise, 1000, 100) <= 11, "precise=" + maxInWindow(precise, 1000, 100));
+    }
+
+    @Test
+    void testLowRateKeepsFractionalTokens() {
+        // 容量1、速率1.5/s，每10毫秒请求一次，持续10秒
+        boolean[] classic = drive(Algorithm.CLASSIC, 1, 1.5, 10_000, 1000);
+        hashes.clear();
+        boolean[] precise = drive(Algorithm.PRECISE, 1, 1.5, 10_000, 1000);
+
+        // 经典令牌桶按整秒填充且放行时丢弃小数部分，实际只有约1/s；微秒精度令牌桶贴近1.5/s
+        assertTrue(count(classic, 0, 1000) <= 11, "classic=" + count(classic, 0, 1000));
+        assertEquals(15, count(precise, 0, 1000), 1);
+    }
+
+    @Test
+    void testGcraMatchesPreciseBucket() {
+        for (double rate : new double[]{1.5, 7, 100}) {
+            hashes.clear();
+            values.clear();
+            boolean[] precise = drive(Algorithm.PRECISE, 20, rate, 3_000, 2000);
+            boolean[] gcra = drive(Algorithm.GCRA, 20, rate, 3_000, 2000);
+
+            for (int window : new int[]{10, 100, 2000}) {
+                for (int i = 0; i + window <= 2000; i += window) {
+                    assertEquals(count(precise, i, i + window), count(gcra, i, i + window), 1,
+                            "rate=" + rate + ", window=" + window + ", from=" + i);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testConfiguredAlgorithmSelectsScriptAndKey() {
+        ReflectionTestUtils.setField(tokenBucketService, "algorithmName", "gcra");
+        tokenBucketService.init();
+        assertEquals(Algorithm.GCRA, tokenBucketService.getAlgorithm());
+        nowMicros = 1_000_000_000L;
+
+        assertTrue(tokenBucketService.tryAcquire(KEY, 10, 5));
+        // 租约模式：令牌不足时取走全部整数个可用令牌
+        assertEquals(9, tokenBucketService.lease(KEY, 10, 5, 50));
+        assertEquals(0, tokenBucketService.lease(KEY, 10, 5, 50));
+
+        assertEquals(Arrays.asList("token_bucket:gcra:purchase", "10", "5.0", "1", "0"), calls.get(0));
+        assertEquals(Arrays.asList("token_bucket:gcra:purchase", "10", "5.0", "50", "1"), calls.get(1));
+
+        ReflectionTestUtils.setField(tokenBucketService, "algorithmName", "precise");
+        tokenBucketService.init();
+        assertTrue(tokenBucketService.tryAcquire(KEY, 10, 5));
+        assertEquals(Arrays.asList("token_bucket:precise:purchase", "10", "5.0", "1", "0"), calls.get(3));
+
+        // 未知算法回退到经典令牌桶
+        ReflectionTestUtils.setField(tokenBucketService, "algorithmName", "leaky");
+        tokenBucketService.init();
+        assertEquals(Algorithm.CLASSIC, tokenBucketService.getAlgorithm());
+        assertTrue(tokenBucketService.tryAcquire(KEY, 10, 5));
+        assertEquals("token_bucket:purchase", calls.get(4).get(0));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testTimeoutWaitsForReportedRetryAfter() {
+        ReflectionTestUtils.setField(tokenBucketService, "algorithmName", "precise");
+        tokenBucketService.init();
+        nowMicros = 1_000_000_000L;
+        assertTrue(tokenBucketService.tryAcquire(KEY, 1, 20));
+        // 桶已空，下一个令牌在50毫秒后产生；让模拟时间随真实时间前进
+        long start = System.currentTimeMillis();
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), anyString(), anyString(), anyString(), anyString()))
+                .thenAnswer(invocation -> {
+                    nowMicros = 1_000_000_000L + (System.currentTimeMillis() - start) * 1000;
+                    String key = ((List<String>) invocation.getArgument(1)).get(0);
+                    calls.add(Arrays.asList(key));
+                    return preciseScript(key, new String[]{invocation.getArgument(2), invocation.getArgument(3),
+                            invocation.getArgument(4), invocation.getArgument(5)});
+                });
+        int before = calls.size();
+
+        assertTrue(tokenBucketService.tryAcquireWithTimeout(KEY, 1, 20, 1000));
+
+        // 按脚本返回的等待时间休眠，而不是每100毫秒轮询或忙等
+        long elapsed = System.currentTimeMillis() - start;
+        assertTrue(elapsed >= 45 && elapsed < 500, "elapsed=" + elapsed);
+        assertTrue(calls.size() - before <= 3, "calls=" + (calls.size() - before));
+    }
+}
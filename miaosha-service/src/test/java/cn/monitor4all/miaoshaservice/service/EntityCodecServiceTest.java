@@ -0,0 +1,198 @@
+package cn.monitor4all.miaoshaservice.service;
+
+import cn.monitor4all.miaoshadao.dao.TicketOrder;
+import cn.monitor4all.miaoshadao.model.PurchaseRecord;
+import cn.monitor4all.miaoshadao.model.Ticket;
+import cn.monitor4all.miaoshaservice.service.impl.EntityCodecServiceImpl;
+import cn.monitor4all.miaoshaservice.utils.codec.CompactCodec;
+import cn.monitor4all.miaoshaservice.utils.codec.CompactMessageConverter;
+import cn.monitor4all.miaoshaservice.utils.codec.CompactRedisSerializer;
+import cn.monitor4all.miaoshaservice.utils.codec.CompactWriter;
+import com.alibaba.fastjson.JSON;
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.SimpleMessageConverter;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 缓存值编解码服务测试类
+ */
+public class EntityCodecServiceTest {
+
+    private EntityCodecServiceImpl entityCodecService;
+
+    @BeforeEach
+    void setUp() {
+        entityCodecService = new EntityCodecServiceImpl();
+        ReflectionTestUtils.setField(entityCodecService, "format", "compact");
+    }
+
+    private static Ticket ticket() {
+        Ticket ticket = new Ticket("2025-01-15", 100);
+        ticket.setRemaining(37);
+        return ticket;
+    }
+
+    private static TicketOrder order() {
+        TicketOrder order = new TicketOrder("ORD202501150001", 10086L, 7, "T20250115000123", "2025-01-15", 0L);
+        order.setId(42);
+        order.setStatus(1);
+        order.setCreateTime(new Date(1736899200123L));
+        order.setRemark("测试");
+        return order;
+    }
+
+    private static Map<String, Object> purchaseMessage() {
+        Map<String, Object> message = new HashMap<>();
+        message.put("requestId", "9f0c3a6e-3b1d-4d36-a1f5-6f9d3c2b8e71");
+        message.put("userId", 10086L);
+        message.put("date", "2025-01-15");
+        message.put("verifyHash", "e10adc3949ba59abbe56e057f20f883e");
+        message.put("timestamp", 1736899200123L);
+        message.put("mode", "admission");
+        return message;
+    }
+
+    @Test
+    void testRoundTripAllTypes() {
+        Ticket ticket = CompactCodec.decode(CompactCodec.encode(ticket()), Ticket.class);
+        assertEquals("2025-01-15", ticket.getDate());
+        assertEquals("星期三", ticket.getWeekday());
+        assertEquals(100, ticket.getTotal());
+        assertEquals(37, ticket.getRemaining());
+
+        PurchaseRecord record = CompactCodec.decode(CompactCodec.encode(new PurchaseRecord(-5L, LocalDate.of(2025, 1, 15), "T1")), PurchaseRecord.class);
+        assertEquals(Long.valueOf(-5L), record.getUserId());
+        assertEquals(LocalDate.of(2025, 1, 15), record.getDate());
+        assertEquals("T1", record.getTicketCode());
+
+        TicketOrder order = CompactCodec.decode(CompactCodec.encode(order()), TicketOrder.class);
+        assertEquals(Integer.valueOf(42), order.getId());
+        assertEquals(Long.valueOf(10086L), order.getUserId());
+        assertEquals(Long.valueOf(0L), order.getAmount());
+        assertEquals(new Date(1736899200123L), order.getCreateTime());
+        assertNull(order.getPayTime());
+        assertEquals("测试", order.getRemark());
+
+        assertEquals(purchaseMessage(), CompactCodec.decode(CompactCodec.encode(purchaseMessage()), Map.class));
+    }
+
+    @Test
+    void testUnknownFieldsSkipped() {
+        // 新版本追加的字段（字段号99，两种线型）旧版本读取时跳过
+        CompactWriter writer = new CompactWriter();
+        writer.writeRawByte(CompactCodec.MAGIC);
+        writer.writeRawByte(CompactCodec.FORMAT_VERSION);
+        writer.writeRawVarint(2);
+        writer.writeLong(1, 10086L);
+        writer.writeString(99, "新字段");
+        writer.writeLong(98, 123456789L);
+        writer.writeString(3, "T1");
+
+        PurchaseRecord record = CompactCodec.decode(writer.toByteArray(), PurchaseRecord.class);
+
+        assertEquals(Long.valueOf(10086L), record.getUserId());
+        assertNull(record.getDate());
+        assertEquals("T1", record.getTicketCode());
+    }
+
+    @Test
+    void testUnsupportedMessageNotCompact() {
+        Map<String, Object> message = purchaseMessage();
+        message.put("extra", "x");
+        assertFalse(CompactCodec.supports(message));
+
+        Map<String, Object> intUserId = purchaseMessage();
+        intUserId.put("userId", 10086);
+        assertFalse(CompactCodec.supports(intUserId));
+    }
+
+    @Test
+    void testServiceReadsLegacyFastjsonAndCompact() {
+        PurchaseRecord record = new PurchaseRecord(10086L, LocalDate.of(2025, 1, 15), "T20250115000123");
+        byte[] legacy = JSON.toJSONString(record).getBytes(StandardCharsets.UTF_8);
+        byte[] compact = entityCodecService.encode(record);
+
+        assertTrue(CompactCodec.isCompact(compact));
+        assertTrue(compact.length * 2 < legacy.length, "紧凑编码应不到JSON的一半: " + compact.length + " / " + legacy.length);
+        assertEquals("T20250115000123", entityCodecService.decode(legacy, PurchaseRecord.class).getTicketCode());
+        assertEquals("T20250115000123", entityCodecService.decode(compact, PurchaseRecord.class).getTicketCode());
+        assertNull(entityCodecService.decode(null, PurchaseRecord.class));
+
+        Map<String, Object> stats = entityCodecService.getStatistics();
+        assertEquals(1L, stats.get("compactDecodeCount"));
+        assertEquals(1L, stats.get("legacyDecodeCount"));
+    }
+
+    @Test
+    void testDefaultFormatIsLegacy() {
+        // 未升级的节点不能读取紧凑编码，默认写入旧格式
+        EntityCodecServiceImpl defaultService = new EntityCodecServiceImpl();
+
+        assertFalse(defaultService.isCompactEnabled());
+        assertEquals("legacy", defaultService.getStatistics().get("format"));
+    }
+
+    @Test
+    void testLegacyFormatWritesFastjson() {
+        ReflectionTestUtils.setField(entityCodecService, "format", "legacy");
+
+        byte[] bytes = entityCodecService.encode(new PurchaseRecord(10086L, LocalDate.of(2025, 1, 15), "T1"));
+
+        assertFalse(CompactCodec.isCompact(bytes));
+        assertEquals("T1", JSON.parseObject(new String(bytes, StandardCharsets.UTF_8)).getString("ticketCode"));
+    }
+
+    @Test
+    void testRedisSerializerFallsBackToJackson() {
+        Jackson2JsonRedisSerializer<Object> jackson = new Jackson2JsonRedisSerializer<>(Object.class);
+        ObjectMapper om = new ObjectMapper();
+        om.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY);
+        om.activateDefaultTyping(LaissezFaireSubTypeValidator.instance, ObjectMapper.DefaultTyping.NON_FINAL);
+        jackson.setObjectMapper(om);
+        CompactRedisSerializer serializer = new CompactRedisSerializer(jackson, true);
+
+        // 之前由Jackson写入的订单照常读取
+        TicketOrder legacyOrder = (TicketOrder) serializer.deserialize(jackson.serialize(order()));
+        assertEquals("ORD202501150001", legacyOrder.getOrderNo());
+
+        byte[] compact = serializer.serialize(ticket());
+        assertTrue(CompactCodec.isCompact(compact));
+        assertEquals(37, ((Ticket) serializer.deserialize(compact)).getRemaining());
+
+        // 未注册类型仍走Jackson
+        assertEquals(Arrays.asList("a", "b"), serializer.deserialize(serializer.serialize(Arrays.asList("a", "b"))));
+    }
+
+    @Test
+    void testMessageConverterReadsJavaSerializedMessages() {
+        SimpleMessageConverter simple = new SimpleMessageConverter();
+        CompactMessageConverter converter = new CompactMessageConverter(simple, true);
+
+        Message compact = converter.toMessage(purchaseMessage(), new MessageProperties());
+        Message legacy = simple.toMessage(new HashMap<>(purchaseMessage()), new MessageProperties());
+
+        assertEquals(CompactMessageConverter.CONTENT_TYPE_COMPACT, compact.getMessageProperties().getContentType());
+        assertTrue(compact.getBody().length * 2 < legacy.getBody().length);
+        assertEquals(purchaseMessage(), converter.fromMessage(compact));
+        assertEquals(purchaseMessage(), converter.fromMessage(legacy));
+        // 文本消息不受影响
+        assertEquals("order", converter.fromMessage(converter.toMessage("order", new MessageProperties())));
+    }
+}
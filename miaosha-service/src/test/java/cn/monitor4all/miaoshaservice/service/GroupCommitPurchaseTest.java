@@ -0,0 +1,85 @@
+package cn.monitor4all.miaoshaservice.service;
+
+import cn.monitor4all.miaoshadao.dao.TicketEntity;
+import cn.monitor4all.miaoshadao.dao.TicketOrder;
+import cn.monitor4all.miaoshadao.mapper.TicketEntityMapper;
+import cn.monitor4all.miaoshadao.mapper.TicketOrderMapper;
+import cn.monitor4all.miaoshadao.model.PurchaseRequest;
+import cn.monitor4all.miaoshaservice.service.impl.TicketServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 组提交购票库存归还测试类
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class GroupCommitPurchaseTest {
+
+    @Mock
+    private TicketEntityMapper ticketEntityMapper;
+
+    @Mock
+    private TicketOrderMapper ticketOrderMapper;
+
+    @Mock
+    private TicketCacheManager ticketCacheManager;
+
+    @Mock
+    private TicketCodeGeneratorService ticketCodeGeneratorService;
+
+    @Mock
+    private StockGroupCommitService stockGroupCommitService;
+
+    @Mock
+    private PurchaseBitmapService purchaseBitmapService;
+
+    @InjectMocks
+    private TicketServiceImpl ticketService;
+
+    private PurchaseRequest request;
+
+    @BeforeEach
+    void setUp() {
+        request = new PurchaseRequest();
+        request.setUserId(1001L);
+        request.setDate("2025-01-15");
+
+        TicketEntity ticketEntity = new TicketEntity();
+        ticketEntity.setId(1);
+        when(purchaseBitmapService.hasPurchased(1001L, "2025-01-15")).thenReturn(false);
+        when(stockGroupCommitService.deduct("2025-01-15")).thenReturn(true);
+        when(ticketEntityMapper.selectByDate("2025-01-15")).thenReturn(ticketEntity);
+        when(ticketCodeGeneratorService.generateUniqueTicketCode(1001L, "2025-01-15")).thenReturn("T20250115001");
+    }
+
+    @Test
+    void testOrderInsertFailureRestoresStock() {
+        when(ticketOrderMapper.insert(any(TicketOrder.class))).thenReturn(0);
+
+        assertThrows(RuntimeException.class, () -> ticketService.doPurchaseTicketWithGroupCommit(request));
+
+        verify(stockGroupCommitService, times(1)).restore("2025-01-15");
+    }
+
+    @Test
+    void testFailureAfterOrderInsertDoesNotRestoreStock() {
+        when(ticketOrderMapper.insert(any(TicketOrder.class))).thenReturn(1);
+        doThrow(new RuntimeException("缓存写入失败")).when(ticketCacheManager).addPurchaseRecord(anyLong(), anyString(), any());
+
+        assertThrows(RuntimeException.class, () -> ticketService.doPurchaseTicketWithGroupCommit(request));
+
+        // 订单已创建，这张票已售出，归还会导致超卖
+        verify(stockGroupCommitService, never()).restore(anyString());
+    }
+}
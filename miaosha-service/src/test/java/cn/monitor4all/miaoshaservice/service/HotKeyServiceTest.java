@@ -0,0 +1,217 @@
+package cn.monitor4all.miaoshaservice.service;
+
+import cn.monitor4all.miaoshaservice.service.impl.HotKeyServiceImpl;
+import cn.monitor4all.miaoshaservice.utils.hotkey.HotKeyDetector;
+import cn.monitor4all.miaoshaservice.utils.hotkey.HotKeyTrackingConnectionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 热键探测与本地副本服务测试类
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class HotKeyServiceTest {
+
+    private static final String HOT_KEY = "ticket:stock:2025-01-15";
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @InjectMocks
+    private HotKeyServiceImpl hotKeyService;
+
+    private HotKeyDetector detector;
+
+    @BeforeEach
+    void setUp() {
+        detector = new HotKeyDetector(1, 4, 1024, 10, 16);
+        ReflectionTestUtils.setField(hotKeyService, "hotKeyDetector", detector);
+        // 由测试手动切换窗口和发布通知
+        ReflectionTestUtils.setField(hotKeyService, "windowMs", 3_600_000L);
+        ReflectionTestUtils.setField(hotKeyService, "invalidateCoalesceMs", 3_600_000L);
+        ReflectionTestUtils.setField(hotKeyService, "promoteQps", 100L);
+        ReflectionTestUtils.setField(hotKeyService, "holdWindows", 2);
+        ReflectionTestUtils.setField(hotKeyService, "replicaTtlMs", 60_000L);
+        hotKeyService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        hotKeyService.destroy();
+    }
+
+    private void access(String key, int times) {
+        for (int i = 0; i < times; i++) {
+            detector.record(key);
+        }
+    }
+
+    private void rotate() {
+        ReflectionTestUtils.invokeMethod(hotKeyService, "rotateWindow");
+    }
+
+    @Test
+    void testSketchReportsHeavyHittersInOrder() {
+        access(HOT_KEY, 5000);
+        access("miaosha_v1_lock_2025-01-15", 2000);
+        for (int i = 0; i < 500; i++) {
+            detector.record("purchase:" + i + ":2025-01-15");
+        }
+
+        List<HotKeyDetector.HotKey> hotKeys = detector.rotate();
+
+        assertEquals(HOT_KEY, hotKeys.get(0).getKey());
+        assertEquals("miaosha_v1_lock_2025-01-15", hotKeys.get(1).getKey());
+        assertEquals(2, hotKeys.size());
+        // 新窗口从零开始计数
+        assertEquals(0L, detector.estimate(HOT_KEY));
+    }
+
+    @Test
+    void testReplicablePrefixPromotedAndReplicaServed() {
+        access(HOT_KEY, 5000);
+        access("miaosha_v1_lock_2025-01-15", 5000);
+        rotate();
+
+        hotKeyService.putReplica(HOT_KEY, "value");
+        hotKeyService.putReplica("miaosha_v1_lock_2025-01-15", "value");
+
+        assertEquals("value", hotKeyService.getReplica(HOT_KEY));
+        // 锁键只统计不复制
+        assertNull(hotKeyService.getReplica("miaosha_v1_lock_2025-01-15"));
+        List<Map<String, Object>> topKeys = hotKeyService.getTopKeys(10);
+        assertEquals(2, topKeys.size());
+        assertEquals(1L, topKeys.stream().filter(item -> Boolean.TRUE.equals(item.get("replicated"))).count());
+        assertEquals(1L, hotKeyService.getStatistics().get("promoteCount"));
+    }
+
+    @Test
+    void testColdKeyNotReplicated() {
+        access(HOT_KEY, 5);
+        rotate();
+
+        hotKeyService.putReplica(HOT_KEY, "value");
+
+        assertNull(hotKeyService.getReplica(HOT_KEY));
+    }
+
+    @Test
+    void testDemotedAfterHoldWindows() throws Exception {
+        access(HOT_KEY, 5000);
+        rotate();
+        hotKeyService.putReplica(HOT_KEY, "value");
+
+        @SuppressWarnings("unchecked")
+        Map<String, Long> promoted = (Map<String, Long>) ReflectionTestUtils.getField(hotKeyService, "promoted");
+        promoted.put(HOT_KEY, System.currentTimeMillis() - 3 * 3_600_000L);
+        rotate();
+
+        assertNull(hotKeyService.getReplica(HOT_KEY));
+        assertEquals(1L, hotKeyService.getStatistics().get("demoteCount"));
+    }
+
+    @Test
+    void testReplicaHitsKeepKeyPromoted() {
+        access(HOT_KEY, 5000);
+        rotate();
+        hotKeyService.putReplica(HOT_KEY, "value");
+
+        @SuppressWarnings("unchecked")
+        Map<String, Long> promoted = (Map<String, Long>) ReflectionTestUtils.getField(hotKeyService, "promoted");
+        promoted.put(HOT_KEY, System.currentTimeMillis() - 3 * 3_600_000L);
+        // 晋升后读取全部命中本地副本，不再经过Redis
+        for (int i = 0; i < 5000; i++) {
+            assertEquals("value", hotKeyService.getReplica(HOT_KEY));
+        }
+        rotate();
+
+        assertEquals("value", hotKeyService.getReplica(HOT_KEY));
+        assertEquals(0L, hotKeyService.getStatistics().get("demoteCount"));
+        assertEquals(1L, hotKeyService.getStatistics().get("promoteCount"));
+    }
+
+    @Test
+    void testWritesCoalescedIntoOneInvalidationMessage() {
+        access(HOT_KEY, 5000);
+        rotate();
+        hotKeyService.putReplica(HOT_KEY, "old");
+
+        hotKeyService.update(HOT_KEY, "new");
+        hotKeyService.update(HOT_KEY, "newer");
+        hotKeyService.invalidate("ticket:stock:2025-01-16");
+        hotKeyService.invalidate("miaosha_v1_lock_2025-01-15");
+
+        // 本节点副本替换为写入后的值
+        assertEquals("newer", hotKeyService.getReplica(HOT_KEY));
+        ReflectionTestUtils.invokeMethod(hotKeyService, "flushInvalidations");
+
+        ArgumentCaptor<String> message = ArgumentCaptor.forClass(String.class);
+        verify(stringRedisTemplate, times(1)).convertAndSend(anyString(), message.capture());
+        String keys = message.getValue().substring(message.getValue().indexOf('|') + 1);
+        assertEquals(2, keys.split(",").length);
+        assertTrue(keys.contains(HOT_KEY));
+        assertFalse(keys.contains("lock"));
+    }
+
+    @Test
+    void testRemoteInvalidationDropsReplicaButOwnIsIgnored() {
+        access(HOT_KEY, 5000);
+        rotate();
+        hotKeyService.putReplica(HOT_KEY, "value");
+        String nodeId = (String) ReflectionTestUtils.getField(hotKeyService, "nodeId");
+
+        hotKeyService.onMessage(new DefaultMessage(new byte[0], (nodeId + "|" + HOT_KEY).getBytes(StandardCharsets.UTF_8)), null);
+        assertEquals("value", hotKeyService.getReplica(HOT_KEY));
+
+        hotKeyService.onMessage(new DefaultMessage(new byte[0], ("othernode|" + HOT_KEY).getBytes(StandardCharsets.UTF_8)), null);
+        assertNull(hotKeyService.getReplica(HOT_KEY));
+    }
+
+    @Test
+    void testConnectionFactoryRecordsCommandKeys() {
+        RedisConnectionFactory delegate = mock(RedisConnectionFactory.class);
+        RedisConnection connection = mock(RedisConnection.class);
+        when(delegate.getConnection()).thenReturn(connection);
+        HotKeyTrackingConnectionFactory factory = new HotKeyTrackingConnectionFactory(delegate, detector);
+
+        RedisConnection tracked = factory.getConnection();
+        byte[] key = HOT_KEY.getBytes(StandardCharsets.UTF_8);
+        tracked.hGetAll(key);
+        tracked.mGet(key, "other".getBytes(StandardCharsets.UTF_8));
+        tracked.evalSha("sha", ReturnType.INTEGER, 1, key, "-1".getBytes(StandardCharsets.UTF_8));
+        tracked.publish(key, key);
+
+        verify(connection).hGetAll(key);
+        verify(connection).publish(key, key);
+        assertEquals(3L, detector.estimate(HOT_KEY));
+        assertEquals(1L, detector.estimate("other"));
+        assertEquals(0L, detector.estimate("-1"));
+    }
+}
@@ -0,0 +1,144 @@
+package cn.monitor4all.miaoshaservice.service;
+
+import cn.monitor4all.miaoshaservice.service.impl.KeyMaintenanceServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 键维护服务测试类
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class KeyMaintenanceServiceTest {
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private RedisConnection connection;
+
+    @Mock
+    private Cursor<byte[]> cursor;
+
+    @InjectMocks
+    private KeyMaintenanceServiceImpl keyMaintenanceService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(keyMaintenanceService, "scanCount", 100);
+        ReflectionTestUtils.setField(keyMaintenanceService, "batchSize", 2);
+        ReflectionTestUtils.setField(keyMaintenanceService, "maxOpsPerSecond", 100000.0);
+        keyMaintenanceService.init();
+
+        when(stringRedisTemplate.execute(any(RedisCallback.class)))
+                .thenAnswer(invocation -> ((RedisCallback<?>) invocation.getArgument(0)).doInRedis(connection));
+        when(stringRedisTemplate.executePipelined(any(RedisCallback.class)))
+                .thenAnswer(invocation -> {
+                    ((RedisCallback<?>) invocation.getArgument(0)).doInRedis(connection);
+                    return new ArrayList<>();
+                });
+        when(connection.scan(any(ScanOptions.class))).thenReturn(cursor);
+    }
+
+    private void givenKeys(String... keys) {
+        Boolean[] hasNext = new Boolean[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            hasNext[i] = i + 1 < keys.length;
+        }
+        byte[][] values = new byte[keys.length][];
+        for (int i = 0; i < keys.length; i++) {
+            values[i] = keys[i].getBytes(StandardCharsets.UTF_8);
+        }
+        if (keys.length == 0) {
+            when(cursor.hasNext()).thenReturn(false);
+        } else {
+            when(cursor.hasNext()).thenReturn(true, hasNext);
+            when(cursor.next()).thenReturn(values[0], Arrays.copyOfRange(values, 1, values.length));
+        }
+        // 游标ID变化两次：首次SCAN和第二次SCAN
+        when(cursor.getCursorId()).thenReturn(0L, 0L, 17L);
+    }
+
+    @Test
+    void testUnlinkByPattern_DeletesInPipelinedBatches() throws Exception {
+        givenKeys("user_has_order_1", "user_has_order_2", "user_has_order_3", "user_has_order_4", "user_has_order_5");
+
+        long deleted = keyMaintenanceService.unlinkByPattern("user_has_order*");
+
+        assertEquals(5, deleted);
+        verify(connection, never()).keys(any());
+        verify(stringRedisTemplate, times(3)).executePipelined(any(RedisCallback.class));
+        verify(connection, times(5)).unlink(any(byte[].class));
+        verify(cursor).close();
+
+        Map<String, Object> stats = keyMaintenanceService.getStatistics();
+        assertEquals(5L, stats.get("totalScannedKeys"));
+        assertEquals(5L, stats.get("totalUnlinkedKeys"));
+        assertEquals(2L, stats.get("totalScanCalls"));
+        assertTrue(((List<?>) stats.get("runningTasks")).isEmpty());
+        @SuppressWarnings("unchecked")
+        Map<String, Object> last = (Map<String, Object>) stats.get("lastCompletedTask");
+        assertEquals("unlink", last.get("type"));
+        assertEquals(3L, last.get("batches"));
+    }
+
+    @Test
+    void testScan_DeliversBatchesToConsumer() throws Exception {
+        givenKeys("a", "b", "c");
+        List<List<String>> batches = new ArrayList<>();
+
+        long scanned = keyMaintenanceService.scan("*", batch -> batches.add(new ArrayList<>(batch)));
+
+        assertEquals(3, scanned);
+        assertEquals(2, batches.size());
+        assertEquals(Arrays.asList("a", "b"), batches.get(0));
+        assertEquals(Collections.singletonList("c"), batches.get(1));
+        verify(stringRedisTemplate, never()).executePipelined(any(RedisCallback.class));
+        verify(cursor).close();
+    }
+
+    @Test
+    void testUnlinkByPattern_NoMatchingKeys() {
+        givenKeys();
+
+        assertEquals(0, keyMaintenanceService.unlinkByPattern("missing*"));
+        verify(stringRedisTemplate, never()).executePipelined(any(RedisCallback.class));
+    }
+
+    @Test
+    void testScanFailure_RecordedAndRethrown() {
+        when(connection.scan(any(ScanOptions.class))).thenThrow(new RuntimeException("Redis不可用"));
+
+        assertThrows(RuntimeException.class, () -> keyMaintenanceService.unlinkByPattern("user_has_order*"));
+
+        Map<String, Object> stats = keyMaintenanceService.getStatistics();
+        assertEquals(1L, stats.get("failedTasks"));
+        assertTrue(((List<?>) stats.get("runningTasks")).isEmpty());
+        @SuppressWarnings("unchecked")
+        Map<String, Object> last = (Map<String, Object>) stats.get("lastCompletedTask");
+        assertEquals("Redis不可用", last.get("error"));
+    }
+}
@@ -0,0 +1,249 @@
+package cn.monitor4all.miaoshaservice.service;
+
+import cn.monitor4all.miaoshaservice.service.impl.LeasedTokenBucketServiceImpl;
+import cn.monitor4all.miaoshaservice.utils.ratelimit.LeasedTokenBucket;
+import com.google.common.cache.Cache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 两级令牌桶限流服务测试类
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class LeasedTokenBucketServiceTest {
+
+    private static final String KEY = "purchase";
+
+    @Mock
+    private DistributedTokenBucketService distributedTokenBucketService;
+
+    @InjectMocks
+    private LeasedTokenBucketServiceImpl leasedTokenBucketService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(leasedTokenBucketService, "leaseTtlMs", 60_000L);
+        ReflectionTestUtils.setField(leasedTokenBucketService, "maxBatch", 100);
+        leasedTokenBucketService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        leasedTokenBucketService.destroy();
+    }
+
+    @Test
+    void testOneRedisCallPerBatch() throws Exception {
+        // Redis令牌桶充足，申请多少给多少
+        when(distributedTokenBucketService.lease(eq(KEY), anyInt(), anyDouble(), anyInt()))
+                .thenAnswer(invocation -> invocation.getArgument(3));
+        when(distributedTokenBucketService.tryAcquire(eq(KEY), anyInt(), anyDouble())).thenReturn(true);
+        // 每批按观测速率够用200毫秒，不受批大小上限截断
+        ReflectionTestUtils.setField(leasedTokenBucketService, "maxBatch", 1_000_000);
+
+        // 约每毫秒50个请求，每批够用200毫秒，异步续租有充足的提前量
+        int allowed = 0;
+        for (int i = 0; i < 5000; i++) {
+            if (leasedTokenBucketService.tryAcquire(KEY, 1_000_000, 1_000_000)) {
+                allowed++;
+            }
+            if (i % 50 == 49) {
+                Thread.sleep(1);
+            }
+        }
+
+        assertTrue(allowed > 4900, "allowed=" + allowed);
+        Map<String, Object> stats = leasedTokenBucketService.getStatistics();
+        assertTrue((Double) stats.get("redisCallsPerAdmission") < 0.02, "stats=" + stats);
+    }
+
+    @Test
+    void testLeaseNeverExceedsRedisGrant() throws Exception {
+        // Redis令牌桶只剩30个令牌
+        int[] remaining = {30};
+        when(distributedTokenBucketService.lease(eq(KEY), anyInt(), anyDouble(), anyInt())).thenAnswer(invocation -> {
+            synchronized (remaining) {
+                int granted = Math.min(remaining[0], invocation.getArgument(3));
+                remaining[0] -= granted;
+                return granted;
+            }
+        });
+        when(distributedTokenBucketService.tryAcquire(eq(KEY), anyInt(), anyDouble())).thenAnswer(invocation -> {
+            synchronized (remaining) {
+                return remaining[0]-- > 0;
+            }
+        });
+
+        int allowed = 0;
+        for (int i = 0; i < 200; i++) {
+            if (leasedTokenBucketService.tryAcquire(KEY, 1000, 0.001)) {
+                allowed++;
+            }
+        }
+        // 等待进行中的异步续租完成后取走剩余的本地令牌
+        for (int i = 0; i < 100 && allowed < 30; i++) {
+            Thread.sleep(1);
+            if (leasedTokenBucketService.tryAcquire(KEY, 1000, 0.001)) {
+                allowed++;
+            }
+        }
+
+        assertEquals(30, allowed);
+    }
+
+    @Test
+    void testEmptyBucketRejectsLocallyWithoutRedisCalls() {
+        when(distributedTokenBucketService.lease(eq(KEY), anyInt(), anyDouble(), anyInt())).thenReturn(0);
+
+        for (int i = 0; i < 50; i++) {
+            assertFalse(leasedTokenBucketService.tryAcquire(KEY, 10, 1));
+        }
+
+        // 速率1/s，续租为0后约1秒内本地直接拒绝
+        verify(distributedTokenBucketService, times(1)).lease(eq(KEY), anyInt(), anyDouble(), anyInt());
+        assertEquals(50L, leasedTokenBucketService.getStatistics().get("rejectCount"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFallbackToRedisWhileAnotherThreadLeases() throws Exception {
+        when(distributedTokenBucketService.lease(eq(KEY), anyInt(), anyDouble(), anyInt())).thenReturn(0);
+        when(distributedTokenBucketService.tryAcquire(eq(KEY), anyInt(), anyDouble())).thenReturn(true);
+        Cache<String, LeasedTokenBucket> buckets = (Cache<String, LeasedTokenBucket>) ReflectionTestUtils.getField(leasedTokenBucketService, "buckets");
+        LeasedTokenBucket bucket = buckets.get(KEY, () -> new LeasedTokenBucket(System.currentTimeMillis()));
+        assertTrue(bucket.startLeasing());
+
+        assertTrue(leasedTokenBucketService.tryAcquire(KEY, 10, 1));
+
+        verify(distributedTokenBucketService).tryAcquire(KEY, 10, 1.0);
+        verify(distributedTokenBucketService, never()).lease(anyString(), anyInt(), anyDouble(), anyInt());
+        assertEquals(1L, leasedTokenBucketService.getStatistics().get("fallbackCount"));
+    }
+
+    @Test
+    void testDisabledGoesStraightToRedis() {
+        ReflectionTestUtils.setField(leasedTokenBucketService, "enabled", false);
+        when(distributedTokenBucketService.tryAcquire(eq(KEY), anyInt(), anyDouble())).thenReturn(true);
+
+        assertTrue(leasedTokenBucketService.tryAcquire(KEY, 10, 1));
+
+        verify(distributedTokenBucketService).tryAcquire(KEY, 10, 1.0);
+        verify(distributedTokenBucketService, never()).lease(anyString(), anyInt(), anyDouble(), anyInt());
+    }
+
+    @Test
+    void testExpiredLeaseIsDiscarded() {
+        LeasedTokenBucket bucket = new LeasedTokenBucket(0);
+        bucket.addLease(5, 100);
+        bucket.addLease(5, 200);
+
+        assertTrue(bucket.tryAcquire(50));
+        assertEquals(9, bucket.available(50));
+        // 第一个租约过期，剩余4个作废，消耗第二个租约
+        assertTrue(bucket.tryAcquire(150));
+        assertEquals(4, bucket.available(150));
+        assertEquals(4, bucket.getExpiredTokens());
+        assertFalse(bucket.tryAcquire(200));
+    }
+
+    @Test
+    void testBatchSizeFollowsObservedRate() {
+        LeasedTokenBucket bucket = new LeasedTokenBucket(0);
+        // 1秒内500次请求，每批约够用200毫秒
+        for (int i = 0; i < 500; i++) {
+            bucket.tryAcquire(i * 2);
+        }
+        assertEquals(100, bucket.nextBatchSize(1000, 1, 1000, 200));
+        assertEquals(50, bucket.nextBatchSize(1000, 1, 50, 200));
+        // 没有新请求时速率衰减，批大小随之减小，但不低于下限
+        assertEquals(50, bucket.nextBatchSize(2000, 1, 1000, 200));
+        assertEquals(30, bucket.nextBatchSize(12000, 30, 1000, 200));
+    }
+
+    /**
+     * 多节点模拟：每个节点以远超限额的速率请求，从同一个精确令牌桶租约，
+     * 任意长度为T的时间段内合计放行数不超过 capacity + rate × (T + ttl)
+     */
+    @Test
+    void testOverAdmissionBoundAcrossNodes() {
+        final int capacity = 50;
+        final double rate = 100;
+        final long ttlMs = 300;
+        final int nodes = 4;
+        final long durationMs = 5000;
+
+        double[] redisTokens = {capacity};
+        long[] redisLastMs = {0};
+        List<LeasedTokenBucket> buckets = new ArrayList<>();
+        for (int i = 0; i < nodes; i++) {
+            buckets.add(new LeasedTokenBucket(0));
+        }
+        long[] admittedAt = new long[(int) durationMs];
+
+        for (long now = 0; now < durationMs; now++) {
+            // 模拟Redis令牌桶按毫秒连续填充
+            redisTokens[0] = Math.min(capacity, redisTokens[0] + (now - redisLastMs[0]) * rate / 1000.0);
+            redisLastMs[0] = now;
+            for (LeasedTokenBucket bucket : buckets) {
+                // 每个节点每毫秒5个请求（合计20000/s，限额100/s）
+                for (int r = 0; r < 5; r++) {
+                    if (bucket.tryAcquire(now)) {
+                        admittedAt[(int) now]++;
+                        continue;
+                    }
+                    if (bucket.isEmptyAt(now)) {
+                        continue;
+                    }
+                    int batch = bucket.nextBatchSize(now, 1, 20, 200);
+                    int granted = (int) Math.min(batch, Math.floor(redisTokens[0]));
+                    redisTokens[0] -= granted;
+                    if (granted > 0) {
+                        bucket.addLease(granted, now + ttlMs);
+                        if (bucket.take(now)) {
+                            admittedAt[(int) now]++;
+                        }
+                    } else {
+                        bucket.markEmptyUntil(now + 10);
+                    }
+                }
+            }
+        }
+
+        long total = 0;
+        for (long count : admittedAt) {
+            total += count;
+        }
+        // 长期放行速率贴近限额
+        assertTrue(total <= capacity + rate * (durationMs + ttlMs) / 1000.0, "total=" + total);
+        assertTrue(total >= rate * durationMs / 1000.0 * 0.8, "total=" + total);
+
+        for (long windowMs : new long[]{10, 100, 500, 1000}) {
+            long bound = (long) Math.floor(capacity + rate * (windowMs + ttlMs) / 1000.0);
+            long inWindow = 0;
+            for (int t = 0; t < durationMs; t++) {
+                inWindow += admittedAt[t];
+                if (t >= windowMs) {
+                    inWindow -= admittedAt[(int) (t - windowMs)];
+                }
+                assertTrue(inWindow <= bound, "window=" + windowMs + "ms, admitted=" + inWindow + ", bound=" + bound);
+            }
+        }
+    }
+}
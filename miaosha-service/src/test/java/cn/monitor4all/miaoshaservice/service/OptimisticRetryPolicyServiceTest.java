@@ -0,0 +1,125 @@
+package cn.monitor4all.miaoshaservice.service;
+
+import cn.monitor4all.miaoshaservice.service.impl.OptimisticRetryPolicyServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 乐观锁重试策略服务测试类
+ */
+public class OptimisticRetryPolicyServiceTest {
+
+    private OptimisticRetryPolicyServiceImpl retryPolicyService;
+
+    private String testDate;
+
+    @BeforeEach
+    void setUp() {
+        testDate = "2025-01-15";
+        retryPolicyService = new OptimisticRetryPolicyServiceImpl();
+        // 缩短退避间隔，加快测试
+        ReflectionTestUtils.setField(retryPolicyService, "baseBackoffMs", 1L);
+        ReflectionTestUtils.setField(retryPolicyService, "maxBackoffMs", 2L);
+        ReflectionTestUtils.setField(retryPolicyService, "minSamples", 4);
+        ReflectionTestUtils.setField(retryPolicyService, "windowMs", 60000L);
+    }
+
+    private void recordSuccesses(int count) {
+        for (int i = 0; i < count; i++) {
+            retryPolicyService.newSession(testDate).recordSuccess();
+        }
+    }
+
+    @Test
+    void testBackoffAndRetry_LowContentionUsesFullRetries() throws Exception {
+        recordSuccesses(100);
+        OptimisticRetryPolicyService.Session session = retryPolicyService.newSession(testDate, 3);
+
+        assertTrue(session.backoffAndRetry());
+        assertTrue(session.backoffAndRetry());
+        assertTrue(session.backoffAndRetry());
+        // 调用方指定最多重试3次
+        assertFalse(session.backoffAndRetry());
+        assertFalse(session.isSwitchRecommended());
+        assertEquals(3, session.getRetryCount());
+    }
+
+    @Test
+    void testBackoffAndRetry_CapShrinksWithConflictRatio() throws Exception {
+        // 6次成功 + 4次冲突，冲突率0.4，重试上限 round(5 * 0.6) = 3
+        recordSuccesses(6);
+        OptimisticRetryPolicyService.Session session = retryPolicyService.newSession(testDate);
+        int retries = 0;
+        while (session.backoffAndRetry()) {
+            retries++;
+        }
+
+        assertTrue(retries < 5, "冲突率升高后重试次数应低于上限5次，实际: " + retries);
+        assertFalse(session.isSwitchRecommended());
+    }
+
+    @Test
+    void testBackoffAndRetry_SwitchesToPessimisticAboveThreshold() throws Exception {
+        recordSuccesses(1);
+        OptimisticRetryPolicyService.Session session = retryPolicyService.newSession(testDate);
+        boolean retry = true;
+        while (retry) {
+            retry = session.backoffAndRetry();
+        }
+
+        // 冲突率达到0.6阈值后建议切换
+        assertTrue(session.isSwitchRecommended());
+        assertTrue(retryPolicyService.isPessimisticPreferred(testDate));
+        assertEquals(1L, retryPolicyService.getStatistics().get("switchCount"));
+    }
+
+    @Test
+    void testBackoffAndRetry_TimeBudgetExhausted() throws Exception {
+        ReflectionTestUtils.setField(retryPolicyService, "timeBudgetMs", 0L);
+        OptimisticRetryPolicyService.Session session = retryPolicyService.newSession(testDate);
+
+        assertFalse(session.backoffAndRetry());
+        assertFalse(session.isSwitchRecommended());
+        assertEquals(1L, retryPolicyService.getStatistics().get("budgetExhaustedCount"));
+    }
+
+    @Test
+    void testIsPessimisticPreferred_RecoversAfterWindowExpires() throws Exception {
+        ReflectionTestUtils.setField(retryPolicyService, "windowMs", 20L);
+        OptimisticRetryPolicyService.Session session = retryPolicyService.newSession(testDate);
+        for (int i = 0; i < 10; i++) {
+            session.backoffAndRetry();
+        }
+        Thread.sleep(50);
+
+        // 两个窗口内没有新样本，恢复乐观模式
+        assertFalse(retryPolicyService.isPessimisticPreferred(testDate));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testGetStatistics() throws Exception {
+        recordSuccesses(3);
+        retryPolicyService.newSession(testDate).backoffAndRetry();
+        retryPolicyService.recordPessimisticUpdate(testDate);
+
+        Map<String, Object> stats = retryPolicyService.getStatistics();
+        Map<String, Object> dates = (Map<String, Object>) stats.get("dates");
+        Map<String, Object> date = (Map<String, Object>) dates.get(testDate);
+
+        assertEquals(4L, stats.get("sessionCount"));
+        assertEquals(3L, stats.get("successCount"));
+        assertEquals(1L, stats.get("pessimisticUpdateCount"));
+        assertEquals(4L, date.get("totalAttempts"));
+        assertEquals(1L, date.get("totalConflicts"));
+        assertEquals("0.25", date.get("windowConflictRatio"));
+
+        retryPolicyService.resetStatistics();
+        assertEquals(0L, retryPolicyService.getStatistics().get("sessionCount"));
+    }
+}
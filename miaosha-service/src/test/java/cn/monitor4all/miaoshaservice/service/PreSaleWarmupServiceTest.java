@@ -0,0 +1,200 @@
+package cn.monitor4all.miaoshaservice.service;
+
+import cn.monitor4all.miaoshadao.model.ApiResponse;
+import cn.monitor4all.miaoshadao.model.PurchaseRequest;
+import cn.monitor4all.miaoshadao.model.Ticket;
+import cn.monitor4all.miaoshaservice.service.impl.PreSaleWarmupServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 开售前预热服务测试类
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class PreSaleWarmupServiceTest {
+
+    @Mock
+    private TicketService ticketService;
+
+    @Mock
+    private ValidationService validationService;
+
+    @Mock
+    private TicketCacheManager ticketCacheManager;
+
+    @Mock
+    private TicketAdmissionService ticketAdmissionService;
+
+    @Mock
+    private PurchaseBitmapService purchaseBitmapService;
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private RedisConnectionFactory redisConnectionFactory;
+
+    @Mock
+    private DataSource dataSource;
+
+    @Mock
+    private RedisConnection redisConnection;
+
+    @Mock
+    private Connection dbConnection;
+
+    @InjectMocks
+    private PreSaleWarmupServiceImpl warmupService;
+
+    private final String today = LocalDate.now().toString();
+
+    private final String tomorrow = LocalDate.now().plusDays(1).toString();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws Exception {
+        ReflectionTestUtils.setField(warmupService, "days", 2);
+        ReflectionTestUtils.setField(warmupService, "dbPoolTarget", 3);
+        ReflectionTestUtils.setField(warmupService, "redisPoolTarget", 2);
+        ReflectionTestUtils.setField(warmupService, "userPreloadLimit", 500);
+        ReflectionTestUtils.setField(warmupService, "jitMinIterations", 200);
+        ReflectionTestUtils.setField(warmupService, "jitRoundIterations", 100);
+        ReflectionTestUtils.setField(warmupService, "jitQuietRounds", 1);
+        ReflectionTestUtils.setField(warmupService, "jitMaxMs", 5000L);
+        warmupService.init();
+
+        when(redisConnection.scriptLoad(any(byte[].class))).thenReturn("sha1");
+        when(redisConnection.ping()).thenReturn("PONG");
+        when(stringRedisTemplate.execute(any(RedisCallback.class)))
+                .thenAnswer(invocation -> ((RedisCallback<Object>) invocation.getArgument(0)).doInRedis(redisConnection));
+        when(redisConnectionFactory.getConnection()).thenReturn(redisConnection);
+        when(dataSource.getConnection()).thenReturn(dbConnection);
+        when(dbConnection.isValid(anyInt())).thenReturn(true);
+
+        Map<String, Ticket> tickets = new HashMap<>();
+        tickets.put(today, new Ticket(today, 100));
+        tickets.put(tomorrow, new Ticket(tomorrow, 100));
+        when(ticketCacheManager.getTicketsWithFallback(anyList())).thenReturn(tickets);
+        when(ticketAdmissionService.syncStockFromDb(anyString())).thenReturn(true);
+
+        // 当天位图已就绪，次日未就绪
+        Map<String, Boolean> purchased = new HashMap<>();
+        purchased.put(today, false);
+        purchased.put(tomorrow, null);
+        when(purchaseBitmapService.hasPurchased(anyLong(), anyList())).thenReturn(purchased);
+        when(purchaseBitmapService.rebuild(anyString())).thenReturn(true);
+
+        when(validationService.preloadUsers(anyInt())).thenReturn(42);
+        when(ticketService.dryRunPurchaseV4(any(PurchaseRequest.class))).thenReturn(ApiResponse.success(new HashMap<>()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        warmupService.destroy();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> stage(Map<String, Object> report, String name) {
+        return (Map<String, Object>) ((Map<String, Object>) report.get("stages")).get(name);
+    }
+
+    @Test
+    void testAllStagesReady() throws Exception {
+        Map<String, Object> report = warmupService.runWarmup();
+
+        assertEquals("READY", report.get("state"));
+        assertTrue(warmupService.isReady());
+        assertEquals(true, report.get("readyBeforeOpen"));
+
+        Map<String, Object> scripts = stage(report, "scripts");
+        assertTrue((Integer) scripts.get("scripts") > 0);
+        assertEquals(scripts.get("scripts"), scripts.get("loaded"));
+
+        // 同时借出目标数量的连接后再归还
+        verify(dataSource, times(3)).getConnection();
+        verify(dbConnection, times(3)).close();
+        verify(redisConnection, times(2)).multi();
+        verify(redisConnection, times(2)).discard();
+
+        verify(ticketAdmissionService).syncStockFromDb(today);
+        verify(ticketAdmissionService).syncStockFromDb(tomorrow);
+        verify(purchaseBitmapService, never()).rebuild(today);
+        verify(purchaseBitmapService).rebuild(tomorrow);
+        verify(validationService).preloadUsers(500);
+        assertEquals(42, stage(report, "users").get("loaded"));
+
+        Map<String, Object> jit = stage(report, "jit");
+        assertTrue((Long) jit.get("iterations") >= 200);
+        assertEquals(0L, jit.get("failures"));
+        verify(ticketService, atLeast(200)).dryRunPurchaseV4(any(PurchaseRequest.class));
+    }
+
+    @Test
+    void testFailedStageDegradesButLaterStagesRun() throws Exception {
+        when(dataSource.getConnection()).thenThrow(new SQLException("连接池耗尽"));
+
+        Map<String, Object> report = warmupService.runWarmup();
+
+        assertEquals("DEGRADED", report.get("state"));
+        assertFalse(warmupService.isReady());
+        assertEquals(false, report.get("readyBeforeOpen"));
+        assertEquals(false, stage(report, "pools").get("ok"));
+        assertEquals("连接池耗尽", stage(report, "pools").get("error"));
+        assertEquals(true, stage(report, "tickets").get("ok"));
+        assertEquals(true, stage(report, "jit").get("ok"));
+    }
+
+    @Test
+    void testDryRunFailuresFailJitStage() throws Exception {
+        when(ticketService.dryRunPurchaseV4(any(PurchaseRequest.class))).thenThrow(new RuntimeException("用户验证失败: 用户不存在"));
+
+        Map<String, Object> report = warmupService.runWarmup();
+
+        Map<String, Object> jit = stage(report, "jit");
+        assertEquals(false, jit.get("ok"));
+        assertEquals(jit.get("iterations"), jit.get("failures"));
+        assertEquals("用户验证失败: 用户不存在", jit.get("lastError"));
+        assertEquals("DEGRADED", report.get("state"));
+    }
+
+    @Test
+    void testScheduleBeforeOpen() {
+        LocalDateTime beforeOpen = LocalDateTime.of(2030, 1, 15, 7, 59);
+        LocalDateTime afterOpen = LocalDateTime.of(2030, 1, 15, 8, 0);
+        assertEquals(LocalDateTime.of(2030, 1, 15, 8, 0), ReflectionTestUtils.invokeMethod(warmupService, "nextOpenAt", beforeOpen));
+        assertEquals(LocalDateTime.of(2030, 1, 16, 8, 0), ReflectionTestUtils.invokeMethod(warmupService, "nextOpenAt", afterOpen));
+
+        ReflectionTestUtils.invokeMethod(warmupService, "scheduleNext", LocalDateTime.of(2030, 1, 15, 6, 0));
+
+        Map<String, Object> report = warmupService.getReadinessReport();
+        assertEquals("SCHEDULED", report.get("state"));
+        assertEquals("2030-01-15T08:00", report.get("openAt"));
+        assertEquals("2030-01-15T07:58", report.get("nextRunAt"));
+        assertEquals(false, report.get("readyBeforeOpen"));
+    }
+}
@@ -0,0 +1,224 @@
+package cn.monitor4all.miaoshaservice.service;
+
+import cn.monitor4all.miaoshadao.dao.TicketOrder;
+import cn.monitor4all.miaoshadao.mapper.TicketOrderMapper;
+import cn.monitor4all.miaoshadao.utils.CacheKey;
+import cn.monitor4all.miaoshaservice.service.impl.PurchaseBitmapServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 购买位图服务测试类
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class PurchaseBitmapServiceTest {
+
+    private static final String BITMAP_KEY = CacheKey.PURCHASE_BITMAP.getKey() + "_2025-01-15";
+
+    private static final String READY_KEY = CacheKey.PURCHASE_BITMAP_READY.getKey() + "_2025-01-15";
+
+    private static final String CLEARED_KEY = BITMAP_KEY + "_cleared";
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @Mock
+    private TicketOrderMapper ticketOrderMapper;
+
+    @InjectMocks
+    private PurchaseBitmapServiceImpl purchaseBitmapService;
+
+    private String testDate;
+
+    @BeforeEach
+    void setUp() {
+        testDate = "2025-01-15";
+        purchaseBitmapService.init();
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(eq(BITMAP_KEY + "_rebuilding"), anyString(), anyLong(), eq(TimeUnit.SECONDS))).thenReturn(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        purchaseBitmapService.destroy();
+    }
+
+    @Test
+    void testHasPurchased_ReadyBitmapAnswersDirectly() {
+        when(stringRedisTemplate.execute(any(RedisScript.class), eq(Arrays.asList(BITMAP_KEY, READY_KEY)), eq("1001"))).thenReturn(1L);
+        when(stringRedisTemplate.execute(any(RedisScript.class), eq(Arrays.asList(BITMAP_KEY, READY_KEY)), eq("1002"))).thenReturn(0L);
+
+        assertEquals(Boolean.TRUE, purchaseBitmapService.hasPurchased(1001L, testDate));
+        assertEquals(Boolean.FALSE, purchaseBitmapService.hasPurchased(1002L, testDate));
+        verify(ticketOrderMapper, never()).selectUserIdsByDateAfterId(anyString(), anyInt(), anyInt());
+    }
+
+    @Test
+    void testHasPurchased_NotReadyReturnsNullAndRebuilds() {
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), anyString())).thenReturn(-1L);
+        when(stringRedisTemplate.hasKey(READY_KEY)).thenReturn(false);
+        when(ticketOrderMapper.selectUserIdsByDateAfterId(eq(testDate), anyInt(), anyInt())).thenReturn(orders(1L, 2L));
+
+        assertNull(purchaseBitmapService.hasPurchased(1001L, testDate));
+
+        verify(stringRedisTemplate, timeout(1000)).execute(any(RedisScript.class),
+                eq(Arrays.asList(BITMAP_KEY, READY_KEY, CLEARED_KEY)), anyString(), anyString(), anyString());
+        verify(stringRedisTemplate, timeout(1000)).delete(BITMAP_KEY + "_rebuilding");
+    }
+
+    @Test
+    void testHasPurchased_UserIdOutOfRangeSkipsBitmap() {
+        assertNull(purchaseBitmapService.hasPurchased(Long.MAX_VALUE, testDate));
+        assertNull(purchaseBitmapService.hasPurchased(-1L, testDate));
+
+        verify(stringRedisTemplate, never()).execute(any(RedisScript.class), anyList(), anyString());
+        assertEquals(2L, purchaseBitmapService.getStatistics().get("outOfRangeCount"));
+    }
+
+    @Test
+    void testMarkAndClearPurchased() {
+        purchaseBitmapService.markPurchased(1001L, testDate);
+        purchaseBitmapService.clearPurchased(1001L, testDate);
+
+        verify(stringRedisTemplate).execute(any(RedisScript.class), eq(Arrays.asList(BITMAP_KEY, CLEARED_KEY)),
+                eq("1001"), eq("1"), anyString(), anyString());
+        verify(stringRedisTemplate).execute(any(RedisScript.class), eq(Arrays.asList(BITMAP_KEY, CLEARED_KEY)),
+                eq("1001"), eq("0"), anyString(), anyString());
+    }
+
+    @Test
+    void testMarkPurchased_FailureInvalidatesReadyMarker() {
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), anyString(), anyString(), anyString(), anyString()))
+                .thenThrow(new RuntimeException("redis down"));
+
+        purchaseBitmapService.markPurchased(1001L, testDate);
+
+        verify(stringRedisTemplate).delete(READY_KEY);
+    }
+
+    @Test
+    void testRebuild_WritesBitsInPagesAndMarksReady() {
+        when(ticketOrderMapper.selectUserIdsByDateAfterId(testDate, 0, 2)).thenReturn(orders(1L, 2L));
+        when(ticketOrderMapper.selectUserIdsByDateAfterId(testDate, 2, 2)).thenReturn(orders(3L));
+        ReflectionTestUtils.setField(purchaseBitmapService, "rebuildBatchSize", 2);
+
+        assertTrue(purchaseBitmapService.rebuild(testDate));
+
+        verify(stringRedisTemplate, times(2)).executePipelined(any(RedisCallback.class));
+        // 位图过期时间和完成标记由一个脚本原子写入，标记比位图早过期
+        verify(stringRedisTemplate).execute(any(RedisScript.class), eq(Arrays.asList(BITMAP_KEY, READY_KEY, CLEARED_KEY)),
+                eq(String.valueOf(TimeUnit.HOURS.toSeconds(73))), eq(String.valueOf(TimeUnit.HOURS.toSeconds(72))), anyString());
+        verify(stringRedisTemplate).delete(BITMAP_KEY + "_rebuilding");
+        assertEquals(3L, purchaseBitmapService.getStatistics().get("rebuildUserCount"));
+    }
+
+    @Test
+    void testRebuild_SkippedWhenOtherNodeHoldsLease() {
+        when(valueOperations.setIfAbsent(eq(BITMAP_KEY + "_rebuilding"), anyString(), anyLong(), eq(TimeUnit.SECONDS))).thenReturn(false);
+
+        assertFalse(purchaseBitmapService.rebuild(testDate));
+
+        verify(ticketOrderMapper, never()).selectUserIdsByDateAfterId(anyString(), anyInt(), anyInt());
+    }
+
+    @Test
+    void testRebuild_CancelDuringRebuildIsNotOverwritten() {
+        BitSet bitmap = new BitSet();
+        Set<String> cleared = new HashSet<>();
+        stubScripts(bitmap, cleared);
+
+        // 重建查询到用户1001的有效订单后、写入位图前，用户1001取消、用户1002取消后又购买
+        when(ticketOrderMapper.selectUserIdsByDateAfterId(eq(testDate), eq(0), anyInt())).thenAnswer(invocation -> {
+            List<TicketOrder> snapshot = orders(1001L, 1002L);
+            purchaseBitmapService.clearPurchased(1001L, testDate);
+            purchaseBitmapService.clearPurchased(1002L, testDate);
+            purchaseBitmapService.markPurchased(1002L, testDate);
+            return snapshot;
+        });
+
+        assertTrue(purchaseBitmapService.rebuild(testDate));
+
+        assertFalse(bitmap.get(1001));
+        assertTrue(bitmap.get(1002));
+        assertTrue(cleared.isEmpty());
+    }
+
+    /**
+     * 按Lua脚本逻辑在内存中模拟位图更新、重建完成脚本和管道SETBIT
+     */
+    private void stubScripts(BitSet bitmap, Set<String> cleared) {
+        Object setScript = ReflectionTestUtils.getField(purchaseBitmapService, "setScript");
+        when(stringRedisTemplate.execute(same((RedisScript) setScript), anyList(), anyString(), anyString(), anyString(), anyString()))
+                .thenAnswer(invocation -> {
+                    int userId = Integer.parseInt(invocation.getArgument(2));
+                    boolean purchased = "1".equals(invocation.getArgument(3));
+                    bitmap.set(userId, purchased);
+                    if (purchased) {
+                        cleared.remove(String.valueOf(userId));
+                    } else {
+                        cleared.add(String.valueOf(userId));
+                    }
+                    return 0L;
+                });
+        Object readyScript = ReflectionTestUtils.getField(purchaseBitmapService, "readyScript");
+        when(stringRedisTemplate.execute(same((RedisScript) readyScript), anyList(), anyString(), anyString(), anyString()))
+                .thenAnswer(invocation -> {
+                    for (String userId : cleared) {
+                        bitmap.clear(Integer.parseInt(userId));
+                    }
+                    long count = cleared.size();
+                    cleared.clear();
+                    return count;
+                });
+        RedisConnection connection = mock(RedisConnection.class);
+        when(connection.setBit(any(byte[].class), anyLong(), anyBoolean())).thenAnswer(invocation -> {
+            bitmap.set(((Long) invocation.getArgument(1)).intValue(), (Boolean) invocation.getArgument(2));
+            return false;
+        });
+        when(stringRedisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+            ((RedisCallback<?>) invocation.getArgument(0)).doInRedis(connection);
+            return Collections.emptyList();
+        });
+    }
+
+    private static List<TicketOrder> orders(Long... userIds) {
+        List<TicketOrder> orders = new ArrayList<>();
+        for (Long userId : userIds) {
+            TicketOrder order = new TicketOrder();
+            order.setId(userId.intValue());
+            order.setUserId(userId);
+            orders.add(order);
+        }
+        return orders;
+    }
+}
@@ -0,0 +1,191 @@
+package cn.monitor4all.miaoshaservice.service;
+
+import cn.monitor4all.miaoshadao.dao.TicketEntity;
+import cn.monitor4all.miaoshadao.mapper.TicketEntityMapper;
+import cn.monitor4all.miaoshadao.mapper.TicketOrderMapper;
+import cn.monitor4all.miaoshadao.model.BusinessException;
+import cn.monitor4all.miaoshadao.model.PurchaseRecord;
+import cn.monitor4all.miaoshaservice.service.impl.PurchasePipelineServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 购票流水线服务测试类
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class PurchasePipelineServiceTest {
+
+    @Mock
+    private TicketEntityMapper ticketEntityMapper;
+
+    @Mock
+    private TicketOrderMapper ticketOrderMapper;
+
+    @Mock
+    private TicketCodeGeneratorService ticketCodeGeneratorService;
+
+    @Mock
+    private TicketCacheManager ticketCacheManager;
+
+    @InjectMocks
+    private PurchasePipelineServiceImpl purchasePipelineService;
+
+    private String testDate;
+
+    @BeforeEach
+    void setUp() {
+        testDate = "2025-01-15";
+        ReflectionTestUtils.setField(purchasePipelineService, "ringSize", 8);
+        purchasePipelineService.init();
+
+        TicketEntity ticketEntity = new TicketEntity();
+        ticketEntity.setId(1);
+        ticketEntity.setRemainingCount(100);
+        when(ticketEntityMapper.selectByDate(testDate)).thenReturn(ticketEntity);
+        when(ticketCodeGeneratorService.generateUniqueTicketCode(anyLong(), eq(testDate)))
+                .thenAnswer(invocation -> "CODE" + invocation.getArgument(0));
+        when(ticketOrderMapper.insertBatch(anyList())).thenAnswer(invocation -> ((List<?>) invocation.getArgument(0)).size());
+    }
+
+    @AfterEach
+    void tearDown() {
+        purchasePipelineService.destroy();
+    }
+
+    @Test
+    void testPurchase_Success() {
+        when(ticketEntityMapper.decrementIfAvailable(testDate, 1)).thenReturn(1);
+
+        PurchaseRecord purchaseRecord = purchasePipelineService.purchase(1001L, testDate);
+
+        assertNotNull(purchaseRecord);
+        assertEquals("CODE1001", purchaseRecord.getTicketCode());
+        verify(ticketOrderMapper, times(1)).insertBatch(anyList());
+        verify(ticketCacheManager, times(1)).addPurchaseRecord(eq(1001L), eq(testDate), any(PurchaseRecord.class));
+    }
+
+    @Test
+    void testSubmit_QueuedRequestsProcessedAsOneBatch() throws Exception {
+        CountDownLatch firstBatchStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstBatch = new CountDownLatch(1);
+        when(ticketEntityMapper.decrementIfAvailable(eq(testDate), anyInt())).thenAnswer(invocation -> {
+            if ((int) invocation.getArgument(1) == 1) {
+                firstBatchStarted.countDown();
+                releaseFirstBatch.await(1, TimeUnit.SECONDS);
+            }
+            return 1;
+        });
+
+        CompletableFuture<PurchaseRecord> first = purchasePipelineService.submit(1L, testDate);
+        assertTrue(firstBatchStarted.await(1, TimeUnit.SECONDS));
+        // 消费线程阻塞在第一批时，后续请求在队列中积压
+        List<CompletableFuture<PurchaseRecord>> queued = new ArrayList<>();
+        for (long userId = 2; userId <= 6; userId++) {
+            queued.add(purchasePipelineService.submit(userId, testDate));
+        }
+        releaseFirstBatch.countDown();
+
+        assertNotNull(first.get(1, TimeUnit.SECONDS));
+        for (CompletableFuture<PurchaseRecord> future : queued) {
+            assertNotNull(future.get(1, TimeUnit.SECONDS));
+        }
+        // 积压的5个请求一条UPDATE扣减
+        verify(ticketEntityMapper, times(1)).decrementIfAvailable(testDate, 5);
+        assertEquals(2L, purchasePipelineService.getStatistics().get("totalBatches"));
+    }
+
+    @Test
+    void testSubmit_RingFullRejected() throws Exception {
+        CountDownLatch firstBatchStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstBatch = new CountDownLatch(1);
+        when(ticketEntityMapper.decrementIfAvailable(eq(testDate), anyInt())).thenAnswer(invocation -> {
+            firstBatchStarted.countDown();
+            releaseFirstBatch.await(1, TimeUnit.SECONDS);
+            return 1;
+        });
+
+        purchasePipelineService.submit(1L, testDate);
+        assertTrue(firstBatchStarted.await(1, TimeUnit.SECONDS));
+        // 第一批槽位未释放，再发布7个后队列满
+        for (long userId = 2; userId <= 8; userId++) {
+            purchasePipelineService.submit(userId, testDate);
+        }
+        assertThrows(BusinessException.class, () -> purchasePipelineService.submit(9L, testDate));
+        releaseFirstBatch.countDown();
+        assertEquals(1L, purchasePipelineService.getStatistics().get("rejectedCount"));
+    }
+
+    @Test
+    void testPurchase_SoldOutReturnsNullAndSkipsDatabaseDuringRecheck() {
+        TicketEntity soldOut = new TicketEntity();
+        soldOut.setId(1);
+        soldOut.setRemainingCount(0);
+        when(ticketEntityMapper.selectByDate(testDate)).thenReturn(soldOut);
+        when(ticketEntityMapper.decrementIfAvailable(eq(testDate), anyInt())).thenReturn(0);
+
+        assertNull(purchasePipelineService.purchase(1L, testDate));
+        assertNull(purchasePipelineService.purchase(2L, testDate));
+
+        // 售罄后复查间隔内不再访问数据库
+        verify(ticketEntityMapper, times(1)).decrementIfAvailable(eq(testDate), anyInt());
+        verify(ticketOrderMapper, never()).insertBatch(anyList());
+    }
+
+    @Test
+    void testPurchase_BatchInsertFailureFallsBackAndRestoresStock() {
+        when(ticketEntityMapper.decrementIfAvailable(testDate, 1)).thenReturn(1);
+        when(ticketOrderMapper.insertBatch(anyList())).thenThrow(new RuntimeException("duplicate"));
+        when(ticketOrderMapper.insert(any())).thenThrow(new RuntimeException("duplicate"));
+
+        assertThrows(RuntimeException.class, () -> purchasePipelineService.purchase(1L, testDate));
+
+        // 订单失败先通知调用方，再由消费线程归还库存
+        verify(ticketEntityMapper, timeout(1000).times(1)).incrementStock(testDate, 1);
+        verify(ticketCacheManager, never()).addPurchaseRecord(anyLong(), anyString(), any());
+    }
+
+    @Test
+    void testPurchase_FailureAfterInsertStillReturnsPersistedOrder() {
+        when(ticketEntityMapper.decrementIfAvailable(testDate, 1)).thenReturn(1);
+        doThrow(new RuntimeException("redis down")).when(ticketCacheManager).applyStockDelta(eq(testDate), anyInt());
+
+        PurchaseRecord purchaseRecord = purchasePipelineService.purchase(1001L, testDate);
+
+        // 订单已落库，批次后续阶段异常不影响成交结果
+        assertNotNull(purchaseRecord);
+        assertEquals("CODE1001", purchaseRecord.getTicketCode());
+        verify(ticketEntityMapper, never()).incrementStock(anyString(), anyInt());
+        assertEquals(1L, purchasePipelineService.getStatistics().get("successCount"));
+        assertEquals(0L, purchasePipelineService.getStatistics().get("errorCount"));
+    }
+
+    @Test
+    void testPurchase_FailureBeforeInsertFailsRequest() {
+        when(ticketEntityMapper.decrementIfAvailable(testDate, 1)).thenReturn(1);
+        when(ticketOrderMapper.insertBatch(anyList())).thenReturn(0);
+        when(ticketOrderMapper.insert(any())).thenReturn(0);
+        doThrow(new RuntimeException("db down")).when(ticketEntityMapper).incrementStock(anyString(), anyInt());
+
+        assertThrows(RuntimeException.class, () -> purchasePipelineService.purchase(1L, testDate));
+        verify(ticketCacheManager, never()).addPurchaseRecord(anyLong(), anyString(), any());
+    }
+}
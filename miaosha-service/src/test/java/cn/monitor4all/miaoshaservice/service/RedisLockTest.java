@@ -0,0 +1,153 @@
+package cn.monitor4all.miaoshaservice.service;
+
+import cn.monitor4all.miaoshaservice.utils.redis.RedisLock;
+import cn.monitor4all.miaoshaservice.utils.redis.RedisLockCoordinator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 分布式锁测试类
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class RedisLockTest {
+
+    private static final String LOCK_KEY = "ticket_2025-01-15_lock";
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @Mock
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @InjectMocks
+    private RedisLockCoordinator coordinator;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(coordinator, "fallbackPollMs", 5000L);
+        coordinator.init();
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), anyString(), anyString())).thenReturn(1L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        coordinator.destroy();
+    }
+
+    @Test
+    void testLockAndUnlock_ReleaseComparesOwnerToken() {
+        when(valueOperations.setIfAbsent(eq(LOCK_KEY), anyString(), eq(60000L), eq(TimeUnit.MILLISECONDS))).thenReturn(true);
+
+        RedisLock redisLock = new RedisLock(coordinator, "ticket_2025-01-15", 60, 1000);
+        assertTrue(redisLock.lock());
+        redisLock.unlock();
+
+        ArgumentCaptor<String> setToken = ArgumentCaptor.forClass(String.class);
+        verify(valueOperations).setIfAbsent(eq(LOCK_KEY), setToken.capture(), eq(60000L), eq(TimeUnit.MILLISECONDS));
+        verify(stringRedisTemplate).execute(any(RedisScript.class), eq(Collections.singletonList(LOCK_KEY)),
+                eq(setToken.getValue()), anyString());
+    }
+
+    @Test
+    void testLock_WaitersInSameJvmDoNotPollRedis() throws Exception {
+        when(valueOperations.setIfAbsent(eq(LOCK_KEY), anyString(), anyLong(), any())).thenReturn(true);
+
+        RedisLock first = new RedisLock(coordinator, "ticket_2025-01-15", 60, 1000);
+        assertTrue(first.lock());
+        CompletableFuture<Boolean> second = CompletableFuture.supplyAsync(
+                () -> new RedisLock(coordinator, "ticket_2025-01-15", 60, 2000).lock());
+
+        Thread.sleep(100);
+        // 第二个线程在本地信号量上排队，不访问Redis
+        verify(valueOperations, times(1)).setIfAbsent(eq(LOCK_KEY), anyString(), anyLong(), any());
+        assertFalse(second.isDone());
+
+        first.unlock();
+        assertTrue(second.get(1, TimeUnit.SECONDS));
+        verify(valueOperations, times(2)).setIfAbsent(eq(LOCK_KEY), anyString(), anyLong(), any());
+    }
+
+    @Test
+    void testLock_ReleaseNotificationWakesWaiter() throws Exception {
+        when(valueOperations.setIfAbsent(eq(LOCK_KEY), anyString(), anyLong(), any())).thenReturn(false, true);
+
+        long start = System.nanoTime();
+        CompletableFuture<Boolean> waiter = CompletableFuture.supplyAsync(
+                () -> new RedisLock(coordinator, "ticket_2025-01-15", 60, 3000).lock());
+        // 其他节点持有锁，等待其释放通知
+        Thread.sleep(100);
+        coordinator.onMessage(new DefaultMessage("miaosha_v1_lock_release".getBytes(StandardCharsets.UTF_8),
+                LOCK_KEY.getBytes(StandardCharsets.UTF_8)), null);
+
+        assertTrue(waiter.get(1, TimeUnit.SECONDS));
+        // 兜底间隔为5秒，收到通知后立即重试
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000);
+        Map<String, Object> stats = coordinator.getStatistics();
+        assertEquals(1L, stats.get("notifyWakeupCount"));
+        assertEquals(0L, stats.get("fallbackWakeupCount"));
+    }
+
+    @Test
+    void testLock_TimeoutReleasesLocalPermit() {
+        when(valueOperations.setIfAbsent(eq(LOCK_KEY), anyString(), anyLong(), any())).thenReturn(false);
+        assertFalse(new RedisLock(coordinator, "ticket_2025-01-15", 60, 50).lock());
+
+        // 超时后本地信号量已归还，后续加锁直接访问Redis
+        when(valueOperations.setIfAbsent(eq(LOCK_KEY), anyString(), anyLong(), any())).thenReturn(true);
+        assertTrue(new RedisLock(coordinator, "ticket_2025-01-15", 60, 50).lockWithoutRetry());
+        assertEquals(1L, coordinator.getStatistics().get("timeoutCount"));
+    }
+
+    @Test
+    void testLockWithoutRetry_FailsWhenHeldInSameJvm() {
+        when(valueOperations.setIfAbsent(eq(LOCK_KEY), anyString(), anyLong(), any())).thenReturn(true);
+
+        RedisLock first = new RedisLock(coordinator, "ticket_2025-01-15", 60, 1000);
+        assertTrue(first.lockWithoutRetry());
+        assertFalse(new RedisLock(coordinator, "ticket_2025-01-15", 60, 1000).lockWithoutRetry());
+        verify(valueOperations, times(1)).setIfAbsent(eq(LOCK_KEY), anyString(), anyLong(), any());
+        first.unlock();
+    }
+
+    @Test
+    void testUnlock_ExpiredLockIsNotDeleted() {
+        when(valueOperations.setIfAbsent(eq(LOCK_KEY), anyString(), anyLong(), any())).thenReturn(true);
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), anyString(), anyString())).thenReturn(0L);
+
+        RedisLock redisLock = new RedisLock(coordinator, "ticket_2025-01-15", 60, 1000);
+        assertTrue(redisLock.lock());
+        redisLock.unlock();
+
+        verify(stringRedisTemplate, never()).delete(anyString());
+        assertEquals(1L, coordinator.getStatistics().get("ownershipLostCount"));
+    }
+}
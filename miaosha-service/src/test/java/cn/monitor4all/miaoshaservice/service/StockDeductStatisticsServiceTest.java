@@ -0,0 +1,77 @@
+package cn.monitor4all.miaoshaservice.service;
+
+import cn.monitor4all.miaoshaservice.service.impl.StockDeductStatisticsServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 库存扣减引擎统计服务测试类
+ */
+public class StockDeductStatisticsServiceTest {
+
+    private StockDeductStatisticsServiceImpl statisticsService;
+
+    @BeforeEach
+    void setUp() {
+        statisticsService = new StockDeductStatisticsServiceImpl();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testStatisticsSeparatedByEngine() {
+        // 乐观锁引擎：2次冲突后成功，共3条UPDATE
+        for (int i = 0; i < 3; i++) {
+            statisticsService.recordStatement(StockDeductStatisticsService.ENGINE_OPTIMISTIC);
+        }
+        statisticsService.recordConflict(StockDeductStatisticsService.ENGINE_OPTIMISTIC);
+        statisticsService.recordConflict(StockDeductStatisticsService.ENGINE_OPTIMISTIC);
+        statisticsService.recordResult(StockDeductStatisticsService.ENGINE_OPTIMISTIC,
+                StockDeductStatisticsService.OUTCOME_SUCCESS, 2_000_000L);
+
+        // 条件扣减引擎：一次成功、一次售罄，各1条UPDATE
+        statisticsService.recordStatement(StockDeductStatisticsService.ENGINE_CONDITIONAL);
+        statisticsService.recordResult(StockDeductStatisticsService.ENGINE_CONDITIONAL,
+                StockDeductStatisticsService.OUTCOME_SUCCESS, 1_000_000L);
+        statisticsService.recordStatement(StockDeductStatisticsService.ENGINE_CONDITIONAL);
+        statisticsService.recordResult(StockDeductStatisticsService.ENGINE_CONDITIONAL,
+                StockDeductStatisticsService.OUTCOME_SOLD_OUT, 3_000_000L);
+
+        Map<String, Object> stats = statisticsService.getStatistics();
+        Map<String, Object> optimistic = (Map<String, Object>) stats.get(StockDeductStatisticsService.ENGINE_OPTIMISTIC);
+        Map<String, Object> conditional = (Map<String, Object>) stats.get(StockDeductStatisticsService.ENGINE_CONDITIONAL);
+
+        assertEquals(1L, optimistic.get("successCount"));
+        assertEquals(2L, optimistic.get("conflictCount"));
+        assertEquals("3.00", optimistic.get("statementsPerSuccess"));
+        assertEquals(2L, conditional.get("requests"));
+        assertEquals(1L, conditional.get("soldOutCount"));
+        assertEquals(0L, conditional.get("conflictCount"));
+        assertEquals("2.000", conditional.get("avgElapsedMs"));
+        assertEquals("3.000", conditional.get("maxElapsedMs"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFailedOutcome() {
+        statisticsService.recordResult(StockDeductStatisticsService.ENGINE_OPTIMISTIC,
+                StockDeductStatisticsService.OUTCOME_FAILED, 1_000_000L);
+
+        Map<String, Object> optimistic = (Map<String, Object>) statisticsService.getStatistics()
+                .get(StockDeductStatisticsService.ENGINE_OPTIMISTIC);
+        assertEquals(1L, optimistic.get("failedCount"));
+        assertEquals("100.00%", optimistic.get("failureRate"));
+    }
+
+    @Test
+    void testResetStatistics() {
+        statisticsService.recordStatement(StockDeductStatisticsService.ENGINE_CONDITIONAL);
+
+        statisticsService.resetStatistics();
+
+        assertTrue(statisticsService.getStatistics().isEmpty());
+    }
+}
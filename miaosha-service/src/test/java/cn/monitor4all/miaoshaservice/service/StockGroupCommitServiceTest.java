@@ -0,0 +1,125 @@
+package cn.monitor4all.miaoshaservice.service;
+
+import cn.monitor4all.miaoshadao.dao.TicketEntity;
+import cn.monitor4all.miaoshadao.mapper.TicketEntityMapper;
+import cn.monitor4all.miaoshaservice.service.impl.StockGroupCommitServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 库存组提交服务测试类
+ */
+@ExtendWith(MockitoExtension.class)
+public class StockGroupCommitServiceTest {
+
+    @Mock
+    private TicketEntityMapper ticketEntityMapper;
+
+    @InjectMocks
+    private StockGroupCommitServiceImpl stockGroupCommitService;
+
+    private String testDate;
+
+    @BeforeEach
+    void setUp() {
+        testDate = "2025-01-15";
+        // 放宽等待窗口，保证同一测试内的请求落在一个批次
+        ReflectionTestUtils.setField(stockGroupCommitService, "windowMs", 50L);
+        stockGroupCommitService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        stockGroupCommitService.destroy();
+    }
+
+    @Test
+    void testSubmit_ConcurrentRequestsMergedIntoOneStatement() throws Exception {
+        when(ticketEntityMapper.decrementIfAvailable(eq(testDate), anyInt())).thenReturn(1);
+
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(stockGroupCommitService.submit(testDate));
+        }
+        for (CompletableFuture<Boolean> future : futures) {
+            assertTrue(future.get(1, TimeUnit.SECONDS));
+        }
+
+        // 10个请求在同一个等待窗口内，只执行一次扣减10张
+        verify(ticketEntityMapper, times(1)).decrementIfAvailable(testDate, 10);
+        Map<String, Object> stats = stockGroupCommitService.getStatistics();
+        assertEquals(1L, stats.get("totalBatches"));
+        assertEquals(10L, stats.get("maxBatch"));
+        assertEquals(10L, stats.get("successCount"));
+    }
+
+    @Test
+    void testSubmit_PartialFillWhenStockInsufficient() throws Exception {
+        TicketEntity ticketEntity = new TicketEntity();
+        ticketEntity.setRemainingCount(3);
+        when(ticketEntityMapper.decrementIfAvailable(testDate, 5)).thenReturn(0);
+        when(ticketEntityMapper.selectByDate(testDate)).thenReturn(ticketEntity);
+        when(ticketEntityMapper.decrementIfAvailable(testDate, 3)).thenReturn(1);
+
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(stockGroupCommitService.submit(testDate));
+        }
+
+        int success = 0;
+        for (CompletableFuture<Boolean> future : futures) {
+            if (future.get(1, TimeUnit.SECONDS)) {
+                success++;
+            }
+        }
+        assertEquals(3, success);
+        assertEquals(2L, stockGroupCommitService.getStatistics().get("soldOutCount"));
+    }
+
+    @Test
+    void testSubmit_SoldOut() throws Exception {
+        TicketEntity ticketEntity = new TicketEntity();
+        ticketEntity.setRemainingCount(0);
+        when(ticketEntityMapper.decrementIfAvailable(testDate, 1)).thenReturn(0);
+        when(ticketEntityMapper.selectByDate(testDate)).thenReturn(ticketEntity);
+
+        assertFalse(stockGroupCommitService.deduct(testDate));
+    }
+
+    @Test
+    void testSubmit_DatabaseErrorPropagatesToAllCallers() {
+        when(ticketEntityMapper.decrementIfAvailable(eq(testDate), anyInt())).thenThrow(new RuntimeException("db down"));
+
+        CompletableFuture<Boolean> first = stockGroupCommitService.submit(testDate);
+        CompletableFuture<Boolean> second = stockGroupCommitService.submit(testDate);
+
+        assertThrows(Exception.class, () -> first.get(1, TimeUnit.SECONDS));
+        assertThrows(Exception.class, () -> second.get(1, TimeUnit.SECONDS));
+        assertThrows(RuntimeException.class, () -> stockGroupCommitService.deduct(testDate));
+    }
+
+    @Test
+    void testRestore() {
+        when(ticketEntityMapper.incrementStock(testDate, 1)).thenReturn(1);
+
+        stockGroupCommitService.restore(testDate);
+
+        verify(ticketEntityMapper, times(1)).incrementStock(testDate, 1);
+    }
+}
@@ -0,0 +1,315 @@
+package cn.monitor4all.miaoshaservice.service;
+
+import cn.monitor4all.miaoshadao.mapper.TicketEntityMapper;
+import cn.monitor4all.miaoshadao.mapper.TicketOrderMapper;
+import cn.monitor4all.miaoshaservice.service.impl.StockLeaseServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 节点本地库存租约服务测试类
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class StockLeaseServiceTest {
+
+    @Mock
+    private TicketEntityMapper ticketEntityMapper;
+
+    @Mock
+    private TicketOrderMapper ticketOrderMapper;
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @Mock
+    private HashOperations<String, Object, Object> hashOperations;
+
+    @Mock
+    private SetOperations<String, String> setOperations;
+
+    @Mock
+    private TicketCacheManager ticketCacheManager;
+
+    @InjectMocks
+    private StockLeaseServiceImpl stockLeaseService;
+
+    private String testDate;
+
+    // 按Lua脚本逻辑在内存中模拟的租约哈希：节点 -> 净租约数量 / 纪元 / 已售数量
+    private final Map<String, Long> leased = new HashMap<>();
+    private final Map<String, Long> epochs = new HashMap<>();
+    private final Map<String, Long> sold = new HashMap<>();
+    private long epochSeq;
+
+    @BeforeEach
+    void setUp() {
+        testDate = "2025-01-15";
+        ReflectionTestUtils.setField(stockLeaseService, "blockSize", 10);
+        // 同步执行续租任务，便于断言
+        ReflectionTestUtils.setField(stockLeaseService, "stockLeaseExecutor", (Executor) Runnable::run);
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(stringRedisTemplate.opsForHash()).thenReturn(hashOperations);
+        when(stringRedisTemplate.opsForSet()).thenReturn(setOperations);
+        stockLeaseService.init();
+        stubScripts(stockLeaseService);
+        when(hashOperations.get(endsWith("_epoch"), any())).thenAnswer(invocation -> {
+            Long epoch = epochs.get(invocation.<String>getArgument(1));
+            return epoch == null ? null : String.valueOf(epoch);
+        });
+    }
+
+    @Test
+    void testTryAcquire_SellsFromLocalLeaseWithoutDbCall() {
+        when(ticketEntityMapper.decrementIfAvailable(testDate, 10)).thenReturn(1);
+
+        // 前7张都在本地租约内售出，只续租一次
+        for (int i = 0; i < 7; i++) {
+            assertEquals(1, stockLeaseService.tryAcquire(testDate));
+        }
+
+        verify(ticketEntityMapper, times(1)).decrementIfAvailable(testDate, 10);
+        assertEquals(10L, leased.get(stockLeaseService.getNodeId()));
+        assertEquals(7L, sold.get(stockLeaseService.getNodeId()));
+        // 票券缓存只在续租时扣减
+        verify(ticketCacheManager, times(1)).applyStockDelta(testDate, -10);
+    }
+
+    @Test
+    void testTryAcquire_LowWatermarkTriggersRefill() {
+        when(ticketEntityMapper.decrementIfAvailable(testDate, 10)).thenReturn(1);
+
+        // 第8张售出后剩余2张，低于水位 10 * 0.2 触发续租
+        for (int i = 0; i < 8; i++) {
+            assertTrue(stockLeaseService.tryAcquire(testDate) > 0);
+        }
+
+        verify(ticketEntityMapper, times(2)).decrementIfAvailable(testDate, 10);
+        // 同一纪元内续租累加净租约
+        assertEquals(20L, leased.get(stockLeaseService.getNodeId()));
+        assertEquals(1L, epochs.get(stockLeaseService.getNodeId()));
+    }
+
+    @Test
+    void testTryAcquire_SoldOut() {
+        when(ticketEntityMapper.decrementIfAvailable(eq(testDate), anyInt())).thenReturn(0);
+        when(ticketEntityMapper.selectByDate(testDate)).thenReturn(null);
+
+        assertEquals(StockLeaseService.NO_LEASE, stockLeaseService.tryAcquire(testDate));
+        assertTrue(leased.isEmpty());
+    }
+
+    @Test
+    void testReturnAllLeases() {
+        when(ticketEntityMapper.decrementIfAvailable(testDate, 10)).thenReturn(1);
+        assertTrue(stockLeaseService.tryAcquire(testDate) > 0);
+
+        int returned = stockLeaseService.returnAllLeases();
+
+        assertEquals(9, returned);
+        verify(ticketEntityMapper, times(1)).incrementStock(testDate, 9);
+        assertEquals(1L, leased.get(stockLeaseService.getNodeId()));
+        verify(ticketCacheManager, times(1)).applyStockDelta(testDate, 9);
+    }
+
+    @Test
+    void testReclaimDeadNodeLeases() {
+        leased.put("deadnode", 50L);
+        epochs.put("deadnode", 1L);
+        sold.put("deadnode", 30L);
+        leased.put("livenode", 50L);
+        epochs.put("livenode", 2L);
+        stubLeaseEntries();
+        when(setOperations.members(anyString())).thenReturn(Collections.singleton(testDate));
+        when(stringRedisTemplate.hasKey(endsWith("_deadnode"))).thenReturn(false);
+        when(stringRedisTemplate.hasKey(endsWith("_livenode"))).thenReturn(true);
+
+        int reclaimed = stockLeaseService.reclaimDeadNodeLeases();
+
+        // 净租约50张，已售30张，归还20张
+        assertEquals(20, reclaimed);
+        verify(ticketEntityMapper, times(1)).incrementStock(testDate, 20);
+        assertFalse(epochs.containsKey("deadnode"));
+        assertEquals(50L, leased.get("livenode"));
+        verify(ticketOrderMapper, never()).countByDateAndOrderNoPrefix(anyString(), anyString());
+    }
+
+    @Test
+    void testReclaimDeadNodeLeases_WithoutSoldCountFallsBackToOrderPrefix() {
+        // 纪元引入前的租约没有已售数量记录
+        leased.put("deadnode", 50L);
+        stubLeaseEntries();
+        when(setOperations.members(anyString())).thenReturn(Collections.singleton(testDate));
+        when(stringRedisTemplate.hasKey(anyString())).thenReturn(false);
+        when(ticketOrderMapper.countByDateAndOrderNoPrefix(testDate, "TLdeadnode")).thenReturn(30);
+
+        assertEquals(20, stockLeaseService.reclaimDeadNodeLeases());
+        verify(ticketEntityMapper, times(1)).incrementStock(testDate, 20);
+    }
+
+    @Test
+    void testReclaimDeadNodeLeases_ClaimedByOtherNode() {
+        leased.put("deadnode", 50L);
+        stubLeaseEntries();
+        when(setOperations.members(anyString())).thenReturn(Collections.singleton(testDate));
+        when(stringRedisTemplate.hasKey(anyString())).thenReturn(false);
+        // 读取租约列表后，其他节点先完成了回收
+        leased.remove("deadnode");
+
+        assertEquals(0, stockLeaseService.reclaimDeadNodeLeases());
+        verify(ticketEntityMapper, never()).incrementStock(anyString(), anyInt());
+    }
+
+    @Test
+    void testHeartbeat_FencesReclaimedLease() {
+        when(ticketEntityMapper.decrementIfAvailable(testDate, 10)).thenReturn(1);
+        assertTrue(stockLeaseService.tryAcquire(testDate) > 0);
+        epochs.remove(stockLeaseService.getNodeId());
+
+        stockLeaseService.heartbeat();
+
+        // 租约被回收后不再售卖本地剩余，重新续租失败则售罄
+        when(ticketEntityMapper.decrementIfAvailable(eq(testDate), anyInt())).thenReturn(0);
+        assertEquals(StockLeaseService.NO_LEASE, stockLeaseService.tryAcquire(testDate));
+    }
+
+    @Test
+    void testPausedNodeIsFencedAfterReclaim() {
+        when(ticketEntityMapper.decrementIfAvailable(testDate, 10)).thenReturn(1);
+        String pausedNode = stockLeaseService.getNodeId();
+        for (int i = 0; i < 3; i++) {
+            assertEquals(1, stockLeaseService.tryAcquire(testDate));
+        }
+
+        // 本节点停顿超过心跳过期时间，另一节点回收租约：净租约10张，已售3张，归还7张
+        StockLeaseServiceImpl otherNode = new StockLeaseServiceImpl();
+        ReflectionTestUtils.setField(otherNode, "ticketEntityMapper", ticketEntityMapper);
+        ReflectionTestUtils.setField(otherNode, "ticketOrderMapper", ticketOrderMapper);
+        ReflectionTestUtils.setField(otherNode, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(otherNode, "ticketCacheManager", ticketCacheManager);
+        otherNode.init();
+        stubScripts(otherNode);
+        stubLeaseEntries();
+        when(setOperations.members(anyString())).thenReturn(Collections.singleton(testDate));
+        when(stringRedisTemplate.hasKey(endsWith("_" + pausedNode))).thenReturn(false);
+        assertEquals(7, otherNode.reclaimDeadNodeLeases());
+
+        // 本节点恢复后心跳之前就有请求到达：本地剩余7张，但旧纪元已被隔离，拒绝售出并清空本地剩余
+        when(ticketEntityMapper.decrementIfAvailable(eq(testDate), anyInt())).thenReturn(0);
+        assertEquals(StockLeaseService.NO_LEASE, stockLeaseService.tryAcquire(testDate));
+        assertFalse(sold.containsKey(pausedNode));
+
+        // 停顿前售出但下单失败的退回同样被拒绝，回收时已按已售计算
+        stockLeaseService.release(testDate, 1);
+        assertFalse(sold.containsKey(pausedNode));
+
+        // 本地剩余已清空，归还不会重复归还数据库
+        assertEquals(0, stockLeaseService.returnAllLeases());
+        verify(ticketEntityMapper, times(1)).incrementStock(testDate, 7);
+    }
+
+    @Test
+    void testReleaseReturnsTicketToSameEpoch() {
+        when(ticketEntityMapper.decrementIfAvailable(testDate, 10)).thenReturn(1);
+        int epoch = stockLeaseService.tryAcquire(testDate);
+
+        stockLeaseService.release(testDate, epoch);
+
+        assertEquals(0L, sold.get(stockLeaseService.getNodeId()));
+        assertEquals(10, stockLeaseService.returnAllLeases());
+    }
+
+    /**
+     * 按Lua脚本逻辑在内存中模拟续租、售出/退回、归还和回收
+     */
+    private void stubScripts(StockLeaseServiceImpl service) {
+        RedisScript<?> grantScript = (RedisScript<?>) ReflectionTestUtils.getField(service, "grantScript");
+        when(stringRedisTemplate.execute(same(grantScript), anyList(), anyString(), anyString(), anyString()))
+                .thenAnswer(invocation -> {
+                    String node = invocation.getArgument(2);
+                    if (!epochs.containsKey(node)) {
+                        epochs.put(node, ++epochSeq);
+                        sold.put(node, 0L);
+                    }
+                    leased.merge(node, Long.parseLong(invocation.getArgument(3)), Long::sum);
+                    return epochs.get(node);
+                });
+        RedisScript<?> consumeScript = (RedisScript<?>) ReflectionTestUtils.getField(service, "consumeScript");
+        when(stringRedisTemplate.execute(same(consumeScript), anyList(), anyString(), anyString(), anyString()))
+                .thenAnswer(invocation -> {
+                    String node = invocation.getArgument(2);
+                    if (!String.valueOf(epochs.get(node)).equals(invocation.getArgument(3))) {
+                        return 0L;
+                    }
+                    sold.merge(node, Long.parseLong(invocation.getArgument(4)), Long::sum);
+                    return 1L;
+                });
+        RedisScript<?> returnScript = (RedisScript<?>) ReflectionTestUtils.getField(service, "returnScript");
+        when(stringRedisTemplate.execute(same(returnScript), anyList(), anyString(), anyString(), anyString()))
+                .thenAnswer(invocation -> {
+                    String node = invocation.getArgument(2);
+                    if (!String.valueOf(epochs.get(node)).equals(invocation.getArgument(3))) {
+                        return 0L;
+                    }
+                    leased.merge(node, -Long.parseLong(invocation.getArgument(4)), Long::sum);
+                    return 1L;
+                });
+        RedisScript<?> reclaimScript = (RedisScript<?>) ReflectionTestUtils.getField(service, "reclaimScript");
+        when(stringRedisTemplate.execute(same(reclaimScript), anyList(), anyString()))
+                .thenAnswer(invocation -> {
+                    String node = invocation.getArgument(2);
+                    Long leasedCount = leased.remove(node);
+                    if (leasedCount == null) {
+                        return Collections.emptyList();
+                    }
+                    epochs.remove(node);
+                    Long soldCount = sold.remove(node);
+                    return Arrays.asList(leasedCount, soldCount == null ? -1L : soldCount);
+                });
+    }
+
+    /**
+     * 租约哈希读取返回当前模拟状态的快照
+     */
+    private void stubLeaseEntries() {
+        when(hashOperations.entries(anyString())).thenAnswer(invocation -> {
+            Map<Object, Object> entries = new HashMap<>();
+            leased.forEach((node, count) -> entries.put(node, String.valueOf(count)));
+            return entries;
+        });
+    }
+
+    @Test
+    void testGenerateLeaseOrderNo() {
+        String orderNo = stockLeaseService.generateLeaseOrderNo(12345L);
+
+        assertTrue(orderNo.startsWith("TL" + stockLeaseService.getNodeId()));
+        assertTrue(orderNo.length() <= 64);
+    }
+}
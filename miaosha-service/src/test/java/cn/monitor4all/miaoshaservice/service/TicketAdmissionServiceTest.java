@@ -0,0 +1,268 @@
+package cn.monitor4all.miaoshaservice.service;
+
+import cn.monitor4all.miaoshadao.dao.TicketEntity;
+import cn.monitor4all.miaoshadao.dao.TicketOrder;
+import cn.monitor4all.miaoshadao.mapper.TicketEntityMapper;
+import cn.monitor4all.miaoshadao.mapper.TicketOrderMapper;
+import cn.monitor4all.miaoshadao.model.BusinessException;
+import cn.monitor4all.miaoshadao.utils.CacheKey;
+import cn.monitor4all.miaoshaservice.service.impl.TicketAdmissionServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 购票准入服务测试类
+ */
+@ExtendWith(MockitoExtension.class)
+public class TicketAdmissionServiceTest {
+
+    private static final String STOCK_KEY_PREFIX = CacheKey.ADMISSION_STOCK.getKey() + "_";
+
+    private static final String USER_KEY_PREFIX = CacheKey.ADMISSION_USER.getKey() + "_";
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private TicketEntityMapper ticketEntityMapper;
+
+    @Mock
+    private TicketOrderMapper ticketOrderMapper;
+
+    @Mock
+    private TicketCodeGeneratorService ticketCodeGeneratorService;
+
+    @Mock
+    private TicketCacheManager ticketCacheManager;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @Mock
+    private HashOperations<String, Object, Object> hashOperations;
+
+    @InjectMocks
+    private TicketAdmissionServiceImpl ticketAdmissionService;
+
+    private Long testUserId;
+    private String testDate;
+    private TicketEntity testTicketEntity;
+
+    @BeforeEach
+    void setUp() {
+        ticketAdmissionService.init();
+
+        testUserId = 12345L;
+        testDate = "2025-01-15";
+
+        testTicketEntity = new TicketEntity();
+        testTicketEntity.setId(1);
+        testTicketEntity.setDate(testDate);
+        testTicketEntity.setTotalCount(100);
+        testTicketEntity.setRemainingCount(10);
+        testTicketEntity.setSoldCount(90);
+        testTicketEntity.setVersion(3);
+    }
+
+    @Test
+    void testTryAdmit_Admitted() {
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), anyString(), anyString(), anyString()))
+                .thenReturn(1L);
+
+        int result = ticketAdmissionService.tryAdmit(testUserId, testDate, "REQ_1");
+
+        assertEquals(TicketAdmissionService.ADMITTED, result);
+        verify(ticketEntityMapper, never()).selectByDate(anyString());
+    }
+
+    @Test
+    void testTryAdmit_StockNotReady_SyncFromDbAndRetry() {
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), anyString(), anyString(), anyString()))
+                .thenReturn(-1L, 1L);
+        when(ticketEntityMapper.selectByDate(testDate)).thenReturn(testTicketEntity);
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(anyString(), eq("10"), anyLong(), eq(TimeUnit.SECONDS))).thenReturn(true);
+
+        int result = ticketAdmissionService.tryAdmit(testUserId, testDate, "REQ_1");
+
+        assertEquals(TicketAdmissionService.ADMITTED, result);
+        verify(stringRedisTemplate, times(2)).execute(any(RedisScript.class), anyList(), anyString(), anyString(), anyString());
+    }
+
+    @Test
+    void testTryAdmit_TicketNotExist() {
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), anyString(), anyString(), anyString()))
+                .thenReturn(-1L);
+        when(ticketEntityMapper.selectByDate(testDate)).thenReturn(null);
+
+        assertThrows(BusinessException.class, () -> ticketAdmissionService.tryAdmit(testUserId, testDate, "REQ_1"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testDryRunAdmit_UsesScratchKeysOnly() {
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), anyString(), anyString(), anyString()))
+                .thenReturn(-1L, 1L, 1L);
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(eq(STOCK_KEY_PREFIX + testDate + "_dryrun"), anyString(), anyLong(), eq(TimeUnit.SECONDS)))
+                .thenReturn(true);
+
+        assertEquals(TicketAdmissionService.ADMITTED, ticketAdmissionService.dryRunAdmit(testUserId, testDate, "REQ_1"));
+        assertEquals(TicketAdmissionService.ADMITTED, ticketAdmissionService.dryRunAdmit(testUserId, testDate, "REQ_1"));
+
+        // 临时库存计数从大值初始化，不查库；准入脚本只操作临时键，每次空跑使用不同的临时用户
+        verify(ticketEntityMapper, never()).selectByDate(anyString());
+        verify(stringRedisTemplate, never()).execute(any(RedisScript.class),
+                argThat(keys -> ((List<String>) keys).stream().anyMatch(key -> !key.endsWith("_dryrun"))),
+                anyString(), anyString(), anyString());
+        verify(stringRedisTemplate, times(2)).execute(any(RedisScript.class), anyList(),
+                eq(testUserId + "_1"), anyString(), anyString());
+        verify(stringRedisTemplate, times(1)).execute(any(RedisScript.class), anyList(),
+                eq(testUserId + "_2"), anyString(), anyString());
+    }
+
+    @Test
+    void testCreateOrderFromAdmission_Success() {
+        when(ticketOrderMapper.selectByUserIdAndDate(testUserId, testDate)).thenReturn(null);
+        when(ticketEntityMapper.selectByDate(testDate)).thenReturn(testTicketEntity);
+        when(ticketEntityMapper.decrementIfAvailable(testDate, 1)).thenReturn(1);
+        when(ticketCodeGeneratorService.generateUniqueTicketCode(testUserId, testDate)).thenReturn("T2025011512345000001");
+        when(ticketOrderMapper.insert(any(TicketOrder.class))).thenReturn(1);
+        when(stringRedisTemplate.opsForHash()).thenReturn(hashOperations);
+
+        ticketAdmissionService.createOrderFromAdmission(buildMessage());
+
+        verify(ticketEntityMapper, times(1)).decrementIfAvailable(testDate, 1);
+        verify(ticketEntityMapper, never()).updateStockByOptimistic(any(TicketEntity.class));
+        verify(ticketOrderMapper, times(1)).insert(argThat(order ->
+                TicketAdmissionServiceImpl.ADMISSION_ORDER_REMARK.equals(order.getRemark())));
+        verify(hashOperations, times(1)).delete(anyString(), eq(String.valueOf(testUserId)));
+        verify(ticketCacheManager, times(1)).applyStockDelta(testDate, -1);
+    }
+
+    @Test
+    void testCreateOrderFromAdmission_ExistingOrderFromOtherMode() {
+        TicketOrder existingOrder = new TicketOrder();
+        existingOrder.setOrderNo("TB1");
+        existingOrder.setRemark("乐观锁购票生成");
+        when(ticketOrderMapper.selectByUserIdAndDate(testUserId, testDate)).thenReturn(existingOrder);
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), anyString(), anyString(), anyString()))
+                .thenReturn(1L);
+
+        ticketAdmissionService.createOrderFromAdmission(buildMessage());
+
+        // 保留限购标记，归还库存计数
+        verify(stringRedisTemplate, times(1)).execute(any(RedisScript.class), anyList(),
+                eq(String.valueOf(testUserId)), eq("0"), eq("1"));
+        verify(ticketEntityMapper, never()).decrementIfAvailable(anyString(), anyInt());
+        verify(ticketOrderMapper, never()).insert(any(TicketOrder.class));
+    }
+
+    @Test
+    void testCreateOrderFromAdmission_DbSoldOut() {
+        when(ticketOrderMapper.selectByUserIdAndDate(testUserId, testDate)).thenReturn(null);
+        when(ticketEntityMapper.selectByDate(testDate)).thenReturn(testTicketEntity);
+        when(ticketEntityMapper.decrementIfAvailable(testDate, 1)).thenReturn(0);
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), anyString(), anyString(), anyString()))
+                .thenReturn(1L);
+
+        ticketAdmissionService.createOrderFromAdmission(buildMessage());
+
+        // 移除限购标记，不归还库存计数
+        verify(stringRedisTemplate, times(1)).execute(any(RedisScript.class), anyList(),
+                eq(String.valueOf(testUserId)), eq("1"), eq("0"));
+        verify(ticketOrderMapper, never()).insert(any(TicketOrder.class));
+    }
+
+    @Test
+    void testCreateOrderFromAdmission_ConcurrentWritersDoNotRequeue() {
+        // 同一日期的并发落库：条件扣减只在库存不足时失败，不会因版本冲突抛出异常导致消息重新入队
+        when(ticketOrderMapper.selectByUserIdAndDate(testUserId, testDate)).thenReturn(null);
+        when(ticketEntityMapper.selectByDate(testDate)).thenReturn(testTicketEntity);
+        when(ticketEntityMapper.decrementIfAvailable(testDate, 1)).thenReturn(1);
+        when(ticketCodeGeneratorService.generateUniqueTicketCode(testUserId, testDate)).thenReturn("T2025011512345000001");
+        when(ticketOrderMapper.insert(any(TicketOrder.class))).thenReturn(1);
+        when(stringRedisTemplate.opsForHash()).thenReturn(hashOperations);
+
+        assertDoesNotThrow(() -> ticketAdmissionService.createOrderFromAdmission(buildMessage()));
+        verify(ticketEntityMapper, never()).updateStockByOptimistic(any(TicketEntity.class));
+        verify(ticketOrderMapper, times(1)).insert(any(TicketOrder.class));
+    }
+
+    @Test
+    void testReleaseAfterCancel_AdmittedUserRestoresStock() {
+        Map<String, Long> counters = new HashMap<>();
+        Map<String, Set<String>> sets = new HashMap<>();
+        stubReleaseScript(counters, sets);
+        counters.put(STOCK_KEY_PREFIX + testDate, 5L);
+        sets.computeIfAbsent(USER_KEY_PREFIX + testDate, k -> new HashSet<>()).add(String.valueOf(testUserId));
+
+        ticketAdmissionService.releaseAfterCancel(testUserId, testDate);
+
+        assertEquals(6L, counters.get(STOCK_KEY_PREFIX + testDate));
+        assertFalse(sets.get(USER_KEY_PREFIX + testDate).contains(String.valueOf(testUserId)));
+    }
+
+    @Test
+    void testReleaseAfterCancel_NonAdmissionOrderKeepsStock() {
+        Map<String, Long> counters = new HashMap<>();
+        Map<String, Set<String>> sets = new HashMap<>();
+        stubReleaseScript(counters, sets);
+        counters.put(STOCK_KEY_PREFIX + testDate, 5L);
+        // 其他用户经过了准入，被取消订单的用户是通过乐观锁等其他方式购票的
+        sets.computeIfAbsent(USER_KEY_PREFIX + testDate, k -> new HashSet<>()).add("99999");
+
+        ticketAdmissionService.releaseAfterCancel(testUserId, testDate);
+        ticketAdmissionService.releaseAfterCancel(testUserId, testDate);
+
+        // 库存计数不变，其他用户的限购标记不受影响
+        assertEquals(5L, counters.get(STOCK_KEY_PREFIX + testDate));
+        assertTrue(sets.get(USER_KEY_PREFIX + testDate).contains("99999"));
+    }
+
+    /**
+     * 按 purchase_admission_release.lua 的逻辑在内存中执行释放脚本
+     */
+    private void stubReleaseScript(Map<String, Long> counters, Map<String, Set<String>> sets) {
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), anyString())).thenAnswer(invocation -> {
+            List<String> keys = invocation.getArgument(1);
+            String userId = invocation.getArgument(2);
+            Set<String> users = sets.get(keys.get(1));
+            if (users == null || !users.remove(userId)) {
+                return -2L;
+            }
+            if (counters.containsKey(keys.get(0))) {
+                return counters.merge(keys.get(0), 1L, Long::sum);
+            }
+            return -1L;
+        });
+    }
+
+    private Map<String, Object> buildMessage() {
+        Map<String, Object> message = new HashMap<>();
+        message.put("requestId", "REQ_1");
+        message.put("userId", testUserId);
+        message.put("date", testDate);
+        message.put("mode", "admission");
+        return message;
+    }
+}
@@ -0,0 +1,219 @@
+package cn.monitor4all.miaoshaservice.service;
+
+import cn.monitor4all.miaoshadao.dao.TicketOrder;
+import cn.monitor4all.miaoshadao.mapper.TicketOrderMapper;
+import cn.monitor4all.miaoshadao.mapper.TicketPurchaseRecordMapper;
+import cn.monitor4all.miaoshadao.model.PurchaseRecord;
+import cn.monitor4all.miaoshadao.model.Ticket;
+import cn.monitor4all.miaoshadao.utils.CacheKey;
+import cn.monitor4all.miaoshaservice.service.impl.TicketCacheManagerImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 票券缓存管理器批量读取测试类
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class TicketCacheManagerBatchReadTest {
+
+    private static final String DAY1 = "2025-01-15";
+    private static final String DAY2 = "2025-01-16";
+    private static final String DAY3 = "2025-01-17";
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @Mock
+    private TicketPurchaseRecordMapper ticketPurchaseRecordMapper;
+
+    @Mock
+    private TicketOrderMapper ticketOrderMapper;
+
+    @Mock
+    private TicketNearCacheService ticketNearCacheService;
+
+    @Mock
+    private CacheLoadingService cacheLoadingService;
+
+    @Mock
+    private TicketStockCacheService ticketStockCacheService;
+
+    @Mock
+    private PurchaseBitmapService purchaseBitmapService;
+
+    @Mock
+    private AsyncCacheDeleteService asyncCacheDeleteService;
+
+    @Mock
+    private EntityCodecService entityCodecService;
+
+    @InjectMocks
+    private TicketCacheManagerImpl ticketCacheManager;
+
+    private List<String> dates;
+
+    @BeforeEach
+    void setUp() {
+        dates = Arrays.asList(DAY1, DAY2, DAY3);
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+    }
+
+    @Test
+    void testGetTicketsWithFallback_OnlyNearCacheMissesGoToRedis() {
+        when(ticketNearCacheService.getTicket(DAY1)).thenReturn(new Ticket(DAY1, 100));
+        Ticket day3 = new Ticket(DAY3, 200);
+        day3.setRemaining(180);
+        Map<String, Ticket> fromRedis = new LinkedHashMap<>();
+        fromRedis.put(DAY2, new Ticket(DAY2, 150));
+        fromRedis.put(DAY3, day3);
+        when(ticketStockCacheService.getOrLoadAll(Arrays.asList(DAY2, DAY3))).thenReturn(fromRedis);
+
+        Map<String, Ticket> tickets = ticketCacheManager.getTicketsWithFallback(dates);
+
+        assertEquals(dates, new ArrayList<>(tickets.keySet()));
+        assertEquals(150, tickets.get(DAY2).getTotal());
+        assertEquals(180, tickets.get(DAY3).getRemaining());
+        verify(ticketStockCacheService, times(1)).getOrLoadAll(anyList());
+        verify(ticketNearCacheService, times(1)).putTicket(DAY3, day3);
+    }
+
+    @Test
+    void testGetTicketsWithFallback_AllFromNearCacheSkipsRedis() {
+        when(ticketNearCacheService.getTicket(anyString())).thenAnswer(invocation -> new Ticket(invocation.getArgument(0), 100));
+
+        Map<String, Ticket> tickets = ticketCacheManager.getTicketsWithFallback(dates);
+
+        assertEquals(3, tickets.size());
+        verify(ticketStockCacheService, never()).getOrLoadAll(anyList());
+    }
+
+    @Test
+    void testDeleteTicket_BinlogModeStillBumpsVersion() {
+        ReflectionTestUtils.setField(ticketCacheManager, "binlogInvalidationEnabled", true);
+
+        ticketCacheManager.deleteTicket(DAY1);
+
+        // binlog只删除票券hash不递增版本号，版本号仍由业务路径递增
+        verify(ticketStockCacheService, times(1)).invalidate(DAY1);
+        verify(ticketNearCacheService, times(1)).invalidate(DAY1);
+
+        // 删除失败时不提交双重异步删除
+        doThrow(new RuntimeException("redis down")).when(ticketStockCacheService).invalidate(DAY2);
+        ticketCacheManager.deleteTicket(DAY2);
+        verify(asyncCacheDeleteService, never()).deleteCacheDualAsync(anyString());
+    }
+
+    @Test
+    void testApplyStockDelta_OutsideTransactionAppliedImmediately() {
+        ticketCacheManager.applyStockDelta(DAY1, -1);
+
+        verify(ticketStockCacheService, times(1)).applyDelta(DAY1, -1);
+        // 每次购票只失效本节点，不广播失效通知
+        verify(ticketNearCacheService, times(1)).invalidateLocal(DAY1);
+        verify(ticketNearCacheService, never()).invalidate(anyString());
+        verify(ticketStockCacheService, never()).invalidate(anyString());
+    }
+
+    @Test
+    void testApplyStockDelta_InsideTransactionDeferredUntilCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            ticketCacheManager.applyStockDelta(DAY1, -1);
+            verify(ticketStockCacheService, never()).applyDelta(anyString(), anyInt());
+
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCommit();
+            }
+            verify(ticketStockCacheService, times(1)).applyDelta(DAY1, -1);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void testApplyStockDelta_FailureInvalidatesCache() {
+        when(ticketStockCacheService.applyDelta(DAY1, -1)).thenThrow(new RuntimeException("Redis不可用"));
+
+        ticketCacheManager.applyStockDelta(DAY1, -1);
+
+        verify(ticketStockCacheService, times(1)).invalidate(DAY1);
+    }
+
+    @Test
+    void testGetUserPurchaseStatus_FallsThroughTiersOnlyForUnresolvedDates() {
+        Map<String, Boolean> fromBitmap = new LinkedHashMap<>();
+        fromBitmap.put(DAY1, true);
+        fromBitmap.put(DAY2, null);
+        fromBitmap.put(DAY3, null);
+        when(purchaseBitmapService.hasPurchased(1001L, dates)).thenReturn(fromBitmap);
+        String day2Key = CacheKey.USER_HAS_ORDER.getKey() + "_" + DAY2 + "_1001";
+        String day3Key = CacheKey.USER_HAS_ORDER.getKey() + "_" + DAY3 + "_1001";
+        when(valueOperations.multiGet(Arrays.asList(day2Key, day3Key))).thenReturn(Arrays.asList("0", null));
+        TicketOrder order = new TicketOrder();
+        order.setTicketDate(DAY3);
+        when(ticketOrderMapper.selectByUserIdAndDates(1001L, Collections.singletonList(DAY3))).thenReturn(Collections.singletonList(order));
+
+        Map<String, Boolean> statuses = ticketCacheManager.getUserPurchaseStatus(1001L, dates);
+
+        assertEquals(Boolean.TRUE, statuses.get(DAY1));
+        assertEquals(Boolean.FALSE, statuses.get(DAY2));
+        assertEquals(Boolean.TRUE, statuses.get(DAY3));
+        verify(stringRedisTemplate, times(1)).executePipelined(any(RedisCallback.class));
+        verify(ticketOrderMapper, never()).selectByUserIdAndDate(anyLong(), anyString());
+    }
+
+    @Test
+    void testGetUserPurchaseStatus_BitmapResolvesAll() {
+        Map<String, Boolean> fromBitmap = new HashMap<>();
+        fromBitmap.put(DAY1, false);
+        fromBitmap.put(DAY2, false);
+        fromBitmap.put(DAY3, true);
+        when(purchaseBitmapService.hasPurchased(1001L, dates)).thenReturn(fromBitmap);
+
+        Map<String, Boolean> statuses = ticketCacheManager.getUserPurchaseStatus(1001L, dates);
+
+        assertEquals(Boolean.TRUE, statuses.get(DAY3));
+        verify(valueOperations, never()).multiGet(anyList());
+        verify(ticketOrderMapper, never()).selectByUserIdAndDates(anyLong(), anyList());
+    }
+
+    @Test
+    void testAddPurchaseRecord_RecordWriteFailureStillMarksBitmap() {
+        when(entityCodecService.encode(any())).thenReturn(new byte[]{1});
+        when(stringRedisTemplate.executePipelined(any(RedisCallback.class))).thenThrow(new RuntimeException("redis timeout"));
+
+        ticketCacheManager.addPurchaseRecord(1001L, DAY1, new PurchaseRecord(1001L, LocalDate.parse(DAY1), "T001"));
+
+        // 购买记录缓存写入失败不影响位图标记，否则位图就绪后该用户可以重复购票
+        verify(purchaseBitmapService).markPurchased(1001L, DAY1);
+    }
+}
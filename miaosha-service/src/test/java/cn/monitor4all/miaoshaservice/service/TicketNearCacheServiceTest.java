@@ -0,0 +1,152 @@
+package cn.monitor4all.miaoshaservice.service;
+
+import cn.monitor4all.miaoshadao.model.Ticket;
+import cn.monitor4all.miaoshadao.utils.CacheKey;
+import cn.monitor4all.miaoshaservice.service.impl.TicketNearCacheServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 票券本地缓存服务测试类
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class TicketNearCacheServiceTest {
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @InjectMocks
+    private TicketNearCacheServiceImpl ticketNearCacheService;
+
+    private String testDate;
+
+    @BeforeEach
+    void setUp() {
+        testDate = "2025-01-15";
+        ReflectionTestUtils.setField(ticketNearCacheService, "ttlMs", 60000L);
+        ticketNearCacheService.init();
+    }
+
+    @Test
+    void testGetTicket_ReturnsCopy() {
+        ticketNearCacheService.putTicket(testDate, new Ticket(testDate, 100));
+
+        Ticket first = ticketNearCacheService.getTicket(testDate);
+        first.setUserPurchased(true);
+        first.setRemaining(0);
+
+        Ticket second = ticketNearCacheService.getTicket(testDate);
+        assertFalse(second.isUserPurchased());
+        assertEquals(100, second.getRemaining());
+        assertEquals(2L, ticketNearCacheService.getStatistics().get("ticketHitCount"));
+    }
+
+    @Test
+    void testInvalidate_DropsLocalEntryAndBroadcasts() {
+        ticketNearCacheService.putTicket(testDate, new Ticket(testDate, 100));
+        ticketNearCacheService.putTicketList(Collections.singletonList(new Ticket(testDate, 100)));
+
+        ticketNearCacheService.invalidate(testDate);
+
+        assertNull(ticketNearCacheService.getTicket(testDate));
+        assertNull(ticketNearCacheService.getTicketList());
+        verify(stringRedisTemplate, times(1)).convertAndSend(eq(CacheKey.TICKET_NEAR_CACHE_CHANNEL.getKey()), startsWith(nodeId() + "|" + testDate + "|"));
+    }
+
+    @Test
+    void testInvalidateLocal_DoesNotBroadcast() {
+        ticketNearCacheService.putTicket(testDate, new Ticket(testDate, 100));
+
+        ticketNearCacheService.invalidateLocal(testDate);
+
+        assertNull(ticketNearCacheService.getTicket(testDate));
+        verify(stringRedisTemplate, never()).convertAndSend(anyString(), anyString());
+        assertEquals(1L, ticketNearCacheService.getStatistics().get("localOnlyInvalidations"));
+    }
+
+    @Test
+    void testInvalidate_PublishFailureKeepsLocalInvalidation() {
+        ticketNearCacheService.putTicket(testDate, new Ticket(testDate, 100));
+        doThrow(new RuntimeException("redis down")).when(stringRedisTemplate).convertAndSend(anyString(), anyString());
+
+        ticketNearCacheService.invalidate(testDate);
+
+        assertNull(ticketNearCacheService.getTicket(testDate));
+        assertEquals(1L, ticketNearCacheService.getStatistics().get("publishFailures"));
+    }
+
+    @Test
+    void testOnMessage_RemoteInvalidation() {
+        ticketNearCacheService.putTicket(testDate, new Ticket(testDate, 100));
+
+        ticketNearCacheService.onMessage(message("othernode|" + testDate + "|" + System.currentTimeMillis()), null);
+
+        assertNull(ticketNearCacheService.getTicket(testDate));
+        assertEquals(1L, ticketNearCacheService.getStatistics().get("remoteInvalidations"));
+    }
+
+    @Test
+    void testOnMessage_IgnoresOwnNotification() {
+        ticketNearCacheService.putTicket(testDate, new Ticket(testDate, 100));
+
+        ticketNearCacheService.onMessage(message(nodeId() + "|" + testDate + "|" + System.currentTimeMillis()), null);
+
+        assertNotNull(ticketNearCacheService.getTicket(testDate));
+        assertEquals(0L, ticketNearCacheService.getStatistics().get("remoteInvalidations"));
+    }
+
+    @Test
+    void testDisabled_BypassesCache() {
+        ReflectionTestUtils.setField(ticketNearCacheService, "enabled", false);
+        ticketNearCacheService.putTicket(testDate, new Ticket(testDate, 100));
+        ticketNearCacheService.putTicketList(Collections.singletonList(new Ticket(testDate, 100)));
+
+        assertNull(ticketNearCacheService.getTicket(testDate));
+        assertNull(ticketNearCacheService.getTicketList());
+    }
+
+    @Test
+    void testGetStatistics_HitRatio() {
+        ticketNearCacheService.putTicketList(Collections.singletonList(new Ticket(testDate, 100)));
+        List<Ticket> tickets = ticketNearCacheService.getTicketList();
+        assertEquals(1, tickets.size());
+        assertNull(ticketNearCacheService.getTicket(testDate));
+
+        Map<String, Object> stats = ticketNearCacheService.getStatistics();
+        assertEquals("0.5000", stats.get("hitRatio"));
+        assertEquals(1L, stats.get("listHitCount"));
+        assertEquals(1L, stats.get("ticketMissCount"));
+    }
+
+    private String nodeId() {
+        return (String) ReflectionTestUtils.getField(ticketNearCacheService, "nodeId");
+    }
+
+    private DefaultMessage message(String body) {
+        return new DefaultMessage(CacheKey.TICKET_NEAR_CACHE_CHANNEL.getKey().getBytes(StandardCharsets.UTF_8),
+                body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,202 @@
+package cn.monitor4all.miaoshaservice.service;
+
+import cn.monitor4all.miaoshadao.dao.TicketEntity;
+import cn.monitor4all.miaoshadao.dao.TicketSegment;
+import cn.monitor4all.miaoshadao.mapper.TicketEntityMapper;
+import cn.monitor4all.miaoshadao.mapper.TicketSegmentMapper;
+import cn.monitor4all.miaoshadao.model.BusinessException;
+import cn.monitor4all.miaoshaservice.service.impl.TicketSegmentServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 票券库存分段服务测试类
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class TicketSegmentServiceTest {
+
+    @Mock
+    private TicketEntityMapper ticketEntityMapper;
+
+    @Mock
+    private TicketSegmentMapper ticketSegmentMapper;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @InjectMocks
+    private TicketSegmentServiceImpl ticketSegmentService;
+
+    private String testDate;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        testDate = "2025-01-15";
+        // 直接执行事务回调
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                ((TransactionCallback<Object>) invocation.getArgument(0)).doInTransaction(null));
+    }
+
+    private TicketSegment segment(int segmentNo, int remaining) {
+        TicketSegment segment = new TicketSegment(testDate, segmentNo, remaining);
+        segment.setId(segmentNo + 1);
+        return segment;
+    }
+
+    @Test
+    void testEnableSegments_SplitsRemainingAndZeroesTicketRow() {
+        TicketEntity ticketEntity = new TicketEntity(testDate, "测试票券", 100);
+        ticketEntity.setId(1);
+        ticketEntity.setRemainingCount(10);
+        ticketEntity.setSoldCount(90);
+        ticketEntity.setVersion(5);
+        when(ticketEntityMapper.selectByDateForUpdate(testDate)).thenReturn(ticketEntity);
+        when(ticketSegmentMapper.countByDate(testDate)).thenReturn(0);
+        when(ticketEntityMapper.updateByPrimaryKey(any())).thenReturn(1);
+
+        assertEquals(10, ticketSegmentService.enableSegments(testDate, 4));
+
+        ArgumentCaptor<TicketSegment> captor = ArgumentCaptor.forClass(TicketSegment.class);
+        verify(ticketSegmentMapper, times(4)).insert(captor.capture());
+        List<TicketSegment> inserted = captor.getAllValues();
+        // 10张分4段：3、3、2、2
+        assertEquals(3, inserted.get(0).getRemainingCount());
+        assertEquals(3, inserted.get(1).getRemainingCount());
+        assertEquals(2, inserted.get(2).getRemainingCount());
+        assertEquals(2, inserted.get(3).getRemainingCount());
+        assertEquals(0, ticketEntity.getRemainingCount());
+        assertEquals(90, ticketEntity.getSoldCount());
+    }
+
+    @Test
+    void testEnableSegments_AlreadySegmented() {
+        when(ticketEntityMapper.selectByDateForUpdate(testDate)).thenReturn(new TicketEntity(testDate, "测试票券", 100));
+        when(ticketSegmentMapper.countByDate(testDate)).thenReturn(4);
+
+        assertThrows(BusinessException.class, () -> ticketSegmentService.enableSegments(testDate, 4));
+        verify(ticketSegmentMapper, never()).insert(any());
+    }
+
+    @Test
+    void testMergeSegments_MovesStockBackToTicketRow() {
+        TicketEntity ticketEntity = new TicketEntity(testDate, "测试票券", 100);
+        ticketEntity.setId(1);
+        ticketEntity.setRemainingCount(0);
+        ticketEntity.setSoldCount(90);
+        ticketEntity.setVersion(6);
+        TicketSegment first = segment(0, 3);
+        first.setRemainingCount(1);
+        first.setSoldCount(2);
+        TicketSegment second = segment(1, 2);
+        when(ticketEntityMapper.selectByDateForUpdate(testDate)).thenReturn(ticketEntity);
+        when(ticketSegmentMapper.selectByDate(testDate)).thenReturn(Arrays.asList(first, second));
+        when(ticketSegmentMapper.selectByDateAndSegmentNoForUpdate(testDate, 0)).thenReturn(first);
+        when(ticketSegmentMapper.selectByDateAndSegmentNoForUpdate(testDate, 1)).thenReturn(second);
+        when(ticketEntityMapper.updateByPrimaryKey(any())).thenReturn(1);
+
+        assertEquals(3, ticketSegmentService.mergeSegments(testDate));
+        assertEquals(3, ticketEntity.getRemainingCount());
+        assertEquals(92, ticketEntity.getSoldCount());
+        verify(ticketSegmentMapper, times(1)).deleteByDate(testDate);
+    }
+
+    @Test
+    void testDeductWithPessimisticLock_UsesHomeSegment() {
+        Long userId = 6L;
+        when(ticketSegmentMapper.countByDate(testDate)).thenReturn(4);
+        when(ticketSegmentMapper.selectByDateAndSegmentNoForUpdate(testDate, 2)).thenReturn(segment(2, 5));
+        when(ticketSegmentMapper.updateStockByOptimistic(any())).thenReturn(1);
+
+        // 6 % 4 = 2
+        assertEquals(2, ticketSegmentService.deductWithPessimisticLock(testDate, userId));
+        verify(ticketSegmentMapper, never()).selectAvailableByDate(anyString());
+    }
+
+    @Test
+    void testDeductWithPessimisticLock_FallsBackWhenHomeSegmentEmpty() {
+        Long userId = 6L;
+        when(ticketSegmentMapper.countByDate(testDate)).thenReturn(4);
+        when(ticketSegmentMapper.selectByDateAndSegmentNoForUpdate(testDate, 2)).thenReturn(segment(2, 0));
+        when(ticketSegmentMapper.selectAvailableByDate(testDate)).thenReturn(Arrays.asList(segment(0, 1), segment(3, 1)));
+        when(ticketSegmentMapper.selectByDateAndSegmentNoForUpdate(testDate, 3)).thenReturn(segment(3, 1));
+        when(ticketSegmentMapper.updateStockByOptimistic(any())).thenReturn(1);
+
+        // 从自身分段的下一个开始回退，分段3先于分段0
+        assertEquals(3, ticketSegmentService.deductWithPessimisticLock(testDate, userId));
+        verify(ticketSegmentMapper, never()).selectByDateAndSegmentNoForUpdate(testDate, 0);
+    }
+
+    @Test
+    void testDeductWithPessimisticLock_AllSegmentsSoldOut() {
+        when(ticketSegmentMapper.countByDate(testDate)).thenReturn(4);
+        when(ticketSegmentMapper.selectByDateAndSegmentNoForUpdate(eq(testDate), anyInt())).thenReturn(segment(1, 0));
+        when(ticketSegmentMapper.selectAvailableByDate(testDate)).thenReturn(Collections.emptyList());
+
+        assertEquals(-1, ticketSegmentService.deductWithPessimisticLock(testDate, 1L));
+        verify(ticketSegmentMapper, never()).updateStockByOptimistic(any());
+    }
+
+    @Test
+    void testDeductWithOptimisticLock_ConflictMovesToNextSegment() {
+        Long userId = 1L;
+        when(ticketSegmentMapper.countByDate(testDate)).thenReturn(2);
+        TicketSegment home = segment(1, 5);
+        TicketSegment other = segment(0, 5);
+        when(ticketSegmentMapper.selectByDateAndSegmentNo(testDate, 1)).thenReturn(home);
+        when(ticketSegmentMapper.selectAvailableByDate(testDate)).thenReturn(Arrays.asList(segment(0, 5), segment(1, 5)));
+        // 自身分段版本冲突，分段0更新成功
+        when(ticketSegmentMapper.updateStockByOptimistic(argThat(s -> s != null && s.getSegmentNo() == 1))).thenReturn(0);
+        when(ticketSegmentMapper.updateStockByOptimistic(argThat(s -> s != null && s.getSegmentNo() == 0))).thenReturn(1);
+
+        assertEquals(0, ticketSegmentService.deductWithOptimisticLock(testDate, userId));
+        assertEquals(1L, ticketSegmentService.getSegmentOverview(testDate).get("optimisticConflictCount"));
+    }
+
+    @Test
+    void testDeductWithoutSegments() {
+        when(ticketSegmentMapper.countByDate(testDate)).thenReturn(0);
+
+        assertThrows(BusinessException.class, () -> ticketSegmentService.deductWithPessimisticLock(testDate, 1L));
+        assertThrows(BusinessException.class, () -> ticketSegmentService.deductWithOptimisticLock(testDate, 1L));
+    }
+
+    @Test
+    void testRestoreForCancel_UsesSegmentFromRemark() {
+        when(ticketSegmentMapper.countByDate(testDate)).thenReturn(4);
+        when(ticketSegmentMapper.incrementStock(eq(testDate), anyInt(), eq(1))).thenReturn(1);
+
+        assertTrue(ticketSegmentService.restoreForCancel(testDate, 6L, ticketSegmentService.buildOrderRemark(3)));
+        verify(ticketSegmentMapper, times(1)).incrementStock(testDate, 3, 1);
+
+        // 启用分段前创建的订单归还到用户所属分段
+        assertTrue(ticketSegmentService.restoreForCancel(testDate, 6L, "悲观锁购票生成"));
+        verify(ticketSegmentMapper, times(1)).incrementStock(testDate, 2, 1);
+    }
+
+    @Test
+    void testRestoreForCancel_NotSegmented() {
+        when(ticketSegmentMapper.countByDate(testDate)).thenReturn(0);
+
+        assertFalse(ticketSegmentService.restoreForCancel(testDate, 6L, "分段库存购票生成#3"));
+        verify(ticketSegmentMapper, never()).incrementStock(anyString(), anyInt(), anyInt());
+    }
+}
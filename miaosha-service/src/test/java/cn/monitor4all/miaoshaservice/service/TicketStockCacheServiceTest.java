@@ -0,0 +1,306 @@
+package cn.monitor4all.miaoshaservice.service;
+
+import cn.monitor4all.miaoshadao.dao.TicketEntity;
+import cn.monitor4all.miaoshadao.mapper.TicketEntityMapper;
+import cn.monitor4all.miaoshadao.model.Ticket;
+import cn.monitor4all.miaoshaservice.service.impl.TicketStockCacheServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 票券库存写穿缓存服务测试类
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class TicketStockCacheServiceTest {
+
+    private static final String DAY1 = "2025-01-15";
+    private static final String DAY2 = "2025-01-16";
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private HashOperations<String, Object, Object> hashOperations;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @Mock
+    private TicketEntityMapper ticketEntityMapper;
+
+    @Mock
+    private HotKeyService hotKeyService;
+
+    @InjectMocks
+    private TicketStockCacheServiceImpl ticketStockCacheService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(ticketStockCacheService, "reconcileIntervalMs", 0L);
+        when(stringRedisTemplate.opsForHash()).thenReturn(hashOperations);
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        // 默认抢到加载租约
+        when(valueOperations.setIfAbsent(endsWith(":loading"), anyString(), anyLong(), eq(TimeUnit.MILLISECONDS))).thenReturn(true);
+        ticketStockCacheService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        ticketStockCacheService.destroy();
+    }
+
+    private static Map<Object, Object> hash(int total, int remaining) {
+        Map<Object, Object> fields = new HashMap<>();
+        fields.put("total", String.valueOf(total));
+        fields.put("remaining", String.valueOf(remaining));
+        fields.put("sold", String.valueOf(total - remaining));
+        return fields;
+    }
+
+    private static TicketEntity entity(String date, int total, int remaining) {
+        TicketEntity ticketEntity = new TicketEntity();
+        ticketEntity.setDate(date);
+        ticketEntity.setTotalCount(total);
+        ticketEntity.setRemainingCount(remaining);
+        ticketEntity.setSoldCount(total - remaining);
+        return ticketEntity;
+    }
+
+    @Test
+    void testGetOrLoad_HitReadsHashWithoutDatabase() {
+        when(hashOperations.entries("ticket:stock:" + DAY1)).thenReturn(hash(100, 37));
+
+        Ticket ticket = ticketStockCacheService.getOrLoad(DAY1);
+
+        assertEquals(100, ticket.getTotal());
+        assertEquals(37, ticket.getRemaining());
+        verify(ticketEntityMapper, never()).selectByDatesAggregated(anyList());
+        assertEquals(1L, ticketStockCacheService.getStatistics().get("hitCount"));
+    }
+
+    @Test
+    void testGetOrLoad_MissReadsVersionBeforeDatabaseAndWritesWithIt() {
+        when(hashOperations.entries(anyString())).thenReturn(Collections.emptyMap());
+        when(valueOperations.multiGet(Collections.singletonList("ticket:stock:ver:" + DAY1))).thenReturn(Collections.singletonList("5"));
+        when(ticketEntityMapper.selectByDatesAggregated(Collections.singletonList(DAY1))).thenReturn(Collections.singletonList(entity(DAY1, 100, 90)));
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), anyString(), anyString(), anyString(), anyString(), anyString())).thenReturn(1L);
+
+        Ticket ticket = ticketStockCacheService.getOrLoad(DAY1);
+
+        assertEquals(90, ticket.getRemaining());
+        InOrder inOrder = inOrder(valueOperations, ticketEntityMapper, stringRedisTemplate);
+        inOrder.verify(valueOperations).multiGet(anyList());
+        inOrder.verify(ticketEntityMapper).selectByDatesAggregated(anyList());
+        inOrder.verify(stringRedisTemplate).execute(any(RedisScript.class),
+                eq(Arrays.asList("ticket:stock:" + DAY1, "ticket:stock:ver:" + DAY1)),
+                eq("5"), eq("100"), eq("90"), eq("10"), anyString());
+    }
+
+    @Test
+    void testGetOrLoad_VersionChangedDuringLoadReturnsDatabaseValue() {
+        when(hashOperations.entries(anyString())).thenReturn(Collections.emptyMap());
+        when(valueOperations.multiGet(anyList())).thenReturn(Collections.singletonList(null));
+        when(ticketEntityMapper.selectByDatesAggregated(anyList())).thenReturn(Collections.singletonList(entity(DAY1, 100, 90)));
+        // 回源期间有购票，版本号已变化
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), anyString(), anyString(), anyString(), anyString(), anyString())).thenReturn(0L);
+
+        Ticket ticket = ticketStockCacheService.getOrLoad(DAY1);
+
+        assertEquals(90, ticket.getRemaining());
+        verify(stringRedisTemplate).execute(any(RedisScript.class), anyList(), eq("0"), anyString(), anyString(), anyString(), anyString());
+        assertEquals(1L, ticketStockCacheService.getStatistics().get("loadRejectedCount"));
+    }
+
+    @Test
+    void testGetOrLoad_ConcurrentMissesShareOneLoad() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(hashOperations.entries(anyString())).thenReturn(Collections.emptyMap());
+        when(valueOperations.multiGet(anyList())).thenReturn(Collections.singletonList("1"));
+        when(ticketEntityMapper.selectByDatesAggregated(anyList())).thenAnswer(invocation -> {
+            loading.countDown();
+            release.await(1, TimeUnit.SECONDS);
+            return Collections.singletonList(entity(DAY1, 100, 90));
+        });
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), anyString(), anyString(), anyString(), anyString(), anyString())).thenReturn(1L);
+
+        CompletableFuture<Ticket> first = CompletableFuture.supplyAsync(() -> ticketStockCacheService.getOrLoad(DAY1));
+        assertTrue(loading.await(1, TimeUnit.SECONDS));
+        CompletableFuture<Ticket> second = CompletableFuture.supplyAsync(() -> ticketStockCacheService.getOrLoad(DAY1));
+        while (!Long.valueOf(1L).equals(ticketStockCacheService.getStatistics().get("sharedLoadCount"))) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+
+        assertEquals(90, first.get(1, TimeUnit.SECONDS).getRemaining());
+        assertEquals(90, second.get(1, TimeUnit.SECONDS).getRemaining());
+        verify(ticketEntityMapper, times(1)).selectByDatesAggregated(anyList());
+    }
+
+    @Test
+    void testGetOrLoadAll_OnePipelineThenBatchLoadForMisses() {
+        when(stringRedisTemplate.executePipelined(any(RedisCallback.class)))
+                .thenReturn(Arrays.asList(hash(100, 50), Collections.emptyMap()));
+        when(valueOperations.multiGet(Collections.singletonList("ticket:stock:ver:" + DAY2))).thenReturn(Collections.singletonList(null));
+        when(ticketEntityMapper.selectByDatesAggregated(Collections.singletonList(DAY2))).thenReturn(Collections.singletonList(entity(DAY2, 200, 200)));
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), anyString(), anyString(), anyString(), anyString(), anyString())).thenReturn(1L);
+
+        Map<String, Ticket> tickets = ticketStockCacheService.getOrLoadAll(Arrays.asList(DAY1, DAY2));
+
+        assertEquals(Arrays.asList(DAY1, DAY2), Arrays.asList(tickets.keySet().toArray()));
+        assertEquals(50, tickets.get(DAY1).getRemaining());
+        assertEquals(200, tickets.get(DAY2).getRemaining());
+        verify(stringRedisTemplate, times(1)).executePipelined(any(RedisCallback.class));
+        verify(ticketEntityMapper, times(1)).selectByDatesAggregated(anyList());
+    }
+
+    @Test
+    void testApplyDelta_ReturnsRemainingOrNullWhenNotCached() {
+        when(stringRedisTemplate.execute(any(RedisScript.class),
+                eq(Arrays.asList("ticket:stock:" + DAY1, "ticket:stock:ver:" + DAY1)), eq("-1"), anyString()))
+                .thenReturn(9L)
+                .thenReturn(null);
+
+        assertEquals(Long.valueOf(9), ticketStockCacheService.applyDelta(DAY1, -1));
+        assertNull(ticketStockCacheService.applyDelta(DAY1, -1));
+
+        Map<String, Object> stats = ticketStockCacheService.getStatistics();
+        assertEquals(2L, stats.get("deltaCount"));
+        assertEquals(1L, stats.get("deltaMissCount"));
+    }
+
+    @Test
+    void testReconcile_CorrectsDriftOnlyForCachedDates() {
+        when(valueOperations.multiGet(anyList())).thenReturn(Arrays.asList("7", "3"));
+        when(stringRedisTemplate.executePipelined(any(RedisCallback.class)))
+                .thenReturn(Arrays.asList(hash(100, 5), Collections.emptyMap()));
+        when(ticketEntityMapper.selectByDatesAggregated(Collections.singletonList(DAY1))).thenReturn(Collections.singletonList(entity(DAY1, 100, 8)));
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), anyString(), anyString(), anyString(), anyString(), anyString())).thenReturn(1L);
+
+        int corrected = ticketStockCacheService.reconcile(Arrays.asList(DAY1, DAY2));
+
+        assertEquals(1, corrected);
+        verify(stringRedisTemplate).execute(any(RedisScript.class), anyList(), eq("7"), eq("100"), eq("8"), eq("92"), anyString());
+        Map<String, Object> stats = ticketStockCacheService.getStatistics();
+        assertEquals(1L, stats.get("reconcileCorrectedCount"));
+        assertEquals(3L, stats.get("maxDrift"));
+    }
+
+    @Test
+    void testReconcile_NoWriteWhenConsistent() {
+        when(valueOperations.multiGet(anyList())).thenReturn(Collections.singletonList("7"));
+        when(stringRedisTemplate.executePipelined(any(RedisCallback.class))).thenReturn(Collections.singletonList(hash(100, 8)));
+        when(ticketEntityMapper.selectByDatesAggregated(anyList())).thenReturn(Collections.singletonList(entity(DAY1, 100, 8)));
+
+        assertEquals(0, ticketStockCacheService.reconcile(Collections.singletonList(DAY1)));
+        verify(stringRedisTemplate, never()).execute(any(RedisScript.class), anyList(), anyString(), anyString(), anyString(), anyString(), anyString());
+        assertEquals(1L, ticketStockCacheService.getStatistics().get("reconcileCheckedCount"));
+    }
+
+    @Test
+    void testGetOrLoad_HotKeyReplicaServedWithoutRedis() {
+        Ticket replica = new Ticket(DAY1, 100);
+        replica.setRemaining(12);
+        when(hotKeyService.getReplica("ticket:stock:" + DAY1)).thenReturn(replica);
+
+        Ticket ticket = ticketStockCacheService.getOrLoad(DAY1);
+        ticket.setUserPurchased(true);
+
+        assertEquals(12, ticket.getRemaining());
+        assertNotSame(replica, ticket);
+        assertFalse(replica.isUserPurchased());
+        verify(hashOperations, never()).entries(anyString());
+    }
+
+    @Test
+    void testApplyDelta_ReplacesHotKeyReplicaWithNewRemaining() {
+        Ticket replica = new Ticket(DAY1, 100);
+        replica.setRemaining(12);
+        when(hotKeyService.getReplica("ticket:stock:" + DAY1)).thenReturn(replica);
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), eq("-1"), anyString())).thenReturn(11L);
+
+        ticketStockCacheService.applyDelta(DAY1, -1);
+
+        verify(hotKeyService).update(eq("ticket:stock:" + DAY1), argThat(value ->
+                value instanceof Ticket && ((Ticket) value).getRemaining() == 11 && ((Ticket) value).getTotal() == 100));
+    }
+
+    @Test
+    void testGetOrLoadAll_LeaseHeldElsewhereWaitsForWrittenHash() {
+        ReflectionTestUtils.setField(ticketStockCacheService, "leasePollMs", 1L);
+        // 第一次管道读取两个日期都未命中；DAY2的租约被其他节点持有，等待后读到其写入的hash
+        when(stringRedisTemplate.executePipelined(any(RedisCallback.class)))
+                .thenReturn(Arrays.asList(Collections.emptyMap(), Collections.emptyMap()))
+                .thenReturn(Collections.singletonList(hash(200, 150)));
+        when(valueOperations.setIfAbsent(eq("ticket:stock:" + DAY2 + ":loading"), anyString(), anyLong(), eq(TimeUnit.MILLISECONDS))).thenReturn(false);
+        when(valueOperations.multiGet(anyList())).thenReturn(Collections.singletonList("1"));
+        when(ticketEntityMapper.selectByDatesAggregated(Collections.singletonList(DAY1))).thenReturn(Collections.singletonList(entity(DAY1, 100, 90)));
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), anyString(), anyString(), anyString(), anyString(), anyString())).thenReturn(1L);
+
+        Map<String, Ticket> tickets = ticketStockCacheService.getOrLoadAll(Arrays.asList(DAY1, DAY2));
+
+        assertEquals(90, tickets.get(DAY1).getRemaining());
+        assertEquals(150, tickets.get(DAY2).getRemaining());
+        // 只回源抢到租约的日期，并释放租约
+        verify(ticketEntityMapper, times(1)).selectByDatesAggregated(Collections.singletonList(DAY1));
+        verify(stringRedisTemplate).execute(any(RedisScript.class), eq(Collections.singletonList("ticket:stock:" + DAY1 + ":loading")), anyString());
+        assertEquals(1L, ticketStockCacheService.getStatistics().get("leaseWaitHitCount"));
+    }
+
+    @Test
+    void testGetOrLoad_LeaseWaitTimeoutLoadsItself() {
+        ReflectionTestUtils.setField(ticketStockCacheService, "leaseWaitMs", 5L);
+        ReflectionTestUtils.setField(ticketStockCacheService, "leasePollMs", 1L);
+        when(hashOperations.entries(anyString())).thenReturn(Collections.emptyMap());
+        when(valueOperations.setIfAbsent(anyString(), anyString(), anyLong(), eq(TimeUnit.MILLISECONDS))).thenReturn(false);
+        when(stringRedisTemplate.executePipelined(any(RedisCallback.class))).thenReturn(Collections.singletonList(Collections.emptyMap()));
+        when(valueOperations.multiGet(anyList())).thenReturn(Collections.singletonList("1"));
+        when(ticketEntityMapper.selectByDatesAggregated(anyList())).thenReturn(Collections.singletonList(entity(DAY1, 100, 90)));
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), anyString(), anyString(), anyString(), anyString(), anyString())).thenReturn(1L);
+
+        // 持有租约的节点宕机，等待超时后自行回源
+        assertEquals(90, ticketStockCacheService.getOrLoad(DAY1).getRemaining());
+        verify(ticketEntityMapper, times(1)).selectByDatesAggregated(anyList());
+    }
+
+    @Test
+    void testLoadWritesJitteredTtl() {
+        when(hashOperations.entries(anyString())).thenReturn(Collections.emptyMap());
+        when(valueOperations.multiGet(anyList())).thenReturn(Collections.singletonList("1"));
+        when(ticketEntityMapper.selectByDatesAggregated(anyList())).thenReturn(Collections.singletonList(entity(DAY1, 100, 90)));
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), anyString(), anyString(), anyString(), anyString(), anyString())).thenReturn(1L);
+
+        ticketStockCacheService.getOrLoad(DAY1);
+
+        // 有效期在 [3600, 3960] 之间
+        verify(stringRedisTemplate).execute(any(RedisScript.class), anyList(), anyString(), anyString(), anyString(), anyString(),
+                argThat(ttl -> Long.parseLong(String.valueOf(ttl)) >= 3600 && Long.parseLong(String.valueOf(ttl)) <= 3960));
+    }
+}
@@ -0,0 +1,33 @@
+package cn.monitor4all.miaoshaservice.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 订单编号生成测试类
+ */
+public class OrderNoGeneratorTest {
+
+    @Test
+    void testDefaultPrefixWithUserIdSuffix() {
+        String orderNo = OrderNoGenerator.generate(123456789L);
+
+        // TB + 13位时间戳 + 用户ID后4位 + 3位随机数
+        assertTrue(orderNo.matches("TB\\d{13}6789\\d{3}"), orderNo);
+    }
+
+    @Test
+    void testShortUserIdKeptWhole() {
+        assertTrue(OrderNoGenerator.generate(42L).matches("TB\\d{13}42\\d{3}"));
+    }
+
+    @Test
+    void testCustomPrefix() {
+        // 本地租约订单：TL + 节点ID 作为前缀，按前缀统计已售数量
+        String orderNo = OrderNoGenerator.generate("TLnode-1", 12345L);
+
+        assertTrue(orderNo.startsWith("TLnode-1"));
+        assertTrue(orderNo.matches("TLnode-1\\d{13}2345\\d{3}"), orderNo);
+    }
+}
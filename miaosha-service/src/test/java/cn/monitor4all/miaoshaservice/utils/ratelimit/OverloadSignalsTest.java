@@ -0,0 +1,43 @@
+package cn.monitor4all.miaoshaservice.utils.ratelimit;
+
+import cn.monitor4all.miaoshadao.model.ApiResponse;
+import cn.monitor4all.miaoshadao.model.BusinessException;
+import cn.monitor4all.miaoshadao.model.ErrorCode;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.redis.RedisConnectionFailureException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 过载信号测试类
+ */
+public class OverloadSignalsTest {
+
+    @Test
+    void testBusinessRejectionsAreNotOverload() {
+        assertFalse(OverloadSignals.isOverload(new BusinessException("票券已售罄")));
+        assertFalse(OverloadSignals.isOverload(new IllegalStateException("您已购买过当天的票券，每人每天限购一张")));
+        assertFalse(OverloadSignals.isOverload(new BusinessException(ErrorCode.RATE_LIMIT_EXCEEDED)));
+
+        ApiResponse<Object> response = OverloadSignals.failure(new BusinessException("票券已售罄"), "票券已售罄");
+        assertEquals(500, response.getCode());
+        assertFalse(OverloadSignals.isOverload(response));
+    }
+
+    @Test
+    void testTimeoutsAreOverload() {
+        assertTrue(OverloadSignals.isOverload(new BusinessException(ErrorCode.SYSTEM_BUSY, "获取订单创建锁超时")));
+        assertTrue(OverloadSignals.isOverload(new QueryTimeoutException("查询超时")));
+        assertTrue(OverloadSignals.isOverload(new CannotAcquireLockException("锁等待超时")));
+        assertTrue(OverloadSignals.isOverload(new RedisConnectionFailureException("连接失败")));
+        // 原因链中的超时
+        assertTrue(OverloadSignals.isOverload(new RuntimeException("订单创建失败", new QueryTimeoutException("查询超时"))));
+
+        ApiResponse<Object> response = OverloadSignals.failure(new QueryTimeoutException("查询超时"), "购买失败");
+        assertEquals(ErrorCode.SYSTEM_BUSY.getCode(), response.getCode());
+        assertEquals("购买失败", response.getMessage());
+        assertTrue(OverloadSignals.isOverload(response));
+    }
+}
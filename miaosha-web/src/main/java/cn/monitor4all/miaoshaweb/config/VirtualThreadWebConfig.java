@@ -0,0 +1,35 @@
+package cn.monitor4all.miaoshaweb.config;
+
+import cn.monitor4all.miaoshaservice.utils.VirtualThreads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Tomcat虚拟线程配置类
+ * 开启 miaosha.virtual-threads.enabled 且运行在JDK 21及以上时，每个HTTP请求在独立的虚拟线程中处理，
+ * 并发请求数不再受 server.tomcat.max-threads 限制，而由 server.tomcat.max-connections 限制
+ */
+@Configuration
+@ConditionalOnProperty(name = "miaosha.virtual-threads.enabled", havingValue = "true")
+public class VirtualThreadWebConfig {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(VirtualThreadWebConfig.class);
+
+    @Bean
+    public WebServerFactoryCustomizer<TomcatServletWebServerFactory> tomcatVirtualThreadCustomizer() {
+        return factory -> {
+            if (!VirtualThreads.isAvailable()) {
+                LOGGER.warn("当前JDK不支持虚拟线程，Tomcat使用平台线程池，JDK版本: {}", System.getProperty("java.version"));
+                return;
+            }
+            factory.addProtocolHandlerCustomizers(protocolHandler ->
+                    protocolHandler.setExecutor(VirtualThreads.newThreadPerTaskExecutor("http-vt-")));
+            LOGGER.info("Tomcat请求处理使用虚拟线程");
+        };
+    }
+}
@@ -1,5 +1,6 @@
 package cn.monitor4all.miaoshaweb.config;
 
+import cn.monitor4all.miaoshaservice.interceptor.AdaptiveConcurrencyLimitInterceptor;
 import cn.monitor4all.miaoshaservice.interceptor.AuthInterceptor;
 import javax.annotation.Resource;
 import org.springframework.context.annotation.Configuration;
@@ -13,9 +14,15 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 public class WebConfig implements WebMvcConfigurer {
     @Resource
     private AuthInterceptor authInterceptor;
+
+    @Resource
+    private AdaptiveConcurrencyLimitInterceptor adaptiveConcurrencyLimitInterceptor;
     
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
+        // 购票接口的自适应并发限制，每个接口一个限制器
+        registry.addInterceptor(adaptiveConcurrencyLimitInterceptor)
+                .addPathPatterns(AdaptiveConcurrencyLimitInterceptor.PATH_PATTERNS);
         return;
         // 拦截所有需要认证的请求
 //        registry.addInterceptor((HandlerInterceptor) authInterceptor)
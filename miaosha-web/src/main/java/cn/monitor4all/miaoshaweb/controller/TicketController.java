@@ -48,6 +48,27 @@ public class TicketController {
     @Resource
     private ResponseTimeStatisticsService responseTimeStatisticsService;
 
+    @Resource
+    private StockGroupCommitService stockGroupCommitService;
+
+    @Resource
+    private StockLeaseService stockLeaseService;
+
+    @Resource
+    private TicketSegmentService ticketSegmentService;
+
+    @Resource
+    private StockDeductStatisticsService stockDeductStatisticsService;
+
+    @Resource
+    private PurchasePipelineService purchasePipelineService;
+
+    @Resource
+    private PreSaleWarmupService preSaleWarmupService;
+
+    @Resource
+    private AdaptiveConcurrencyLimitService adaptiveConcurrencyLimitService;
+
 
     // Guava令牌桶：每秒放行10个请求
     RateLimiter rateLimiter = RateLimiter.create(10);
@@ -242,8 +263,11 @@ public class TicketController {
             // 调用服务层购买票券
             ApiResponse<PurchaseRecord> response = ticketService.purchaseTicket(request);
             
-            LOGGER.info("票券购买成功，用户ID: {}, 日期: {}, 票券编号: {}",
-                    request.getUserId(), request.getDate(), response.getData().getTicketCode());
+            // 失败响应没有购买记录，原样返回，保留服务层的返回码
+            if (response.getData() != null) {
+                LOGGER.info("票券购买成功，用户ID: {}, 日期: {}, 票券编号: {}",
+                        request.getUserId(), request.getDate(), response.getData().getTicketCode());
+            }
             
             return response;
             
@@ -278,16 +302,22 @@ public class TicketController {
      * 总请求数: 1999, 平均响应时间: 732.04 ms  吞吐量：755.8578987150416
      * 1677.20   579.5421616922631
      *
+     * engine=conditional 使用条件扣减引擎，对比结果见 /admin/stockDeductEngineStats
      */
     @PostMapping("/v1/purchase/optimistic")
-    public ApiResponse<PurchaseRecord> purchaseTicketWithOptimistic(@RequestBody PurchaseRequest request, HttpServletRequest httpRequest) {
+    public ApiResponse<PurchaseRecord> purchaseTicketWithOptimistic(@RequestBody PurchaseRequest request,
+                                                                    @RequestParam(required = false) String engine,
+                                                                    HttpServletRequest httpRequest) {
         long startTime = System.currentTimeMillis();
         long responseTime = 0;
         try {
-            LOGGER.info("V1开始处理票券购买请求(乐观锁)，用户ID: {}, 日期: {}", request.getUserId(), request.getDate());
+            LOGGER.info("V1开始处理票券购买请求(乐观锁)，用户ID: {}, 日期: {}, 扣减引擎: {}",
+                    request.getUserId(), request.getDate(), engine);
             
-            // 调用服务层购买票券(乐观锁)
-            ApiResponse<PurchaseRecord> response = ticketService.purchaseTicketV1WithOptimisticLock(request);
+            // 调用服务层购买票券(乐观锁)，指定engine时按指定引擎扣减，用于对比测试
+            ApiResponse<PurchaseRecord> response = engine == null
+                    ? ticketService.purchaseTicketV1WithOptimisticLock(request)
+                    : ticketService.purchaseTicketV1WithEngine(request, engine);
             
             LOGGER.info("票券购买成功(乐观锁)，用户ID: {}, 日期: {}",
                     request.getUserId(), request.getDate());
@@ -389,6 +419,203 @@ public class TicketController {
         }
     }
     
+    /**
+     * V4 Lua准入购票接口
+     * 限购校验、库存扣减、下单意向记录在一次Redis调用内完成，不加用户锁、不查库，订单由消息队列异步落库
+     * @param request 抢购请求
+     * @param httpRequest HTTP请求对象
+     * @return 准入结果，包含请求ID，可通过/v2/purchaseResult查询订单
+     */
+    @PostMapping("/v4/purchase/admission")
+    public ApiResponse<Map<String, Object>> purchaseTicketWithRedisAdmission(@RequestBody PurchaseRequest request, HttpServletRequest httpRequest) {
+        long startTime = System.currentTimeMillis();
+        long responseTime = 0;
+        try {
+            LOGGER.info("V4开始处理Lua准入购票请求，用户ID: {}, 日期: {}", request.getUserId(), request.getDate());
+
+            ApiResponse<Map<String, Object>> result = ticketService.purchaseTicketV4WithRedisAdmission(request);
+
+            LOGGER.info("V4 Lua准入购票请求处理完成，用户ID: {}, 日期: {}",
+                    request.getUserId(), request.getDate());
+
+            return result;
+
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("V4 Lua准入购票参数错误: {}", e.getMessage());
+            return ApiResponse.error(e.getMessage());
+        } catch (IllegalStateException e) {
+            LOGGER.warn("V4 Lua准入购票业务错误: {}", e.getMessage());
+            return ApiResponse.error(e.getMessage());
+        } catch (Exception e) {
+            LOGGER.error("V4 Lua准入购票系统错误: {}", e.getMessage(), e);
+            return ApiResponse.error("系统错误，请稍后重试");
+        } finally {
+            long endTime = System.currentTimeMillis();
+            responseTime = endTime - startTime;
+            LOGGER.info("V4 Lua准入购票接口响应时间: {}ms", responseTime);
+            // 收集响应时间统计数据
+            responseTimeStatisticsService.addResponseTime(responseTime);
+        }
+    }
+
+    /**
+     * V5组提交购票接口
+     * 同一日期数毫秒内的并发扣减合并为一条条件UPDATE，热点行每批只写一次
+     * @param request 购票请求
+     * @param httpRequest HTTP请求对象
+     * @return 购买记录
+     */
+    @PostMapping("/v5/purchase/groupCommit")
+    public ApiResponse<PurchaseRecord> purchaseTicketWithGroupCommit(@RequestBody PurchaseRequest request, HttpServletRequest httpRequest) {
+        long startTime = System.currentTimeMillis();
+        long responseTime = 0;
+        try {
+            LOGGER.info("V5开始处理组提交购票请求，用户ID: {}, 日期: {}", request.getUserId(), request.getDate());
+
+            ApiResponse<PurchaseRecord> response = ticketService.purchaseTicketV5WithGroupCommit(request);
+
+            LOGGER.info("V5组提交购票请求处理完成，用户ID: {}, 日期: {}",
+                    request.getUserId(), request.getDate());
+
+            return response;
+
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("票券购买参数错误: {}", e.getMessage());
+            return ApiResponse.error(e.getMessage());
+        } catch (IllegalStateException e) {
+            LOGGER.warn("票券购买业务错误: {}", e.getMessage());
+            return ApiResponse.error(e.getMessage());
+        } catch (Exception e) {
+            LOGGER.error("票券购买系统错误: {}", e.getMessage(), e);
+            return ApiResponse.error(e.getMessage());
+        } finally {
+            long endTime = System.currentTimeMillis();
+            responseTime = endTime - startTime;
+            LOGGER.info("V5组提交购票接口响应时间: {}ms", responseTime);
+            // 收集响应时间统计数据
+            responseTimeStatisticsService.addResponseTime(responseTime);
+        }
+    }
+
+    /**
+     * V6本地库存租约购票接口
+     * 从本节点租到的库存中原子扣减，库存扣减不访问Redis和数据库
+     * @param request 购票请求
+     * @param httpRequest HTTP请求对象
+     * @return 购买记录
+     */
+    @PostMapping("/v6/purchase/localLease")
+    public ApiResponse<PurchaseRecord> purchaseTicketWithLocalLease(@RequestBody PurchaseRequest request, HttpServletRequest httpRequest) {
+        long startTime = System.currentTimeMillis();
+        long responseTime = 0;
+        try {
+            LOGGER.info("V6开始处理本地租约购票请求，用户ID: {}, 日期: {}", request.getUserId(), request.getDate());
+
+            ApiResponse<PurchaseRecord> response = ticketService.purchaseTicketV6WithLocalLease(request);
+
+            LOGGER.info("V6本地租约购票请求处理完成，用户ID: {}, 日期: {}",
+                    request.getUserId(), request.getDate());
+
+            return response;
+
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("票券购买参数错误: {}", e.getMessage());
+            return ApiResponse.error(e.getMessage());
+        } catch (IllegalStateException e) {
+            LOGGER.warn("票券购买业务错误: {}", e.getMessage());
+            return ApiResponse.error(e.getMessage());
+        } catch (Exception e) {
+            LOGGER.error("票券购买系统错误: {}", e.getMessage(), e);
+            return ApiResponse.error(e.getMessage());
+        } finally {
+            long endTime = System.currentTimeMillis();
+            responseTime = endTime - startTime;
+            LOGGER.info("V6本地租约购票接口响应时间: {}ms", responseTime);
+            // 收集响应时间统计数据
+            responseTimeStatisticsService.addResponseTime(responseTime);
+        }
+    }
+
+    /**
+     * V7 分段库存购票：按用户ID哈希选择库存分段，热点日期的行锁竞争分散到N个分段行
+     * @param request 购票请求
+     * @param lockMode 分段锁模式：pessimistic-悲观锁（默认），optimistic-乐观锁
+     * @return 购票结果
+     */
+    @PostMapping("/v7/purchase/segment")
+    public ApiResponse<PurchaseRecord> purchaseTicketWithSegments(@RequestBody PurchaseRequest request,
+                                                                  @RequestParam(defaultValue = "pessimistic") String lockMode,
+                                                                  HttpServletRequest httpRequest) {
+        long startTime = System.currentTimeMillis();
+        long responseTime = 0;
+        try {
+            LOGGER.info("V7开始处理分段库存购票请求，用户ID: {}, 日期: {}, 锁模式: {}",
+                    request.getUserId(), request.getDate(), lockMode);
+
+            ApiResponse<PurchaseRecord> response = ticketService.purchaseTicketV7WithSegments(request, lockMode);
+
+            LOGGER.info("V7分段库存购票请求处理完成，用户ID: {}, 日期: {}",
+                    request.getUserId(), request.getDate());
+
+            return response;
+
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("票券购买参数错误: {}", e.getMessage());
+            return ApiResponse.error(e.getMessage());
+        } catch (IllegalStateException e) {
+            LOGGER.warn("票券购买业务错误: {}", e.getMessage());
+            return ApiResponse.error(e.getMessage());
+        } catch (Exception e) {
+            LOGGER.error("票券购买系统错误: {}", e.getMessage(), e);
+            return ApiResponse.error(e.getMessage());
+        } finally {
+            long endTime = System.currentTimeMillis();
+            responseTime = endTime - startTime;
+            LOGGER.info("V7分段库存购票接口响应时间: {}ms", responseTime);
+            // 收集响应时间统计数据
+            responseTimeStatisticsService.addResponseTime(responseTime);
+        }
+    }
+
+    /**
+     * V8流水线购票接口
+     * 请求发布到该日期的环形队列，由单个消费线程按批次扣减库存、生成票券编码并落库订单
+     * @param request 购票请求
+     * @param httpRequest HTTP请求对象
+     * @return 购买记录
+     */
+    @PostMapping("/v8/purchase/pipeline")
+    public ApiResponse<PurchaseRecord> purchaseTicketWithPipeline(@RequestBody PurchaseRequest request, HttpServletRequest httpRequest) {
+        long startTime = System.currentTimeMillis();
+        long responseTime = 0;
+        try {
+            LOGGER.info("V8开始处理流水线购票请求，用户ID: {}, 日期: {}", request.getUserId(), request.getDate());
+
+            ApiResponse<PurchaseRecord> response = ticketService.purchaseTicketV8WithPipeline(request);
+
+            LOGGER.info("V8流水线购票请求处理完成，用户ID: {}, 日期: {}",
+                    request.getUserId(), request.getDate());
+
+            return response;
+
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("票券购买参数错误: {}", e.getMessage());
+            return ApiResponse.error(e.getMessage());
+        } catch (IllegalStateException e) {
+            LOGGER.warn("票券购买业务错误: {}", e.getMessage());
+            return ApiResponse.error(e.getMessage());
+        } catch (Exception e) {
+            LOGGER.error("票券购买系统错误: {}", e.getMessage(), e);
+            return ApiResponse.error(e.getMessage());
+        } finally {
+            long endTime = System.currentTimeMillis();
+            responseTime = endTime - startTime;
+            LOGGER.info("V8流水线购票接口响应时间: {}ms", responseTime);
+            // 收集响应时间统计数据
+            responseTimeStatisticsService.addResponseTime(responseTime);
+        }
+    }
+
     /**
      * 查询异步抢购结果
      * @param requestId 请求ID
@@ -639,6 +866,7 @@ public class TicketController {
     
     /**
      * 获取乐观锁修改重试统计信息
+     * retryPolicy 中包含各日期的滑动窗口冲突率、当前重试上限、是否已切换悲观模式
      * @return 重试统计信息
      */
     @GetMapping("/admin/optimisticRetryStats")
@@ -661,6 +889,288 @@ public class TicketController {
     }
 
 
+    /**
+     * 获取库存扣减引擎对比统计：各引擎的成功/售罄/失败数、UPDATE语句数、版本冲突数和耗时
+     * @return 扣减引擎统计信息
+     */
+    @GetMapping("/admin/stockDeductEngineStats")
+    public ApiResponse<Object> getStockDeductEngineStats() {
+        long startTime = System.currentTimeMillis();
+        try {
+            LOGGER.info("获取库存扣减引擎统计信息");
+
+            Map<String, Object> stats = stockDeductStatisticsService.getStatistics();
+
+            return ApiResponse.success(stats);
+
+        } catch (Exception e) {
+            LOGGER.error("获取库存扣减引擎统计信息失败: {}", e.getMessage(), e);
+            return ApiResponse.error("获取扣减引擎统计信息失败: " + e.getMessage());
+        } finally {
+            long endTime = System.currentTimeMillis();
+            LOGGER.info("获取库存扣减引擎统计信息接口响应时间: {}ms", endTime - startTime);
+        }
+    }
+
+    /**
+     * 重置库存扣减引擎统计信息
+     * @return 操作结果
+     */
+    @PostMapping("/admin/stockDeductEngineStats/reset")
+    public ApiResponse<Object> resetStockDeductEngineStats() {
+        try {
+            LOGGER.info("重置库存扣减引擎统计信息");
+            stockDeductStatisticsService.resetStatistics();
+            return ApiResponse.success("扣减引擎统计信息已重置");
+        } catch (Exception e) {
+            LOGGER.error("重置库存扣减引擎统计信息失败: {}", e.getMessage(), e);
+            return ApiResponse.error("重置扣减引擎统计信息失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 获取库存组提交统计信息：批次数、平均/最大批大小、平均/最大等待时间
+     * @return 组提交统计信息
+     */
+    @GetMapping("/admin/groupCommitStats")
+    public ApiResponse<Object> getGroupCommitStats() {
+        long startTime = System.currentTimeMillis();
+        try {
+            LOGGER.info("获取库存组提交统计信息");
+
+            Map<String, Object> stats = stockGroupCommitService.getStatistics();
+
+            return ApiResponse.success(stats);
+
+        } catch (Exception e) {
+            LOGGER.error("获取库存组提交统计信息失败: {}", e.getMessage(), e);
+            return ApiResponse.error("获取组提交统计信息失败: " + e.getMessage());
+        } finally {
+            long endTime = System.currentTimeMillis();
+            LOGGER.info("获取库存组提交统计信息接口响应时间: {}ms", endTime - startTime);
+        }
+    }
+
+    /**
+     * 获取购票接口自适应并发限制统计信息：各购票方式当前的并发限制、在途请求数、无负载/短期响应时间、拒绝次数
+     * @return 并发限制统计信息
+     */
+    @GetMapping("/admin/concurrencyLimits")
+    public ApiResponse<Object> getConcurrencyLimits() {
+        long startTime = System.currentTimeMillis();
+        try {
+            LOGGER.info("获取自适应并发限制统计信息");
+
+            Map<String, Object> stats = adaptiveConcurrencyLimitService.getStatistics();
+
+            return ApiResponse.success(stats);
+
+        } catch (Exception e) {
+            LOGGER.error("获取自适应并发限制统计信息失败: {}", e.getMessage(), e);
+            return ApiResponse.error("获取并发限制统计信息失败: " + e.getMessage());
+        } finally {
+            long endTime = System.currentTimeMillis();
+            LOGGER.info("获取自适应并发限制统计信息接口响应时间: {}ms", endTime - startTime);
+        }
+    }
+
+    /**
+     * 获取购票流水线统计信息：批次数、库存/订单语句数、平均/最大等待时间、各日期积压
+     * @return 流水线统计信息
+     */
+    @GetMapping("/admin/purchasePipelineStats")
+    public ApiResponse<Object> getPurchasePipelineStats() {
+        long startTime = System.currentTimeMillis();
+        try {
+            LOGGER.info("获取购票流水线统计信息");
+
+            Map<String, Object> stats = purchasePipelineService.getStatistics();
+
+            return ApiResponse.success(stats);
+
+        } catch (Exception e) {
+            LOGGER.error("获取购票流水线统计信息失败: {}", e.getMessage(), e);
+            return ApiResponse.error("获取流水线统计信息失败: " + e.getMessage());
+        } finally {
+            long endTime = System.currentTimeMillis();
+            LOGGER.info("获取购票流水线统计信息接口响应时间: {}ms", endTime - startTime);
+        }
+    }
+
+    /**
+     * 重置购票流水线统计信息
+     * @return 操作结果
+     */
+    @PostMapping("/admin/purchasePipelineStats/reset")
+    public ApiResponse<Object> resetPurchasePipelineStats() {
+        try {
+            LOGGER.info("重置购票流水线统计信息");
+            purchasePipelineService.resetStatistics();
+            return ApiResponse.success("流水线统计信息已重置");
+        } catch (Exception e) {
+            LOGGER.error("重置购票流水线统计信息失败: {}", e.getMessage(), e);
+            return ApiResponse.error("重置流水线统计信息失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 获取库存租约概览：本节点各日期本地剩余，以及集群各节点的净租约数量和存活状态
+     * @return 租约概览
+     */
+    @GetMapping("/admin/stockLeases")
+    public ApiResponse<Object> getStockLeases() {
+        long startTime = System.currentTimeMillis();
+        try {
+            LOGGER.info("获取库存租约概览");
+
+            Map<String, Object> overview = stockLeaseService.getLeaseOverview();
+
+            return ApiResponse.success(overview);
+
+        } catch (Exception e) {
+            LOGGER.error("获取库存租约概览失败: {}", e.getMessage(), e);
+            return ApiResponse.error("获取库存租约概览失败: " + e.getMessage());
+        } finally {
+            long endTime = System.currentTimeMillis();
+            LOGGER.info("获取库存租约概览接口响应时间: {}ms", endTime - startTime);
+        }
+    }
+
+    /**
+     * 立即回收失效节点的库存租约
+     * @return 回收的票数
+     */
+    @PostMapping("/admin/stockLeases/reclaim")
+    public ApiResponse<Object> reclaimStockLeases() {
+        long startTime = System.currentTimeMillis();
+        try {
+            LOGGER.info("管理员触发回收失效节点库存租约");
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("reclaimed", stockLeaseService.reclaimDeadNodeLeases());
+
+            return ApiResponse.success(result);
+
+        } catch (Exception e) {
+            LOGGER.error("回收失效节点库存租约失败: {}", e.getMessage(), e);
+            return ApiResponse.error("回收库存租约失败: " + e.getMessage());
+        } finally {
+            long endTime = System.currentTimeMillis();
+            LOGGER.info("回收失效节点库存租约接口响应时间: {}ms", endTime - startTime);
+        }
+    }
+
+    /**
+     * 获取开售前预热就绪报告：状态、开售时间、下次预热时间、各阶段结果和耗时
+     * @return 就绪报告
+     */
+    @GetMapping("/admin/warmup")
+    public ApiResponse<Object> getWarmupReport() {
+        try {
+            return ApiResponse.success(preSaleWarmupService.getReadinessReport());
+        } catch (Exception e) {
+            LOGGER.error("获取预热就绪报告失败: {}", e.getMessage(), e);
+            return ApiResponse.error("获取预热就绪报告失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 立即执行一次开售前预热（同步执行）
+     * @return 就绪报告
+     */
+    @PostMapping("/admin/warmup/run")
+    public ApiResponse<Object> runWarmup() {
+        long startTime = System.currentTimeMillis();
+        try {
+            LOGGER.info("管理员触发开售前预热");
+            return ApiResponse.success(preSaleWarmupService.runWarmup());
+        } catch (Exception e) {
+            LOGGER.error("开售前预热失败: {}", e.getMessage(), e);
+            return ApiResponse.error("开售前预热失败: " + e.getMessage());
+        } finally {
+            long endTime = System.currentTimeMillis();
+            LOGGER.info("开售前预热接口响应时间: {}ms", endTime - startTime);
+        }
+    }
+
+    /**
+     * 启用库存分段：将指定日期的剩余库存拆分到N个分段行
+     * @param date 日期
+     * @param segmentCount 分段数
+     * @return 拆分结果
+     */
+    @PostMapping("/admin/ticketSegments/enable")
+    public ApiResponse<Object> enableTicketSegments(@RequestParam String date, @RequestParam int segmentCount) {
+        long startTime = System.currentTimeMillis();
+        try {
+            LOGGER.info("管理员启用库存分段，日期: {}, 分段数: {}", date, segmentCount);
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("date", date);
+            result.put("segmentCount", segmentCount);
+            result.put("splitCount", ticketSegmentService.enableSegments(date, segmentCount));
+
+            return ApiResponse.success(result);
+
+        } catch (Exception e) {
+            LOGGER.error("启用库存分段失败: {}", e.getMessage(), e);
+            return ApiResponse.error("启用库存分段失败: " + e.getMessage());
+        } finally {
+            long endTime = System.currentTimeMillis();
+            LOGGER.info("启用库存分段接口响应时间: {}ms", endTime - startTime);
+        }
+    }
+
+    /**
+     * 合并库存分段：将指定日期各分段的库存转回票券行
+     * @param date 日期
+     * @return 合并结果
+     */
+    @PostMapping("/admin/ticketSegments/merge")
+    public ApiResponse<Object> mergeTicketSegments(@RequestParam String date) {
+        long startTime = System.currentTimeMillis();
+        try {
+            LOGGER.info("管理员合并库存分段，日期: {}", date);
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("date", date);
+            result.put("mergedCount", ticketSegmentService.mergeSegments(date));
+
+            return ApiResponse.success(result);
+
+        } catch (Exception e) {
+            LOGGER.error("合并库存分段失败: {}", e.getMessage(), e);
+            return ApiResponse.error("合并库存分段失败: " + e.getMessage());
+        } finally {
+            long endTime = System.currentTimeMillis();
+            LOGGER.info("合并库存分段接口响应时间: {}ms", endTime - startTime);
+        }
+    }
+
+    /**
+     * 获取库存分段概览：各分段剩余/已售数量，以及自身分段命中、回退、乐观锁冲突次数
+     * @param date 日期
+     * @return 分段概览
+     */
+    @GetMapping("/admin/ticketSegments")
+    public ApiResponse<Object> getTicketSegments(@RequestParam String date) {
+        long startTime = System.currentTimeMillis();
+        try {
+            LOGGER.info("获取库存分段概览，日期: {}", date);
+
+            Map<String, Object> overview = ticketSegmentService.getSegmentOverview(date);
+
+            return ApiResponse.success(overview);
+
+        } catch (Exception e) {
+            LOGGER.error("获取库存分段概览失败: {}", e.getMessage(), e);
+            return ApiResponse.error("获取库存分段概览失败: " + e.getMessage());
+        } finally {
+            long endTime = System.currentTimeMillis();
+            LOGGER.info("获取库存分段概览接口响应时间: {}ms", endTime - startTime);
+        }
+    }
+
     /**
      * TODO 取消购票接口
      * 1. 验证取消条件
@@ -0,0 +1,178 @@
+package cn.monitor4all.miaoshaweb.controller;
+
+import cn.monitor4all.miaoshadao.model.ApiResponse;
+import cn.monitor4all.miaoshadao.model.BusinessException;
+import cn.monitor4all.miaoshadao.model.ErrorCode;
+import cn.monitor4all.miaoshadao.model.PurchaseRecord;
+import cn.monitor4all.miaoshadao.model.PurchaseRequest;
+import cn.monitor4all.miaoshaservice.interceptor.AdaptiveConcurrencyLimitInterceptor;
+import cn.monitor4all.miaoshaservice.interceptor.AdaptiveConcurrencyLimitResponseAdvice;
+import cn.monitor4all.miaoshaservice.service.ResponseTimeStatisticsService;
+import cn.monitor4all.miaoshaservice.service.TicketService;
+import cn.monitor4all.miaoshaservice.service.impl.AdaptiveConcurrencyLimitServiceImpl;
+import cn.monitor4all.miaoshaservice.utils.ratelimit.OverloadSignals;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 购票接口自适应并发限制测试类
+ * 经过真实的拦截器、控制器和响应体处理，只替换购票服务
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class TicketControllerConcurrencyLimitTest {
+
+    private static final String REQUEST_BODY = "{\"userId\":12345,\"date\":\"2025-01-15\",\"verifyHash\":\"hash\"}";
+
+    @Mock
+    private TicketService ticketService;
+
+    @Mock
+    private ResponseTimeStatisticsService responseTimeStatisticsService;
+
+    @InjectMocks
+    private TicketController ticketController;
+
+    private AdaptiveConcurrencyLimitServiceImpl adaptiveConcurrencyLimitService;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        adaptiveConcurrencyLimitService = new AdaptiveConcurrencyLimitServiceImpl();
+        AdaptiveConcurrencyLimitInterceptor interceptor = new AdaptiveConcurrencyLimitInterceptor();
+        ReflectionTestUtils.setField(interceptor, "adaptiveConcurrencyLimitService", adaptiveConcurrencyLimitService);
+
+        mockMvc = MockMvcBuilders.standaloneSetup(ticketController)
+                .addMappedInterceptors(AdaptiveConcurrencyLimitInterceptor.PATH_PATTERNS, interceptor)
+                .setControllerAdvice(new AdaptiveConcurrencyLimitResponseAdvice())
+                .build();
+    }
+
+    @Test
+    void testSuccessfulPurchaseIsRecordedAsSuccess() throws Exception {
+        when(ticketService.purchaseTicket(any(PurchaseRequest.class)))
+                .thenReturn(ApiResponse.success(new PurchaseRecord(12345L, LocalDate.of(2025, 1, 15), "T001")));
+
+        mockMvc.perform(post("/api/tickets/v1/purchase").contentType(MediaType.APPLICATION_JSON).content(REQUEST_BODY))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code").value(200));
+
+        Map<String, Object> mode = modeStats("purchaseTicket");
+        assertEquals(1L, mode.get("completedCount"));
+        assertEquals(0L, mode.get("droppedCount"));
+        assertEquals(0, mode.get("inflight"));
+    }
+
+    @Test
+    void testOverloadWithHttp200IsRecordedAsDropped() throws Exception {
+        // 服务层捕获锁超时、数据库超时后返回 SYSTEM_BUSY，控制器仍以HTTP 200返回
+        when(ticketService.purchaseTicket(any(PurchaseRequest.class)))
+                .thenReturn(OverloadSignals.failure(new BusinessException(ErrorCode.SYSTEM_BUSY, "获取订单创建锁超时"), "购买失败"));
+        when(ticketService.purchaseTicketV1WithOptimisticLock(any(PurchaseRequest.class)))
+                .thenReturn(OverloadSignals.failure(new QueryTimeoutException("查询超时"), "购买失败"));
+
+        mockMvc.perform(post("/api/tickets/v1/purchase").contentType(MediaType.APPLICATION_JSON).content(REQUEST_BODY))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code").value(ErrorCode.SYSTEM_BUSY.getCode()));
+        mockMvc.perform(post("/api/tickets/v1/purchase/optimistic").contentType(MediaType.APPLICATION_JSON).content(REQUEST_BODY))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code").value(ErrorCode.SYSTEM_BUSY.getCode()));
+
+        assertEquals(1L, modeStats("purchaseTicket").get("droppedCount"));
+        assertEquals(1L, modeStats("purchaseTicketWithOptimistic").get("droppedCount"));
+        assertEquals(0, modeStats("purchaseTicket").get("inflight"));
+    }
+
+    @Test
+    void testSoldOutResponsesDoNotLowerLimit() throws Exception {
+        // 售罄后的业务拒绝按成功样本记录，限制保持不变
+        when(ticketService.purchaseTicket(any(PurchaseRequest.class)))
+                .thenReturn(OverloadSignals.failure(new BusinessException("票券已售罄"), "票券已售罄"));
+
+        sendPurchasesAcrossWindows(30);
+
+        Map<String, Object> mode = modeStats("purchaseTicket");
+        assertEquals(30L, mode.get("completedCount"));
+        assertEquals(0L, mode.get("droppedCount"));
+        assertEquals(20, mode.get("limit"));
+    }
+
+    @Test
+    void testOverloadResponsesLowerLimit() throws Exception {
+        when(ticketService.purchaseTicket(any(PurchaseRequest.class)))
+                .thenReturn(OverloadSignals.failure(new BusinessException(ErrorCode.SYSTEM_BUSY, "获取订单创建锁超时"), "购买失败"));
+
+        sendPurchasesAcrossWindows(30);
+
+        Map<String, Object> mode = modeStats("purchaseTicket");
+        assertEquals(30L, mode.get("droppedCount"));
+        assertTrue((Integer) mode.get("limit") < 20, "limit=" + mode.get("limit"));
+    }
+
+    /**
+     * 每个请求单独一个采样窗口（1ms窗口、1个样本），每个窗口结束时都会调整限制
+     */
+    private void sendPurchasesAcrossWindows(int count) throws Exception {
+        ReflectionTestUtils.setField(adaptiveConcurrencyLimitService, "windowMs", 1L);
+        ReflectionTestUtils.setField(adaptiveConcurrencyLimitService, "minWindowSamples", 1);
+        for (int i = 0; i < count; i++) {
+            mockMvc.perform(post("/api/tickets/v1/purchase").contentType(MediaType.APPLICATION_JSON).content(REQUEST_BODY))
+                    .andExpect(status().isOk());
+            Thread.sleep(2);
+        }
+    }
+
+    @Test
+    void testSaturatedModeReturns429WithoutCallingService() throws Exception {
+        ReflectionTestUtils.setField(adaptiveConcurrencyLimitService, "initialLimit", 4);
+        ReflectionTestUtils.setField(adaptiveConcurrencyLimitService, "minLimit", 4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(adaptiveConcurrencyLimitService.tryAcquire("purchaseTicket"));
+        }
+
+        mockMvc.perform(post("/api/tickets/v1/purchase").contentType(MediaType.APPLICATION_JSON).content(REQUEST_BODY))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(jsonPath("$.code").value(500));
+
+        verify(ticketService, never()).purchaseTicket(any(PurchaseRequest.class));
+        assertEquals(1L, modeStats("purchaseTicket").get("rejectedCount"));
+    }
+
+    @Test
+    void testQueryEndpointIsNotLimited() throws Exception {
+        mockMvc.perform(get("/api/tickets/v2/purchaseResult").param("requestId", "R1"));
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> modes = (Map<String, Object>) adaptiveConcurrencyLimitService.getStatistics().get("modes");
+        assertTrue(modes.isEmpty());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> modeStats(String mode) {
+        Map<String, Object> modes = (Map<String, Object>) adaptiveConcurrencyLimitService.getStatistics().get("modes");
+        return (Map<String, Object>) modes.get(mode);
+    }
+}
@@ -0,0 +1,18 @@
+-- 票券库存分段表
+-- 热点日期的库存拆分到N个分段行，购票按用户ID哈希选择分段，N路并行行锁
+-- 启用分段时ticket行的剩余库存全部转入分段，ticket.remaining_count置0；合并时转回
+CREATE TABLE `ticket_segment` (
+  `id` int(11) NOT NULL AUTO_INCREMENT COMMENT '主键ID',
+  `date` date NOT NULL COMMENT '票券日期',
+  `segment_no` int(11) NOT NULL COMMENT '分段序号，从0开始',
+  `total_count` int(11) NOT NULL DEFAULT 0 COMMENT '分段分配票数',
+  `remaining_count` int(11) NOT NULL DEFAULT 0 COMMENT '分段剩余票数',
+  `sold_count` int(11) NOT NULL DEFAULT 0 COMMENT '分段已售票数',
+  `version` int(11) NOT NULL DEFAULT 1 COMMENT '乐观锁版本号',
+  `status` tinyint(4) NOT NULL DEFAULT 1 COMMENT '状态：1-正常，0-停用',
+  `create_time` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  `update_time` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_date_segment` (`date`, `segment_no`) COMMENT '日期分段唯一索引',
+  KEY `idx_status` (`status`) COMMENT '状态索引'
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='票券库存分段表';